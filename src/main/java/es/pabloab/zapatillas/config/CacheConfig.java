@@ -0,0 +1,53 @@
+package es.pabloab.zapatillas.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import es.pabloab.zapatillas.rest.zapatillas.cache.ZapatillasCache;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configuración de la caché de zapatillas (Caffeine).
+ *
+ * ¿POR QUÉ CAFFEINE Y NO spring.cache.type=simple?
+ * =================================================
+ * La caché "simple" es un ConcurrentHashMap sin límite ni expulsión.
+ * Caffeine usa W-TinyLFU: mantiene las entradas que se piden con frecuencia
+ * (las fichas de producto "calientes") aunque entre mucho tráfico puntual.
+ *
+ * - maximumWeight + weigher: el límite es en bytes aproximados, no en número
+ *   de entradas, así que una zapatilla con textos largos "pesa" más.
+ * - expireAfterWrite: red de seguridad; la invalidación normal es precisa
+ *   (ZapatillasCache se actualiza en cada escritura del servicio).
+ * - recordStats: Actuator publica aciertos, fallos y expulsiones en
+ *   /actuator/metrics/cache.gets y /actuator/metrics/cache.evictions.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${zapatillas.cache.max-bytes:67108864}") long maxBytes,
+            @Value("${zapatillas.cache.expire-after-write:30m}") Duration expireAfterWrite) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Object key, Object value) -> value instanceof ZapatillaResponseDto dto
+                        ? ZapatillasCache.pesoAproximado(dto)
+                        : 64)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats());
+        // Las creamos al arrancar para que Actuator registre sus métricas
+        cacheManager.setCacheNames(List.of(ZapatillasCache.POR_ID, ZapatillasCache.POR_UUID));
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
+    }
+}
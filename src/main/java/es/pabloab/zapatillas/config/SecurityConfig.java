@@ -36,7 +36,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
  * con la URL de la petición será la que se aplique.
  *
  * ORDEN DE EVALUACIÓN:
- * 1. @Order(1) - API: /api/**, /graphql, /ws/** → JWT, stateless
+ * 1. @Order(1) - API: /api/**, /graphql, /ws/**, /ws-native → JWT, stateless
  * 2. @Order(2) - Swagger/OpenAPI → permitAll
  * 3. @Order(3) - H2 Console → permitAll (solo desarrollo)
  * 4. @Order(4) - Web: todo lo demás → form login, sesiones, CSRF
@@ -65,8 +65,8 @@ public class SecurityConfig {
     public SecurityFilterChain apiSecurityFilterChain(HttpSecurity http) throws Exception {
         http
                 // securityMatcher: Define QUÉ URLs gestiona esta cadena
-                // Solo las URLs que empiecen por /api/, /graphql, /ws/ o /error
-                .securityMatcher("/api/**", "/graphql", "/graphiql/**", "/ws/**", "/error/**")
+                // Solo las URLs que empiecen por /api/, /graphql, /ws/, /ws-native o /error
+                .securityMatcher("/api/**", "/graphql", "/graphiql/**", "/ws/**", "/ws-native", "/error/**")
 
                 // CSRF deshabilitado: Las APIs REST no usan formularios HTML,
                 // así que no necesitan protección CSRF. Usan JWT en su lugar.
@@ -79,8 +79,8 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/v1/zapatillas/**").permitAll()
                         // GraphQL: público
                         .requestMatchers("/graphql", "/graphiql/**").permitAll()
-                        // WebSockets: público
-                        .requestMatchers("/ws/**").permitAll()
+                        // WebSockets (SockJS y nativo): público
+                        .requestMatchers("/ws/**", "/ws-native").permitAll()
                         // Errores: público
                         .requestMatchers("/error/**").permitAll()
                         // Todo lo demás dentro de /api/**: requiere autenticación
@@ -155,6 +155,8 @@ public class SecurityConfig {
                         .requestMatchers("/webjars/**", "/css/**", "/js/**", "/images/**").permitAll()
                         // Zona admin: requiere rol ADMIN
                         .requestMatchers("/admin/**").hasRole("ADMIN")
+                        // Actuator (métricas de caché, etc.): solo ADMIN
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         // Todo lo demás: requiere estar autenticado
                         .anyRequest().authenticated()
                 )
@@ -1,24 +1,128 @@
 package es.pabloab.zapatillas.config;
 
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.FormatoTrama;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasSesiones;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasSuscripcionesInterceptor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 
 @Configuration
 @EnableWebSocketMessageBroker  // ← Habilita WebSocket con STOMP
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    private final ZapatillasSesiones sesiones;
+    private final ZapatillasSuscripcionesInterceptor suscripciones;
+    private final boolean hilosVirtuales;
+    private final int hilosEntrada;
+    private final int hilosSalida;
+
+    // @Lazy: el interceptor envía por clientOutboundChannel, que se crea con esta configuración
+    public WebSocketConfig(ZapatillasSesiones sesiones,
+                           @Lazy ZapatillasSuscripcionesInterceptor suscripciones,
+                           @Value("${zapatillas.ws.hilos-virtuales:false}") boolean hilosVirtuales,
+                           @Value("${zapatillas.ws.entrada.hilos:8}") int hilosEntrada,
+                           @Value("${zapatillas.ws.salida.hilos:8}") int hilosSalida) {
+        this.sesiones = sesiones;
+        this.suscripciones = suscripciones;
+        this.hilosVirtuales = hilosVirtuales;
+        this.hilosEntrada = hilosEntrada;
+        this.hilosSalida = hilosSalida;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        // Con varios hilos (o virtuales) de salida, las tramas de una sesión podrían
+        // adelantarse unas a otras; los clientes cuentan con el orden de "secuencia"
+        config.setPreservePublishOrder(true);
     }
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Lo mismo de entrada: SUBSCRIBE y UNSUBSCRIBE de una sesión en el orden en que llegan
+        registry.setPreserveReceiveOrder(true);
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        // WebSocket sin SockJS: el único que puede recibir tramas binarias (CBOR)
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*");
+    }
+
+    /**
+     * Límites de cada sesión: tiempo máximo de un envío y bytes en cola.
+     * Spring los aplica en su propio buffer, pero ZapatillasSesiones envuelve
+     * antes la sesión para que un cliente lento no bloquee los hilos de salida
+     * y para aplicar la política de desborde (zapatillas.ws.sesion.desborde).
+     *
+     * Los escritores de cada sesión tienen su propio executor de hilos
+     * virtuales: son los que se quedan bloqueados en sendMessage con un
+     * cliente lento. Si compartieran los del clientOutboundChannel, unos
+     * pocos clientes lentos dejarían sin hilos el reparto a todos los demás.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sesiones.getTiempoEnvioMs())
+                .setSendBufferSizeLimit(sesiones.getLimiteBytes())
+                .addDecoratorFactory(sesiones.decorador(new VirtualThreadTaskExecutor("ws-escritor-")));
+    }
+
+    /**
+     * Hilos que reparten a las sesiones (clientOutboundChannel): solo
+     * encolan en la sesión, no esperan al cliente. Con
+     * zapatillas.ws.hilos-virtuales cada tarea va en un hilo virtual.
+     */
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (hilosVirtuales) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-salida-"));
+        } else {
+            registration.taskExecutor().corePoolSize(hilosSalida);
+        }
+    }
+
+    /**
+     * Un SUBSCRIBE con "content-type: application/cbor" queda suscrito al
+     * destino CBOR del mismo topic (ver FormatoTrama). Después de que lo
+     * procese el broker, ZapatillasSuscripcionesInterceptor.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (hilosVirtuales) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-entrada-"));
+        } else {
+            registration.taskExecutor().corePoolSize(hilosEntrada);
+        }
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor cabeceras = StompHeaderAccessor.wrap(message);
+                String destino = cabeceras.getDestination();
+                if (!StompCommand.SUBSCRIBE.equals(cabeceras.getCommand()) || destino == null) {
+                    return message;
+                }
+                String suscrito = FormatoTrama.destinoSuscripcion(destino, cabeceras.getFirstNativeHeader("content-type"));
+                if (suscrito.equals(destino)) {
+                    return message;
+                }
+                cabeceras.setDestination(suscrito);
+                return MessageBuilder.createMessage(message.getPayload(), cabeceras.getMessageHeaders());
+            }
+        }, suscripciones);
     }
-}
\ No newline at end of file
+}
@@ -3,28 +3,47 @@ package es.pabloab.zapatillas.graphql.controllers;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion.TipoNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaParcheDto;
 import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasEventos;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasStream;
 import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
 import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
 
+import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 @RequiredArgsConstructor
 @Controller
 public class ZapatillaGraphQLController {
     private final ZapatillasRepository zapatillasRepository;
     private final ZapatillasService zapatillasService;
+    private final ZapatillasEventos eventos;
+
+    private static final Set<TipoNotificacion> CAMBIOS =
+            EnumSet.of(TipoNotificacion.CREATED, TipoNotificacion.UPDATED, TipoNotificacion.DELETED);
 
     // -- QUERIES (usan repositorio directamente, como el proyecto de referencia) --
+    // Los listados proyectan directamente a ZapatillaResponseDto (mismos campos que
+    // el tipo Zapatilla del esquema) en una transacción de solo lectura.
 
     @QueryMapping
-    public List<Zapatilla> zapatillas() {
-        return zapatillasRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<ZapatillaResponseDto> zapatillas() {
+        return zapatillasRepository.findAllBy(ZapatillaResponseDto.class);
     }
 
     @QueryMapping
@@ -33,13 +52,29 @@ public class ZapatillaGraphQLController {
     }
 
     @QueryMapping
-    public List<Zapatilla> zapatillasByMarca(@Argument String marca) {
-        return zapatillasRepository.findAllByMarcaContainingIgnoreCase(marca);
+    @Transactional(readOnly = true)
+    public List<ZapatillaResponseDto> zapatillasByMarca(@Argument String marca) {
+        return zapatillasRepository.findAllByMarcaContainingIgnoreCase(marca, ZapatillaResponseDto.class);
+    }
+
+    @QueryMapping
+    @Transactional(readOnly = true)
+    public List<ZapatillaResponseDto> zapatillasByTipo(@Argument String tipo) {
+        return zapatillasRepository.findAllByTipoContainingIgnoreCase(tipo, ZapatillaResponseDto.class);
     }
 
+    // Los rangos usan el service: se resuelven con el índice ordenado en memoria
+
     @QueryMapping
-    public List<Zapatilla> zapatillasByTipo(@Argument String tipo) {
-        return zapatillasRepository.findAllByTipoContainingIgnoreCase(tipo);
+    public List<ZapatillaResponseDto> zapatillasByPrecio(@Argument Double min, @Argument Double max,
+                                                         @Argument Integer page, @Argument Integer size) {
+        return zapatillasService.findByPrecio(min, max, PageRequest.of(page, size)).getContent();
+    }
+
+    @QueryMapping
+    public List<ZapatillaResponseDto> zapatillasStockBajo(@Argument Integer umbral,
+                                                          @Argument Integer page, @Argument Integer size) {
+        return zapatillasService.findStockBajo(umbral, PageRequest.of(page, size)).getContent();
     }
 
     // -- MUTATIONS (usan el service para validaciones + notificaciones WebSocket) --
@@ -80,6 +115,81 @@ public class ZapatillaGraphQLController {
         return true;
     }
 
+    // -- SUBSCRIPTIONS (mismas notificaciones que STOMP y SSE, ver ZapatillasEventos) --
+    // Cada suscripción tiene su propio buffer: una que va lenta no frena a las demás.
+
+    @SubscriptionMapping
+    public Flux<ZapatillaCambio> zapatillaChanged(@Argument String marca, @Argument String tipo) {
+        ZapatillasStream.Filtro filtro = ZapatillasStream.Filtro.de(marca, tipo);
+        return eventos.suscribir(publicada -> CAMBIOS.contains(publicada.notificacion().getTipo())
+                        && publicada.notificacion().getZapatillaId() != null
+                        && filtro.acepta(publicada.destinos()))
+                .map(publicada -> ZapatillaCambio.de(publicada.notificacion()));
+    }
+
+    @SubscriptionMapping
+    public Flux<StockBajo> stockLow(@Argument int threshold) {
+        // Del stock que traen las altas y los parches, no de STOCK_LOW: su umbral es fijo
+        return eventos.suscribir(publicada -> {
+                    Integer stock = stock(publicada.notificacion());
+                    return stock != null && stock < threshold;
+                })
+                .map(publicada -> StockBajo.de(publicada.notificacion(), stock(publicada.notificacion())));
+    }
+
+    private static Integer stock(ZapatillaNotificacion notificacion) {
+        if (notificacion.getTipo() == TipoNotificacion.CREATED
+                && notificacion.getData() instanceof ZapatillaResponseDto zapatilla) {
+            return zapatilla.getStock();
+        }
+        if (notificacion.getTipo() == TipoNotificacion.UPDATED
+                && notificacion.getData() instanceof ZapatillaParcheDto parche) {
+            return parche.getOperaciones().stream()
+                    .filter(operacion -> "/stock".equals(operacion.path()))
+                    .map(operacion -> operacion.value() instanceof Number n ? n.intValue() : null)
+                    .findFirst()
+                    .orElse(null);
+        }
+        return null;
+    }
+
+    // -- Records de salida de las suscripciones --
+
+    public record ZapatillaCambio(
+            TipoNotificacion tipo,
+            Long zapatillaId,
+            Long secuencia,
+            LocalDateTime timestamp,
+            ZapatillaResponseDto zapatilla,
+            Long desdeVersion,
+            Long version,
+            List<CampoCambiado> cambios
+    ) {
+        static ZapatillaCambio de(ZapatillaNotificacion notificacion) {
+            ZapatillaResponseDto zapatilla = notificacion.getData() instanceof ZapatillaResponseDto dto ? dto : null;
+            ZapatillaParcheDto parche = notificacion.getData() instanceof ZapatillaParcheDto p ? p : null;
+            return new ZapatillaCambio(notificacion.getTipo(), notificacion.getZapatillaId(),
+                    notificacion.getSecuencia(), notificacion.getTimestamp(), zapatilla,
+                    parche != null ? parche.getDesdeVersion() : null,
+                    parche != null ? parche.getVersion() : null,
+                    parche != null ? parche.getOperaciones().stream().map(CampoCambiado::de).toList() : null);
+        }
+    }
+
+    public record CampoCambiado(String campo, String valor) {
+        static CampoCambiado de(ZapatillaParcheDto.Operacion operacion) {
+            return new CampoCambiado(operacion.path().substring(1),
+                    operacion.value() != null ? operacion.value().toString() : null);
+        }
+    }
+
+    public record StockBajo(Long zapatillaId, Integer stock, Long secuencia, LocalDateTime timestamp) {
+        static StockBajo de(ZapatillaNotificacion notificacion, Integer stock) {
+            return new StockBajo(notificacion.getZapatillaId(), stock,
+                    notificacion.getSecuencia(), notificacion.getTimestamp());
+        }
+    }
+
     // -- Records de input para GraphQL --
 
     public record CreateZapatillaInput(
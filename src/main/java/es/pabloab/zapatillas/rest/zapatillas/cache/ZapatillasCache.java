@@ -0,0 +1,148 @@
+package es.pabloab.zapatillas.rest.zapatillas.cache;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Caché de lectura (read-through) de ZapatillaResponseDto por id y por UUID.
+ *
+ * ¿POR QUÉ NO @Cacheable?
+ * ========================
+ * Cada zapatilla vive en dos cachés (por id y por UUID) y al borrar solo
+ * conocemos el id. Con anotaciones no podríamos invalidar la entrada por
+ * UUID sin vaciar la caché entera. Aquí el servicio nos pasa siempre el DTO
+ * completo, así que invalidamos exactamente las dos claves afectadas.
+ *
+ * El UUID se guarda como objeto UUID (no como String) para que "ABC..." y
+ * "abc..." sean la misma clave.
+ */
+@Component
+public class ZapatillasCache {
+
+    public static final String POR_ID = "zapatillas";
+    public static final String POR_UUID = "zapatillasUuid";
+
+    private final Cache porId;
+    private final Cache porUuid;
+
+    public ZapatillasCache(CacheManager cacheManager) {
+        this.porId = Objects.requireNonNull(cacheManager.getCache(POR_ID));
+        this.porUuid = Objects.requireNonNull(cacheManager.getCache(POR_UUID));
+    }
+
+    /**
+     * Devuelve la zapatilla de la caché o la carga con el loader y la guarda.
+     * Las excepciones del loader (ZapatillaNotFoundException) se propagan tal cual.
+     */
+    public ZapatillaResponseDto porId(Long id, Supplier<ZapatillaResponseDto> loader) {
+        ZapatillaResponseDto cacheada = porId.get(id, ZapatillaResponseDto.class);
+        if (cacheada != null) {
+            return cacheada;
+        }
+        ZapatillaResponseDto cargada = loader.get();
+        guardar(cargada);
+        return cargada;
+    }
+
+    public ZapatillaResponseDto porUuid(UUID uuid, Supplier<ZapatillaResponseDto> loader) {
+        ZapatillaResponseDto cacheada = porUuid.get(uuid, ZapatillaResponseDto.class);
+        if (cacheada != null) {
+            return cacheada;
+        }
+        ZapatillaResponseDto cargada = loader.get();
+        guardar(cargada);
+        return cargada;
+    }
+
+    /**
+     * Devuelve las zapatillas de estos ids en el mismo orden. Las que no están
+     * en caché se piden al loader de UNA vez (un solo SELECT ... IN) y se guardan.
+     * Los ids que el loader no devuelve (borrados) se omiten.
+     */
+    public List<ZapatillaResponseDto> porIds(List<Long> ids,
+                                             Function<List<Long>, List<ZapatillaResponseDto>> loader) {
+        Map<Long, ZapatillaResponseDto> encontradas = new HashMap<>();
+        List<Long> fallos = new ArrayList<>();
+        for (Long id : ids) {
+            ZapatillaResponseDto cacheada = porId.get(id, ZapatillaResponseDto.class);
+            if (cacheada != null) {
+                encontradas.put(id, cacheada);
+            } else {
+                fallos.add(id);
+            }
+        }
+        if (!fallos.isEmpty()) {
+            for (ZapatillaResponseDto cargada : loader.apply(fallos)) {
+                guardar(cargada);
+                encontradas.put(cargada.getId(), cargada);
+            }
+        }
+        return ids.stream()
+                .map(encontradas::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Guarda (o sustituye) la zapatilla en las dos cachés.
+     *
+     * Si ya hay una versión MÁS NUEVA (@Version) no se sustituye: con
+     * escrituras concurrentes, el hilo que releyó antes puede llegar aquí
+     * después y no debe dejar en caché un stock antiguo.
+     */
+    public void guardar(ZapatillaResponseDto dto) {
+        guardar(porId, dto.getId(), dto);
+        if (dto.getUuid() != null) {
+            guardar(porUuid, dto.getUuid(), dto);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void guardar(Cache cache, Object clave, ZapatillaResponseDto dto) {
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine) {
+            ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) caffeine).asMap()
+                    .merge(clave, dto, (actual, nueva) -> version(nueva) >= version(actual) ? nueva : actual);
+        } else {
+            cache.put(clave, dto);
+        }
+    }
+
+    private static long version(Object dto) {
+        Long version = ((ZapatillaResponseDto) dto).getVersion();
+        return version != null ? version : -1;
+    }
+
+    /**
+     * Quita la zapatilla de las dos cachés.
+     */
+    public void invalidar(Long id, UUID uuid) {
+        porId.evict(id);
+        if (uuid != null) {
+            porUuid.evict(uuid);
+        }
+    }
+
+    /**
+     * Estimación del tamaño en memoria de un DTO, para el weigher de Caffeine.
+     * Cabecera de objeto + campos fijos (~200 bytes) + 2 bytes por carácter.
+     */
+    public static int pesoAproximado(ZapatillaResponseDto dto) {
+        return 200 + 2 * (longitud(dto.getMarca()) + longitud(dto.getModelo())
+                + longitud(dto.getCodigoProducto()) + longitud(dto.getColor()) + longitud(dto.getTipo()));
+    }
+
+    private static int longitud(String texto) {
+        return texto != null ? texto.length() : 0;
+    }
+}
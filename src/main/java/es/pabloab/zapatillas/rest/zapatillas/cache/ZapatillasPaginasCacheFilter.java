@@ -0,0 +1,215 @@
+package es.pabloab.zapatillas.rest.zapatillas.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasCatalogoVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caché de respuestas ya serializadas (y ya comprimidas) del listado de zapatillas.
+ *
+ * ¿POR QUÉ?
+ * ==========
+ * Casi todo el tráfico de GET /api/v1/zapatillas pide las mismas primeras
+ * páginas. Sin esta caché cada petición repite consulta, mapeo, PageResponse,
+ * Jackson y gzip. Aquí guardamos los BYTES finales de la respuesta, en claro
+ * y en gzip, y un acierto se escribe directamente en el socket.
+ *
+ * ¿CÓMO SE INVALIDA?
+ * ===================
+ * Cada entrada guarda la versión del catálogo (ZapatillasCatalogoVersion)
+ * leída ANTES de generar la respuesta. Cualquier escritura del servicio sube
+ * la versión, así que las entradas antiguas dejan de servirse y se sustituyen
+ * en la siguiente petición. No hace falta recorrer la caché para vaciarla.
+ *
+ * La clave es la URL sin query + los parámetros ordenados por nombre, así
+ * "?tipo=Running&marca=Nike" y "?marca=Nike&tipo=Running" comparten entrada.
+ *
+ * Las dos codificaciones llevan el mismo ETag, que por eso es débil (ver ETags).
+ *
+ * Solo se aplica al listado REST: su JSON es igual para todos los usuarios.
+ * Las páginas HTML de /public/ no se cachean así porque llevan el token CSRF
+ * y el usuario de la sesión.
+ */
+@Component
+public class ZapatillasPaginasCacheFilter extends OncePerRequestFilter {
+
+    private static final String RUTA = "/api/v1/zapatillas";
+
+    private final ZapatillasCatalogoVersion catalogoVersion;
+    private final Cache<String, Pagina> paginas;
+
+    public ZapatillasPaginasCacheFilter(
+            ZapatillasCatalogoVersion catalogoVersion,
+            MeterRegistry meterRegistry,
+            @Value("${zapatillas.paginas-cache.max-bytes:16777216}") long maxBytes) {
+        this.catalogoVersion = catalogoVersion;
+        this.paginas = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String clave, Pagina pagina) -> clave.length() * 2 + pagina.peso())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, paginas, "zapatillasPaginas");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || !RUTA.equals(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long version = catalogoVersion.actual();
+        String clave = clave(request);
+
+        Pagina pagina = paginas.getIfPresent(clave);
+        if (pagina != null && pagina.version() == version) {
+            // If-None-Match con el mismo ETag: 304, igual que haría el controlador
+            if (pagina.etag() != null && new ServletWebRequest(request, response).checkNotModified(pagina.etag())) {
+                return;
+            }
+            escribir(pagina, request, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK && esJson(wrapper.getContentType())) {
+            byte[] json = wrapper.getContentAsByteArray();
+            pagina = new Pagina(version, wrapper.getContentType(),
+                    wrapper.getHeader(HttpHeaders.ETAG), wrapper.getHeader(HttpHeaders.LINK),
+                    json, gzip(json));
+            paginas.put(clave, pagina);
+            // Ya tenemos el gzip hecho: lo usamos también en esta primera respuesta
+            wrapper.resetBuffer();
+            escribir(pagina, request, response);
+            return;
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    /**
+     * Escribe los bytes guardados tal cual, en gzip si el cliente lo acepta.
+     */
+    private static void escribir(Pagina pagina, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(pagina.contentType());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (pagina.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, pagina.etag());
+        }
+        if (pagina.link() != null) {
+            response.setHeader(HttpHeaders.LINK, pagina.link());
+        }
+
+        byte[] cuerpo = pagina.identidad();
+        if (prefiereGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            cuerpo = pagina.gzip();
+        }
+        response.setContentLength(cuerpo.length);
+        response.getOutputStream().write(cuerpo);
+    }
+
+    /**
+     * ¿Mandamos gzip? Según los valores q de Accept-Encoding (RFC 9110):
+     * - "gzip;q=0" lo rechaza, y "*" cuenta para gzip si no aparece.
+     * - identity vale 1 salvo que se diga otra cosa ("identity;q=0" o
+     *   "*;q=0" sin identity).
+     * gzip solo si el cliente lo acepta y no prefiere la versión en claro.
+     */
+    private static boolean prefiereGzip(String aceptadas) {
+        if (aceptadas == null || aceptadas.isBlank()) {
+            return false;
+        }
+        double gzip = -1;
+        double identidad = -1;
+        double comodin = -1;
+        for (String parte : aceptadas.split(",")) {
+            String[] trozos = parte.split(";");
+            String codificacion = trozos[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < trozos.length; i++) {
+                String parametro = trozos[i].trim();
+                if (parametro.length() > 2 && parametro.substring(0, 2).equalsIgnoreCase("q=")) {
+                    try {
+                        q = Double.parseDouble(parametro.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (codificacion) {
+                case "gzip", "x-gzip" -> gzip = Math.max(gzip, q);
+                case "identity" -> identidad = q;
+                case "*" -> comodin = q;
+                default -> {
+                }
+            }
+        }
+        if (gzip < 0) {
+            gzip = Math.max(comodin, 0);
+        }
+        if (identidad < 0) {
+            identidad = comodin >= 0 ? comodin : 1;
+        }
+        return gzip > 0 && gzip >= identidad;
+    }
+
+    private static String clave(HttpServletRequest request) {
+        StringBuilder clave = new StringBuilder(request.getRequestURL());
+        Map<String, String[]> ordenados = new TreeMap<>(request.getParameterMap());
+        ordenados.forEach((nombre, valores) ->
+                clave.append('\u0000').append(nombre).append('=').append(String.join("\u0001", valores)));
+        return clave.toString();
+    }
+
+    private static boolean esJson(String contentType) {
+        return contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+    }
+
+    private static byte[] gzip(byte[] datos) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(Math.max(64, datos.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    /**
+     * Una respuesta guardada: cabeceras necesarias + cuerpo en claro y en gzip.
+     */
+    private record Pagina(long version, String contentType, String etag, String link,
+                          byte[] identidad, byte[] gzip) {
+
+        int peso() {
+            return 128 + identidad.length + gzip.length;
+        }
+    }
+}
@@ -1,32 +1,71 @@
 package es.pabloab.zapatillas.rest.zapatillas.controllers;
 
 
+import es.pabloab.zapatillas.rest.zapatillas.dto.CompraFlashDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ReservaStockDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaFacetasDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaImportacionDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaSincronizacionDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaBadRequestException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaPreconditionFailedException;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasFacetIndex.Faceta;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasStream;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador.Formato;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasImportador;
 import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasSincronizador;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasStockService;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasVentaFlash;
+import es.pabloab.zapatillas.rest.zapatillas.validators.ZapatillaSortWhitelist;
+import es.pabloab.zapatillas.utils.ETags;
+import es.pabloab.zapatillas.utils.pagination.KeysetCursor;
 import es.pabloab.zapatillas.utils.pagination.PageResponse;
 import es.pabloab.zapatillas.utils.pagination.PaginationLinksUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Controlador REST para gestionar zapatillas.
@@ -46,12 +85,32 @@ import java.util.Map;
 @RequestMapping("api/v1/zapatillas")
 public class ZapatillasRestController {
 
+    private static final int MAX_LIMITE_FACETAS = 1000;
+
     private final ZapatillasService service;
+    private final ZapatillasExportador exportador;
+    private final ZapatillasImportador importador;
+    private final ZapatillasSincronizador sincronizador;
+    private final ZapatillasStockService stockService;
+    private final ZapatillasVentaFlash ventaFlash;
+    private final ZapatillasStream stream;
     private final PaginationLinksUtils paginationLinksUtils;
+    private final KeysetCursor keysetCursor;
 
     /**
      * Obtiene todas las zapatillas (paginadas).
      * Acceso: Todos los usuarios autenticados pueden ver zapatillas.
+     *
+     * Dos modos de paginación:
+     * - Offset (por defecto): page + size, con totales y enlace "last".
+     *   Con exactCount=false no se lanza el COUNT(*): se usa un Slice y el
+     *   total que se devuelve es una estimación (totalExact=false).
+     * - Cursor (keyset): cursor=true, after o before. Sin COUNT ni OFFSET,
+     *   así que pedir la página 10.000 cuesta lo mismo que pedir la primera.
+     *
+     * sortBy solo admite las claves de ZapatillaSortWhitelist (id, precio,
+     * marca, tipo, stock, updatedAt), cada una respaldada por un índice.
+     * Cualquier otro valor devuelve 400 Bad Request.
      */
     @GetMapping()
     public ResponseEntity<PageResponse<ZapatillaResponseDto>> getAll(
@@ -61,38 +120,304 @@ public class ZapatillasRestController {
             @RequestParam(defaultValue = "10")int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String direction,
-            HttpServletRequest request){
+            @RequestParam(defaultValue = "false") boolean cursor,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "true") boolean exactCount,
+            HttpServletRequest request,
+            WebRequest webRequest){
         log.info("Buscando zapatillas por marca={} tipo={}", marca, tipo);
 
-        //1.Construimos el Sort a partir de los parámetros
-        Sort sort = direction.equalsIgnoreCase("asc")
-                ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
+        //1.Construimos el Sort a partir de los parámetros (solo órdenes con índice)
+        Sort sort = ZapatillaSortWhitelist.resolver(sortBy, direction);
+
+        // Si el catálogo no ha cambiado desde la última vez, 304 sin consultar nada
+        String etag = etagCatalogo();
+        if (webRequest.checkNotModified(etag)) {
+            return noModificado(etag);
+        }
+
+        if (cursor || after != null || before != null) {
+            return getAllCursor(marca, tipo, size, sortBy, direction, sort, after, before, request, etag);
+        }
 
         //2. Construimos el Pageable con page + size + sort
         Pageable pageable = PageRequest.of(page, size, sort);
 
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(request.getRequestURL().toString());
+
+        if (!exactCount) {
+            Slice<ZapatillaResponseDto> sliceResult = service.findAllSlice(marca, tipo, pageable);
+            long aproximado = service.countAproximado(marca, tipo);
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .header("link", paginationLinksUtils.createLinkHeader(sliceResult, uriBuilder))
+                    .body(PageResponse.ofSlice(sliceResult, aproximado, sortBy, direction));
+        }
+
         //3. LLamamos al servicio
         Page<ZapatillaResponseDto> pageResult = service.findAll(marca, tipo, pageable);
 
         //4. Generamos la cabecera Link usando la URL de la petición actual
-        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(request.getRequestURL().toString());
         String linkHeader = paginationLinksUtils.createLinkHeader(pageResult, uriBuilder);
 
-        //5. Devolvemos PageResponse + cabecera Link
+        //5. Devolvemos PageResponse + cabecera Link + ETag
         return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
                 .header("link", linkHeader)
                 .body(PageResponse.of(pageResult, sortBy, direction));
     }
 
+    /**
+     * Modo cursor de getAll.
+     *
+     * El cursor guarda el valor de ordenación + id de la fila frontera. Los
+     * órdenes de ZapatillaSortWhitelist terminan siempre en id: sin un orden
+     * total las páginas podrían repetir o saltarse filas con el mismo precio, marca...
+     */
+    private ResponseEntity<PageResponse<ZapatillaResponseDto>> getAllCursor(
+            String marca, String tipo, int size, String sortBy, String direction, Sort sort,
+            String after, String before, HttpServletRequest request, String etag) {
+        if (after != null && before != null) {
+            throw new ZapatillaBadRequestException("No se puede usar 'after' y 'before' a la vez");
+        }
+
+        // Un cursor corrupto o de otro orden es un 400 (ZapatillaBadRequestException)
+        ScrollPosition position;
+        if (after != null) {
+            position = keysetCursor.decode(after, ScrollPosition.Direction.FORWARD, sort);
+        } else if (before != null) {
+            position = keysetCursor.decode(before, ScrollPosition.Direction.BACKWARD, sort);
+        } else {
+            position = ScrollPosition.keyset();
+        }
+
+        Window<ZapatillaResponseDto> window = service.findAll(marca, tipo, position, sort, size);
+
+        // Hacia delante: "next" si quedan filas, "prev" si venimos de otra página.
+        // Hacia atrás: al revés, hasNext indica que quedan filas ANTERIORES.
+        String nextCursor;
+        String prevCursor;
+        if (before != null) {
+            nextCursor = keysetCursor.next(window);
+            prevCursor = window.hasNext() ? keysetCursor.prev(window) : null;
+        } else {
+            nextCursor = window.hasNext() ? keysetCursor.next(window) : null;
+            prevCursor = after != null ? keysetCursor.prev(window) : null;
+        }
+
+        // fromRequest conserva la query (marca, tipo, sortBy...) para los enlaces
+        UriComponentsBuilder uriBuilder = ServletUriComponentsBuilder.fromRequest(request);
+        String linkHeader = paginationLinksUtils.createCursorLinkHeader(nextCursor, prevCursor, size, uriBuilder);
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header("link", linkHeader)
+                .body(PageResponse.ofWindow(window, size, nextCursor, prevCursor, sortBy, direction));
+    }
+
+    /**
+     * Búsqueda por facetas: ids que cumplen los filtros + conteos por faceta.
+     *
+     * Cada filtro admite varios valores (marca=Nike&marca=Adidas o marca=Nike,Adidas):
+     * OR dentro de la misma faceta y AND entre facetas distintas.
+     * El precio se filtra por tramos tal como aparecen en la respuesta ("50-100", "200+").
+     *
+     * Ejemplo: GET /api/v1/zapatillas/facets?marca=Nike,Adidas&tipo=Running&limite=20
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<ZapatillaFacetasDto> getFacetas(
+            @RequestParam(required = false) List<String> marca,
+            @RequestParam(required = false) List<String> tipo,
+            @RequestParam(required = false) List<String> color,
+            @RequestParam(required = false) List<String> talla,
+            @RequestParam(required = false) List<String> precio,
+            @RequestParam(defaultValue = "100") int limite,
+            WebRequest webRequest) {
+        if (limite < 0 || limite > MAX_LIMITE_FACETAS) {
+            throw new ZapatillaBadRequestException("El límite debe estar entre 0 y " + MAX_LIMITE_FACETAS);
+        }
+        String etag = etagCatalogo();
+        if (webRequest.checkNotModified(etag)) {
+            return noModificado(etag);
+        }
+
+        Map<Faceta, List<String>> filtros = new EnumMap<>(Faceta.class);
+        filtros.put(Faceta.MARCA, marca);
+        filtros.put(Faceta.TIPO, tipo);
+        filtros.put(Faceta.COLOR, color);
+        filtros.put(Faceta.TALLA, talla);
+        filtros.put(Faceta.PRECIO, precio);
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(service.findFacetas(filtros, limite));
+    }
+
+    /**
+     * Zapatillas con precio entre min y max (ambos incluidos), de más barata a más cara.
+     * Se resuelve con el índice ordenado en memoria: paginar no vuelve a recorrer la tabla.
+     *
+     * Ejemplo: GET /api/v1/zapatillas/precio?min=50&max=100&page=0&size=10
+     */
+    @GetMapping("/precio")
+    public ResponseEntity<PageResponse<ZapatillaResponseDto>> getByPrecio(
+            @RequestParam double min,
+            @RequestParam double max,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            HttpServletRequest request,
+            WebRequest webRequest) {
+        if (min > max) {
+            throw new ZapatillaBadRequestException("El precio mínimo no puede ser mayor que el máximo");
+        }
+        String etag = etagCatalogo();
+        if (webRequest.checkNotModified(etag)) {
+            return noModificado(etag);
+        }
+        Page<ZapatillaResponseDto> pageResult = service.findByPrecio(min, max, PageRequest.of(page, size));
+
+        UriComponentsBuilder uriBuilder = ServletUriComponentsBuilder.fromRequest(request);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header("link", paginationLinksUtils.createLinkHeader(pageResult, uriBuilder))
+                .body(PageResponse.of(pageResult, "precio", "asc"));
+    }
+
+    /**
+     * Zapatillas con menos unidades que el umbral, de menos a más stock.
+     *
+     * Ejemplo: GET /api/v1/zapatillas/stock-bajo?umbral=5
+     */
+    @GetMapping("/stock-bajo")
+    public ResponseEntity<PageResponse<ZapatillaResponseDto>> getStockBajo(
+            @RequestParam(defaultValue = "5") int umbral,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            HttpServletRequest request,
+            WebRequest webRequest) {
+        String etag = etagCatalogo();
+        if (webRequest.checkNotModified(etag)) {
+            return noModificado(etag);
+        }
+        Page<ZapatillaResponseDto> pageResult = service.findStockBajo(umbral, PageRequest.of(page, size));
+
+        UriComponentsBuilder uriBuilder = ServletUriComponentsBuilder.fromRequest(request);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header("link", paginationLinksUtils.createLinkHeader(pageResult, uriBuilder))
+                .body(PageResponse.of(pageResult, "stock", "asc"));
+    }
+
+    /**
+     * Exporta el catálogo completo en NDJSON (un JSON por línea) o CSV.
+     * Acceso: Solo ADMIN, es un volcado de toda la tabla.
+     *
+     * La respuesta se escribe mientras se lee de la BD (StreamingResponseBody),
+     * así que el uso de memoria no depende del número de zapatillas.
+     *
+     * Ejemplo: GET /api/v1/zapatillas/export?format=csv
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        Formato formato = formato(format);
+        log.info("Exportando catálogo de zapatillas en formato {}", formato);
+
+        StreamingResponseBody cuerpo = salida -> exportador.exportar(formato, salida);
+        return ResponseEntity.ok()
+                .contentType(formato.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("zapatillas." + formato.getExtension())
+                        .build()
+                        .toString())
+                .cacheControl(CacheControl.noStore())
+                .body(cuerpo);
+    }
+
+    /**
+     * Importación masiva desde NDJSON (application/x-ndjson) o CSV (text/csv).
+     * Acceso: Solo ADMIN puede crear zapatillas.
+     *
+     * El cuerpo se lee en streaming y se guarda por lotes (ver ZapatillasImportador).
+     * Las filas inválidas no abortan la importación: se devuelven en "errores"
+     * con su número de línea.
+     *
+     * Ejemplo: POST /api/v1/zapatillas/import  (Content-Type: text/csv)
+     */
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ZapatillaImportacionDto> importar(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream cuerpo) throws IOException {
+        Formato formato = formato(contentType);
+        log.info("Importando zapatillas en formato {}", formato);
+        return ResponseEntity.ok(importador.importar(formato, cuerpo));
+    }
+
+    /**
+     * Sincroniza el catálogo con el feed del proveedor (NDJSON o CSV), por codigoProducto.
+     * Acceso: Solo ADMIN.
+     *
+     * Solo se escriben las filas nuevas o con cambios (ver ZapatillasSincronizador).
+     * Con eliminarAusentes=true se borran además las zapatillas que no vienen en el feed.
+     *
+     * Ejemplo: POST /api/v1/zapatillas/sync?eliminarAusentes=false  (Content-Type: text/csv)
+     */
+    @PostMapping(value = "/sync", consumes = {"application/x-ndjson", "text/csv"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ZapatillaSincronizacionDto> sincronizar(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            @RequestParam(defaultValue = "false") boolean eliminarAusentes,
+            InputStream cuerpo) throws IOException {
+        Formato formato = formato(contentType);
+        log.info("Sincronizando zapatillas en formato {} (eliminarAusentes={})", formato, eliminarAusentes);
+        return ResponseEntity.ok(sincronizador.sincronizar(formato, cuerpo, eliminarAusentes));
+    }
+
+    /**
+     * Cambios del catálogo en tiempo real (Server-Sent Events).
+     * Acceso: público, como el resto de GET de zapatillas.
+     *
+     * Cada evento es una notificación en JSON (la misma que /topic/zapatillas)
+     * con "id: secuencia". marca y tipo filtran en el servidor. Con la cabecera
+     * Last-Event-ID (EventSource la manda sola al reconectar) se reenvía lo
+     * perdido, o un RESYNC si hay que recargar. Ver ZapatillasStream.
+     *
+     * Ejemplo: GET /api/v1/zapatillas/stream?marca=Nike
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(required = false) String marca,
+                             @RequestParam(required = false) String tipo,
+                             @RequestHeader(value = "Last-Event-ID", required = false) String ultimoId) {
+        log.debug("Abriendo stream de zapatillas marca={} tipo={} Last-Event-ID={}", marca, tipo, ultimoId);
+        return stream.abrir(ZapatillasStream.Filtro.de(marca, tipo), ultimoId);
+    }
+
     /**
      * Obtiene una zapatilla por su ID.
      * Acceso: Todos los usuarios autenticados pueden ver zapatillas.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ZapatillaResponseDto> getById(@PathVariable Long id)  {
+    public ResponseEntity<ZapatillaResponseDto> getById(@PathVariable Long id, WebRequest webRequest)  {
         log.info("Buscando zapatilla por id={}", id);
-        return ResponseEntity.ok(service.findById(id));
+        // findById pasa por la caché: para las zapatillas "calientes" el ETag
+        // sale de memoria y un 304 no toca la BD ni serializa el JSON
+        ZapatillaResponseDto zapatilla = service.findById(id);
+        String etag = ETags.deRecurso(zapatilla.getId(), zapatilla.getVersion());
+        if (webRequest.checkNotModified(etag)) {
+            return noModificado(etag);
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(zapatilla);
     }
 
     /**
@@ -119,9 +444,10 @@ public class ZapatillasRestController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ZapatillaResponseDto> update(
             @PathVariable Long id,
-            @Valid @RequestBody ZapatillaUpdateDto dto)  {
+            @Valid @RequestBody ZapatillaUpdateDto dto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)  {
         log.info("Actualizando zapatilla id={} con datos={}", id, dto);
-        return ResponseEntity.ok(service.update(id, dto));
+        return conEtag(service.update(id, dto, versionEsperada(id, ifMatch)));
     }
 
     /**
@@ -131,9 +457,89 @@ public class ZapatillasRestController {
     @PatchMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ZapatillaResponseDto> updatePartial(@PathVariable Long id, @Valid @RequestBody
-    ZapatillaUpdateDto dto)  {
+    ZapatillaUpdateDto dto, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)  {
         log.info("Actualizando parcialmente zapatilla id={}", id);
-        return ResponseEntity.ok(service.update(id, dto));
+        return conEtag(service.update(id, dto, versionEsperada(id, ifMatch)));
+    }
+
+    /**
+     * Vende unidades: descuento atómico del stock, sin leer-modificar-escribir.
+     * Acceso: usuarios autenticados. 409 si no quedan unidades suficientes.
+     *
+     * Sin ETag: el stock de la respuesta es el del ledger, que la BD (y la
+     * versión) recogen en el siguiente volcado.
+     *
+     * Ejemplo: POST /api/v1/zapatillas/1/stock/decrement?cantidad=2
+     */
+    @PostMapping("/{id}/stock/decrement")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ZapatillaResponseDto> decrementarStock(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "1") int cantidad) {
+        log.info("Descontando {} unidades de la zapatilla id={}", cantidad, id);
+        return ResponseEntity.ok(stockService.decrementar(id, cantidad));
+    }
+
+    /**
+     * Reserva unidades durante un tiempo (ISO-8601, ej. PT5M; por defecto
+     * zapatillas.reservas.ttl). Si no se confirma a tiempo, vuelven al stock.
+     *
+     * Ejemplo: POST /api/v1/zapatillas/1/stock/reservas?cantidad=1&ttl=PT5M
+     */
+    @PostMapping("/{id}/stock/reservas")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ReservaStockDto> reservarStock(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "1") int cantidad,
+            @RequestParam(required = false) Duration ttl,
+            Principal principal) {
+        log.info("Reservando {} unidades de la zapatilla id={} (ttl={})", cantidad, id, ttl);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(stockService.reservar(id, cantidad, ttl, principal.getName()));
+    }
+
+    /**
+     * Confirma una reserva (la venta se completa; el stock ya estaba descontado).
+     * Solo quien la hizo o un ADMIN (403 si no).
+     */
+    @PostMapping("/stock/reservas/{reservaId}/confirmar")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<Void> confirmarReserva(@PathVariable UUID reservaId, Authentication authentication) {
+        stockService.confirmar(reservaId, authentication.getName(), esAdmin(authentication));
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Anula una reserva y devuelve sus unidades al stock.
+     * Solo quien la hizo o un ADMIN (403 si no).
+     */
+    @DeleteMapping("/stock/reservas/{reservaId}")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<Void> liberarReserva(@PathVariable UUID reservaId, Authentication authentication) {
+        stockService.liberar(reservaId, authentication.getName(), esAdmin(authentication));
+        return ResponseEntity.noContent().build();
+    }
+
+    private static boolean esAdmin(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(autoridad -> "ROLE_ADMIN".equals(autoridad.getAuthority()));
+    }
+
+    /**
+     * Compra en una venta flash: entra en la cola de la zapatilla y responde
+     * 202 con la posición. El resultado (PURCHASE_CONFIRMED o
+     * PURCHASE_REJECTED) llega por STOMP a /user/queue/notificaciones.
+     * 409 si ya no quedan unidades, 503 si la cola está llena.
+     *
+     * Ejemplo: POST /api/v1/zapatillas/1/flash/compras?cantidad=1
+     */
+    @PostMapping("/{id}/flash/compras")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<CompraFlashDto> comprarFlash(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "1") int cantidad,
+            Principal principal) {
+        return ResponseEntity.accepted().body(ventaFlash.comprar(id, cantidad, principal.getName()));
     }
 
     /**
@@ -148,6 +554,72 @@ public class ZapatillasRestController {
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
 
+    /**
+     * Versión que debe tener la zapatilla según If-Match (null si no viene la cabecera).
+     * Si ya no coincide con la actual, 412 sin llegar a escribir.
+     */
+    private Long versionEsperada(Long id, String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        ZapatillaResponseDto actual = service.findById(id);
+        if (!ETags.coincide(ifMatch, ETags.deRecurso(actual.getId(), actual.getVersion()))) {
+            throw new ZapatillaPreconditionFailedException(id);
+        }
+        return actual.getVersion();
+    }
+
+    /**
+     * 200 con el ETag de la nueva versión, para encadenar otro If-Match.
+     */
+    private static ResponseEntity<ZapatillaResponseDto> conEtag(ZapatillaResponseDto zapatilla) {
+        return ResponseEntity.ok()
+                .eTag(ETags.deRecurso(zapatilla.getId(), zapatilla.getVersion()))
+                .body(zapatilla);
+    }
+
+    private static Formato formato(MediaType contentType) {
+        return Formato.CSV.getMediaType().isCompatibleWith(contentType) ? Formato.CSV : Formato.NDJSON;
+    }
+
+    private static Formato formato(String format) {
+        try {
+            return Formato.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ZapatillaBadRequestException("Formato no válido: " + format
+                    + ". Valores permitidos: ndjson, csv");
+        }
+    }
+
+    /**
+     * ETag (débil) de los listados: la versión del catálogo.
+     * Se lee ANTES de consultar: si alguien escribe mientras tanto, el ETag
+     * queda "viejo" y la siguiente petición simplemente recibe un 200.
+     */
+    private String etagCatalogo() {
+        return ETags.deVersion(service.versionCatalogo());
+    }
+
+    /**
+     * 304 Not Modified: sin cuerpo, solo el ETag. El cliente reutiliza su copia.
+     */
+    private static <T> ResponseEntity<T> noModificado(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .build();
+    }
+
+    /**
+     * Bloqueo optimista: otra escritura cambió la zapatilla entre la lectura y el UPDATE.
+     */
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ProblemDetail handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT,
+                "La zapatilla se ha modificado a la vez desde otra petición; vuelve a leerla e inténtalo de nuevo");
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ProblemDetail handleValidationException(MethodArgumentNotValidException ex) {
@@ -1,20 +1,66 @@
 package es.pabloab.zapatillas.rest.zapatillas.controllers.websocket;
 
 import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
-import lombok.RequiredArgsConstructor;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.FormatoTrama;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Controller;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
 
 @Slf4j
 @Controller
-@RequiredArgsConstructor
 public class ZapatillasWebSocketController {
 
+    /**
+     * Todo el catálogo. Debajo cuelgan los destinos por marca, tipo y zapatilla,
+     * para que un cliente reciba solo lo que muestra.
+     */
+    public static final String TOPIC = "/topic/zapatillas";
+
+    private static final Pattern NO_SEGMENTO = Pattern.compile("[^\\p{L}\\p{N}]+");
+
     private final SimpMessagingTemplate messagingTemplate;
+    // Directo a las sesiones, sin pasar por el broker: para responder a UNA suscripción
+    private final MessageChannel clientOutboundChannel;
+
+    public ZapatillasWebSocketController(
+            SimpMessagingTemplate messagingTemplate,
+            @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.messagingTemplate = messagingTemplate;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    public static String destinoMarca(String marca) {
+        return TOPIC + "/marca/" + segmento(marca);
+    }
+
+    public static String destinoTipo(String tipo) {
+        return TOPIC + "/tipo/" + segmento(tipo);
+    }
+
+    public static String destinoZapatilla(Long zapatillaId) {
+        return TOPIC + "/" + zapatillaId;
+    }
+
+    /**
+     * "New Balance" → "new-balance": sin '/', '*' ni espacios, que el broker
+     * interpretaría como separadores o comodines.
+     */
+    static String segmento(String valor) {
+        String limpio = NO_SEGMENTO.matcher(valor.trim().toLowerCase(Locale.ROOT)).replaceAll("-");
+        return limpio.replaceAll("^-+|-+$", "");
+    }
     @MessageMapping("/zapatillas/test")
     @SendTo("/topic/zapatillas")
     public ZapatillaNotificacion handleTest(String mensaje) {
@@ -31,7 +77,42 @@ public class ZapatillasWebSocketController {
         log.info("WebSocket: Enviando notificación tipo={} id={}",
                 notificacion.getTipo(), notificacion.getZapatillaId());
 
-        messagingTemplate.convertAndSend("/topic/zapatillas", notificacion);
+        messagingTemplate.convertAndSend(TOPIC, notificacion);
+    }
+
+    /**
+     * Una trama ya codificada (ver ZapatillasTramas): se envía tal cual, sin
+     * pasar por el conversor, y el broker reparte el mismo byte[] a todos.
+     */
+    public void enviarTrama(String destino, byte[] trama, FormatoTrama formato) {
+        log.debug("WebSocket: Enviando trama {} de {} bytes a {}", formato, trama.length, destino);
+
+        SimpMessageHeaderAccessor cabeceras = cabecerasTrama(formato);
+        cabeceras.setLeaveMutable(true);
+        messagingTemplate.send(destino, MessageBuilder.createMessage(trama, cabeceras.getMessageHeaders()));
+    }
+
+    /**
+     * Una trama solo para una suscripción de una sesión (el reenvío al
+     * reconectar): los demás suscriptores del destino no la reciben.
+     */
+    public void enviarTramaASuscripcion(String sessionId, String subscriptionId, String destino,
+                                        byte[] trama, FormatoTrama formato) {
+        log.debug("WebSocket: Enviando trama {} de {} bytes a la suscripción {} de {}",
+                formato, trama.length, subscriptionId, sessionId);
+
+        SimpMessageHeaderAccessor cabeceras = cabecerasTrama(formato);
+        cabeceras.setSessionId(sessionId);
+        cabeceras.setSubscriptionId(subscriptionId);
+        cabeceras.setDestination(destino);
+        clientOutboundChannel.send(MessageBuilder.createMessage(trama, cabeceras.getMessageHeaders()));
+    }
+
+    private static SimpMessageHeaderAccessor cabecerasTrama(FormatoTrama formato) {
+        SimpMessageHeaderAccessor cabeceras = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        cabeceras.setContentType(formato.getEnviado());
+        cabeceras.setNativeHeader(FormatoTrama.CABECERA, formato.name().toLowerCase(Locale.ROOT));
+        return cabeceras;
     }
 
     public void enviarNotificacionPrivada(String userId, ZapatillaNotificacion notificacion) {
@@ -0,0 +1,33 @@
+package es.pabloab.zapatillas.rest.zapatillas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Una compra en la cola de venta flash: la respuesta del POST (EN_COLA, con
+ * su posición) y el resultado que llega después por /user/queue/notificaciones.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompraFlashDto {
+
+    public enum Estado {
+        EN_COLA, CONFIRMADA, RECHAZADA
+    }
+
+    private UUID id;
+    private Long zapatillaId;
+    private Integer cantidad;
+    private Estado estado;
+    // Compras por delante + 1 al entrar en la cola
+    private Long posicion;
+    // Stock que queda tras una compra confirmada
+    private Long stockRestante;
+    private String motivo;
+}
@@ -0,0 +1,20 @@
+package es.pabloab.zapatillas.rest.zapatillas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservaStockDto {
+    private UUID id;
+    private Long zapatillaId;
+    private Integer cantidad;
+    private LocalDateTime expiraEn;
+}
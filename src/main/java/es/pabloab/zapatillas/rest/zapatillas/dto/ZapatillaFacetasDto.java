@@ -0,0 +1,26 @@
+package es.pabloab.zapatillas.rest.zapatillas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Respuesta de la búsqueda por facetas.
+ *
+ * - total: zapatillas que cumplen todos los filtros
+ * - ids: las primeras (como mucho "limite"), en orden de id
+ * - facetas: faceta → valor → nº de zapatillas (ej. "marca" → {"Nike": 3})
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ZapatillaFacetasDto {
+    private long total;
+    private List<Long> ids;
+    private Map<String, Map<String, Long>> facetas;
+}
@@ -0,0 +1,40 @@
+package es.pabloab.zapatillas.rest.zapatillas.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resumen de una importación masiva.
+ *
+ * - leidas: filas de datos leídas (sin contar la cabecera CSV ni líneas vacías)
+ * - importadas / rechazadas: leidas = importadas + rechazadas
+ * - errores: detalle por fila, como mucho zapatillas.importacion.max-errores
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ZapatillaImportacionDto {
+    private long leidas;
+    private long importadas;
+    private long rechazadas;
+    private long milisegundos;
+    private List<ErrorFila> errores;
+
+    /**
+     * Una fila rechazada: número de línea en el fichero y los motivos.
+     */
+    @Builder
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ErrorFila {
+        private long linea;
+        private String codigoProducto;
+        private List<String> mensajes;
+    }
+}
@@ -4,13 +4,16 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.PersistenceCreator;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
-@Builder
+@Builder(toBuilder = true)
 @Data
-@AllArgsConstructor
+// @PersistenceCreator: Spring Data usa este constructor en las proyecciones
+// (SELECT new ZapatillaResponseDto(...)), no el vacío que necesita Jackson
+@AllArgsConstructor(onConstructor_ = @PersistenceCreator)
 @NoArgsConstructor
 public class ZapatillaResponseDto {
     private Long id;
@@ -25,5 +28,6 @@ public class ZapatillaResponseDto {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private UUID uuid;
+    private Long version;
 }
 
@@ -0,0 +1,32 @@
+package es.pabloab.zapatillas.rest.zapatillas.dto;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaImportacionDto.ErrorFila;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resumen de una sincronización con el feed del proveedor.
+ *
+ * - leidas = insertadas + actualizadas + sinCambios + rechazadas
+ * - sinCambios: filas cuya huella coincide con la guardada (no se escriben)
+ * - eliminadas: zapatillas que no venían en el feed (solo con eliminarAusentes)
+ * - errores: detalle por fila, como mucho zapatillas.importacion.max-errores
+ */
+@Builder
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ZapatillaSincronizacionDto {
+    private long leidas;
+    private long insertadas;
+    private long actualizadas;
+    private long sinCambios;
+    private long eliminadas;
+    private long rechazadas;
+    private long milisegundos;
+    private List<ErrorFila> errores;
+}
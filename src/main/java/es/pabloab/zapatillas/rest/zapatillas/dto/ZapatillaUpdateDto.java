@@ -5,11 +5,16 @@ import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Builder
 @Data
+// Jackson necesita un constructor vacío para leer el JSON de PUT/PATCH
+@NoArgsConstructor(force = true)
+@AllArgsConstructor
 public class ZapatillaUpdateDto {
     private final String codigoProducto;
 
@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
 
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ZapatillaNotificacion {
@@ -19,6 +19,9 @@ public class ZapatillaNotificacion {
     private String mensaje;
     private Object data;
     private LocalDateTime timestamp;
+    // Orden de las notificaciones de /topic/zapatillas (null en las privadas).
+    // Con la última vista, un cliente que se reconecta pide lo que se perdió.
+    private Long secuencia;
 
     public static ZapatillaNotificacion crear(TipoNotificacion tipo, Long zapatillaId, String mensaje, Object data) {
         return ZapatillaNotificacion.builder()
@@ -35,7 +38,13 @@ public class ZapatillaNotificacion {
         UPDATED("Zapatilla actualizada"),
         DELETED("Zapatilla eliminada"),
         STOCK_LOW("Stock bajo"),
-        PRICE_CHANGED("Precio cambiado");
+        PRICE_CHANGED("Precio cambiado"),
+        IMPORTED("Importación masiva completada"),
+        SYNCED("Sincronización con el proveedor completada"),
+        PURCHASE_QUEUED("Compra en cola"),
+        PURCHASE_CONFIRMED("Compra confirmada"),
+        PURCHASE_REJECTED("Compra rechazada"),
+        RESYNC("Hay que recargar el catálogo: lo perdido ya no está en el historial");
 
         private final String descripcion;
 
@@ -0,0 +1,37 @@
+package es.pabloab.zapatillas.rest.zapatillas.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Lo que ha cambiado en una zapatilla, como data de una notificación UPDATED.
+ *
+ * operaciones es un JSON Patch (RFC 6902) sobre el ZapatillaResponseDto:
+ * solo los campos que han cambiado, en lugar de la zapatilla entera. El
+ * cliente que tiene la zapatilla en desdeVersion aplica el parche y queda
+ * en version; si tiene otra versión, la vuelve a pedir por REST.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ZapatillaParcheDto {
+
+    private Long desdeVersion;
+    private Long version;
+    private List<Operacion> operaciones;
+
+    /**
+     * Una operación JSON Patch: {"op":"replace","path":"/stock","value":3}.
+     */
+    public record Operacion(String op, String path, Object value) {
+
+        public static Operacion replace(String campo, Object valor) {
+            return new Operacion("replace", "/" + campo, valor);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package es.pabloab.zapatillas.rest.zapatillas.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+/**
+ * La reserva es de otro usuario: solo su dueño (o un ADMIN) puede confirmarla o liberarla.
+ */
+@ResponseStatus(HttpStatus.FORBIDDEN)
+public class ReservaStockAjenaException extends ZapatillaException {
+    public ReservaStockAjenaException(UUID id) {
+        super("La reserva " + id + " pertenece a otro usuario");
+    }
+}
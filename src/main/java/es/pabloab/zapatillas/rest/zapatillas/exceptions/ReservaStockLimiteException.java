@@ -0,0 +1,14 @@
+package es.pabloab.zapatillas.rest.zapatillas.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * El usuario ya tiene apartadas todas las unidades que permite zapatillas.reservas.max-unidades-por-usuario.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ReservaStockLimiteException extends ZapatillaException {
+    public ReservaStockLimiteException(String usuario, long abiertas, int maximo) {
+        super("El usuario " + usuario + " ya tiene " + abiertas + " unidades reservadas (máximo " + maximo + ")");
+    }
+}
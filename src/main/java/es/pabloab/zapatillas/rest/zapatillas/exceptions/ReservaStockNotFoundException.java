@@ -0,0 +1,16 @@
+package es.pabloab.zapatillas.rest.zapatillas.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+/**
+ * La reserva no existe: nunca existió, ya se confirmó/liberó o ha caducado.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ReservaStockNotFoundException extends ZapatillaException {
+    public ReservaStockNotFoundException(UUID id) {
+        super("No existe la reserva " + id + " (o ya ha caducado)");
+    }
+}
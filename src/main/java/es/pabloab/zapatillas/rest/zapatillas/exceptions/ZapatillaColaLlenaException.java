@@ -0,0 +1,11 @@
+package es.pabloab.zapatillas.rest.zapatillas.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ZapatillaColaLlenaException extends ZapatillaException {
+    public ZapatillaColaLlenaException(Long id) {
+        super("La cola de compra de la zapatilla con id=" + id + " está llena; inténtalo de nuevo en unos segundos");
+    }
+}
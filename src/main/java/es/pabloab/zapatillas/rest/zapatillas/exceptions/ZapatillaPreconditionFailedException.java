@@ -0,0 +1,14 @@
+package es.pabloab.zapatillas.rest.zapatillas.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * If-Match no coincide con la versión actual: otro cliente la ha modificado.
+ */
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class ZapatillaPreconditionFailedException extends ZapatillaException {
+    public ZapatillaPreconditionFailedException(Long id) {
+        super("La zapatilla con id=" + id + " ha cambiado desde que se leyó (If-Match no coincide)");
+    }
+}
@@ -0,0 +1,11 @@
+package es.pabloab.zapatillas.rest.zapatillas.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ZapatillaStockInsuficienteException extends ZapatillaException {
+    public ZapatillaStockInsuficienteException(Long id, int cantidad) {
+        super("No hay " + cantidad + " unidades disponibles de la zapatilla con id=" + id);
+    }
+}
@@ -0,0 +1,11 @@
+package es.pabloab.zapatillas.rest.zapatillas.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ZapatillaVentaDetenidaException extends ZapatillaException {
+    public ZapatillaVentaDetenidaException(Long id) {
+        super("La venta flash de la zapatilla con id=" + id + " no admite compras: el servicio se está deteniendo");
+    }
+}
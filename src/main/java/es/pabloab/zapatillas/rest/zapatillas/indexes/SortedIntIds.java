@@ -0,0 +1,135 @@
+package es.pabloab.zapatillas.rest.zapatillas.indexes;
+
+import java.util.Arrays;
+
+/**
+ * Pares (clave int, id) ordenados por clave y, a igualdad, por id.
+ *
+ * Igual que SortedDoubleIds pero con claves int (12 bytes por zapatilla),
+ * para el stock.
+ */
+final class SortedIntIds {
+
+    private int[] claves = new int[0];
+    private long[] ids = new long[0];
+    private int size;
+
+    void add(int clave, long id) {
+        int pos = buscar(clave, id);
+        if (pos >= 0) {
+            return;
+        }
+        int insercion = -pos - 1;
+        if (size == claves.length) {
+            int capacidad = Math.max(4, size + (size >> 1));
+            claves = Arrays.copyOf(claves, capacidad);
+            ids = Arrays.copyOf(ids, capacidad);
+        }
+        System.arraycopy(claves, insercion, claves, insercion + 1, size - insercion);
+        System.arraycopy(ids, insercion, ids, insercion + 1, size - insercion);
+        claves[insercion] = clave;
+        ids[insercion] = id;
+        size++;
+    }
+
+    /**
+     * Sustituye todo el contenido por n pares (clave, id) en cualquier orden.
+     *
+     * Insertarlos uno a uno con add() desplaza el array en cada inserción
+     * (O(n²) al arrancar con el catálogo entero). Aquí se ordenan de una vez
+     * sin objetos: cada clave se cambia por su rango entre las claves
+     * ordenadas y el par (rango, posición) cabe en un long, así que basta con
+     * Arrays.parallelSort sobre long[]. Después, a igualdad de clave, se
+     * ordenan los ids de cada tramo y se quitan los pares repetidos.
+     */
+    void cargar(int[] nuevasClaves, long[] nuevosIds, int n) {
+        int[] ordenadas = Arrays.copyOf(nuevasClaves, n);
+        Arrays.parallelSort(ordenadas);
+        long[] orden = new long[n];
+        for (int i = 0; i < n; i++) {
+            long rango = Arrays.binarySearch(ordenadas, nuevasClaves[i]);
+            orden[i] = rango << 32 | i;
+        }
+        Arrays.parallelSort(orden);
+
+        claves = new int[n];
+        ids = new long[n];
+        for (int j = 0; j < n; j++) {
+            int i = (int) orden[j];
+            claves[j] = nuevasClaves[i];
+            ids[j] = nuevosIds[i];
+        }
+        size = 0;
+        int tramo = 0;
+        for (int j = 1; j <= n; j++) {
+            if (j == n || Integer.compare(claves[j], claves[tramo]) != 0) {
+                Arrays.sort(ids, tramo, j);
+                for (int k = tramo; k < j; k++) {
+                    if (k == tramo || ids[k] != ids[k - 1]) {
+                        claves[size] = claves[k];
+                        ids[size] = ids[k];
+                        size++;
+                    }
+                }
+                tramo = j;
+            }
+        }
+    }
+
+    void remove(int clave, long id) {
+        int pos = buscar(clave, id);
+        if (pos < 0) {
+            return;
+        }
+        System.arraycopy(claves, pos + 1, claves, pos, size - pos - 1);
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        size--;
+    }
+
+    /**
+     * Primera posición con clave >= min.
+     * Los ids son positivos, así que (min, Long.MIN_VALUE) nunca está y
+     * la búsqueda devuelve justo el punto de inserción delante de min.
+     */
+    int desde(int min) {
+        return -buscar(min, Long.MIN_VALUE) - 1;
+    }
+
+    /**
+     * Primera posición con clave > max.
+     */
+    int hasta(int max) {
+        return -buscar(max, Long.MAX_VALUE) - 1;
+    }
+
+    /**
+     * Ids de las posiciones [inicio, fin).
+     */
+    long[] ids(int inicio, int fin) {
+        return Arrays.copyOfRange(ids, inicio, fin);
+    }
+
+    /**
+     * Búsqueda binaria del par (clave, id). Misma convención que Arrays.binarySearch:
+     * la posición si está, o (-(punto de inserción) - 1) si no.
+     */
+    private int buscar(int clave, long id) {
+        int bajo = 0;
+        int alto = size - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int cmp = Integer.compare(claves[medio], clave);
+            if (cmp == 0) {
+                cmp = Long.compare(ids[medio], id);
+            }
+            if (cmp < 0) {
+                bajo = medio + 1;
+            } else if (cmp > 0) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+}
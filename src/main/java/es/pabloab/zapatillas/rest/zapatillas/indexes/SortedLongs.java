@@ -0,0 +1,107 @@
+package es.pabloab.zapatillas.rest.zapatillas.indexes;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lista ordenada de ids sobre un long[] que crece por bloques.
+ *
+ * Frente a un TreeSet<Long> ocupa 8 bytes por id (sin objetos Long ni nodos)
+ * y permite acceso por posición, que es lo que necesita la paginación.
+ * Los ids nuevos suelen ser los mayores, así que add() casi siempre es un
+ * simple append; solo las inserciones "en medio" desplazan el array.
+ */
+final class SortedLongs {
+
+    private static final long[] VACIO = new long[0];
+
+    private long[] valores = VACIO;
+    private int size;
+
+    boolean add(long valor) {
+        int pos = Arrays.binarySearch(valores, 0, size, valor);
+        if (pos >= 0) {
+            return false;
+        }
+        int insercion = -pos - 1;
+        if (size == valores.length) {
+            valores = Arrays.copyOf(valores, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(valores, insercion, valores, insercion + 1, size - insercion);
+        valores[insercion] = valor;
+        size++;
+        return true;
+    }
+
+    boolean remove(long valor) {
+        int pos = Arrays.binarySearch(valores, 0, size, valor);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(valores, pos + 1, valores, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long[] toArray() {
+        return Arrays.copyOf(valores, size);
+    }
+
+    /**
+     * Unión ordenada y sin duplicados de varias listas.
+     */
+    static long[] union(List<SortedLongs> listas) {
+        if (listas.isEmpty()) {
+            return VACIO;
+        }
+        if (listas.size() == 1) {
+            return listas.getFirst().toArray();
+        }
+        int total = 0;
+        for (SortedLongs lista : listas) {
+            total += lista.size;
+        }
+        long[] todos = new long[total];
+        int pos = 0;
+        for (SortedLongs lista : listas) {
+            System.arraycopy(lista.valores, 0, todos, pos, lista.size);
+            pos += lista.size;
+        }
+        Arrays.sort(todos);
+        int unicos = 0;
+        for (int i = 0; i < todos.length; i++) {
+            if (i == 0 || todos[i] != todos[i - 1]) {
+                todos[unicos++] = todos[i];
+            }
+        }
+        return unicos == todos.length ? todos : Arrays.copyOf(todos, unicos);
+    }
+
+    /**
+     * Intersección de dos arrays ordenados (merge lineal).
+     */
+    static long[] intersect(long[] a, long[] b) {
+        long[] resultado = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                resultado[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+}
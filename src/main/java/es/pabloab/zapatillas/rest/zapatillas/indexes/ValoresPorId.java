@@ -0,0 +1,91 @@
+package es.pabloab.zapatillas.rest.zapatillas.indexes;
+
+import java.util.Arrays;
+
+/**
+ * Precio y stock indexados de cada id, ordenados por id.
+ *
+ * ZapatillasRangoIndex los necesita para quitar los valores antiguos al
+ * actualizar o borrar. Con un Map<Long, Double> cada entrada son tres
+ * objetos (clave, valor y nodo); aquí son tres arrays paralelos de
+ * primitivos y la búsqueda es binaria por id. Como en SortedLongs, los ids
+ * nuevos suelen ser los mayores y poner() casi siempre es un append.
+ *
+ * Ausencias: precio NaN = sin precio, stock SIN_STOCK = sin stock.
+ */
+final class ValoresPorId {
+
+    static final long SIN_STOCK = Long.MIN_VALUE;
+
+    private long[] ids = new long[0];
+    private double[] precios = new double[0];
+    private long[] stocks = new long[0];
+    private int size;
+
+    /**
+     * Sustituye todo el contenido. Los arrays de entrada pueden venir en
+     * cualquier orden (se ordena una vez por id) y no se modifican.
+     */
+    void cargar(long[] nuevosIds, double[] nuevosPrecios, long[] nuevosStocks, int n) {
+        long[] ordenados = Arrays.copyOf(nuevosIds, n);
+        Arrays.parallelSort(ordenados);
+        int distintos = 0;
+        for (int i = 0; i < n; i++) {
+            if (distintos == 0 || ordenados[distintos - 1] != ordenados[i]) {
+                ordenados[distintos++] = ordenados[i];
+            }
+        }
+        ids = Arrays.copyOf(ordenados, distintos);
+        precios = new double[distintos];
+        stocks = new long[distintos];
+        for (int i = 0; i < n; i++) {
+            int pos = Arrays.binarySearch(ids, nuevosIds[i]);
+            precios[pos] = nuevosPrecios[i];
+            stocks[pos] = nuevosStocks[i];
+        }
+        size = distintos;
+    }
+
+    void poner(long id, double precio, long stock) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos < 0) {
+            pos = -pos - 1;
+            if (size == ids.length) {
+                int capacidad = Math.max(4, size + (size >> 1));
+                ids = Arrays.copyOf(ids, capacidad);
+                precios = Arrays.copyOf(precios, capacidad);
+                stocks = Arrays.copyOf(stocks, capacidad);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            System.arraycopy(precios, pos, precios, pos + 1, size - pos);
+            System.arraycopy(stocks, pos, stocks, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+        precios[pos] = precio;
+        stocks[pos] = stock;
+    }
+
+    /**
+     * Posición del id, o negativa si no está. Con ella se leen sus valores
+     * (precio/stock) y se quita (quitar).
+     */
+    int posicion(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    double precio(int pos) {
+        return precios[pos];
+    }
+
+    long stock(int pos) {
+        return stocks[pos];
+    }
+
+    void quitar(int pos) {
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        System.arraycopy(precios, pos + 1, precios, pos, size - pos - 1);
+        System.arraycopy(stocks, pos + 1, stocks, pos, size - pos - 1);
+        size--;
+    }
+}
@@ -0,0 +1,54 @@
+package es.pabloab.zapatillas.rest.zapatillas.indexes;
+
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+
+import java.util.Collection;
+
+/**
+ * Índice en memoria sobre el catálogo de zapatillas.
+ *
+ * Cada implementación se reconstruye entera al arrancar y después se mantiene
+ * al día de forma incremental desde las escrituras de ZapatillasServiceImpl
+ * (a través de ZapatillasIndices). Las lecturas nunca van a la base de datos.
+ *
+ * La reconstrucción va fila a fila (Reconstruccion.anadir) para poder
+ * alimentarla desde un cursor de la BD sin tener el catálogo entero en una
+ * List de entidades.
+ */
+public interface ZapatillaIndex {
+
+    /**
+     * Empieza a reconstruir el índice desde cero. El contenido nuevo se
+     * publica al llamar a terminar() sobre el objeto devuelto.
+     */
+    Reconstruccion reconstruccion();
+
+    /**
+     * Sustituye todo el contenido del índice por estas zapatillas.
+     */
+    default void reconstruir(Collection<Zapatilla> zapatillas) {
+        Reconstruccion reconstruccion = reconstruccion();
+        zapatillas.forEach(reconstruccion::anadir);
+        reconstruccion.terminar();
+    }
+
+    /**
+     * Añade o actualiza una zapatilla (si ya estaba, se quitan sus valores antiguos).
+     */
+    void indexar(Zapatilla zapatilla);
+
+    /**
+     * Quita una zapatilla del índice. No hace nada si no estaba.
+     */
+    void eliminar(Long id);
+
+    /**
+     * Una reconstrucción en curso: recibe las zapatillas de una en una.
+     */
+    interface Reconstruccion {
+
+        void anadir(Zapatilla zapatilla);
+
+        void terminar();
+    }
+}
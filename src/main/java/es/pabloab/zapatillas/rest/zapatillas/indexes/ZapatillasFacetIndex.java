@@ -0,0 +1,288 @@
+package es.pabloab.zapatillas.rest.zapatillas.indexes;
+
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de facetas (marca, tipo, color, talla y tramo de precio) con bitmaps comprimidos.
+ *
+ * ¿POR QUÉ?
+ * ==========
+ * Una búsqueda por facetas necesita, además de las zapatillas que cumplen
+ * los filtros, cuántas habría con cada valor de cada faceta. En SQL eso es
+ * un GROUP BY por faceta en cada petición. Aquí cada valor distinto tiene un
+ * Roaring64Bitmap con los ids de sus zapatillas y todo se reduce a AND/OR
+ * de bitmaps, que cuestan microsegundos.
+ *
+ * SEMÁNTICA DE LOS FILTROS:
+ * - Dentro de una faceta los valores se combinan con OR (Nike o Adidas).
+ * - Entre facetas se combinan con AND (Nike o Adidas, y Running).
+ * - Los conteos de una faceta ignoran su propio filtro (conteo "disyuntivo"):
+ *   con marca=Nike seleccionada seguimos viendo cuántas Adidas hay, para
+ *   que el usuario pueda añadirla a la selección.
+ *
+ * Los valores de texto no distinguen mayúsculas. Los tramos de precio se
+ * configuran con zapatillas.facetas.tramos-precio (límites en euros).
+ */
+@Component
+public class ZapatillasFacetIndex implements ZapatillaIndex {
+
+    public enum Faceta {
+        MARCA, TIPO, COLOR, TALLA, PRECIO;
+
+        /**
+         * Nombre de la faceta en la API (marca, tipo...).
+         */
+        public String nombre() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Resultado de una búsqueda: total, los primeros ids (ascendentes) y los
+     * conteos por faceta y valor.
+     */
+    public record Resultado(long total, long[] ids, Map<Faceta, Map<String, Long>> conteos) {
+    }
+
+    private final double[] tramosPrecio;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Faceta, Map<String, Valor>> facetas = new EnumMap<>(Faceta.class);
+    private final Roaring64Bitmap todos = new Roaring64Bitmap();
+    // Claves indexadas de cada id, para poder quitarlas al actualizar/borrar
+    private final Map<Long, String[]> clavesPorId = new HashMap<>();
+
+    public ZapatillasFacetIndex(
+            @Value("${zapatillas.facetas.tramos-precio:50,100,150,200}") double[] tramosPrecio) {
+        this.tramosPrecio = tramosPrecio.clone();
+        Arrays.sort(this.tramosPrecio);
+        for (Faceta faceta : Faceta.values()) {
+            facetas.put(faceta, new HashMap<>());
+        }
+    }
+
+    @Override
+    public Reconstruccion reconstruccion() {
+        lock.writeLock().lock();
+        try {
+            facetas.values().forEach(Map::clear);
+            todos.clear();
+            clavesPorId.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new Reconstruccion() {
+            @Override
+            public void anadir(Zapatilla zapatilla) {
+                indexar(zapatilla);
+            }
+
+            @Override
+            public void terminar() {
+                // Cada fila ya se publicó al añadirla
+            }
+        };
+    }
+
+    @Override
+    public void indexar(Zapatilla zapatilla) {
+        lock.writeLock().lock();
+        try {
+            eliminarSinLock(zapatilla.getId());
+            indexarSinLock(zapatilla);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            eliminarSinLock(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Aplica los filtros y calcula los conteos de todas las facetas.
+     *
+     * @param filtros valores seleccionados por faceta (una faceta ausente o vacía no filtra)
+     * @param limite  máximo de ids a devolver (el total se calcula siempre entero)
+     */
+    public Resultado buscar(Map<Faceta, ? extends Collection<String>> filtros, int limite) {
+        lock.readLock().lock();
+        try {
+            // 1. OR de los valores seleccionados en cada faceta (null = sin filtro)
+            Map<Faceta, Roaring64Bitmap> seleccion = new EnumMap<>(Faceta.class);
+            filtros.forEach((faceta, valores) -> {
+                if (valores != null && !valores.isEmpty()) {
+                    seleccion.put(faceta, union(faceta, valores));
+                }
+            });
+
+            // 2. AND entre facetas
+            Roaring64Bitmap resultado = interseccion(seleccion, null);
+
+            // 3. Conteos disyuntivos: cada faceta contra el AND de las demás
+            Map<Faceta, Map<String, Long>> conteos = new EnumMap<>(Faceta.class);
+            for (Faceta faceta : Faceta.values()) {
+                Roaring64Bitmap base = seleccion.containsKey(faceta) ? interseccion(seleccion, faceta) : resultado;
+                Map<String, Long> porValor = new LinkedHashMap<>();
+                facetas.get(faceta).values().stream()
+                        .sorted(Comparator.comparingDouble(Valor::orden).thenComparing(Valor::etiqueta))
+                        .forEach(valor -> porValor.put(valor.etiqueta(),
+                                Roaring64Bitmap.andCardinality(base, valor.ids())));
+                conteos.put(faceta, porValor);
+            }
+
+            long total = resultado.getLongCardinality();
+            long[] ids = new long[(int) Math.min(total, Math.max(limite, 0))];
+            var it = resultado.getLongIterator();
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = it.next();
+            }
+            return new Resultado(total, ids, conteos);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Roaring64Bitmap union(Faceta faceta, Collection<String> valores) {
+        Roaring64Bitmap union = new Roaring64Bitmap();
+        for (String valor : valores) {
+            Valor encontrado = facetas.get(faceta).get(normalizar(faceta, valor));
+            if (encontrado != null) {
+                union.or(encontrado.ids());
+            }
+        }
+        return union;
+    }
+
+    /**
+     * AND de todas las selecciones salvo la de la faceta excluida.
+     * Sin ninguna selección devuelve todas las zapatillas.
+     */
+    private Roaring64Bitmap interseccion(Map<Faceta, Roaring64Bitmap> seleccion, Faceta excluida) {
+        Roaring64Bitmap resultado = null;
+        for (Map.Entry<Faceta, Roaring64Bitmap> entrada : seleccion.entrySet()) {
+            if (entrada.getKey() == excluida) {
+                continue;
+            }
+            if (resultado == null) {
+                resultado = entrada.getValue().clone();
+            } else {
+                resultado.and(entrada.getValue());
+            }
+        }
+        return resultado != null ? resultado : todos;
+    }
+
+    private void indexarSinLock(Zapatilla zapatilla) {
+        Faceta[] todas = Faceta.values();
+        String[] claves = new String[todas.length];
+        for (int i = 0; i < todas.length; i++) {
+            Valor valor = valorDe(todas[i], zapatilla);
+            if (valor != null) {
+                claves[i] = normalizar(todas[i], valor.etiqueta());
+                facetas.get(todas[i]).computeIfAbsent(claves[i], k -> valor).ids().addLong(zapatilla.getId());
+            }
+        }
+        todos.addLong(zapatilla.getId());
+        clavesPorId.put(zapatilla.getId(), claves);
+    }
+
+    private void eliminarSinLock(Long id) {
+        String[] claves = clavesPorId.remove(id);
+        if (claves == null) {
+            return;
+        }
+        Faceta[] todas = Faceta.values();
+        for (int i = 0; i < todas.length; i++) {
+            if (claves[i] == null) {
+                continue;
+            }
+            Map<String, Valor> valores = facetas.get(todas[i]);
+            Valor valor = valores.get(claves[i]);
+            if (valor != null) {
+                valor.ids().removeLong(id);
+                if (valor.ids().isEmpty()) {
+                    valores.remove(claves[i]);
+                }
+            }
+        }
+        todos.removeLong(id);
+    }
+
+    /**
+     * Valor de la faceta para una zapatilla, con su etiqueta pública y su orden.
+     */
+    private Valor valorDe(Faceta faceta, Zapatilla zapatilla) {
+        return switch (faceta) {
+            case MARCA -> texto(zapatilla.getMarca());
+            case TIPO -> texto(zapatilla.getTipo());
+            case COLOR -> texto(zapatilla.getColor());
+            case TALLA -> zapatilla.getTalla() == null ? null
+                    : new Valor(numero(zapatilla.getTalla()), zapatilla.getTalla(), new Roaring64Bitmap());
+            case PRECIO -> zapatilla.getPrecio() == null ? null : tramo(zapatilla.getPrecio());
+        };
+    }
+
+    private static Valor texto(String valor) {
+        return valor == null ? null : new Valor(valor, 0, new Roaring64Bitmap());
+    }
+
+    /**
+     * Tramo de precio en formato "desde-hasta" ("50-100") o "desde+" para el último.
+     */
+    private Valor tramo(double precio) {
+        int i = 0;
+        while (i < tramosPrecio.length && precio >= tramosPrecio[i]) {
+            i++;
+        }
+        String desde = i == 0 ? "0" : numero(tramosPrecio[i - 1]);
+        String etiqueta = i == tramosPrecio.length ? desde + "+" : desde + "-" + numero(tramosPrecio[i]);
+        return new Valor(etiqueta, i, new Roaring64Bitmap());
+    }
+
+    /**
+     * Clave interna de un valor: sin mayúsculas y con las tallas normalizadas
+     * (42, 42.0 y 42.00 son la misma talla).
+     */
+    private static String normalizar(Faceta faceta, String valor) {
+        String limpio = valor.trim().toLowerCase(Locale.ROOT);
+        if (faceta == Faceta.TALLA) {
+            try {
+                return numero(Double.parseDouble(limpio));
+            } catch (NumberFormatException e) {
+                return limpio;
+            }
+        }
+        return limpio;
+    }
+
+    private static String numero(double valor) {
+        return BigDecimal.valueOf(valor).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Un valor distinto de una faceta y el bitmap con sus zapatillas.
+     */
+    private record Valor(String etiqueta, double orden, Roaring64Bitmap ids) {
+    }
+}
@@ -0,0 +1,110 @@
+package es.pabloab.zapatillas.rest.zapatillas.indexes;
+
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillaIndex.Reconstruccion;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Punto único para mantener todos los índices en memoria (ZapatillaIndex).
+ *
+ * - Al arrancar (ApplicationReadyEvent, cuando data.sql ya se ha cargado)
+ *   recorre el catálogo una vez y reconstruye todos los índices.
+ * - El servicio llama a indexar/eliminar en cada escritura, y este
+ *   componente lo reenvía a cada índice registrado como bean.
+ *
+ * ¿Y LAS ESCRITURAS DURANTE LA RECONSTRUCCIÓN?
+ * =============================================
+ * ApplicationReadyEvent llega con Tomcat ya aceptando peticiones, así que
+ * puede haber altas y cambios mientras se lee el catálogo. Si se aplicaran
+ * directamente, la reconstrucción las pisaría al publicar su resultado.
+ * Mientras dura se guardan en una cola y se reaplican en orden al terminar
+ * (indexar/eliminar son idempotentes, repetir uno que ya leyó el cursor no
+ * cambia nada).
+ *
+ * El catálogo se lee con repository.streamAll() (cursor con fetchSize,
+ * igual que la exportación) y cada entidad se separa del persistence
+ * context en cuanto la han visto los índices: nunca está entero en memoria.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ZapatillasIndices {
+
+    private final ZapatillasRepository repository;
+    private final EntityManager entityManager;
+    private final List<ZapatillaIndex> indices;
+
+    // Cambios llegados durante la reconstrucción; null si no hay ninguna en curso
+    private List<Consumer<ZapatillaIndex>> pendientes;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void reconstruir() {
+        long inicio = System.currentTimeMillis();
+        synchronized (this) {
+            pendientes = new ArrayList<>();
+        }
+        List<Reconstruccion> reconstrucciones = new ArrayList<>(indices.size());
+        long filas = 0;
+        try {
+            indices.forEach(indice -> reconstrucciones.add(indice.reconstruccion()));
+            try (Stream<Zapatilla> zapatillas = repository.streamAll()) {
+                Iterator<Zapatilla> it = zapatillas.iterator();
+                while (it.hasNext()) {
+                    Zapatilla zapatilla = it.next();
+                    reconstrucciones.forEach(reconstruccion -> reconstruccion.anadir(zapatilla));
+                    entityManager.detach(zapatilla);
+                    filas++;
+                }
+            }
+            reconstrucciones.forEach(Reconstruccion::terminar);
+        } finally {
+            reaplicarPendientes();
+        }
+        log.info("Índices en memoria reconstruidos: {} zapatillas, {} índices, {} ms",
+                filas, indices.size(), System.currentTimeMillis() - inicio);
+    }
+
+    public void indexar(Zapatilla zapatilla) {
+        aplicar(indice -> indice.indexar(zapatilla));
+    }
+
+    public void eliminar(Long id) {
+        aplicar(indice -> indice.eliminar(id));
+    }
+
+    private void aplicar(Consumer<ZapatillaIndex> cambio) {
+        synchronized (this) {
+            if (pendientes != null) {
+                pendientes.add(cambio);
+                return;
+            }
+        }
+        indices.forEach(cambio);
+    }
+
+    /**
+     * Con el monitor tomado para que ningún cambio nuevo se cuele por delante
+     * de los encolados.
+     */
+    private synchronized void reaplicarPendientes() {
+        if (!pendientes.isEmpty()) {
+            log.info("Reaplicando {} cambios llegados durante la reconstrucción de índices", pendientes.size());
+        }
+        pendientes.forEach(indices::forEach);
+        pendientes = null;
+    }
+}
@@ -0,0 +1,202 @@
+package es.pabloab.zapatillas.rest.zapatillas.indexes;
+
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índices ordenados por precio y por stock para las consultas por rango.
+ *
+ * ¿POR QUÉ?
+ * ==========
+ * "Zapatillas entre 50 y 100 €" o "con menos de 5 unidades" sin índice en
+ * la tabla son un recorrido completo en cada petición, y paginar el
+ * resultado obliga a repetirlo. Aquí cada campo es un array ordenado de
+ * primitivos con los ids en paralelo: el rango se localiza con dos
+ * búsquedas binarias y la página pedida es un trozo contiguo del array.
+ *
+ * Orden de los resultados: precio (o stock) ascendente y, a igualdad, id.
+ */
+@Component
+public class ZapatillasRangoIndex implements ZapatillaIndex {
+
+    /**
+     * Una página de un rango: total de zapatillas en el rango e ids de la página.
+     */
+    public record Rango(long total, long[] ids) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SortedDoubleIds porPrecio = new SortedDoubleIds();
+    private final SortedIntIds porStock = new SortedIntIds();
+    // Valores indexados de cada id, para poder quitarlos al actualizar/borrar
+    private final ValoresPorId valores = new ValoresPorId();
+    private volatile boolean listo = false;
+
+    /**
+     * ¿Se ha construido ya? Hasta entonces el servicio va a la base de datos.
+     */
+    public boolean isListo() {
+        return listo;
+    }
+
+    /**
+     * El catálogo se vuelca en arrays de primitivos y, al terminar, cada
+     * estructura se ordena una sola vez (cargar) en lugar de insertar fila a
+     * fila. Hasta entonces el índice sigue como estaba.
+     */
+    @Override
+    public Reconstruccion reconstruccion() {
+        return new Volcado();
+    }
+
+    @Override
+    public void indexar(Zapatilla zapatilla) {
+        lock.writeLock().lock();
+        try {
+            eliminarSinLock(zapatilla.getId());
+            indexarSinLock(zapatilla);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            eliminarSinLock(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Zapatillas con min <= precio <= max (como BETWEEN), página [offset, offset + limite).
+     */
+    public Rango porPrecio(double min, double max, long offset, int limite) {
+        lock.readLock().lock();
+        try {
+            int desde = porPrecio.desde(min);
+            int hasta = Math.max(desde, porPrecio.hasta(max));
+            return pagina(desde, hasta, offset, limite, porPrecio::ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Zapatillas con stock < umbral, de menos a más stock, página [offset, offset + limite).
+     */
+    public Rango stockBajo(int umbral, long offset, int limite) {
+        lock.readLock().lock();
+        try {
+            int hasta = umbral == Integer.MIN_VALUE ? 0 : porStock.hasta(umbral - 1);
+            return pagina(0, hasta, offset, limite, porStock::ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Rango pagina(int desde, int hasta, long offset, int limite, Trozo trozo) {
+        int total = hasta - desde;
+        int inicio = (int) Math.min(total, Math.max(0, offset));
+        int fin = (int) Math.min(total, (long) inicio + Math.max(0, limite));
+        return new Rango(total, trozo.ids(desde + inicio, desde + fin));
+    }
+
+    private void indexarSinLock(Zapatilla zapatilla) {
+        long id = zapatilla.getId();
+        double precio = Double.NaN;
+        long stock = ValoresPorId.SIN_STOCK;
+        if (zapatilla.getPrecio() != null) {
+            precio = zapatilla.getPrecio();
+            porPrecio.add(precio, id);
+        }
+        if (zapatilla.getStock() != null) {
+            stock = zapatilla.getStock();
+            porStock.add((int) stock, id);
+        }
+        valores.poner(id, precio, stock);
+    }
+
+    private void eliminarSinLock(Long id) {
+        int pos = valores.posicion(id);
+        if (pos < 0) {
+            return;
+        }
+        if (!Double.isNaN(valores.precio(pos))) {
+            porPrecio.remove(valores.precio(pos), id);
+        }
+        if (valores.stock(pos) != ValoresPorId.SIN_STOCK) {
+            porStock.remove((int) valores.stock(pos), id);
+        }
+        valores.quitar(pos);
+    }
+
+    /**
+     * Reconstrucción en curso: pares (clave, id) en el orden de llegada.
+     */
+    private final class Volcado implements Reconstruccion {
+        private long[] ids = new long[1024];
+        private double[] precios = new double[1024];
+        private long[] stocks = new long[1024];
+        private double[] clavesPrecio = new double[1024];
+        private long[] idsPrecio = new long[1024];
+        private int[] clavesStock = new int[1024];
+        private long[] idsStock = new long[1024];
+        private int n;
+        private int conPrecio;
+        private int conStock;
+
+        @Override
+        public void anadir(Zapatilla zapatilla) {
+            if (n == ids.length) {
+                int capacidad = n + (n >> 1);
+                ids = Arrays.copyOf(ids, capacidad);
+                precios = Arrays.copyOf(precios, capacidad);
+                stocks = Arrays.copyOf(stocks, capacidad);
+                clavesPrecio = Arrays.copyOf(clavesPrecio, capacidad);
+                idsPrecio = Arrays.copyOf(idsPrecio, capacidad);
+                clavesStock = Arrays.copyOf(clavesStock, capacidad);
+                idsStock = Arrays.copyOf(idsStock, capacidad);
+            }
+            long id = zapatilla.getId();
+            ids[n] = id;
+            precios[n] = Double.NaN;
+            stocks[n] = ValoresPorId.SIN_STOCK;
+            if (zapatilla.getPrecio() != null) {
+                precios[n] = zapatilla.getPrecio();
+                clavesPrecio[conPrecio] = zapatilla.getPrecio();
+                idsPrecio[conPrecio++] = id;
+            }
+            if (zapatilla.getStock() != null) {
+                stocks[n] = zapatilla.getStock();
+                clavesStock[conStock] = zapatilla.getStock();
+                idsStock[conStock++] = id;
+            }
+            n++;
+        }
+
+        @Override
+        public void terminar() {
+            lock.writeLock().lock();
+            try {
+                porPrecio.cargar(clavesPrecio, idsPrecio, conPrecio);
+                porStock.cargar(clavesStock, idsStock, conStock);
+                valores.cargar(ids, precios, stocks, n);
+                listo = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Trozo {
+        long[] ids(int inicio, int fin);
+    }
+}
@@ -0,0 +1,310 @@
+package es.pabloab.zapatillas.rest.zapatillas.indexes;
+
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Índice de trigramas para las búsquedas por subcadena (marca, tipo, modelo, color).
+ *
+ * ¿POR QUÉ?
+ * ==========
+ * findAllByMarcaContainingIgnoreCase se traduce a LIKE '%nike%': con el
+ * comodín al principio ningún índice B-tree sirve y cada petición recorre la
+ * tabla entera. Aquí resolvemos el filtro en memoria a un conjunto ordenado
+ * de ids y después solo se cargan por clave primaria los de la página.
+ *
+ * ¿CÓMO FUNCIONA?
+ * ================
+ * Estos campos tienen pocos valores distintos (hay millones de zapatillas
+ * pero pocas marcas), así que indexamos los VALORES, no las filas:
+ * - trigrama ("nik", "ike") → valores distintos que lo contienen
+ * - valor ("nike")          → ids ordenados de las zapatillas con ese valor
+ * Para buscar "ike" cruzamos los valores de sus trigramas, comprobamos la
+ * subcadena de verdad (los trigramas solo descartan) y unimos sus ids.
+ * Las consultas de menos de 3 letras recorren los valores distintos.
+ *
+ * Mismo criterio que ContainingIgnoreCase: subcadena sin distinguir mayúsculas.
+ *
+ * Filtros poco selectivos: si "i" casa con casi todo el catálogo, unir los
+ * ids de todos los valores cuesta más que dejar que la BD pagine. Por encima
+ * de zapatillas.indices.trigramas.selectividad-maxima (fracción del total)
+ * buscar(marca, tipo) devuelve vacío y el servicio va a la BD.
+ */
+@Component
+public class ZapatillasTrigramIndex implements ZapatillaIndex {
+
+    public enum Campo {
+        MARCA(Zapatilla::getMarca),
+        TIPO(Zapatilla::getTipo),
+        MODELO(Zapatilla::getModelo),
+        COLOR(Zapatilla::getColor);
+
+        private final Function<Zapatilla, String> extractor;
+
+        Campo(Function<Zapatilla, String> extractor) {
+            this.extractor = extractor;
+        }
+    }
+
+    private final double selectividadMaxima;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Campo, IndiceCampo> campos = new EnumMap<>(Campo.class);
+    // Valores indexados de cada id, para poder quitarlos al actualizar/borrar
+    private final Map<Long, String[]> valoresPorId = new HashMap<>();
+    private volatile boolean listo = false;
+
+    public ZapatillasTrigramIndex(
+            @Value("${zapatillas.indices.trigramas.selectividad-maxima:0.5}") double selectividadMaxima) {
+        this.selectividadMaxima = selectividadMaxima;
+        for (Campo campo : Campo.values()) {
+            campos.put(campo, new IndiceCampo());
+        }
+    }
+
+    /**
+     * ¿Se ha construido ya? Hasta entonces el servicio usa las consultas LIKE.
+     */
+    public boolean isListo() {
+        return listo;
+    }
+
+    /**
+     * Mientras dura la reconstrucción el índice no está listo y el servicio
+     * vuelve a las consultas LIKE.
+     */
+    @Override
+    public Reconstruccion reconstruccion() {
+        lock.writeLock().lock();
+        try {
+            listo = false;
+            campos.values().forEach(IndiceCampo::clear);
+            valoresPorId.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new Reconstruccion() {
+            @Override
+            public void anadir(Zapatilla zapatilla) {
+                indexar(zapatilla);
+            }
+
+            @Override
+            public void terminar() {
+                listo = true;
+            }
+        };
+    }
+
+    @Override
+    public void indexar(Zapatilla zapatilla) {
+        lock.writeLock().lock();
+        try {
+            eliminarSinLock(zapatilla.getId());
+            indexarSinLock(zapatilla);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            eliminarSinLock(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids (ordenados ascendentemente) que cumplen los filtros de marca y tipo.
+     * Un filtro null no restringe. Vacío si el índice aún no está listo o si
+     * el filtro es poco selectivo (ver selectividad-maxima).
+     */
+    public Optional<long[]> buscar(String marca, String tipo) {
+        if (!listo) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            List<SortedLongs> porMarca = marca == null ? null : campos.get(Campo.MARCA).coincidencias(normalizar(marca));
+            List<SortedLongs> porTipo = tipo == null ? null : campos.get(Campo.TIPO).coincidencias(normalizar(tipo));
+            // Cota superior del resultado, sin unir nada todavía
+            long estimacion = Math.min(tamano(porMarca), tamano(porTipo));
+            if (estimacion > selectividadMaxima * valoresPorId.size()) {
+                return Optional.empty();
+            }
+            long[] ids = porMarca == null ? null : SortedLongs.union(porMarca);
+            if (porTipo != null) {
+                long[] idsTipo = SortedLongs.union(porTipo);
+                ids = ids == null ? idsTipo : SortedLongs.intersect(ids, idsTipo);
+            }
+            return Optional.ofNullable(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long tamano(List<SortedLongs> coincidencias) {
+        if (coincidencias == null) {
+            return Long.MAX_VALUE;
+        }
+        long tamano = 0;
+        for (SortedLongs ids : coincidencias) {
+            tamano += ids.size();
+        }
+        return tamano;
+    }
+
+    /**
+     * Ids que contienen el texto en el campo indicado. Vacío si no está listo.
+     */
+    public Optional<long[]> buscar(Campo campo, String texto) {
+        if (!listo) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            return Optional.of(campos.get(campo).buscar(normalizar(texto)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void indexarSinLock(Zapatilla zapatilla) {
+        Campo[] todos = Campo.values();
+        String[] valores = new String[todos.length];
+        for (int i = 0; i < todos.length; i++) {
+            String valor = todos[i].extractor.apply(zapatilla);
+            if (valor != null) {
+                valores[i] = normalizar(valor);
+                campos.get(todos[i]).add(valores[i], zapatilla.getId());
+            }
+        }
+        valoresPorId.put(zapatilla.getId(), valores);
+    }
+
+    private void eliminarSinLock(Long id) {
+        String[] valores = valoresPorId.remove(id);
+        if (valores == null) {
+            return;
+        }
+        Campo[] todos = Campo.values();
+        for (int i = 0; i < todos.length; i++) {
+            if (valores[i] != null) {
+                campos.get(todos[i]).remove(valores[i], id);
+            }
+        }
+    }
+
+    private static String normalizar(String texto) {
+        return texto.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigramas(String valor) {
+        Set<String> trigramas = new HashSet<>();
+        for (int i = 0; i + 3 <= valor.length(); i++) {
+            trigramas.add(valor.substring(i, i + 3));
+        }
+        return trigramas;
+    }
+
+    /**
+     * Índice de un único campo: trigrama → valores y valor → ids.
+     */
+    private static final class IndiceCampo {
+        private final Map<String, SortedLongs> idsPorValor = new HashMap<>();
+        private final Map<String, Set<String>> valoresPorTrigrama = new HashMap<>();
+
+        void add(String valor, long id) {
+            SortedLongs ids = idsPorValor.get(valor);
+            if (ids == null) {
+                ids = new SortedLongs();
+                idsPorValor.put(valor, ids);
+                for (String trigrama : trigramas(valor)) {
+                    valoresPorTrigrama.computeIfAbsent(trigrama, t -> new HashSet<>()).add(valor);
+                }
+            }
+            ids.add(id);
+        }
+
+        void remove(String valor, long id) {
+            SortedLongs ids = idsPorValor.get(valor);
+            if (ids == null || !ids.remove(id) || !ids.isEmpty()) {
+                return;
+            }
+            // Era la última zapatilla con este valor: lo quitamos de los trigramas
+            idsPorValor.remove(valor);
+            for (String trigrama : trigramas(valor)) {
+                Set<String> valores = valoresPorTrigrama.get(trigrama);
+                if (valores != null) {
+                    valores.remove(valor);
+                    if (valores.isEmpty()) {
+                        valoresPorTrigrama.remove(trigrama);
+                    }
+                }
+            }
+        }
+
+        long[] buscar(String texto) {
+            return SortedLongs.union(coincidencias(texto));
+        }
+
+        /**
+         * Listas de ids de los valores que contienen el texto, sin unir.
+         */
+        List<SortedLongs> coincidencias(String texto) {
+            List<SortedLongs> coincidencias = new ArrayList<>();
+            for (String valor : candidatos(texto)) {
+                if (valor.contains(texto)) {
+                    coincidencias.add(idsPorValor.get(valor));
+                }
+            }
+            return coincidencias;
+        }
+
+        /**
+         * Valores que contienen todos los trigramas del texto.
+         * Empezamos por el trigrama más selectivo para cruzar lo mínimo.
+         */
+        private Collection<String> candidatos(String texto) {
+            if (texto.length() < 3) {
+                return idsPorValor.keySet();
+            }
+            List<Set<String>> conjuntos = new ArrayList<>();
+            for (String trigrama : trigramas(texto)) {
+                Set<String> valores = valoresPorTrigrama.get(trigrama);
+                if (valores == null) {
+                    return List.of();
+                }
+                conjuntos.add(valores);
+            }
+            conjuntos.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            Set<String> resultado = new HashSet<>(conjuntos.getFirst());
+            for (int i = 1; i < conjuntos.size() && !resultado.isEmpty(); i++) {
+                resultado.retainAll(conjuntos.get(i));
+            }
+            return resultado;
+        }
+
+        void clear() {
+            idsPorValor.clear();
+            valoresPorTrigrama.clear();
+        }
+    }
+}
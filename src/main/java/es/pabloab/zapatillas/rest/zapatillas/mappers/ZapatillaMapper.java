@@ -4,11 +4,15 @@ package es.pabloab.zapatillas.rest.zapatillas.mappers;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaParcheDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaParcheDto.Operacion;
 import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 @Component
@@ -50,6 +54,7 @@ public class ZapatillaMapper {
                 .createdAt(zapatilla.getCreatedAt())
                 .updatedAt(LocalDateTime.now())
                 .uuid(zapatilla.getUuid())
+                .version(zapatilla.getVersion()) // Sin versión Hibernate la trataría como nueva
                 .build();
     }
 
@@ -67,9 +72,52 @@ public class ZapatillaMapper {
                 .createdAt(zapatilla.getCreatedAt())
                 .updatedAt(zapatilla.getUpdatedAt())
                 .uuid(zapatilla.getUuid())
+                .version(zapatilla.getVersion())
                 .build();
     }
 
+    /**
+     * JSON Patch de los campos que cambian entre dos versiones de la misma
+     * zapatilla. id, uuid y createdAt no cambian nunca; la versión va aparte.
+     */
+    public ZapatillaParcheDto toParcheDto(ZapatillaResponseDto antes, ZapatillaResponseDto despues) {
+        List<Operacion> operaciones = new ArrayList<>();
+        comparar(operaciones, "marca", antes.getMarca(), despues.getMarca());
+        comparar(operaciones, "modelo", antes.getModelo(), despues.getModelo());
+        comparar(operaciones, "codigoProducto", antes.getCodigoProducto(), despues.getCodigoProducto());
+        comparar(operaciones, "talla", antes.getTalla(), despues.getTalla());
+        comparar(operaciones, "color", antes.getColor(), despues.getColor());
+        comparar(operaciones, "tipo", antes.getTipo(), despues.getTipo());
+        comparar(operaciones, "precio", antes.getPrecio(), despues.getPrecio());
+        comparar(operaciones, "stock", antes.getStock(), despues.getStock());
+        comparar(operaciones, "updatedAt", antes.getUpdatedAt(), despues.getUpdatedAt());
+        return ZapatillaParcheDto.builder()
+                .desdeVersion(antes.getVersion())
+                .version(despues.getVersion())
+                .operaciones(operaciones)
+                .build();
+    }
+
+    /**
+     * Parche de un volcado del ledger de stock: solo cambian el stock y
+     * updatedAt, y el UPDATE suma exactamente 1 a la versión.
+     */
+    public ZapatillaParcheDto toParcheStockDto(Zapatilla zapatilla) {
+        return ZapatillaParcheDto.builder()
+                .desdeVersion(zapatilla.getVersion() - 1)
+                .version(zapatilla.getVersion())
+                .operaciones(List.of(
+                        Operacion.replace("stock", zapatilla.getStock()),
+                        Operacion.replace("updatedAt", zapatilla.getUpdatedAt())))
+                .build();
+    }
+
+    private static void comparar(List<Operacion> operaciones, String campo, Object antes, Object despues) {
+        if (!Objects.equals(antes, despues)) {
+            operaciones.add(Operacion.replace(campo, despues));
+        }
+    }
+
     public List<ZapatillaResponseDto> toResponseDtoList(List<Zapatilla> zapatillas) {
         return zapatillas.stream()
                 .map(this::toResponseDto)
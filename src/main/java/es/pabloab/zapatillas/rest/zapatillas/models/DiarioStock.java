@@ -0,0 +1,30 @@
+package es.pabloab.zapatillas.rest.zapatillas.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Punto de control del diario de stock (ZapatillasStockLedger): la última
+ * generación del diario cuyos descuentos ya están aplicados en la BD.
+ *
+ * Se actualiza en la MISMA transacción que los UPDATE de stock, así que al
+ * arrancar tras una caída se sabe qué ficheros del diario hay que reaplicar
+ * (generación mayor) y cuáles ya estaban dentro (menor o igual) sin contar
+ * ningún descuento dos veces. Solo hay una fila (id = 1).
+ */
+@Entity
+@Table(name = "diario_stock")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DiarioStock {
+
+    public static final Integer ID = 1;
+
+    @Id
+    private Integer id;
+    @Column(nullable = false, name = "generacion_aplicada")
+    private Long generacionAplicada;
+}
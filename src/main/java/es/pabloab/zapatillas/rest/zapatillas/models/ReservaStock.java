@@ -0,0 +1,43 @@
+package es.pabloab.zapatillas.rest.zapatillas.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Unidades de una zapatilla apartadas durante un tiempo (por ejemplo, mientras
+ * el cliente paga). El stock se descuenta al reservar; si la reserva caduca o
+ * se libera, las unidades vuelven al stock. Confirmarla solo borra la reserva.
+ *
+ * usuario: quien la hizo. Solo él (o un ADMIN) puede confirmarla o liberarla,
+ * y sus reservas abiertas cuentan para su límite de unidades.
+ */
+@Entity
+@Table(name = "reservas_stock", indexes = {
+        @Index(name = "idx_reservas_stock_expira_en", columnList = "expira_en"),
+        @Index(name = "idx_reservas_stock_usuario", columnList = "usuario")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservaStock {
+
+    @Id
+    private UUID id;
+    @Column(nullable = false, name = "zapatilla_id")
+    private Long zapatillaId;
+    @Column(nullable = false)
+    private Integer cantidad;
+    @Column(nullable = false)
+    private String usuario;
+    @Column(nullable = false, name = "creada_en")
+    private LocalDateTime creadaEn;
+    @Column(nullable = false, name = "expira_en")
+    private LocalDateTime expiraEn;
+}
@@ -8,19 +8,36 @@ import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity  // ← Marca como entidad JPA
-@Table(name = "zapatillas")  // ← Nombre de la tabla en la BD
+// ← Nombre de la tabla en la BD + índices para los filtros y órdenes del catálogo.
+//   Cada orden público termina en id (ver ZapatillaSortWhitelist), por eso los
+//   índices compuestos llevan id al final: la BD lee ya ordenado, sin filesort.
+@Table(name = "zapatillas", indexes = {
+        @Index(name = "idx_zapatillas_tipo_precio_id", columnList = "tipo, precio, id"),
+        @Index(name = "idx_zapatillas_marca_id", columnList = "marca, id"),
+        @Index(name = "idx_zapatillas_precio_id", columnList = "precio, id"),
+        @Index(name = "idx_zapatillas_stock_id", columnList = "stock, id"),
+        @Index(name = "idx_zapatillas_updated_at_id", columnList = "updated_at, id")
+})
 @Data
 @Builder
 @NoArgsConstructor  // ← JPA lo necesita
 @AllArgsConstructor // ← Builder lo necesita
 public class Zapatilla {
 
+    // Secuencia "pooled": Hibernate reserva 50 ids por cada llamada a la
+    // secuencia, así puede agrupar los INSERT en lotes JDBC (con IDENTITY
+    // necesitaría ejecutar cada INSERT para conocer su id).
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "zapatillas_seq")
+    @SequenceGenerator(name = "zapatillas_seq", sequenceName = "zapatillas_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false, length = 50)
     private String marca;
@@ -47,10 +64,47 @@ public class Zapatilla {
     @Column(unique = true, nullable = false, updatable = false,
             columnDefinition = "UUID")
     private UUID uuid;
+    // Bloqueo optimista: Hibernate añade "AND version = ?" a cada UPDATE y lo
+    // incrementa; si otra escritura llegó antes, falla en vez de pisarla
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // Huella de los campos de negocio: la sincronización con el proveedor la
+    // compara con la de cada fila del feed y no escribe las que no cambian
+    @Column(name = "hash_contenido")
+    private Long hashContenido;
+
     @PrePersist
     public void prePersist() {
         if (uuid == null) {
             uuid = UUID.randomUUID();
         }
+        actualizarHashContenido();
+    }
+
+    @PreUpdate
+    public void preUpdate() {
+        actualizarHashContenido();
+    }
+
+    public void actualizarHashContenido() {
+        hashContenido = hashContenido(marca, modelo, codigoProducto, talla, color, tipo, precio, stock);
+    }
+
+    /**
+     * Huella de 64 bits (primeros 8 bytes de SHA-256) de los campos de negocio.
+     * Los campos se separan con el carácter NUL para que "ab"+"c" y "a"+"bc" no coincidan.
+     */
+    public static long hashContenido(String marca, String modelo, String codigoProducto, Double talla,
+                                     String color, String tipo, Double precio, Integer stock) {
+        String contenido = String.join("\u0000", marca, modelo, codigoProducto, String.valueOf(talla),
+                color, tipo, String.valueOf(precio), String.valueOf(stock));
+        try {
+            byte[] sha = MessageDigest.getInstance("SHA-256").digest(contenido.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(sha, 0, Long.BYTES).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
 }
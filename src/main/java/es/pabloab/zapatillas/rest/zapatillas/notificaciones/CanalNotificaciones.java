@@ -0,0 +1,27 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+
+import java.util.List;
+
+/**
+ * Otra salida, aparte de STOMP, para las notificaciones públicas del catálogo.
+ *
+ * Al cerrar cada ventana, ZapatillasNotificacionesDispatcher entrega a todos
+ * los canales (beans que implementan esta interfaz) las notificaciones ya
+ * numeradas y guardadas en ZapatillasHistorial, con los mismos destinos que
+ * en STOMP, para que cada canal filtre igual que el broker.
+ *
+ * Se llama desde el hilo del dispatcher: publicar() no puede bloquearse
+ * esperando a un cliente.
+ */
+public interface CanalNotificaciones {
+
+    /**
+     * @param destinos destinos /topic/zapatillas/... de la notificación (los públicos, no los internos de cada formato)
+     */
+    record Publicada(ZapatillaNotificacion notificacion, List<String> destinos) {
+    }
+
+    void publicar(List<Publicada> ventana);
+}
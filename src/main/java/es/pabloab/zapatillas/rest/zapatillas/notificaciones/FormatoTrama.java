@@ -0,0 +1,90 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Codificación de las tramas de /topic/zapatillas.
+ *
+ * El cliente la elige al suscribirse, con la cabecera STOMP
+ * "content-type: application/cbor". Internamente cada formato tiene su
+ * propio destino, así el broker entrega a cada suscriptor los bytes que ha
+ * pedido sin convertir nada por suscriptor. El de CBOR va bajo su propio
+ * prefijo (/topic/zapatillas/marca/nike → /topic/cbor/zapatillas/marca/nike)
+ * y no con un sufijo: un cliente JSON suscrito con comodín a
+ * /topic/zapatillas/** no debe recibir también las tramas CBOR.
+ *
+ * Spring solo envía un frame WebSocket binario si el content-type del
+ * mensaje es application/octet-stream (y nunca por SockJS): las tramas
+ * CBOR salen con ese content-type más la cabecera "formato: cbor", y solo
+ * tienen sentido en el endpoint /ws-native.
+ */
+public enum FormatoTrama {
+
+    JSON(MimeTypeUtils.APPLICATION_JSON, MimeTypeUtils.APPLICATION_JSON, "/topic/"),
+    CBOR(new MimeType("application", "cbor"), MimeTypeUtils.APPLICATION_OCTET_STREAM, "/topic/cbor/");
+
+    public static final String CABECERA = "formato";
+
+    private static final String TOPIC = "/topic/";
+
+    private final MimeType pedido;
+    private final MimeType enviado;
+    private final String prefijo;
+
+    FormatoTrama(MimeType pedido, MimeType enviado, String prefijo) {
+        this.pedido = pedido;
+        this.enviado = enviado;
+        this.prefijo = prefijo;
+    }
+
+    /**
+     * content-type del mensaje STOMP que se envía.
+     */
+    public MimeType getEnviado() {
+        return enviado;
+    }
+
+    /**
+     * Destino interno de este formato para un destino público.
+     */
+    public String destino(String base) {
+        return this == JSON || !base.startsWith(TOPIC) ? base : prefijo + base.substring(TOPIC.length());
+    }
+
+    public static FormatoTrama deDestino(String destino) {
+        return destino.startsWith(CBOR.prefijo) ? CBOR : JSON;
+    }
+
+    /**
+     * El destino público de un destino interno.
+     */
+    public static String destinoPublico(String destino) {
+        FormatoTrama formato = deDestino(destino);
+        return formato == JSON ? destino : TOPIC + destino.substring(formato.prefijo.length());
+    }
+
+    /**
+     * El formato pedido en el SUBSCRIBE; JSON si no se pide ninguno conocido.
+     */
+    public static FormatoTrama dePeticion(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return JSON;
+        }
+        try {
+            MimeType tipo = MimeTypeUtils.parseMimeType(contentType);
+            return CBOR.pedido.isCompatibleWith(tipo) ? CBOR : JSON;
+        } catch (InvalidMimeTypeException e) {
+            return JSON;
+        }
+    }
+
+    /**
+     * Destino al que queda suscrito de verdad un SUBSCRIBE (ver WebSocketConfig).
+     */
+    public static String destinoSuscripcion(String destino, String contentType) {
+        FormatoTrama formato = dePeticion(contentType);
+        return formato == JSON || deDestino(destino) == formato ? destino : formato.destino(destino);
+    }
+}
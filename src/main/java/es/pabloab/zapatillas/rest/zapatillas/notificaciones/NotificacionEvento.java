@@ -0,0 +1,39 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+
+/**
+ * Evento de dominio: "hay que avisar de esto por WebSocket".
+ *
+ * Lo publica ZapatillasNotificador y lo entrega, después del commit y en
+ * otro hilo, ZapatillasNotificacionesDispatcher.
+ *
+ * @param usuario      destinatario de una notificación privada, o null para /topic/zapatillas
+ * @param marca        marca de la zapatilla, para /topic/zapatillas/marca/{marca} (o null)
+ * @param tipo         tipo de la zapatilla, para /topic/zapatillas/tipo/{tipo} (o null)
+ * @param marcaAnterior marca que tenía antes de un UPDATED que la cambia (o null): sus
+ *                     suscriptores también tienen que enterarse de que ya no es suya
+ * @param tipoAnterior  lo mismo con el tipo
+ * @param creadaNanos  System.nanoTime() al publicarlo, para medir el retraso de entrega
+ */
+public record NotificacionEvento(String usuario, ZapatillaNotificacion notificacion,
+                                 String marca, String tipo, String marcaAnterior, String tipoAnterior,
+                                 long creadaNanos) {
+
+    public static NotificacionEvento publica(ZapatillaNotificacion notificacion) {
+        return publica(notificacion, null, null);
+    }
+
+    public static NotificacionEvento publica(ZapatillaNotificacion notificacion, String marca, String tipo) {
+        return publica(notificacion, marca, tipo, null, null);
+    }
+
+    public static NotificacionEvento publica(ZapatillaNotificacion notificacion, String marca, String tipo,
+                                             String marcaAnterior, String tipoAnterior) {
+        return new NotificacionEvento(null, notificacion, marca, tipo, marcaAnterior, tipoAnterior, System.nanoTime());
+    }
+
+    public static NotificacionEvento privada(String usuario, ZapatillaNotificacion notificacion) {
+        return new NotificacionEvento(usuario, notificacion, null, null, null, null, System.nanoTime());
+    }
+}
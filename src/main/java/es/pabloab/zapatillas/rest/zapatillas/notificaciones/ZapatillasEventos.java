@@ -0,0 +1,108 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Las notificaciones públicas del catálogo como un Flux multicast, para las
+ * suscripciones GraphQL (ZapatillaGraphQLController).
+ *
+ * ¿POR QUÉ?
+ * =========
+ * Sin suscripciones, un cliente GraphQL solo puede repetir la query
+ * "zapatillas" (la tabla entera) para ver si algo ha cambiado. Aquí llegan,
+ * igual que a STOMP y a SSE, las notificaciones ya numeradas que entrega el
+ * dispatcher (CanalNotificaciones), y cada suscripción GraphQL es un
+ * suscriptor más de este Flux.
+ *
+ * ¿Y SI UN SUSCRIPTOR VA LENTO?
+ * =============================
+ * - El sink es directBestEffort: publicar nunca espera; cada suscriptor
+ *   recibe según su propia demanda y no frena a los demás.
+ * - Cada suscriptor tiene su buffer de zapatillas.graphql.buffer eventos
+ *   (onBackpressureBuffer) y la política zapatillas.graphql.desborde cuando
+ *   se llena: DROP_OLDEST, DROP_LATEST o ERROR (termina la suscripción con
+ *   error y el cliente se vuelve a suscribir).
+ * - Después del buffer, publishOn a hilos virtuales: el envío por el
+ *   WebSocket (bloqueante en servlet) no ocurre en el hilo del dispatcher.
+ *
+ * Métricas: zapatillas.graphql.suscripciones, zapatillas.graphql.descartadas.
+ */
+@Slf4j
+@Component
+public class ZapatillasEventos implements CanalNotificaciones {
+
+    private final Sinks.Many<Publicada> sink = Sinks.many().multicast().directBestEffort();
+    private final Scheduler entrega = Schedulers.fromExecutorService(
+            Executors.newVirtualThreadPerTaskExecutor(), "graphql-suscripciones");
+    private final int buffer;
+    private final BufferOverflowStrategy desborde;
+    private final AtomicInteger suscripciones = new AtomicInteger();
+    private final Counter descartadas;
+
+    public ZapatillasEventos(MeterRegistry meterRegistry,
+                             @Value("${zapatillas.graphql.buffer:256}") int buffer,
+                             @Value("${zapatillas.graphql.desborde:DROP_OLDEST}") BufferOverflowStrategy desborde) {
+        this.buffer = Math.max(1, buffer);
+        this.desborde = desborde;
+        Gauge.builder("zapatillas.graphql.suscripciones", suscripciones, AtomicInteger::get)
+                .description("Suscripciones GraphQL activas a cambios del catálogo")
+                .register(meterRegistry);
+        this.descartadas = Counter.builder("zapatillas.graphql.descartadas")
+                .description("Eventos descartados por llenarse el buffer de una suscripción GraphQL")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void publicar(List<Publicada> ventana) {
+        if (sink.currentSubscriberCount() == 0) {
+            return;
+        }
+        for (Publicada publicada : ventana) {
+            // Solo emite el hilo del dispatcher: no hay emisiones concurrentes
+            Sinks.EmitResult resultado = sink.tryEmitNext(publicada);
+            if (resultado.isFailure() && resultado != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+                log.warn("No se pudo publicar la notificación {} a GraphQL: {}",
+                        publicada.notificacion().getSecuencia(), resultado);
+            }
+        }
+    }
+
+    /**
+     * Flux para una suscripción: filtra antes del buffer, así el buffer solo
+     * guarda lo que ese suscriptor ha pedido.
+     */
+    public Flux<Publicada> suscribir(Predicate<Publicada> filtro) {
+        return sink.asFlux()
+                .filter(filtro)
+                .onBackpressureBuffer(buffer, descartada -> descartadas.increment(), desborde)
+                .publishOn(entrega, Math.min(buffer, 32))
+                .doOnSubscribe(s -> suscripciones.incrementAndGet())
+                .doFinally(senal -> suscripciones.decrementAndGet());
+    }
+
+    public int suscripciones() {
+        return suscripciones.get();
+    }
+
+    @PreDestroy
+    public void detener() {
+        sink.tryEmitComplete();
+        entrega.dispose();
+    }
+}
@@ -0,0 +1,95 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Últimas notificaciones de /topic/zapatillas, numeradas, para reenviar a
+ * quien se reconecta.
+ *
+ * ¿POR QUÉ?
+ * =========
+ * Un cliente STOMP que pierde la conexión (SockJS, redes móviles) no sabe
+ * qué se ha perdido y recarga el catálogo entero por REST; tras un
+ * despliegue lo hacen todos a la vez. Ahora cada notificación lleva una
+ * secuencia creciente y las últimas zapatillas.notificaciones.historial se
+ * guardan en un anillo. Al volver, el cliente se suscribe con la cabecera
+ * "lastSeq" (ZapatillasReanudacion) y recibe solo lo que le falta. Si lo
+ * que le falta ya no está en el anillo, recibe un RESYNC y entonces sí
+ * recarga.
+ *
+ * La secuencia empieza en (milisegundos al arrancar × 1000): tras reiniciar
+ * el servidor sigue creciendo, y un lastSeq anterior queda fuera del
+ * anillo (vacío) y acaba en RESYNC, nunca en un reenvío equivocado.
+ */
+@Component
+public class ZapatillasHistorial {
+
+    private record Registro(long secuencia, ZapatillaNotificacion notificacion, List<String> destinos) {
+    }
+
+    private final AntPathMatcher destinos = new AntPathMatcher();
+    private final Registro[] anillo;
+    private long ultima;
+    private int guardados;
+
+    public ZapatillasHistorial(@Value("${zapatillas.notificaciones.historial:4096}") int capacidad) {
+        this.anillo = new Registro[Math.max(1, capacidad)];
+        this.ultima = System.currentTimeMillis() * 1000;
+    }
+
+    /**
+     * Numera la notificación y la guarda.
+     *
+     * @param destinos destinos públicos a los que va (no los internos de cada formato)
+     * @return la notificación con su secuencia
+     */
+    public synchronized ZapatillaNotificacion registrar(ZapatillaNotificacion notificacion, List<String> destinos) {
+        long secuencia = ++ultima;
+        ZapatillaNotificacion numerada = notificacion.toBuilder().secuencia(secuencia).build();
+        anillo[(int) Math.floorMod(secuencia, (long) anillo.length)] = new Registro(secuencia, numerada, destinos);
+        guardados = Math.min(guardados + 1, anillo.length);
+        return numerada;
+    }
+
+    /**
+     * Lo que se ha enviado a una suscripción después de ultimaVista.
+     *
+     * @param suscripcion destino público suscrito, no el interno de su formato (puede llevar comodines)
+     * @return las notificaciones en orden (vacío si no se ha perdido nada), o
+     *         empty si el hueco ya no está en el anillo y hay que recargar
+     */
+    public Optional<List<ZapatillaNotificacion>> desde(long ultimaVista, String suscripcion) {
+        return desde(ultimaVista, enviadaA -> enviadaA.stream().anyMatch(destino -> destinos.match(suscripcion, destino)));
+    }
+
+    /**
+     * Igual, pero eligiendo con un filtro sobre los destinos de cada notificación
+     * (el stream SSE filtra por marca y tipo a la vez).
+     */
+    public synchronized Optional<List<ZapatillaNotificacion>> desde(long ultimaVista, Predicate<List<String>> filtro) {
+        long primera = ultima - guardados + 1;
+        if (ultimaVista > ultima || ultimaVista < primera - 1) {
+            return Optional.empty();
+        }
+        List<ZapatillaNotificacion> perdidas = new ArrayList<>();
+        for (long secuencia = ultimaVista + 1; secuencia <= ultima; secuencia++) {
+            Registro registro = anillo[(int) Math.floorMod(secuencia, (long) anillo.length)];
+            if (filtro.test(registro.destinos())) {
+                perdidas.add(registro.notificacion());
+            }
+        }
+        return Optional.of(perdidas);
+    }
+
+    public synchronized long ultima() {
+        return ultima;
+    }
+}
@@ -0,0 +1,334 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaParcheDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entrega las notificaciones WebSocket fuera del hilo que escribe.
+ *
+ * ¿POR QUÉ?
+ * =========
+ * Antes cada save/update/delete llamaba a SimpMessagingTemplate antes de
+ * volver: convertir a JSON y pasar el mensaje al broker entraba en la
+ * latencia de la escritura, y si la transacción fallaba después el aviso
+ * ya había salido. Ahora:
+ * - Los servicios publican un NotificacionEvento (ZapatillasNotificador).
+ * - Este listener lo recibe DESPUÉS DEL COMMIT y solo lo mete en una cola
+ *   acotada. save/update/deleteById de ZapatillasServiceImpl son
+ *   @Transactional, así que un cambio que se deshace no avisa a nadie;
+ *   fallbackExecution es para quien publica sin transacción (el volcado
+ *   del ledger de stock, que ya ha hecho commit): al momento.
+ * - Un hilo propio saca lotes de hasta zapatillas.notificaciones.lote
+ *   eventos (drainTo). Las privadas salen al momento, en orden de llegada.
+ * - Las de /topic/zapatillas se agrupan en una ventana de
+ *   zapatillas.notificaciones.ventana-ms: por zapatilla y tipo solo se
+ *   guarda la última (diez ediciones seguidas = una notificación; si son
+ *   parches seguidos, uno solo de la primera versión a la última). Al
+ *   cerrar la ventana sale UNA trama (un array) por
+ *   destino: /topic/zapatillas, /topic/zapatillas/{id} y
+ *   /topic/zapatillas/marca|tipo/{valor}, solo los que tienen suscriptores
+ *   (ZapatillasSuscripciones) y cada uno con lo que le toca. Así cada
+ *   destino recibe como mucho 1000 / ventana-ms tramas por segundo,
+ *   lleguen las escrituras al ritmo que lleguen. La trama se codifica en
+ *   JSON o CBOR según lo que pidió cada suscriptor (ZapatillasTramas).
+ * - Al cerrar la ventana cada notificación pública recibe su secuencia y
+ *   se guarda en ZapatillasHistorial, para reenviarla a quien se reconecte.
+ *   Después se entregan numeradas a los demás CanalNotificaciones (SSE).
+ * - Con la cola llena el evento se descarta y se cuenta: una notificación
+ *   perdida es mejor que una escritura bloqueada por un broker lento.
+ *
+ * Métricas (/actuator/metrics):
+ * - zapatillas.notificaciones.cola: eventos esperando.
+ * - zapatillas.notificaciones.retraso: de publicar el evento a enviarlo.
+ * - zapatillas.notificaciones.enviadas / .descartadas / .fallidas (una
+ *   notificación que va a tres destinos cuenta tres veces).
+ * - zapatillas.notificaciones.agrupadas: sustituidas por otra más reciente
+ *   de la misma zapatilla antes de enviarse.
+ * - zapatillas.notificaciones.tramas: tramas enviadas a los destinos /topic.
+ */
+@Slf4j
+@Component
+public class ZapatillasNotificacionesDispatcher {
+
+    private final ZapatillasWebSocketController webSocketController;
+    private final ZapatillasSuscripciones suscripciones;
+    private final ZapatillasTramas codificador;
+    private final ZapatillasHistorial historial;
+    private final List<CanalNotificaciones> canales;
+    private final BlockingQueue<NotificacionEvento> cola;
+    private final int lote;
+    private final long ventanaNanos;
+    private final Thread hilo;
+    private volatile boolean activo = true;
+
+    private final Timer retraso;
+    private final Counter enviadas;
+    private final Counter descartadas;
+    private final Counter fallidas;
+    private final Counter agrupadas;
+    private final Counter tramas;
+
+    // Ventana abierta: solo las toca el hilo del dispatcher
+    private final Map<Clave, NotificacionEvento> porZapatilla = new LinkedHashMap<>();
+    private final List<NotificacionEvento> sinZapatilla = new ArrayList<>();
+    private long cierre;
+
+    public ZapatillasNotificacionesDispatcher(
+            ZapatillasWebSocketController webSocketController,
+            ZapatillasSuscripciones suscripciones,
+            ZapatillasTramas codificador,
+            ZapatillasHistorial historial,
+            List<CanalNotificaciones> canales,
+            MeterRegistry meterRegistry,
+            @Value("${zapatillas.notificaciones.capacidad:10000}") int capacidad,
+            @Value("${zapatillas.notificaciones.lote:256}") int lote,
+            @Value("${zapatillas.notificaciones.ventana-ms:50}") long ventanaMs) {
+        this.webSocketController = webSocketController;
+        this.suscripciones = suscripciones;
+        this.codificador = codificador;
+        this.historial = historial;
+        this.canales = List.copyOf(canales);
+        this.cola = new ArrayBlockingQueue<>(Math.max(1, capacidad));
+        this.lote = Math.max(1, lote);
+        this.ventanaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ventanaMs));
+        this.hilo = new Thread(this::repartir, "notificaciones-ws");
+        this.hilo.setDaemon(true);
+
+        Gauge.builder("zapatillas.notificaciones.cola", cola, BlockingQueue::size)
+                .description("Notificaciones esperando a enviarse")
+                .register(meterRegistry);
+        this.retraso = Timer.builder("zapatillas.notificaciones.retraso")
+                .description("Tiempo desde que se publica la notificación hasta que se envía")
+                .register(meterRegistry);
+        this.enviadas = meterRegistry.counter("zapatillas.notificaciones.enviadas");
+        this.descartadas = meterRegistry.counter("zapatillas.notificaciones.descartadas");
+        this.fallidas = meterRegistry.counter("zapatillas.notificaciones.fallidas");
+        this.agrupadas = meterRegistry.counter("zapatillas.notificaciones.agrupadas");
+        this.tramas = meterRegistry.counter("zapatillas.notificaciones.tramas");
+    }
+
+    @PostConstruct
+    public void arrancar() {
+        hilo.start();
+    }
+
+    /**
+     * Solo encola: nunca espera al broker ni a que haya sitio.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void encolar(NotificacionEvento evento) {
+        if (!cola.offer(evento)) {
+            descartadas.increment();
+            log.warn("Cola de notificaciones llena, se descarta {} de la zapatilla {}",
+                    evento.notificacion().getTipo(), evento.notificacion().getZapatillaId());
+        }
+    }
+
+    /**
+     * Eventos esperando a enviarse.
+     */
+    public int pendientes() {
+        return cola.size();
+    }
+
+    private void repartir() {
+        List<NotificacionEvento> eventos = new ArrayList<>(lote);
+        // Al detener se termina de vaciar lo que ya estaba en la cola
+        while (activo || !cola.isEmpty() || ventanaAbierta()) {
+            try {
+                long espera = ventanaAbierta()
+                        ? Math.max(0, cierre - System.nanoTime())
+                        : TimeUnit.MILLISECONDS.toNanos(100);
+                NotificacionEvento primero = cola.poll(espera, TimeUnit.NANOSECONDS);
+                if (primero != null) {
+                    eventos.add(primero);
+                    cola.drainTo(eventos, lote - 1);
+                    eventos.forEach(this::recibir);
+                }
+                if (ventanaAbierta() && System.nanoTime() - cierre >= 0) {
+                    cerrarVentana();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                eventos.clear();
+            }
+        }
+    }
+
+    private boolean ventanaAbierta() {
+        return !porZapatilla.isEmpty() || !sinZapatilla.isEmpty();
+    }
+
+    private void recibir(NotificacionEvento evento) {
+        if (evento.usuario() != null) {
+            enviar("privada " + evento.notificacion().getTipo(), 1,
+                    () -> webSocketController.enviarNotificacionPrivada(evento.usuario(), evento.notificacion()));
+            retraso.record(System.nanoTime() - evento.creadaNanos(), TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (!ventanaAbierta()) {
+            cierre = System.nanoTime() + ventanaNanos;
+        }
+        Long zapatillaId = evento.notificacion().getZapatillaId();
+        if (zapatillaId == null) {
+            // Importaciones, sincronizaciones...: no hay estado que sustituir
+            sinZapatilla.add(evento);
+        } else {
+            porZapatilla.merge(new Clave(zapatillaId, evento.notificacion().getTipo()), evento, this::agrupar);
+        }
+    }
+
+    private record Clave(Long zapatillaId, ZapatillaNotificacion.TipoNotificacion tipo) {
+    }
+
+    /**
+     * La más reciente sustituye a la anterior. Dos parches seguidos
+     * (ZapatillaParcheDto) se unen en uno, para que el cliente no se salte
+     * los campos que solo cambiaban en el primero. La marca y el tipo
+     * anteriores que se conservan son los de antes de la ventana: a sus
+     * suscriptores no les ha llegado ninguna de las dos.
+     */
+    private NotificacionEvento agrupar(NotificacionEvento anterior, NotificacionEvento nuevo) {
+        agrupadas.increment();
+        String marcaAnterior = anterior.marcaAnterior() != null ? anterior.marcaAnterior() : nuevo.marcaAnterior();
+        String tipoAnterior = anterior.tipoAnterior() != null ? anterior.tipoAnterior() : nuevo.tipoAnterior();
+        ZapatillaNotificacion notificacion = nuevo.notificacion();
+        long creadaNanos = nuevo.creadaNanos();
+        if (anterior.notificacion().getData() instanceof ZapatillaParcheDto primero
+                && nuevo.notificacion().getData() instanceof ZapatillaParcheDto segundo
+                && Objects.equals(primero.getVersion(), segundo.getDesdeVersion())) {
+            Map<String, ZapatillaParcheDto.Operacion> operaciones = new LinkedHashMap<>();
+            primero.getOperaciones().forEach(operacion -> operaciones.put(operacion.path(), operacion));
+            segundo.getOperaciones().forEach(operacion -> operaciones.put(operacion.path(), operacion));
+            ZapatillaParcheDto unido = ZapatillaParcheDto.builder()
+                    .desdeVersion(primero.getDesdeVersion())
+                    .version(segundo.getVersion())
+                    .operaciones(List.copyOf(operaciones.values()))
+                    .build();
+            notificacion = notificacion.toBuilder().data(unido).build();
+            creadaNanos = anterior.creadaNanos();
+        }
+        return new NotificacionEvento(null, notificacion, nuevo.marca(), nuevo.tipo(),
+                marcaAnterior, tipoAnterior, creadaNanos);
+    }
+
+    private void cerrarVentana() {
+        List<NotificacionEvento> eventos = new ArrayList<>(porZapatilla.size() + sinZapatilla.size());
+        eventos.addAll(porZapatilla.values());
+        eventos.addAll(sinZapatilla);
+        porZapatilla.clear();
+        sinZapatilla.clear();
+
+        // Una trama por destino con suscriptores, con solo lo que le interesa
+        Map<String, List<ZapatillaNotificacion>> tramasPorDestino = new LinkedHashMap<>();
+        List<CanalNotificaciones.Publicada> publicadas = new ArrayList<>(eventos.size());
+        for (NotificacionEvento evento : eventos) {
+            List<String> destinos = destinos(evento);
+            // Numerada y guardada para reenviarla aunque ahora no la escuche nadie
+            ZapatillaNotificacion numerada = historial.registrar(evento.notificacion(), destinos);
+            destinos.forEach(destino -> anadir(tramasPorDestino, destino, numerada));
+            publicadas.add(new CanalNotificaciones.Publicada(numerada, destinos));
+        }
+        for (CanalNotificaciones canal : canales) {
+            try {
+                canal.publicar(publicadas);
+            } catch (RuntimeException e) {
+                log.warn("El canal {} no pudo publicar {} notificaciones: {}",
+                        canal.getClass().getSimpleName(), publicadas.size(), e.getMessage());
+            }
+        }
+        // Cada notificación se serializa una vez por formato, aunque vaya en varias tramas
+        ZapatillasTramas.Ventana codificadas = codificador.ventana();
+        tramasPorDestino.forEach((destino, trama) -> {
+            for (FormatoTrama formato : FormatoTrama.values()) {
+                String destinoFormato = formato.destino(destino);
+                if (suscripciones.tieneSuscriptores(destinoFormato)) {
+                    tramas.increment();
+                    enviar(destinoFormato, trama.size(), () -> webSocketController.enviarTrama(
+                            destinoFormato, codificadas.trama(trama, formato), formato));
+                }
+            }
+        });
+        long ahora = System.nanoTime();
+        eventos.forEach(evento -> retraso.record(ahora - evento.creadaNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    private static List<String> destinos(NotificacionEvento evento) {
+        List<String> destinos = new ArrayList<>(6);
+        destinos.add(ZapatillasWebSocketController.TOPIC);
+        Long zapatillaId = evento.notificacion().getZapatillaId();
+        if (zapatillaId != null) {
+            destinos.add(ZapatillasWebSocketController.destinoZapatilla(zapatillaId));
+        }
+        if (evento.marca() != null) {
+            destinos.add(ZapatillasWebSocketController.destinoMarca(evento.marca()));
+        }
+        if (evento.tipo() != null) {
+            destinos.add(ZapatillasWebSocketController.destinoTipo(evento.tipo()));
+        }
+        // Un UPDATED que la cambia de marca o de tipo va también a los de antes
+        if (evento.marcaAnterior() != null) {
+            anadirSiFalta(destinos, ZapatillasWebSocketController.destinoMarca(evento.marcaAnterior()));
+        }
+        if (evento.tipoAnterior() != null) {
+            anadirSiFalta(destinos, ZapatillasWebSocketController.destinoTipo(evento.tipoAnterior()));
+        }
+        return destinos;
+    }
+
+    private static void anadirSiFalta(List<String> destinos, String destino) {
+        if (!destinos.contains(destino)) {
+            destinos.add(destino);
+        }
+    }
+
+    private void anadir(Map<String, List<ZapatillaNotificacion>> tramasPorDestino, String destino,
+                        ZapatillaNotificacion notificacion) {
+        for (FormatoTrama formato : FormatoTrama.values()) {
+            if (suscripciones.tieneSuscriptores(formato.destino(destino))) {
+                tramasPorDestino.computeIfAbsent(destino, d -> new ArrayList<>()).add(notificacion);
+                return;
+            }
+        }
+    }
+
+    private void enviar(String destino, int cuantas, Runnable envio) {
+        try {
+            envio.run();
+            enviadas.increment(cuantas);
+        } catch (RuntimeException e) {
+            // Un envío que falla no debe parar a los demás
+            fallidas.increment(cuantas);
+            log.warn("No se pudieron enviar {} notificaciones ({}): {}", cuantas, destino, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        activo = false;
+        hilo.join(5_000);
+    }
+}
@@ -0,0 +1,87 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaParcheDto;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lo que usan los servicios para avisar por WebSocket.
+ *
+ * No envía nada: publica un NotificacionEvento. Si hay una transacción en
+ * curso, el evento solo sale si hace commit; en cualquier caso el envío al
+ * broker lo hace ZapatillasNotificacionesDispatcher en su propio hilo, así
+ * que una escritura no espera a la conversión ni al envío de los mensajes.
+ */
+@Component
+@RequiredArgsConstructor
+public class ZapatillasNotificador {
+
+    static final int UMBRAL_STOCK_BAJO = 5;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * A todos los suscritos a /topic/zapatillas (cambios de todo el catálogo).
+     */
+    public void enviar(ZapatillaNotificacion notificacion) {
+        eventPublisher.publishEvent(NotificacionEvento.publica(notificacion));
+    }
+
+    /**
+     * Sobre una zapatilla: además de /topic/zapatillas, a los suscritos a su
+     * id, a su marca y a su tipo.
+     */
+    public void enviar(Zapatilla zapatilla, ZapatillaNotificacion notificacion) {
+        eventPublisher.publishEvent(NotificacionEvento.publica(notificacion, zapatilla.getMarca(), zapatilla.getTipo()));
+    }
+
+    /**
+     * A /user/queue/notificaciones de un usuario.
+     */
+    public void enviarPrivada(String usuario, ZapatillaNotificacion notificacion) {
+        eventPublisher.publishEvent(NotificacionEvento.privada(usuario, notificacion));
+    }
+
+    /**
+     * Zapatilla actualizada sin cambiar de marca ni de tipo (solo el stock, por ejemplo).
+     */
+    public void actualizada(Zapatilla zapatilla, ZapatillaParcheDto parche) {
+        actualizada(zapatilla, null, parche);
+    }
+
+    /**
+     * Zapatilla actualizada (solo los campos que cambian, ver ZapatillaParcheDto)
+     * y, si queda poco stock, aviso de stock bajo.
+     *
+     * Si la actualización le cambia la marca o el tipo, el UPDATED va también
+     * a los destinos de los que tenía (anterior): quien solo escucha la marca
+     * vieja tiene que enterarse de que la zapatilla ya no está en ella. El
+     * aviso de stock bajo solo va a los actuales.
+     *
+     * @param anterior estado antes de la actualización, o null si no cambia de marca ni de tipo
+     */
+    public void actualizada(Zapatilla zapatilla, ZapatillaResponseDto anterior, ZapatillaParcheDto parche) {
+        Long zapatillaId = zapatilla.getId();
+        Integer stock = zapatilla.getStock();
+        eventPublisher.publishEvent(NotificacionEvento.publica(
+                ZapatillaNotificacion.crear(
+                        ZapatillaNotificacion.TipoNotificacion.UPDATED,
+                        zapatillaId,
+                        ZapatillaNotificacion.TipoNotificacion.UPDATED.getDescripcion(),
+                        parche),
+                zapatilla.getMarca(), zapatilla.getTipo(),
+                anterior != null ? anterior.getMarca() : null,
+                anterior != null ? anterior.getTipo() : null));
+        if (stock != null && stock < UMBRAL_STOCK_BAJO) {
+            enviar(zapatilla, ZapatillaNotificacion.crear(
+                    ZapatillaNotificacion.TipoNotificacion.STOCK_LOW,
+                    zapatillaId,
+                    "¡Atención! Solo quedan " + stock + " unidades",
+                    stock));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reanuda una suscripción a /topic/zapatillas desde la última secuencia vista.
+ *
+ * El cliente que se reconecta se suscribe como siempre, añadiendo la
+ * cabecera STOMP "lastSeq" con la secuencia de la última notificación que
+ * procesó. Solo a esa suscripción se le envía una trama con:
+ * - las notificaciones de ese destino posteriores a lastSeq que siguen en
+ *   ZapatillasHistorial (nada si no se perdió ninguna), o
+ * - un único RESYNC (con la secuencia actual en data) si el hueco ya no
+ *   está en el historial: entonces, y solo entonces, recarga por REST.
+ *
+ * Se hace cuando el broker ya ha registrado la suscripción
+ * (ZapatillasSuscripcionesInterceptor), así que lo que no entre en el
+ * reenvío le llega en directo. El reenvío y las tramas en directo pueden
+ * cruzarse: el cliente descarta las notificaciones con secuencia menor o
+ * igual que la última procesada.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ZapatillasReanudacion {
+
+    public static final String CABECERA = "lastSeq";
+
+    private final ZapatillasHistorial historial;
+    private final ZapatillasTramas tramas;
+    private final ZapatillasWebSocketController webSocketController;
+
+    public void reanudar(Message<?> subscribe) {
+        StompHeaderAccessor cabeceras = StompHeaderAccessor.wrap(subscribe);
+        String ultimaVista = cabeceras.getFirstNativeHeader(CABECERA);
+        String destino = cabeceras.getDestination();
+        if (ultimaVista == null || destino == null
+                || !FormatoTrama.destinoPublico(destino).startsWith(ZapatillasWebSocketController.TOPIC)
+                || cabeceras.getSessionId() == null || cabeceras.getSubscriptionId() == null) {
+            return;
+        }
+
+        // El destino real (el del formato) y el público, que es el que guarda el historial
+        String suscrito = FormatoTrama.destinoSuscripcion(destino, cabeceras.getFirstNativeHeader("content-type"));
+        FormatoTrama formato = FormatoTrama.deDestino(suscrito);
+        List<ZapatillaNotificacion> trama = perdidas(ultimaVista, FormatoTrama.destinoPublico(suscrito));
+        if (trama.isEmpty()) {
+            return;
+        }
+        log.debug("Reanudando {} desde {}: {} notificaciones", suscrito, ultimaVista, trama.size());
+        webSocketController.enviarTramaASuscripcion(cabeceras.getSessionId(), cabeceras.getSubscriptionId(),
+                suscrito, tramas.ventana().trama(trama, formato), formato);
+    }
+
+    private List<ZapatillaNotificacion> perdidas(String ultimaVista, String destino) {
+        try {
+            return historial.desde(Long.parseLong(ultimaVista.trim()), destino)
+                    .orElseGet(this::resync);
+        } catch (NumberFormatException e) {
+            return resync();
+        }
+    }
+
+    private List<ZapatillaNotificacion> resync() {
+        long actual = historial.ultima();
+        return List.of(ZapatillaNotificacion.builder()
+                .tipo(ZapatillaNotificacion.TipoNotificacion.RESYNC)
+                .mensaje(ZapatillaNotificacion.TipoNotificacion.RESYNC.getDescripcion())
+                .data(actual)
+                .timestamp(LocalDateTime.now())
+                .secuencia(actual)
+                .build());
+    }
+}
@@ -0,0 +1,298 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sesión WebSocket con su propia cola de salida, límites y política de desborde.
+ *
+ * ¿POR QUÉ?
+ * =========
+ * Spring envía a cada sesión desde los hilos del clientOutboundChannel: si
+ * el cliente lee despacio (una pestaña en segundo plano, un móvil con mala
+ * cobertura, SockJS por long polling) el envío se bloquea, el hilo se queda
+ * esperando y las tramas siguientes se acumulan en un buffer que solo sabe
+ * descartar las más antiguas o cortar la conexión.
+ *
+ * Aquí sendMessage solo encola; un único escritor por sesión (una tarea en
+ * un executor propio, de hilos virtuales, distinto del de clientOutboundChannel)
+ * vacía la cola en orden. Un cliente lento ocupa su escritor, no los hilos
+ * que reparten al resto. Cuando la cola pasa de limiteBytes se aplica la
+ * política:
+ *
+ * - DESCARTAR_ANTIGUAS: se tiran las tramas /topic/... más antiguas; si ni
+ *   así cabe, se corta la conexión.
+ * - AGRUPAR: de cada destino /topic/... se queda solo la trama más reciente
+ *   (el cliente ve el salto en "secuencia" y puede reanudar con lastSeq);
+ *   si ni así cabe, se corta la conexión.
+ * - DESCONECTAR: se corta la conexión.
+ *
+ * CONNECTED, RECEIPT, ERROR y los heartbeats nunca se descartan: sin ellos
+ * el cliente STOMP no sabe en qué estado está. Tampoco las privadas
+ * (/user/queue/..., p. ej. PURCHASE_CONFIRMED): no hay otra copia que las
+ * sustituya ni forma de pedirlas de nuevo.
+ *
+ * Un envío que tarda más de tiempoEnvioMs también corta la conexión
+ * (CloseStatus.SESSION_NOT_RELIABLE, el cliente reconecta). Se comprueba al
+ * encolar y, por si no llega nada más, con vigilarEnvio(), que
+ * ZapatillasSesiones llama periódicamente.
+ *
+ * Métricas por sesión (se quitan al cerrarla):
+ * - zapatillas.ws.sesion.cola{sesion}: tramas esperando
+ * - zapatillas.ws.sesion.descartadas{sesion}: tramas descartadas o agrupadas
+ */
+@Slf4j
+public final class ZapatillasSesionWebSocket extends WebSocketSessionDecorator {
+
+    public enum PoliticaDesborde {
+        DESCARTAR_ANTIGUAS, AGRUPAR, DESCONECTAR
+    }
+
+    // Las cabeceras STOMP van antes de la primera línea en blanco; con esto sobra
+    private static final int MAX_CABECERAS = 1024;
+
+    private final Executor escritor;
+    private final long tiempoEnvioNanos;
+    private final int limiteBytes;
+    private final PoliticaDesborde politica;
+    private final MeterRegistry meterRegistry;
+    private final Gauge cola;
+    private final Counter descartadas;
+    private final Counter cortadasTiempo;
+    private final Counter cortadasBuffer;
+
+    // Protegidos por "tramas"
+    private final Deque<WebSocketMessage<?>> tramas = new ArrayDeque<>();
+    private int bytes;
+    private boolean escribiendo;
+
+    private volatile long inicioEnvio;
+    private volatile boolean cortada;
+
+    public ZapatillasSesionWebSocket(WebSocketSession sesion, Executor escritor, int tiempoEnvioMs, int limiteBytes,
+                                     PoliticaDesborde politica, MeterRegistry meterRegistry) {
+        super(sesion);
+        this.escritor = escritor;
+        this.tiempoEnvioNanos = TimeUnit.MILLISECONDS.toNanos(tiempoEnvioMs);
+        this.limiteBytes = limiteBytes;
+        this.politica = politica;
+        this.meterRegistry = meterRegistry;
+        this.cola = Gauge.builder("zapatillas.ws.sesion.cola", this, ZapatillasSesionWebSocket::pendientes)
+                .description("Tramas esperando a enviarse a la sesión WebSocket")
+                .tag("sesion", sesion.getId())
+                .register(meterRegistry);
+        this.descartadas = Counter.builder("zapatillas.ws.sesion.descartadas")
+                .description("Tramas de la sesión descartadas o agrupadas por desborde")
+                .tag("sesion", sesion.getId())
+                .register(meterRegistry);
+        this.cortadasTiempo = cortadas(meterRegistry, "tiempo");
+        this.cortadasBuffer = cortadas(meterRegistry, "buffer");
+    }
+
+    private static Counter cortadas(MeterRegistry meterRegistry, String motivo) {
+        return Counter.builder("zapatillas.ws.sesiones.cortadas")
+                .description("Sesiones WebSocket cerradas por no dar abasto")
+                .tag("motivo", motivo)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> mensaje) throws IOException {
+        if (cortada) {
+            return;
+        }
+        long inicio = inicioEnvio;
+        if (inicio != 0 && System.nanoTime() - inicio > tiempoEnvioNanos) {
+            cortar(cortadasTiempo, "El envío lleva más de " + TimeUnit.NANOSECONDS.toMillis(tiempoEnvioNanos) + " ms");
+        }
+        boolean arrancar;
+        synchronized (tramas) {
+            tramas.addLast(mensaje);
+            bytes += mensaje.getPayloadLength();
+            if (bytes > limiteBytes) {
+                desbordar();
+            }
+            arrancar = !escribiendo;
+            escribiendo = true;
+        }
+        if (arrancar) {
+            escritor.execute(this::escribir);
+        }
+    }
+
+    /**
+     * Cierra la sesión si el envío en curso lleva más de tiempoEnvioMs,
+     * aunque no se encole nada más. El cierre va en el executor del escritor:
+     * con el envío atascado, cerrar también puede tardar.
+     */
+    public void vigilarEnvio() {
+        long inicio = inicioEnvio;
+        if (cortada || inicio == 0 || System.nanoTime() - inicio <= tiempoEnvioNanos) {
+            return;
+        }
+        cortada = true;
+        cortadasTiempo.increment();
+        log.warn("Sesión WebSocket {}: el envío lleva más de {} ms, se cierra",
+                getId(), TimeUnit.NANOSECONDS.toMillis(tiempoEnvioNanos));
+        escritor.execute(this::cerrar);
+    }
+
+    public int pendientes() {
+        synchronized (tramas) {
+            return tramas.size();
+        }
+    }
+
+    /**
+     * Quita las métricas de la sesión. Lo llama ZapatillasSesiones cuando se cierra.
+     */
+    void liberar() {
+        cortada = true;
+        synchronized (tramas) {
+            tramas.clear();
+            bytes = 0;
+        }
+        meterRegistry.remove(cola);
+        meterRegistry.remove(descartadas);
+    }
+
+    private void escribir() {
+        while (true) {
+            WebSocketMessage<?> mensaje;
+            synchronized (tramas) {
+                mensaje = tramas.pollFirst();
+                if (mensaje == null || cortada) {
+                    escribiendo = false;
+                    return;
+                }
+                bytes -= mensaje.getPayloadLength();
+            }
+            inicioEnvio = System.nanoTime();
+            try {
+                getDelegate().sendMessage(mensaje);
+            } catch (IOException | RuntimeException e) {
+                log.warn("No se pudo enviar a la sesión WebSocket {}: {}", getId(), e.getMessage());
+                cerrar();
+                // escribiendo se queda a true: la sesión está cerrada y nadie más escribe en ella
+                return;
+            } finally {
+                inicioEnvio = 0;
+            }
+        }
+    }
+
+    // Con el lock de "tramas"
+    private void desbordar() {
+        switch (politica) {
+            case DESCARTAR_ANTIGUAS -> {
+                Iterator<WebSocketMessage<?>> it = tramas.iterator();
+                while (bytes > limiteBytes && it.hasNext()) {
+                    WebSocketMessage<?> mensaje = it.next();
+                    if (esDeTopic(mensaje)) {
+                        descartar(it, mensaje);
+                    }
+                }
+                if (bytes > limiteBytes) {
+                    cortar(cortadasBuffer, "La cola de la sesión pasa de " + limiteBytes + " bytes");
+                }
+            }
+            case AGRUPAR -> {
+                Set<String> vistos = new HashSet<>();
+                Iterator<WebSocketMessage<?>> it = tramas.descendingIterator();
+                while (it.hasNext()) {
+                    WebSocketMessage<?> mensaje = it.next();
+                    if (esDeTopic(mensaje) && !vistos.add(destino(mensaje))) {
+                        descartar(it, mensaje);
+                    }
+                }
+                if (bytes > limiteBytes) {
+                    cortar(cortadasBuffer, "La cola de la sesión pasa de " + limiteBytes + " bytes");
+                }
+            }
+            case DESCONECTAR -> cortar(cortadasBuffer, "La cola de la sesión pasa de " + limiteBytes + " bytes");
+        }
+    }
+
+    /**
+     * Solo las tramas de /topic/... se pueden descartar o agrupar: otra trama
+     * del mismo topic o un reenvío con lastSeq las sustituye.
+     */
+    private static boolean esDeTopic(WebSocketMessage<?> mensaje) {
+        String destino = destino(mensaje);
+        return destino != null && destino.startsWith("/topic/");
+    }
+
+    private void descartar(Iterator<WebSocketMessage<?>> it, WebSocketMessage<?> mensaje) {
+        it.remove();
+        bytes -= mensaje.getPayloadLength();
+        descartadas.increment();
+    }
+
+    /**
+     * SubProtocolWebSocketHandler captura la excepción y cierra la sesión.
+     */
+    private void cortar(Counter motivo, String mensaje) {
+        cortada = true;
+        motivo.increment();
+        throw new SessionLimitExceededException(mensaje, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    private void cerrar() {
+        cortada = true;
+        try {
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Error cerrando la sesión WebSocket {}", getId(), e);
+        }
+    }
+
+    /**
+     * Destino de una trama MESSAGE; null para cualquier otra (CONNECTED,
+     * RECEIPT, ERROR, heartbeat), que no se puede descartar.
+     */
+    static String destino(WebSocketMessage<?> mensaje) {
+        String cabeceras;
+        if (mensaje instanceof TextMessage texto) {
+            String payload = texto.getPayload();
+            cabeceras = payload.substring(0, Math.min(payload.length(), MAX_CABECERAS));
+        } else if (mensaje instanceof BinaryMessage binario) {
+            ByteBuffer payload = binario.getPayload().duplicate();
+            byte[] inicio = new byte[Math.min(payload.remaining(), MAX_CABECERAS)];
+            payload.get(inicio);
+            cabeceras = new String(inicio, StandardCharsets.UTF_8);
+        } else {
+            return null;
+        }
+        if (!cabeceras.startsWith("MESSAGE\n")) {
+            return null;
+        }
+        int fin = cabeceras.indexOf("\n\n");
+        int desde = cabeceras.indexOf("\ndestination:");
+        if (desde < 0 || (fin >= 0 && desde > fin)) {
+            return null;
+        }
+        desde += "\ndestination:".length();
+        int hasta = cabeceras.indexOf('\n', desde);
+        return hasta < 0 ? null : cabeceras.substring(desde, hasta);
+    }
+}
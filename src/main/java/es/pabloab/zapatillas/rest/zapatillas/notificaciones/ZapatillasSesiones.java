@@ -0,0 +1,81 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasSesionWebSocket.PoliticaDesborde;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Envuelve cada sesión WebSocket (de /ws y /ws-native) en una
+ * ZapatillasSesionWebSocket con los límites configurados.
+ *
+ * WebSocketConfig lo registra como decorador del handler STOMP: al abrirse
+ * una conexión, el handler de Spring recibe ya la sesión envuelta y todo lo
+ * que envía pasa por su cola. Al cerrarse se quitan sus métricas.
+ *
+ * Cada zapatillas.ws.sesion.vigilancia-ms revisa las abiertas y cierra las
+ * que llevan más de tiempoEnvioMs atascadas en un envío.
+ */
+@Component
+public class ZapatillasSesiones {
+
+    private final MeterRegistry meterRegistry;
+    @Getter
+    private final int tiempoEnvioMs;
+    @Getter
+    private final int limiteBytes;
+    private final PoliticaDesborde politica;
+
+    private final Map<String, ZapatillasSesionWebSocket> abiertas = new ConcurrentHashMap<>();
+
+    public ZapatillasSesiones(MeterRegistry meterRegistry,
+                              @Value("${zapatillas.ws.sesion.tiempo-envio-ms:10000}") int tiempoEnvioMs,
+                              @Value("${zapatillas.ws.sesion.buffer-bytes:524288}") int limiteBytes,
+                              @Value("${zapatillas.ws.sesion.desborde:AGRUPAR}") PoliticaDesborde politica) {
+        this.meterRegistry = meterRegistry;
+        this.tiempoEnvioMs = tiempoEnvioMs;
+        this.limiteBytes = limiteBytes;
+        this.politica = politica;
+    }
+
+    @Scheduled(fixedDelayString = "${zapatillas.ws.sesion.vigilancia-ms:1000}")
+    public void vigilar() {
+        abiertas.values().forEach(ZapatillasSesionWebSocket::vigilarEnvio);
+    }
+
+    /**
+     * Decorador para WebSocketTransportRegistration; "escritor" es el executor
+     * en el que se vacía la cola de cada sesión.
+     */
+    public WebSocketHandlerDecoratorFactory decorador(Executor escritor) {
+        return handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession sesion) throws Exception {
+                ZapatillasSesionWebSocket limitada = new ZapatillasSesionWebSocket(
+                        sesion, escritor, tiempoEnvioMs, limiteBytes, politica, meterRegistry);
+                abiertas.put(sesion.getId(), limitada);
+                super.afterConnectionEstablished(limitada);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession sesion, CloseStatus estado) throws Exception {
+                ZapatillasSesionWebSocket limitada = abiertas.remove(sesion.getId());
+                if (limitada != null) {
+                    limitada.liberar();
+                }
+                super.afterConnectionClosed(sesion, estado);
+            }
+        };
+    }
+}
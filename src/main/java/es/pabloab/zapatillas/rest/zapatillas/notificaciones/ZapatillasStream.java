@@ -0,0 +1,301 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Conexiones abiertas de GET /api/v1/zapatillas/stream (Server-Sent Events).
+ *
+ * ¿POR QUÉ?
+ * =========
+ * Muchos consumidores (paneles, otros servicios) solo quieren enterarse de
+ * los cambios del catálogo. Para eso STOMP + SockJS es mucho: cliente
+ * propio, frames, suscripciones. SSE es una petición GET que no termina y
+ * que cualquier cliente HTTP (o EventSource en el navegador) sabe leer.
+ *
+ * - Se alimenta de las mismas notificaciones que /topic/zapatillas: el
+ *   dispatcher las entrega aquí ya numeradas (CanalNotificaciones).
+ * - Cada evento lleva "id: secuencia". Al reconectar, EventSource manda la
+ *   cabecera Last-Event-ID y se reenvía lo perdido desde ZapatillasHistorial
+ *   (o un RESYNC si ya no está), igual que lastSeq en STOMP.
+ * - Se filtra en el servidor por marca y tipo: al cliente solo le llega lo
+ *   que ha pedido.
+ * - Cada zapatillas.stream.latido-ms se envía un comentario (": latido")
+ *   para que proxies y balanceadores no cierren la conexión por inactiva.
+ *
+ * ¿Y LOS HILOS?
+ * =============
+ * SseEmitter usa el modo asíncrono del servlet: una conexión abierta no
+ * ocupa ningún hilo mientras no se le escribe, así que decenas de miles de
+ * conexiones inactivas solo cuestan memoria. Para escribir, cada conexión
+ * tiene su cola y un único escritor en un hilo virtual: publicar() solo
+ * encola y un cliente lento no frena al dispatcher ni a los demás. Si a un
+ * cliente se le acumulan más de zapatillas.stream.pendientes eventos se
+ * cierra su conexión; al reconectar con Last-Event-ID recupera lo perdido.
+ *
+ * Las conexiones se agrupan por filtro: cada notificación se comprueba una
+ * vez por filtro distinto, no una vez por conexión, y se serializa una vez
+ * aunque vaya a miles de conexiones.
+ *
+ * Métricas: zapatillas.stream.conexiones, zapatillas.stream.cortadas.
+ */
+@Slf4j
+@Component
+public class ZapatillasStream implements CanalNotificaciones {
+
+    /**
+     * Filtro de una conexión, guardado como los destinos STOMP de la marca y
+     * el tipo ("Nike" y "nike" son el mismo filtro); null es "cualquiera".
+     */
+    public record Filtro(String destinoMarca, String destinoTipo) {
+
+        public static Filtro de(String marca, String tipo) {
+            return new Filtro(
+                    marca == null || marca.isBlank() ? null : ZapatillasWebSocketController.destinoMarca(marca),
+                    tipo == null || tipo.isBlank() ? null : ZapatillasWebSocketController.destinoTipo(tipo));
+        }
+
+        public boolean acepta(List<String> destinos) {
+            return (destinoMarca == null || destinos.contains(destinoMarca))
+                    && (destinoTipo == null || destinos.contains(destinoTipo));
+        }
+    }
+
+    // secuencia 0: no es una notificación (latido) y nunca se salta
+    private record Evento(long secuencia, Set<DataWithMediaType> datos) {
+    }
+
+    private static final Evento LATIDO = new Evento(0, SseEmitter.event().comment("latido").build());
+
+    private final ZapatillasHistorial historial;
+    private final JsonMapper jsonMapper;
+    private final long timeoutMs;
+    private final int maxPendientes;
+    private final Counter cortadas;
+    private final ExecutorService escritores = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<Filtro, Set<Conexion>> porFiltro = new ConcurrentHashMap<>();
+    private final AtomicInteger abiertas = new AtomicInteger();
+
+    public ZapatillasStream(ZapatillasHistorial historial,
+                            JsonMapper jsonMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${zapatillas.stream.timeout-ms:1800000}") long timeoutMs,
+                            @Value("${zapatillas.stream.pendientes:1000}") int maxPendientes) {
+        this.historial = historial;
+        this.jsonMapper = jsonMapper;
+        this.timeoutMs = timeoutMs;
+        this.maxPendientes = Math.max(1, maxPendientes);
+        Gauge.builder("zapatillas.stream.conexiones", abiertas, AtomicInteger::get)
+                .description("Conexiones SSE abiertas en /api/v1/zapatillas/stream")
+                .register(meterRegistry);
+        this.cortadas = Counter.builder("zapatillas.stream.cortadas")
+                .description("Conexiones SSE cerradas por no leer a tiempo")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter abrir(Filtro filtro, String ultimoId) {
+        return abrir(new SseEmitter(timeoutMs), filtro, ultimoId);
+    }
+
+    /**
+     * Registra la conexión y, si trae Last-Event-ID, le reenvía lo perdido
+     * antes que nada de lo nuevo.
+     */
+    public SseEmitter abrir(SseEmitter emisor, Filtro filtro, String ultimoId) {
+        Conexion conexion = new Conexion(emisor, filtro);
+        emisor.onCompletion(() -> cerrada(conexion));
+        emisor.onTimeout(() -> cerrada(conexion));
+        emisor.onError(e -> cerrada(conexion));
+        // Primero se registra (lo nuevo se va encolando, sin enviarse) y luego se lee el
+        // historial: así no se pierde nada entre una cosa y otra
+        porFiltro.compute(filtro, (f, conexiones) -> {
+            Set<Conexion> resultado = conexiones != null ? conexiones : ConcurrentHashMap.newKeySet();
+            resultado.add(conexion);
+            return resultado;
+        });
+        abiertas.incrementAndGet();
+        try {
+            if (ultimoId != null) {
+                conexion.reenviadaHasta = reenviar(emisor, filtro, ultimoId);
+            }
+        } catch (IOException | IllegalStateException e) {
+            cerrar(conexion);
+            return emisor;
+        }
+        conexion.escribiendo.set(false);
+        programar(conexion);
+        return emisor;
+    }
+
+    private long reenviar(SseEmitter emisor, Filtro filtro, String ultimoId) throws IOException {
+        Optional<List<ZapatillaNotificacion>> perdidas;
+        try {
+            perdidas = historial.desde(Long.parseLong(ultimoId.trim()), filtro::acepta);
+        } catch (NumberFormatException e) {
+            perdidas = Optional.empty();
+        }
+        if (perdidas.isEmpty()) {
+            long actual = historial.ultima();
+            emisor.send(evento(ZapatillaNotificacion.builder()
+                    .tipo(ZapatillaNotificacion.TipoNotificacion.RESYNC)
+                    .mensaje(ZapatillaNotificacion.TipoNotificacion.RESYNC.getDescripcion())
+                    .data(actual)
+                    .timestamp(LocalDateTime.now())
+                    .secuencia(actual)
+                    .build()).datos());
+            return actual;
+        }
+        long hasta = 0;
+        for (ZapatillaNotificacion notificacion : perdidas.get()) {
+            emisor.send(evento(notificacion).datos());
+            hasta = notificacion.getSecuencia();
+        }
+        return hasta;
+    }
+
+    @Override
+    public void publicar(List<Publicada> ventana) {
+        if (abiertas.get() == 0) {
+            return;
+        }
+        for (Publicada publicada : ventana) {
+            Evento evento = null;
+            for (Map.Entry<Filtro, Set<Conexion>> filtro : porFiltro.entrySet()) {
+                if (!filtro.getKey().acepta(publicada.destinos())) {
+                    continue;
+                }
+                if (evento == null) {
+                    evento = evento(publicada.notificacion());
+                }
+                for (Conexion conexion : filtro.getValue()) {
+                    encolar(conexion, evento);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${zapatillas.stream.latido-ms:15000}")
+    public void latido() {
+        porFiltro.values().forEach(conexiones -> conexiones.forEach(conexion -> encolar(conexion, LATIDO)));
+    }
+
+    public int abiertas() {
+        return abiertas.get();
+    }
+
+    private Evento evento(ZapatillaNotificacion notificacion) {
+        return new Evento(notificacion.getSecuencia(), SseEmitter.event()
+                .id(String.valueOf(notificacion.getSecuencia()))
+                .data(jsonMapper.writeValueAsString(notificacion))
+                .build());
+    }
+
+    private void encolar(Conexion conexion, Evento evento) {
+        if (conexion.cerrada) {
+            return;
+        }
+        if (conexion.pendientes.incrementAndGet() > maxPendientes) {
+            cortadas.increment();
+            log.debug("Conexión SSE {} sin leer {} eventos: se cierra", conexion.filtro, maxPendientes);
+            cerrar(conexion);
+            return;
+        }
+        conexion.cola.add(evento);
+        programar(conexion);
+    }
+
+    private void programar(Conexion conexion) {
+        if (!conexion.cola.isEmpty() && conexion.escribiendo.compareAndSet(false, true)) {
+            escritores.execute(() -> escribir(conexion));
+        }
+    }
+
+    private void escribir(Conexion conexion) {
+        Evento evento;
+        while ((evento = conexion.cola.poll()) != null) {
+            conexion.pendientes.decrementAndGet();
+            if (evento.secuencia() != 0 && evento.secuencia() <= conexion.reenviadaHasta) {
+                continue;
+            }
+            try {
+                conexion.emisor.send(evento.datos());
+            } catch (IOException | IllegalStateException e) {
+                // Cliente desconectado: onError/onCompletion la quitan; por si no llegan
+                cerrar(conexion);
+                return;
+            }
+        }
+        conexion.escribiendo.set(false);
+        // Lo que se encoló mientras se soltaba el turno
+        programar(conexion);
+    }
+
+    private void cerrar(Conexion conexion) {
+        if (!conexion.cerrada) {
+            cerrada(conexion);
+            conexion.emisor.complete();
+        }
+    }
+
+    private void cerrada(Conexion conexion) {
+        if (conexion.cerrada) {
+            return;
+        }
+        conexion.cerrada = true;
+        // Sin conexiones, el filtro sale del mapa: no se acumulan los que pidió alguien una vez
+        porFiltro.computeIfPresent(conexion.filtro, (f, conexiones) -> {
+            conexiones.remove(conexion);
+            return conexiones.isEmpty() ? null : conexiones;
+        });
+        abiertas.decrementAndGet();
+        conexion.cola.clear();
+    }
+
+    @PreDestroy
+    public void detener() {
+        porFiltro.values().forEach(conexiones -> conexiones.forEach(this::cerrar));
+        escritores.shutdown();
+    }
+
+    private static final class Conexion {
+        private final SseEmitter emisor;
+        private final Filtro filtro;
+        private final Queue<Evento> cola = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pendientes = new AtomicInteger();
+        // true hasta terminar el reenvío: lo nuevo espera en la cola
+        private final AtomicBoolean escribiendo = new AtomicBoolean(true);
+        private volatile long reenviadaHasta;
+        private volatile boolean cerrada;
+
+        private Conexion(SseEmitter emisor, Filtro filtro) {
+            this.emisor = emisor;
+            this.filtro = filtro;
+        }
+    }
+}
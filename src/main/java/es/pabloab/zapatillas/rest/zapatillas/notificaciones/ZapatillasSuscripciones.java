@@ -0,0 +1,161 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Índice de suscripciones STOMP a /topic/zapatillas y sus subdestinos.
+ *
+ * ¿POR QUÉ?
+ * =========
+ * Con un único /topic/zapatillas cada cliente recibe (y parsea) todos los
+ * cambios del catálogo aunque solo muestre una marca. Con destinos por
+ * marca, tipo y zapatilla, el dispatcher tiene que decidir a cuáles enviar
+ * cada trama. Preguntárselo al broker sería recorrer sus suscripciones en
+ * cada envío; este índice se mantiene con los SUBSCRIBE, UNSUBSCRIBE y
+ * desconexiones, en cuanto los procesa el broker
+ * (ZapatillasSuscripcionesInterceptor), y la consulta es un get en un mapa. Un destino
+ * sin nadie suscrito no se serializa ni llega al broker.
+ *
+ * Un cliente puede suscribirse con comodines ("/topic/zapatillas/**"):
+ * mientras haya alguno se envía a todos los destinos, como antes (solo en
+ * el formato que haya pedido, ver FormatoTrama).
+ *
+ * Métrica zapatillas.ws.suscriptores{destino, formato}: suscriptores por
+ * familia de destino (/topic/zapatillas/marca/{marca}, .../{id}...), no
+ * por destino: los destinos los elige el cliente y cada uno sería una serie
+ * nueva en el registro. Las familias son unas pocas y fijas.
+ */
+@Component
+@RequiredArgsConstructor
+public class ZapatillasSuscripciones {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicInteger> porDestino = new ConcurrentHashMap<>();
+    // "familia formato" → suscriptores; el gauge se registra la primera vez y se queda
+    private final Map<String, AtomicInteger> porFamilia = new ConcurrentHashMap<>();
+    // sesión → (id de suscripción → destino), para UNSUBSCRIBE y desconexión
+    private final Map<String, Map<String, String>> porSesion = new ConcurrentHashMap<>();
+    private final Map<FormatoTrama, AtomicInteger> comodines = new EnumMap<>(Map.of(
+            FormatoTrama.JSON, new AtomicInteger(),
+            FormatoTrama.CBOR, new AtomicInteger()));
+
+    public void suscrita(Message<?> subscribe) {
+        StompHeaderAccessor cabeceras = StompHeaderAccessor.wrap(subscribe);
+        String destino = cabeceras.getDestination();
+        if (destino == null || !FormatoTrama.destinoPublico(destino).startsWith(ZapatillasWebSocketController.TOPIC)
+                || cabeceras.getSessionId() == null || cabeceras.getSubscriptionId() == null) {
+            return;
+        }
+        // El mismo destino que deja WebSocketConfig en el SUBSCRIBE según el formato pedido
+        String suscrito = FormatoTrama.destinoSuscripcion(destino, cabeceras.getFirstNativeHeader("content-type"));
+        porSesion.computeIfAbsent(cabeceras.getSessionId(), s -> new ConcurrentHashMap<>())
+                .put(cabeceras.getSubscriptionId(), suscrito);
+        alta(suscrito);
+    }
+
+    public void cancelada(Message<?> unsubscribe) {
+        StompHeaderAccessor cabeceras = StompHeaderAccessor.wrap(unsubscribe);
+        Map<String, String> suscripciones = cabeceras.getSessionId() != null
+                ? porSesion.get(cabeceras.getSessionId()) : null;
+        if (suscripciones != null && cabeceras.getSubscriptionId() != null) {
+            String destino = suscripciones.remove(cabeceras.getSubscriptionId());
+            if (destino != null) {
+                baja(destino);
+            }
+        }
+    }
+
+    public void desconectada(String sessionId) {
+        Map<String, String> suscripciones = sessionId != null ? porSesion.remove(sessionId) : null;
+        if (suscripciones != null) {
+            suscripciones.values().forEach(this::baja);
+        }
+    }
+
+    /**
+     * ¿Merece la pena enviar a este destino? (el destino interno de su formato)
+     */
+    public boolean tieneSuscriptores(String destino) {
+        return comodines.get(FormatoTrama.deDestino(destino)).get() > 0 || suscriptores(destino) > 0;
+    }
+
+    public int suscriptores(String destino) {
+        AtomicInteger actual = porDestino.get(destino);
+        return actual != null ? actual.get() : 0;
+    }
+
+    private void alta(String destino) {
+        if (esComodin(destino)) {
+            comodines.get(FormatoTrama.deDestino(destino)).incrementAndGet();
+        }
+        // compute: el alta y la baja del mismo destino no se pisan al crear/quitar la entrada
+        porDestino.compute(destino, (d, actual) -> {
+            AtomicInteger resultado = actual != null ? actual : new AtomicInteger();
+            resultado.incrementAndGet();
+            return resultado;
+        });
+        familia(destino).incrementAndGet();
+    }
+
+    private void baja(String destino) {
+        if (esComodin(destino)) {
+            comodines.get(FormatoTrama.deDestino(destino)).decrementAndGet();
+        }
+        porDestino.computeIfPresent(destino, (d, actual) -> actual.decrementAndGet() > 0 ? actual : null);
+        familia(destino).decrementAndGet();
+    }
+
+    private AtomicInteger familia(String destino) {
+        FormatoTrama formato = FormatoTrama.deDestino(destino);
+        String familia = nombreFamilia(FormatoTrama.destinoPublico(destino));
+        return porFamilia.computeIfAbsent(familia + " " + formato, clave -> {
+            AtomicInteger suscriptores = new AtomicInteger();
+            Gauge.builder("zapatillas.ws.suscriptores", suscriptores, AtomicInteger::get)
+                    .description("Suscripciones STOMP activas por familia de destino")
+                    .tag("destino", familia)
+                    .tag("formato", formato.name().toLowerCase())
+                    .register(meterRegistry);
+            return suscriptores;
+        });
+    }
+
+    /**
+     * A qué familia pertenece un destino público (el valor de la etiqueta "destino").
+     */
+    private static String nombreFamilia(String destino) {
+        String topic = ZapatillasWebSocketController.TOPIC;
+        if (esComodin(destino)) {
+            return topic + "/**";
+        }
+        if (destino.equals(topic)) {
+            return topic;
+        }
+        String resto = destino.substring(topic.length());
+        if (resto.startsWith("/marca/")) {
+            return topic + "/marca/{marca}";
+        }
+        if (resto.startsWith("/tipo/")) {
+            return topic + "/tipo/{tipo}";
+        }
+        if (resto.matches("/\\d+")) {
+            return topic + "/{id}";
+        }
+        return topic + "/otro";
+    }
+
+    private static boolean esComodin(String destino) {
+        return destino.indexOf('*') >= 0 || destino.indexOf('{') >= 0;
+    }
+}
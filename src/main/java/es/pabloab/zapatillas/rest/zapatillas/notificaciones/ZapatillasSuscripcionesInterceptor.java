@@ -0,0 +1,58 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actualiza ZapatillasSuscripciones y reanuda las suscripciones con lastSeq
+ * JUSTO DESPUÉS de que el broker procese el SUBSCRIBE (o UNSUBSCRIBE, o
+ * DISCONNECT) en el clientInboundChannel.
+ *
+ * ¿POR QUÉ NO CON SessionSubscribeEvent?
+ * ======================================
+ * Spring publica el evento en el hilo de la conexión, mientras el SUBSCRIBE
+ * va al broker por el executor del canal de entrada: no hay orden entre los
+ * dos. Si el reenvío de lo perdido se calcula antes de que el broker
+ * registre la suscripción, una trama numerada después del cálculo pero
+ * enviada antes del registro no llega ni por un lado ni por el otro. Aquí:
+ * 1. El broker ya ha registrado la suscripción: toda trama que se envíe a
+ *    partir de ahora le llega.
+ * 2. Se da de alta en el índice: el dispatcher ya no se salta su destino.
+ * 3. Se reenvía del historial lo posterior a lastSeq: incluye todo lo que
+ *    se numeró antes de este punto.
+ * Lo que se numera entre 1 y 3 puede llegar dos veces (en directo y en el
+ * reenvío); el cliente descarta por secuencia, como con el SSE.
+ *
+ * Bajas y desconexiones van por el mismo camino para que, con
+ * preserveReceiveOrder, se apliquen en el mismo orden que las altas.
+ */
+@Component
+@RequiredArgsConstructor
+public class ZapatillasSuscripcionesInterceptor implements ExecutorChannelInterceptor {
+
+    private final ZapatillasSuscripciones suscripciones;
+    private final ZapatillasReanudacion reanudacion;
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null || !(handler instanceof AbstractBrokerMessageHandler)) {
+            return;
+        }
+        switch (SimpMessageHeaderAccessor.getMessageType(message.getHeaders())) {
+            case SUBSCRIBE -> {
+                suscripciones.suscrita(message);
+                reanudacion.reanudar(message);
+            }
+            case UNSUBSCRIBE -> suscripciones.cancelada(message);
+            case DISCONNECT -> suscripciones.desconectada(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+            case null, default -> {
+            }
+        }
+    }
+}
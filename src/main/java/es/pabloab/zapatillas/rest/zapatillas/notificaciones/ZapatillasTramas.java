@@ -0,0 +1,70 @@
+package es.pabloab.zapatillas.rest.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Convierte las notificaciones a bytes UNA vez y arma con ellos las tramas.
+ *
+ * ¿POR QUÉ?
+ * =========
+ * convertAndSend pasa el objeto por el conversor de Jackson en cada envío.
+ * Con destinos por marca, tipo e id la misma notificación (que lleva el
+ * ZapatillaResponseDto entero) va en hasta cuatro tramas por ventana, y se
+ * serializaba cuatro veces. Aquí cada notificación se serializa una vez
+ * por formato y ventana; una trama es solo concatenar esos bytes dentro
+ * de un array:
+ * - JSON: '[' a ',' b ']'.
+ * - CBOR: array de longitud indefinida, 0x9F a b 0xFF (RFC 8949). Los
+ *   mismos campos que en JSON, salvo el uuid, que va como 16 bytes.
+ * El byte[] resultante es el payload que el broker reparte tal cual a
+ * todos los suscriptores del destino.
+ */
+@Component
+@RequiredArgsConstructor
+public class ZapatillasTramas {
+
+    private static final int ARRAY_CBOR = 0x9F;
+    private static final int FIN_CBOR = 0xFF;
+
+    private final JsonMapper jsonMapper;
+    private final CBORMapper cborMapper = CBORMapper.builder().build();
+
+    /**
+     * Bytes ya calculados de una ventana. Solo la usa un hilo.
+     */
+    public Ventana ventana() {
+        return new Ventana();
+    }
+
+    public final class Ventana {
+
+        // Identidad: la misma instancia es la misma notificación, sin hashCode del DTO
+        private final Map<FormatoTrama, Map<ZapatillaNotificacion, byte[]>> codificadas = new EnumMap<>(FormatoTrama.class);
+
+        public byte[] trama(List<ZapatillaNotificacion> notificaciones, FormatoTrama formato) {
+            Map<ZapatillaNotificacion, byte[]> cache = codificadas.computeIfAbsent(formato, f -> new IdentityHashMap<>());
+            ObjectMapper mapper = formato == FormatoTrama.CBOR ? cborMapper : jsonMapper;
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(256 * notificaciones.size());
+            salida.write(formato == FormatoTrama.CBOR ? ARRAY_CBOR : '[');
+            for (int i = 0; i < notificaciones.size(); i++) {
+                if (i > 0 && formato == FormatoTrama.JSON) {
+                    salida.write(',');
+                }
+                salida.writeBytes(cache.computeIfAbsent(notificaciones.get(i), mapper::writeValueAsBytes));
+            }
+            salida.write(formato == FormatoTrama.CBOR ? FIN_CBOR : ']');
+            return salida.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package es.pabloab.zapatillas.rest.zapatillas.repositories;
+
+import es.pabloab.zapatillas.rest.zapatillas.models.ReservaStock;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReservasStockRepository extends JpaRepository<ReservaStock, UUID> {
+
+    List<ReservaStock> findByExpiraEnBeforeOrderByExpiraEn(LocalDateTime ahora, Limit limit);
+
+    /**
+     * Unidades apartadas en las reservas abiertas de un usuario.
+     */
+    @Query("SELECT COALESCE(SUM(r.cantidad), 0) FROM ReservaStock r WHERE r.usuario = :usuario")
+    long sumarCantidadPorUsuario(@Param("usuario") String usuario);
+
+    /**
+     * Borra la reserva y devuelve 1 solo a quien la borra de verdad: si el
+     * barrido de caducadas y una confirmación llegan a la vez, solo uno gana.
+     */
+    @Modifying
+    @Query("DELETE FROM ReservaStock r WHERE r.id = :id")
+    int borrar(@Param("id") UUID id);
+}
@@ -2,16 +2,26 @@ package es.pabloab.zapatillas.rest.zapatillas.repositories;
 
 
 import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface ZapatillasRepository extends JpaRepository<Zapatilla, Long> {
@@ -25,6 +35,73 @@ public interface ZapatillasRepository extends JpaRepository<Zapatilla, Long> {
             Pageable pageable
     );
 
+    // -- Proyecciones para los listados --
+    // Con type = ZapatillaResponseDto.class Spring Data genera
+    // SELECT new ZapatillaResponseDto(z.id, z.marca, ...) en lugar de cargar
+    // entidades gestionadas: sin snapshot para el dirty checking, sin pasar
+    // por el persistence context y sin la copia posterior en el mapper.
+    <T> Page<T> findAllBy(Pageable pageable, Class<T> type);
+
+    <T> Page<T> findAllByMarcaContainingIgnoreCase(String marca, Pageable pageable, Class<T> type);
+
+    <T> Page<T> findAllByTipoContainingIgnoreCase(String tipo, Pageable pageable, Class<T> type);
+
+    <T> Page<T> findAllByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(
+            String marca, String tipo, Pageable pageable, Class<T> type);
+
+    <T> List<T> findAllBy(Class<T> type);
+
+    <T> List<T> findAllByMarcaContainingIgnoreCase(String marca, Class<T> type);
+
+    <T> List<T> findAllByTipoContainingIgnoreCase(String tipo, Class<T> type);
+
+    <T> List<T> findByIdIn(Collection<Long> ids, Class<T> type);
+
+    // -- Exportación completa --
+    // Cursor de solo avance: el driver trae las filas por bloques de fetchSize
+    // en lugar de cargar la tabla entera en una List. Hay que consumirlo
+    // dentro de una transacción y cerrarlo (try-with-resources).
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT z FROM Zapatilla z ORDER BY z.id")
+    Stream<Zapatilla> streamAll();
+
+    // -- Paginación por cursor (keyset / seek) --
+    // Spring Data genera WHERE (campoOrden, id) > (:valor, :id) a partir del
+    // ScrollPosition, así que el coste no depende de lo lejos que esté la página.
+    Window<Zapatilla> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    Window<Zapatilla> findAllByMarcaContainingIgnoreCase(
+            String marca, ScrollPosition position, Sort sort, Limit limit);
+
+    Window<Zapatilla> findAllByTipoContainingIgnoreCase(
+            String tipo, ScrollPosition position, Sort sort, Limit limit);
+
+    Window<Zapatilla> findAllByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(
+            String marca, String tipo, ScrollPosition position, Sort sort, Limit limit);
+
+
+    // -- Listados sin COUNT --
+    // Un Slice pide size+1 filas para saber si hay página siguiente y no lanza
+    // el SELECT COUNT(*) que acompaña a cada Page (con LIKE '%x%' suele costar
+    // más que la propia consulta de datos).
+    // (con la misma proyección a DTO que los listados paginados)
+    <T> Slice<T> findSliceBy(Pageable pageable, Class<T> type);
+
+    <T> Slice<T> findSliceByMarcaContainingIgnoreCase(String marca, Pageable pageable, Class<T> type);
+
+    <T> Slice<T> findSliceByTipoContainingIgnoreCase(String tipo, Pageable pageable, Class<T> type);
+
+    <T> Slice<T> findSliceByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(
+            String marca, String tipo, Pageable pageable, Class<T> type);
+
+    long countByMarcaContainingIgnoreCase(String marca);
+
+    long countByTipoContainingIgnoreCase(String tipo);
+
+    long countByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(String marca, String tipo);
 
     Optional<Zapatilla> findByUuid(UUID uuid);
 
@@ -46,4 +123,39 @@ public interface ZapatillasRepository extends JpaRepository<Zapatilla, Long> {
 
     Optional<Zapatilla> findByCodigoProducto(String codigoProducto);
 
+    /**
+     * Solo el stock, sin cargar la entidad: lo usa ZapatillasStockLedger para
+     * partir del valor guardado cuando empieza a llevar una zapatilla.
+     */
+    @Query("SELECT z.stock FROM Zapatilla z WHERE z.id = :id")
+    Optional<Integer> findStockById(@Param("id") Long id);
+
+    /**
+     * Lo mínimo para decidir si una fila del feed del proveedor cambia algo.
+     */
+    interface EstadoContenido {
+        Long getId();
+
+        UUID getUuid();
+
+        String getCodigoProducto();
+
+        Long getHashContenido();
+    }
+
+    // Sincronización: estado de todas las zapatillas de un lote con una sola consulta IN
+    @Query("SELECT z.id AS id, z.uuid AS uuid, z.codigoProducto AS codigoProducto, z.hashContenido AS hashContenido "
+            + "FROM Zapatilla z WHERE z.codigoProducto IN :codigos")
+    List<EstadoContenido> findEstadoContenidoByCodigoProductoIn(@Param("codigos") Collection<String> codigos);
+
+    // Sincronización: recorrido de todo el catálogo para encontrar las que ya no están en el feed
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT z.id AS id, z.uuid AS uuid, z.codigoProducto AS codigoProducto, z.hashContenido AS hashContenido "
+            + "FROM Zapatilla z ORDER BY z.id")
+    Stream<EstadoContenido> streamEstadoContenido();
+
+    // Importación: qué códigos de un lote existen ya (una sola consulta IN por lote)
+    @Query("SELECT z.codigoProducto FROM Zapatilla z WHERE z.codigoProducto IN :codigos")
+    List<String> findCodigosProductoExistentes(@Param("codigos") Collection<String> codigos);
+
 }
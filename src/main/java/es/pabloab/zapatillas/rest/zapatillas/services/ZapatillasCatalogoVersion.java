@@ -0,0 +1,32 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión del catálogo: un número que cambia con cada escritura.
+ *
+ * Sirve de ETag para los listados: si la versión no ha cambiado desde que el
+ * cliente pidió la página, la página es la misma y respondemos 304 sin
+ * consultar la base de datos ni serializar JSON.
+ *
+ * Empieza en la hora de arranque (no en 0) para que un reinicio, que con H2
+ * en memoria recrea los datos, no vuelva a emitir ETags que ya tienen los clientes.
+ */
+@Component
+public class ZapatillasCatalogoVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long actual() {
+        return version.get();
+    }
+
+    /**
+     * Llamado por ZapatillasServiceImpl tras cada alta, modificación o borrado.
+     */
+    public void incrementar() {
+        version.incrementAndGet();
+    }
+}
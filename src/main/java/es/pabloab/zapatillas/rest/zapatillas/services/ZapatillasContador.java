@@ -0,0 +1,119 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contador aproximado de zapatillas para los listados sin COUNT (Slice).
+ *
+ * ¿CÓMO FUNCIONA?
+ * ================
+ * - La primera vez que se pide un filtro (marca/tipo) se cuenta de verdad.
+ * - Después se sirve de memoria y una tarea @Scheduled lo recalcula cada
+ *   zapatillas.contador.refresco-ms milisegundos.
+ * - El total sin filtros se ajusta además en cada alta/baja del servicio,
+ *   así que entre refrescos apenas se desvía.
+ *
+ * Los filtros se guardan en una caché Caffeine de zapatillas.contador.max-filtros
+ * entradas: un cliente no puede llenar la memoria enviando filtros distintos
+ * en cada petición, y los filtros nuevos expulsan a los que ya nadie pide
+ * (W-TinyLFU) en vez de quedarse fuera para siempre. Un filtro que no se pide
+ * en zapatillas.contador.expira desaparece y deja de recalcularse.
+ */
+@Slf4j
+@Component
+public class ZapatillasContador {
+
+    private static final Filtro SIN_FILTRO = new Filtro(null, null);
+
+    private final ZapatillasRepository repository;
+    private final Cache<Filtro, AtomicLong> conteos;
+
+    public ZapatillasContador(ZapatillasRepository repository,
+                              @Value("${zapatillas.contador.max-filtros:256}") long maxFiltros,
+                              @Value("${zapatillas.contador.expira:10m}") Duration expira) {
+        this.repository = repository;
+        this.conteos = Caffeine.newBuilder()
+                .maximumSize(maxFiltros)
+                .expireAfterAccess(expira)
+                // Expulsión en el hilo que escribe: el límite se cumple al momento
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Devuelve el número aproximado de zapatillas que cumplen el filtro.
+     */
+    public long aproximado(String marca, String tipo) {
+        Filtro filtro = Filtro.of(marca, tipo);
+        AtomicLong conteo = conteos.getIfPresent(filtro);
+        if (conteo != null) {
+            return conteo.get();
+        }
+        // Se cuenta fuera de la caché: un COUNT lento no bloquea a los demás filtros
+        long total = contar(filtro);
+        conteos.asMap().putIfAbsent(filtro, new AtomicLong(total));
+        return total;
+    }
+
+    public void registrarAlta() {
+        AtomicLong total = conteos.getIfPresent(SIN_FILTRO);
+        if (total != null) {
+            total.incrementAndGet();
+        }
+    }
+
+    public void registrarAltas(long altas) {
+        AtomicLong total = conteos.getIfPresent(SIN_FILTRO);
+        if (total != null) {
+            total.addAndGet(altas);
+        }
+    }
+
+    public void registrarBaja() {
+        AtomicLong total = conteos.getIfPresent(SIN_FILTRO);
+        if (total != null) {
+            total.decrementAndGet();
+        }
+    }
+
+    public void registrarBajas(long bajas) {
+        registrarAltas(-bajas);
+    }
+
+    @Scheduled(fixedDelayString = "${zapatillas.contador.refresco-ms:30000}")
+    public void refrescar() {
+        // asMap() no cuenta como acceso: refrescar no mantiene vivos los filtros que nadie pide
+        conteos.asMap().forEach((filtro, conteo) -> conteo.set(contar(filtro)));
+        log.debug("Contador de zapatillas refrescado ({} filtros)", conteos.estimatedSize());
+    }
+
+    private long contar(Filtro filtro) {
+        if (filtro.marca() != null && filtro.tipo() != null) {
+            return repository.countByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(filtro.marca(), filtro.tipo());
+        } else if (filtro.marca() != null) {
+            return repository.countByMarcaContainingIgnoreCase(filtro.marca());
+        } else if (filtro.tipo() != null) {
+            return repository.countByTipoContainingIgnoreCase(filtro.tipo());
+        }
+        return repository.count();
+    }
+
+    // Los filtros son "ignore case", así que normalizamos la clave
+    private record Filtro(String marca, String tipo) {
+        static Filtro of(String marca, String tipo) {
+            return new Filtro(
+                    marca != null ? marca.toLowerCase(Locale.ROOT) : null,
+                    tipo != null ? tipo.toLowerCase(Locale.ROOT) : null);
+        }
+    }
+}
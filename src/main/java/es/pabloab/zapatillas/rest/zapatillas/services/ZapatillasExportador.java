@@ -0,0 +1,171 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Exportación del catálogo completo en NDJSON o CSV con memoria constante.
+ *
+ * ¿CÓMO SE MANTIENE PLANA LA MEMORIA?
+ * ====================================
+ * - repository.streamAll() es un cursor de solo avance con fetchSize: las
+ *   filas llegan del driver por bloques, nunca como una List completa.
+ * - Cada entidad se separa del persistence context (detach) en cuanto se
+ *   escribe, así el EntityManager no acumula millones de entidades.
+ * - Cada fila se escribe directamente en la respuesta HTTP (Jackson
+ *   JsonGenerator / Writer) y se hace flush cada FLUSH_CADA filas.
+ *
+ * Nota: en PostgreSQL el fetchSize solo funciona dentro de una transacción
+ * (por eso @Transactional); en MySQL además hace falta useCursorFetch=true.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ZapatillasExportador {
+
+    private static final int FLUSH_CADA = 500;
+    private static final String CABECERA_CSV =
+            "id,uuid,marca,modelo,codigoProducto,talla,color,tipo,precio,stock,createdAt,updatedAt";
+
+    public enum Formato {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Formato(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final ZapatillasRepository repository;
+    private final ZapatillaMapper mapper;
+    private final EntityManager entityManager;
+    private final JsonMapper jsonMapper;
+
+    /**
+     * Escribe todas las zapatillas, ordenadas por id, en la salida.
+     *
+     * @return número de filas exportadas
+     */
+    @Transactional(readOnly = true)
+    public long exportar(Formato formato, OutputStream salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        long filas;
+        try (Stream<Zapatilla> zapatillas = repository.streamAll()) {
+            Iterator<ZapatillaResponseDto> dtos = zapatillas.map(this::aDtoYSeparar).iterator();
+            filas = switch (formato) {
+                case NDJSON -> escribirNdjson(dtos, salida);
+                case CSV -> escribirCsv(dtos, salida);
+            };
+        }
+        log.info("Exportadas {} zapatillas en {} en {} ms", filas, formato, System.currentTimeMillis() - inicio);
+        return filas;
+    }
+
+    private ZapatillaResponseDto aDtoYSeparar(Zapatilla zapatilla) {
+        ZapatillaResponseDto dto = mapper.toResponseDto(zapatilla);
+        entityManager.detach(zapatilla);
+        return dto;
+    }
+
+    /**
+     * Un objeto JSON por línea. El generador escribe cada DTO en el stream sin
+     * construir ningún árbol ni String intermedio.
+     *
+     * Sin FLUSH_AFTER_WRITE_VALUE: por defecto Jackson hace flush tras cada
+     * writeValue, es decir, un write al socket por fila. Así se vacía solo
+     * cada FLUSH_CADA filas (y al cerrar).
+     */
+    private long escribirNdjson(Iterator<ZapatillaResponseDto> dtos, OutputStream salida) {
+        ObjectWriter escritor = jsonMapper.writerFor(ZapatillaResponseDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long filas = 0;
+        try (JsonGenerator generator = escritor.createGenerator(salida)) {
+            while (dtos.hasNext()) {
+                escritor.writeValue(generator, dtos.next());
+                generator.writeRaw('\n');
+                if (++filas % FLUSH_CADA == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        return filas;
+    }
+
+    private long escribirCsv(Iterator<ZapatillaResponseDto> dtos, OutputStream salida) throws IOException {
+        long filas = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8));
+        writer.write(CABECERA_CSV);
+        writer.write('\n');
+        while (dtos.hasNext()) {
+            ZapatillaResponseDto z = dtos.next();
+            writer.write(String.valueOf(z.getId()));
+            campo(writer, z.getUuid());
+            campo(writer, z.getMarca());
+            campo(writer, z.getModelo());
+            campo(writer, z.getCodigoProducto());
+            campo(writer, z.getTalla());
+            campo(writer, z.getColor());
+            campo(writer, z.getTipo());
+            campo(writer, z.getPrecio());
+            campo(writer, z.getStock());
+            campo(writer, z.getCreatedAt());
+            campo(writer, z.getUpdatedAt());
+            writer.write('\n');
+            if (++filas % FLUSH_CADA == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return filas;
+    }
+
+    /**
+     * Escribe ",valor" escapando según RFC 4180: entre comillas si contiene
+     * coma, comillas o salto de línea, y las comillas internas duplicadas.
+     */
+    private static void campo(Writer writer, Object valor) throws IOException {
+        writer.write(',');
+        String texto = Objects.toString(valor, "");
+        if (texto.indexOf(',') >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0 || texto.indexOf('\r') >= 0) {
+            writer.write('"');
+            writer.write(texto.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(texto);
+        }
+    }
+}
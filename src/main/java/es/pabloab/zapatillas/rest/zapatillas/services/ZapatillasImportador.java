@@ -0,0 +1,218 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaImportacionDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaImportacionDto.ErrorFila;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasIndices;
+import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasNotificador;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador.Formato;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasLectorFilas.Fila;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Importación masiva de zapatillas desde NDJSON o CSV.
+ *
+ * ¿POR QUÉ NO UN POST POR ZAPATILLA?
+ * ===================================
+ * Cada POST es un viaje HTTP, una transacción, un INSERT y una notificación
+ * WebSocket. Aquí el fichero se lee en streaming y las filas válidas se
+ * guardan en lotes de zapatillas.importacion.lote filas:
+ * - una transacción por lote,
+ * - una consulta IN por lote para detectar códigos que ya existen,
+ * - los INSERT del lote en batches JDBC (ids por secuencia pooled, ver Zapatilla),
+ * - flush + clear al terminar el lote, así la memoria no crece con el fichero.
+ * Al final se envía UNA notificación IMPORTED con el resumen.
+ *
+ * ERRORES POR FILA
+ * ================
+ * Las filas se leen y validan con ZapatillasLectorFilas (mismas reglas que
+ * el POST). Las filas inválidas, los códigos repetidos en el fichero y los
+ * que ya existen en la BD se rechazan con su número de línea; el resto del
+ * fichero se importa igualmente.
+ */
+@Slf4j
+@Component
+public class ZapatillasImportador {
+
+    private final ZapatillasRepository repository;
+    private final ZapatillaMapper mapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ZapatillasLectorFilas lector;
+    private final ZapatillasIndices indices;
+    private final ZapatillasContador contador;
+    private final ZapatillasCatalogoVersion catalogoVersion;
+    private final ZapatillasNotificador notificador;
+    private final int tamanoLote;
+    private final int maxErrores;
+
+    public ZapatillasImportador(
+            ZapatillasRepository repository,
+            ZapatillaMapper mapper,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            ZapatillasLectorFilas lector,
+            ZapatillasIndices indices,
+            ZapatillasContador contador,
+            ZapatillasCatalogoVersion catalogoVersion,
+            ZapatillasNotificador notificador,
+            @Value("${zapatillas.importacion.lote:1000}") int tamanoLote,
+            @Value("${zapatillas.importacion.max-errores:1000}") int maxErrores) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lector = lector;
+        this.indices = indices;
+        this.contador = contador;
+        this.catalogoVersion = catalogoVersion;
+        this.notificador = notificador;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.maxErrores = Math.max(0, maxErrores);
+    }
+
+    /**
+     * Lee todo el fichero, guarda las filas válidas y devuelve el resumen.
+     */
+    public ZapatillaImportacionDto importar(Formato formato, InputStream entrada) throws IOException {
+        long inicio = System.currentTimeMillis();
+        Importacion importacion = new Importacion();
+
+        lector.leer(formato, entrada, fila -> procesar(fila, importacion));
+        guardarLote(importacion);
+
+        ZapatillaImportacionDto resumen = ZapatillaImportacionDto.builder()
+                .leidas(importacion.leidas)
+                .importadas(importacion.importadas)
+                .rechazadas(importacion.rechazadas)
+                .milisegundos(System.currentTimeMillis() - inicio)
+                .errores(importacion.errores)
+                .build();
+        log.info("Importación {}: {} leídas, {} importadas, {} rechazadas en {} ms", formato,
+                resumen.getLeidas(), resumen.getImportadas(), resumen.getRechazadas(), resumen.getMilisegundos());
+
+        // Una sola notificación para todo el fichero (sin el detalle de errores)
+        notificador.enviar(ZapatillaNotificacion.crear(
+                ZapatillaNotificacion.TipoNotificacion.IMPORTED,
+                null,
+                "Importadas " + resumen.getImportadas() + " zapatillas (" + resumen.getRechazadas() + " rechazadas)",
+                ZapatillaImportacionDto.builder()
+                        .leidas(resumen.getLeidas())
+                        .importadas(resumen.getImportadas())
+                        .rechazadas(resumen.getRechazadas())
+                        .milisegundos(resumen.getMilisegundos())
+                        .build()));
+        return resumen;
+    }
+
+    /**
+     * Encola una fila válida (o la rechaza); si el lote se llena, lo guarda.
+     */
+    private void procesar(Fila fila, Importacion importacion) {
+        importacion.leidas++;
+        if (!fila.isValida()) {
+            importacion.rechazar(fila.linea(), fila.codigoProducto(), fila.errores());
+            return;
+        }
+        importacion.lote.add(fila);
+        if (importacion.lote.size() >= tamanoLote) {
+            guardarLote(importacion);
+        }
+    }
+
+    /**
+     * Guarda el lote pendiente en una transacción y actualiza índices,
+     * contador y versión del catálogo cuando ya está confirmado.
+     */
+    private void guardarLote(Importacion importacion) {
+        if (importacion.lote.isEmpty()) {
+            return;
+        }
+        List<Fila> lote = importacion.lote;
+        importacion.lote = new ArrayList<>(tamanoLote);
+
+        Guardado guardado;
+        try {
+            guardado = transactionTemplate.execute(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(Math.min(tamanoLote, lote.size()));
+                Set<String> existentes = new HashSet<>(repository.findCodigosProductoExistentes(
+                        lote.stream().map(fila -> fila.dto().getCodigoProducto()).toList()));
+
+                List<Zapatilla> nuevas = new ArrayList<>(lote.size());
+                List<Fila> repetidas = new ArrayList<>();
+                for (Fila fila : lote) {
+                    if (existentes.contains(fila.dto().getCodigoProducto())) {
+                        repetidas.add(fila);
+                        continue;
+                    }
+                    Zapatilla zapatilla = mapper.toZapatilla(null, fila.dto());
+                    entityManager.persist(zapatilla);
+                    nuevas.add(zapatilla);
+                }
+                entityManager.flush();
+                entityManager.clear();
+                return new Guardado(nuevas, repetidas);
+            });
+        } catch (RuntimeException e) {
+            // Un error al escribir deshace el lote entero: se rechazan todas sus filas
+            // (una sola vez cada una: las repetidas aún no se habían rechazado)
+            log.warn("Importación: lote de {} filas descartado: {}", lote.size(), e.getMessage());
+            for (Fila fila : lote) {
+                importacion.rechazar(fila.linea(), fila.dto().getCodigoProducto(),
+                        List.of("Error al guardar el lote: " + e.getMessage()));
+            }
+            return;
+        }
+
+        for (Fila fila : guardado.repetidas()) {
+            importacion.rechazar(fila.linea(), fila.dto().getCodigoProducto(),
+                    List.of("codigoProducto: Ya existe una zapatilla con este código"));
+        }
+        List<Zapatilla> guardadas = guardado.nuevas();
+        guardadas.forEach(indices::indexar);
+        contador.registrarAltas(guardadas.size());
+        catalogoVersion.incrementar();
+        importacion.importadas += guardadas.size();
+    }
+
+    /**
+     * Resultado de un lote confirmado: lo guardado y las filas cuyo código ya
+     * existía, que se rechazan solo tras el commit.
+     */
+    private record Guardado(List<Zapatilla> nuevas, List<Fila> repetidas) {
+    }
+
+    /**
+     * Estado de una importación en curso (un objeto por petición).
+     */
+    private final class Importacion {
+        private final List<ErrorFila> errores = new ArrayList<>();
+        private List<Fila> lote = new ArrayList<>(tamanoLote);
+        private long leidas;
+        private long importadas;
+        private long rechazadas;
+
+        void rechazar(long linea, String codigo, List<String> mensajes) {
+            rechazadas++;
+            if (errores.size() < maxErrores) {
+                errores.add(new ErrorFila(linea, codigo, mensajes));
+            }
+        }
+    }
+}
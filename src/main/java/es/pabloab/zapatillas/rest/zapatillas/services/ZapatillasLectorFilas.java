@@ -0,0 +1,260 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador.Formato;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Lee un fichero de zapatillas (NDJSON o CSV) fila a fila y valida cada una.
+ *
+ * Lo usan la importación masiva (ZapatillasImportador) y la sincronización
+ * con el proveedor (ZapatillasSincronizador): ambas reciben las filas ya
+ * convertidas a ZapatillaCreateDto, o la lista de errores de la fila.
+ *
+ * VALIDACIÓN
+ * ==========
+ * - Las mismas reglas que el POST (ZapatillaCreateDto, incluido @CodigoProducto).
+ * - El código de producto es obligatorio (es la clave de la fila).
+ * - Un código repetido dentro del mismo fichero se rechaza en su segunda aparición.
+ *
+ * FORMATOS
+ * ========
+ * - NDJSON: un objeto JSON por línea, con los campos de ZapatillaCreateDto.
+ * - CSV: primera línea de cabecera con los nombres de los campos (en
+ *   cualquier orden; las columnas desconocidas se ignoran, así que se puede
+ *   reutilizar un CSV de /export). Comillas según RFC 4180.
+ */
+@Component
+@RequiredArgsConstructor
+public class ZapatillasLectorFilas {
+
+    private static final String[] CAMPOS =
+            {"marca", "modelo", "codigoProducto", "talla", "color", "tipo", "precio", "stock"};
+
+    private final Validator validator;
+    private final JsonMapper jsonMapper;
+
+    /**
+     * Una fila del fichero: válida (dto != null) o con sus errores.
+     *
+     * @param linea línea del fichero donde empieza la fila
+     */
+    public record Fila(long linea, String codigoProducto, ZapatillaCreateDto dto, List<String> errores) {
+
+        public boolean isValida() {
+            return dto != null;
+        }
+    }
+
+    /**
+     * Lee todo el fichero y entrega cada fila (sin contar cabecera ni líneas vacías).
+     */
+    public void leer(Formato formato, InputStream entrada, Consumer<Fila> consumidor) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        Set<String> codigos = new HashSet<>();
+        Consumer<Fila> conDuplicados = fila -> {
+            if (fila.isValida() && !codigos.add(fila.codigoProducto())) {
+                fila = new Fila(fila.linea(), fila.codigoProducto(), null,
+                        List.of("codigoProducto: Código repetido en el fichero"));
+            }
+            consumidor.accept(fila);
+        };
+        switch (formato) {
+            case NDJSON -> leerNdjson(reader, conDuplicados);
+            case CSV -> leerCsv(reader, conDuplicados);
+        }
+    }
+
+    private void leerNdjson(BufferedReader reader, Consumer<Fila> consumidor) throws IOException {
+        long linea = 0;
+        String texto;
+        while ((texto = reader.readLine()) != null) {
+            linea++;
+            if (texto.isBlank()) {
+                continue;
+            }
+            Map<String, String> valores = new HashMap<>();
+            try {
+                JsonNode nodo = jsonMapper.readTree(texto);
+                if (!nodo.isObject()) {
+                    consumidor.accept(new Fila(linea, null, null, List.of("La línea no es un objeto JSON")));
+                    continue;
+                }
+                for (String campo : CAMPOS) {
+                    JsonNode valor = nodo.get(campo);
+                    if (valor != null && !valor.isNull()) {
+                        valores.put(campo, valor.asString());
+                    }
+                }
+            } catch (JacksonException e) {
+                consumidor.accept(new Fila(linea, null, null, List.of("JSON no válido: " + e.getOriginalMessage())));
+                continue;
+            }
+            consumidor.accept(fila(linea, valores));
+        }
+    }
+
+    private void leerCsv(BufferedReader reader, Consumer<Fila> consumidor) throws IOException {
+        long[] linea = {0};
+        List<String> cabecera = leerRegistroCsv(reader, linea);
+        if (cabecera == null) {
+            return;
+        }
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < cabecera.size(); i++) {
+            columnas.put(cabecera.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+
+        while (true) {
+            long inicioRegistro = linea[0] + 1;
+            List<String> registro = leerRegistroCsv(reader, linea);
+            if (registro == null) {
+                break;
+            }
+            if (registro.size() == 1 && registro.get(0).isBlank()) {
+                continue;
+            }
+            Map<String, String> valores = new HashMap<>();
+            for (String campo : CAMPOS) {
+                Integer columna = columnas.get(campo.toLowerCase(Locale.ROOT));
+                if (columna != null && columna < registro.size() && !registro.get(columna).isEmpty()) {
+                    valores.put(campo, registro.get(columna));
+                }
+            }
+            consumidor.accept(fila(inicioRegistro, valores));
+        }
+    }
+
+    /**
+     * Lee un registro CSV (RFC 4180). Un campo entre comillas puede contener
+     * comas, comillas dobladas ("") y saltos de línea, así que un registro
+     * puede ocupar varias líneas. Devuelve null al final del fichero.
+     */
+    private static List<String> leerRegistroCsv(BufferedReader reader, long[] linea) throws IOException {
+        String texto = reader.readLine();
+        if (texto == null) {
+            return null;
+        }
+        linea[0]++;
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        int i = 0;
+        while (true) {
+            if (i == texto.length()) {
+                if (!entreComillas) {
+                    break;
+                }
+                // Salto de línea dentro de un campo entre comillas: sigue en la siguiente línea
+                String siguiente = reader.readLine();
+                if (siguiente == null) {
+                    break;
+                }
+                linea[0]++;
+                campo.append('\n');
+                texto = siguiente;
+                i = 0;
+                continue;
+            }
+            char c = texto.charAt(i++);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i < texto.length() && texto.charAt(i) == '"') {
+                        campo.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c != '\r') {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    /**
+     * Convierte los valores de texto al DTO y lo valida.
+     */
+    private Fila fila(long linea, Map<String, String> valores) {
+        String codigo = valores.get("codigoProducto");
+
+        List<String> mensajes = new ArrayList<>();
+        ZapatillaCreateDto dto = ZapatillaCreateDto.builder()
+                .marca(valores.get("marca"))
+                .modelo(valores.get("modelo"))
+                .codigoProducto(codigo)
+                .talla(decimal(valores, "talla", mensajes))
+                .color(valores.get("color"))
+                .tipo(valores.get("tipo"))
+                .precio(decimal(valores, "precio", mensajes))
+                .stock(entero(valores, "stock", mensajes))
+                .build();
+
+        for (ConstraintViolation<ZapatillaCreateDto> violacion : validator.validate(dto)) {
+            mensajes.add(violacion.getPropertyPath() + ": " + violacion.getMessage());
+        }
+        if (codigo == null) {
+            mensajes.add("codigoProducto: El código de producto es obligatorio");
+        }
+        if (!mensajes.isEmpty()) {
+            mensajes.sort(null);
+            return new Fila(linea, codigo, null, mensajes);
+        }
+        return new Fila(linea, codigo, dto, List.of());
+    }
+
+    private static Double decimal(Map<String, String> valores, String campo, List<String> mensajes) {
+        String valor = valores.get(campo);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(valor.trim());
+        } catch (NumberFormatException e) {
+            mensajes.add(campo + ": No es un número: " + valor);
+            return null;
+        }
+    }
+
+    private static Integer entero(Map<String, String> valores, String campo, List<String> mensajes) {
+        String valor = valores.get(campo);
+        if (valor == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(valor.trim());
+        } catch (NumberFormatException e) {
+            mensajes.add(campo + ": No es un número entero: " + valor);
+            return null;
+        }
+    }
+}
@@ -1,14 +1,37 @@
 package es.pabloab.zapatillas.rest.zapatillas.services;
 
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaFacetasDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasFacetIndex.Faceta;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.List;
+import java.util.Map;
 
 public interface ZapatillasService {
     Page<ZapatillaResponseDto> findAll(String marca, String tipo, Pageable pageable);
 
+    Window<ZapatillaResponseDto> findAll(String marca, String tipo, ScrollPosition position, Sort sort, int size);
+
+    Slice<ZapatillaResponseDto> findAllSlice(String marca, String tipo, Pageable pageable);
+
+    long countAproximado(String marca, String tipo);
+
+    long versionCatalogo();
+
+    ZapatillaFacetasDto findFacetas(Map<Faceta, List<String>> filtros, int limite);
+
+    Page<ZapatillaResponseDto> findByPrecio(double min, double max, Pageable pageable);
+
+    Page<ZapatillaResponseDto> findStockBajo(int umbral, Pageable pageable);
+
     ZapatillaResponseDto findById(Long id);
 
     ZapatillaResponseDto findByUuid(String uuid);
@@ -17,6 +40,12 @@ public interface ZapatillasService {
 
     ZapatillaResponseDto update(Long id, ZapatillaUpdateDto dto);
 
+    /**
+     * Como update, pero solo si la zapatilla sigue en versionEsperada (If-Match).
+     * Con null no se comprueba la versión.
+     */
+    ZapatillaResponseDto update(Long id, ZapatillaUpdateDto dto, Long versionEsperada);
+
     void deleteById(Long id);
 }
 
@@ -1,22 +1,50 @@
 package es.pabloab.zapatillas.rest.zapatillas.services;
 
-import es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController;
+import es.pabloab.zapatillas.rest.zapatillas.cache.ZapatillasCache;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaFacetasDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
 import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaBadUuidException;
 import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaNotFoundException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaPreconditionFailedException;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasFacetIndex;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasFacetIndex.Faceta;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasIndices;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasRangoIndex;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasTrigramIndex;
 import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
 import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasNotificador;
 import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -25,52 +53,240 @@ public class ZapatillasServiceImpl implements ZapatillasService {
 
     private final ZapatillasRepository repository;
     private final ZapatillaMapper mapper;
-    private final ZapatillasWebSocketController webSocketController;  // ← NUEVO
+    private final ZapatillasNotificador notificador;  // ← NUEVO
+    private final ZapatillasContador contador;
+    private final ZapatillasTrigramIndex trigramIndex;
+    private final ZapatillasIndices indices;
+    private final ZapatillasCache cache;
+    private final ZapatillasFacetIndex facetIndex;
+    private final ZapatillasRangoIndex rangoIndex;
+    private final ZapatillasCatalogoVersion catalogoVersion;
+    private final ZapatillasStockLedger stockLedger;
 
     @Override
+    @Transactional(readOnly = true)
     public Page<ZapatillaResponseDto> findAll(String marca, String tipo, Pageable pageable) {
-        Page<Zapatilla> zapatillasPage;
+        Optional<long[]> indexados = idsIndexados(marca, tipo, pageable);
+        if (indexados.isPresent()) {
+            long[] ids = indexados.get();
+            return new PageImpl<>(cargarPagina(ids, pageable), pageable, ids.length);
+        }
+
+        // Proyección directa a DTO: ni entidades gestionadas ni paso por el mapper
+        Class<ZapatillaResponseDto> dto = ZapatillaResponseDto.class;
+
+        if (marca != null && tipo != null) {
+            return repository.findAllByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(marca, tipo, pageable, dto);
+        } else if (marca != null) {
+            return repository.findAllByMarcaContainingIgnoreCase(marca, pageable, dto);
+        } else if (tipo != null) {
+            return repository.findAllByTipoContainingIgnoreCase(tipo, pageable, dto);
+        } else {
+            return repository.findAllBy(pageable, dto);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Window<ZapatillaResponseDto> findAll(String marca, String tipo, ScrollPosition position, Sort sort, int size) {
+        Window<Zapatilla> zapatillasWindow;
+        Limit limit = Limit.of(size);
 
         if (marca != null && tipo != null) {
-            zapatillasPage = repository.findAllByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(marca, tipo, pageable);
+            zapatillasWindow = repository.findAllByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(
+                    marca, tipo, position, sort, limit);
         } else if (marca != null) {
-            zapatillasPage = repository.findAllByMarcaContainingIgnoreCase(marca, pageable);
+            zapatillasWindow = repository.findAllByMarcaContainingIgnoreCase(marca, position, sort, limit);
         } else if (tipo != null) {
-            zapatillasPage = repository.findAllByTipoContainingIgnoreCase(tipo, pageable);
+            zapatillasWindow = repository.findAllByTipoContainingIgnoreCase(tipo, position, sort, limit);
         } else {
-            zapatillasPage = repository.findAll(pageable);
+            zapatillasWindow = repository.findAllBy(position, sort, limit);
         }
 
-        return zapatillasPage.map(mapper::toResponseDto);
+        return zapatillasWindow.map(mapper::toResponseDto);
     }
 
     @Override
-    public ZapatillaResponseDto findById(Long id) {
-        Zapatilla zapatilla = repository.findById(id)
-                .orElseThrow(() -> new ZapatillaNotFoundException(id));
+    @Transactional(readOnly = true)
+    public Slice<ZapatillaResponseDto> findAllSlice(String marca, String tipo, Pageable pageable) {
+        Optional<long[]> indexados = idsIndexados(marca, tipo, pageable);
+        if (indexados.isPresent()) {
+            long[] ids = indexados.get();
+            boolean hasNext = pageable.getOffset() + pageable.getPageSize() < ids.length;
+            return new SliceImpl<>(cargarPagina(ids, pageable), pageable, hasNext);
+        }
+
+        Class<ZapatillaResponseDto> dto = ZapatillaResponseDto.class;
+
+        if (marca != null && tipo != null) {
+            return repository.findSliceByMarcaContainingIgnoreCaseAndTipoContainingIgnoreCase(
+                    marca, tipo, pageable, dto);
+        } else if (marca != null) {
+            return repository.findSliceByMarcaContainingIgnoreCase(marca, pageable, dto);
+        } else if (tipo != null) {
+            return repository.findSliceByTipoContainingIgnoreCase(tipo, pageable, dto);
+        } else {
+            return repository.findSliceBy(pageable, dto);
+        }
+    }
+
+    @Override
+    public long countAproximado(String marca, String tipo) {
+        return contador.aproximado(marca, tipo);
+    }
+
+    @Override
+    public long versionCatalogo() {
+        return catalogoVersion.actual();
+    }
 
-        return mapper.toResponseDto(zapatilla);
+    /**
+     * Búsqueda por facetas resuelta entera en memoria con el índice de bitmaps:
+     * ni los filtros ni los conteos tocan la base de datos.
+     */
+    @Override
+    public ZapatillaFacetasDto findFacetas(Map<Faceta, List<String>> filtros, int limite) {
+        ZapatillasFacetIndex.Resultado resultado = facetIndex.buscar(filtros, limite);
+
+        Map<String, Map<String, Long>> facetas = new LinkedHashMap<>();
+        resultado.conteos().forEach((faceta, conteos) -> facetas.put(faceta.nombre(), conteos));
+
+        return ZapatillaFacetasDto.builder()
+                .total(resultado.total())
+                .ids(Arrays.stream(resultado.ids()).boxed().toList())
+                .facetas(facetas)
+                .build();
+    }
+
+    /**
+     * Zapatillas con precio entre min y max (ambos incluidos), de más barata a más cara.
+     *
+     * El rango y la página salen del índice ordenado en memoria; solo se
+     * hidratan los ids de la página, y primero desde la caché.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ZapatillaResponseDto> findByPrecio(double min, double max, Pageable pageable) {
+        if (!rangoIndex.isListo()) {
+            List<Zapatilla> enRango = new ArrayList<>(repository.findByPrecioRange(min, max));
+            enRango.sort(Comparator.comparing(Zapatilla::getPrecio).thenComparing(Zapatilla::getId));
+            return paginaEnMemoria(enRango, pageable);
+        }
+        ZapatillasRangoIndex.Rango rango = rangoIndex.porPrecio(min, max, pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(cargarPorIds(rango.ids()), pageable, rango.total());
+    }
+
+    /**
+     * Zapatillas con stock por debajo del umbral, de menos a más stock.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ZapatillaResponseDto> findStockBajo(int umbral, Pageable pageable) {
+        if (!rangoIndex.isListo()) {
+            List<Zapatilla> bajoStock = new ArrayList<>(repository.findByStockBajo(umbral));
+            bajoStock.sort(Comparator.comparing(Zapatilla::getStock).thenComparing(Zapatilla::getId));
+            return paginaEnMemoria(bajoStock, pageable);
+        }
+        ZapatillasRangoIndex.Rango rango = rangoIndex.stockBajo(umbral, pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(cargarPorIds(rango.ids()), pageable, rango.total());
+    }
+
+    /**
+     * Hidrata los ids en orden: los que están en caché no van a la BD y el
+     * resto se cargan con un único findAllById.
+     */
+    private List<ZapatillaResponseDto> cargarPorIds(long[] ids) {
+        return cache.porIds(Arrays.stream(ids).boxed().toList(),
+                fallos -> repository.findByIdIn(fallos, ZapatillaResponseDto.class));
+    }
+
+    /**
+     * Solo mientras el índice se construye al arrancar: pagina una lista ya ordenada.
+     */
+    private Page<ZapatillaResponseDto> paginaEnMemoria(List<Zapatilla> zapatillas, Pageable pageable) {
+        int desde = (int) Math.min(zapatillas.size(), pageable.getOffset());
+        int hasta = Math.min(zapatillas.size(), desde + pageable.getPageSize());
+        List<ZapatillaResponseDto> contenido = zapatillas.subList(desde, hasta).stream()
+                .map(mapper::toResponseDto)
+                .toList();
+        return new PageImpl<>(contenido, pageable, zapatillas.size());
+    }
+
+    /**
+     * Resuelve los filtros marca/tipo con el índice de trigramas en lugar de
+     * con LIKE '%x%' (que obliga a recorrer la tabla entera).
+     *
+     * Solo se usa cuando hay algún filtro y se ordena por id, que es el orden
+     * natural de los ids del índice. Con otro orden seguimos en la BD.
+     */
+    private Optional<long[]> idsIndexados(String marca, String tipo, Pageable pageable) {
+        if ((marca == null && tipo == null) || pageable.isUnpaged()) {
+            return Optional.empty();
+        }
+        boolean soloPorId = pageable.getSort().stream().allMatch(order -> order.getProperty().equals("id"));
+        if (!soloPorId) {
+            return Optional.empty();
+        }
+        return trigramIndex.buscar(marca, tipo);
+    }
+
+    /**
+     * Carga por clave primaria solo las zapatillas de la página pedida,
+     * respetando el orden de los ids (findAllById no garantiza orden).
+     */
+    private List<ZapatillaResponseDto> cargarPagina(long[] ids, Pageable pageable) {
+        Sort.Order orden = pageable.getSort().getOrderFor("id");
+        boolean descendente = orden != null && orden.isDescending();
+        long desde = pageable.getOffset();
+        long hasta = Math.min(ids.length, desde + pageable.getPageSize());
+
+        List<Long> paginaIds = new ArrayList<>(pageable.getPageSize());
+        for (long i = desde; i < hasta; i++) {
+            paginaIds.add(descendente ? ids[ids.length - 1 - (int) i] : ids[(int) i]);
+        }
+
+        Map<Long, ZapatillaResponseDto> porId = repository.findByIdIn(paginaIds, ZapatillaResponseDto.class).stream()
+                .collect(Collectors.toMap(ZapatillaResponseDto::getId, Function.identity()));
+        return paginaIds.stream()
+                .map(porId::get)
+                .filter(Objects::nonNull)   // borrada entre el índice y la carga
+                .toList();
+    }
+
+    @Override
+    public ZapatillaResponseDto findById(Long id) {
+        return cache.porId(id, () -> repository.findById(id)
+                .map(mapper::toResponseDto)
+                .orElseThrow(() -> new ZapatillaNotFoundException(id)));
     }
 
     @Override
     public ZapatillaResponseDto findByUuid(String uuid) {
+        UUID u;
         try {
-            UUID u = UUID.fromString(uuid);
-            Zapatilla zapatilla = repository.findByUuid(u)
-                    .orElseThrow(() -> new ZapatillaNotFoundException(uuid));
-            return mapper.toResponseDto(zapatilla);
+            u = UUID.fromString(uuid);
         } catch (IllegalArgumentException e) {
             throw new ZapatillaBadUuidException(uuid);
         }
+        return cache.porUuid(u, () -> repository.findByUuid(u)
+                .map(mapper::toResponseDto)
+                .orElseThrow(() -> new ZapatillaNotFoundException(uuid)));
     }
 
     @Override
+    @Transactional
     public ZapatillaResponseDto save(ZapatillaCreateDto dto) {
         log.info("Guardando zapatilla: {}", dto);
 
         Zapatilla nueva = mapper.toZapatilla(null, dto);
-        Zapatilla guardada = repository.save(nueva);
+        Zapatilla guardada = repository.saveAndFlush(nueva);
         ZapatillaResponseDto response = mapper.toResponseDto(guardada);
+        despuesDelCommit(() -> {
+            contador.registrarAlta();
+            indices.indexar(guardada);
+            cache.guardar(response);
+            catalogoVersion.incrementar();
+        });
 
         // ← NUEVO: Enviar notificación WebSocket
         ZapatillaNotificacion notificacion = ZapatillaNotificacion.crear(
@@ -79,37 +295,69 @@ public class ZapatillasServiceImpl implements ZapatillasService {
                 "Nueva zapatilla: " + guardada.getMarca() + " " + guardada.getModelo(),
                 response
         );
-        webSocketController.enviarNotificacion(notificacion);
+        notificador.enviar(guardada, notificacion);
 
         return response;
     }
 
     @Override
     public ZapatillaResponseDto update(Long id, ZapatillaUpdateDto dto) {
+        return update(id, dto, null);
+    }
+
+    @Override
+    @Transactional
+    public ZapatillaResponseDto update(Long id, ZapatillaUpdateDto dto, Long versionEsperada) {
         log.info("Actualizando zapatilla por id: {}", id);
 
+        // Primero se guardan las ventas pendientes del ledger: el stock que se
+        // fija aquí sustituye a un valor ya al día (y la versión las incluye).
+        // El ledger guarda en su propia transacción, no en esta.
+        stockLedger.volcar();
         Zapatilla actual = repository.findById(id)
                 .orElseThrow(() -> new ZapatillaNotFoundException(id));
+        if (versionEsperada != null && !versionEsperada.equals(actual.getVersion())) {
+            throw new ZapatillaPreconditionFailedException(id);
+        }
+        // Copia del estado anterior: save() vuelca el nuevo sobre la entidad gestionada
+        ZapatillaResponseDto anterior = mapper.toResponseDto(actual);
 
+        // La entidad reconstruida lleva la versión leída: si otra escritura la
+        // cambia antes del UPDATE, Hibernate lanza un error de bloqueo optimista
+        // (saveAndFlush: el error sale aquí y no al hacer commit)
         Zapatilla actualizada = mapper.toZapatilla(dto, actual);
-        Zapatilla guardada = repository.save(actualizada);
+        Zapatilla guardada = repository.saveAndFlush(actualizada);
         ZapatillaResponseDto response = mapper.toResponseDto(guardada);
+        despuesDelCommit(() -> {
+            stockLedger.olvidar(List.of(id));
+            indices.indexar(guardada);
+            cache.guardar(response);
+            catalogoVersion.incrementar();
+        });
 
-        // ← NUEVO: Notificar actualización
-        webSocketController.notificarCambioStock(guardada.getId(), guardada.getStock());
-        webSocketController.notificarStockBajo(guardada.getId(), guardada.getStock());
+        // ← NUEVO: Notificar actualización (solo lo que ha cambiado)
+        notificador.actualizada(guardada, anterior, mapper.toParcheDto(anterior, response));
 
         return response;
     }
 
     @Override
+    @Transactional
     public void deleteById(Long id) {
         log.info("Borrando zapatilla por id: {}", id);
 
-        repository.findById(id)
+        Zapatilla actual = repository.findById(id)
                 .orElseThrow(() -> new ZapatillaNotFoundException(id));
 
         repository.deleteById(id);
+        repository.flush();
+        despuesDelCommit(() -> {
+            stockLedger.olvidar(List.of(id));
+            contador.registrarBaja();
+            indices.eliminar(id);
+            cache.invalidar(id, actual.getUuid());
+            catalogoVersion.incrementar();
+        });
 
         // ← NUEVO: Notificar eliminación
         ZapatillaNotificacion notificacion = ZapatillaNotificacion.crear(
@@ -118,7 +366,26 @@ public class ZapatillasServiceImpl implements ZapatillasService {
                 "Zapatilla eliminada",
                 null
         );
-        webSocketController.enviarNotificacion(notificacion);
+        notificador.enviar(actual, notificacion);
     }
 
-}
\ No newline at end of file
+    /**
+     * Libro de stock, contador, índices, caché y versión del catálogo se
+     * tocan cuando la escritura ya es definitiva: después del commit (como
+     * las notificaciones), o al momento si no hay transacción. Así nadie ve
+     * la versión nueva del catálogo antes de que la BD tenga los datos, ni
+     * queda en la caché un cambio que se ha deshecho.
+     */
+    private static void despuesDelCommit(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accion.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                accion.run();
+            }
+        });
+    }
+}
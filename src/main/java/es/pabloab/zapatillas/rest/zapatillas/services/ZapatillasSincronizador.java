@@ -0,0 +1,328 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.cache.ZapatillasCache;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaImportacionDto.ErrorFila;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaSincronizacionDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasIndices;
+import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasNotificador;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository.EstadoContenido;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador.Formato;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasLectorFilas.Fila;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Sincronización con el feed del proveedor: solo se escriben las filas que cambian.
+ *
+ * ¿POR QUÉ?
+ * ==========
+ * El feed nocturno trae todo el catálogo del proveedor, pero casi todas las
+ * filas son iguales que ayer. Pasarlas por ZapatillasServiceImpl.update
+ * supone por fila un findById, reconstruir la entidad, un UPDATE y dos
+ * mensajes WebSocket, aunque no cambie nada.
+ *
+ * ¿CÓMO?
+ * =======
+ * Cada zapatilla guarda la huella de sus campos de negocio (hashContenido,
+ * ver Zapatilla). El feed se lee en streaming (ZapatillasLectorFilas) y por
+ * cada lote de zapatillas.importacion.lote filas:
+ * 1. Una consulta IN por codigoProducto trae id + huella de todo el lote
+ *    (en vez de un findByCodigoProducto por fila).
+ * 2. Se calcula la huella de cada fila del feed:
+ *    - código nuevo         → INSERT
+ *    - huella distinta      → UPDATE
+ *    - huella igual         → nada, ni lectura de la entidad ni escritura
+ * 3. Solo las entidades que cambian se cargan (otra consulta IN) y los
+ *    INSERT/UPDATE salen en batches JDBC al hacer flush.
+ *
+ * Con eliminarAusentes, al final se recorre el catálogo (solo id, código y
+ * huella) y las zapatillas que no venían en el feed se borran con DELETE
+ * ... WHERE id IN (...) por lotes.
+ *
+ * Al terminar se envía UNA notificación SYNCED con el resumen.
+ */
+@Slf4j
+@Component
+public class ZapatillasSincronizador {
+
+    private final ZapatillasRepository repository;
+    private final ZapatillaMapper mapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ZapatillasLectorFilas lector;
+    private final ZapatillasIndices indices;
+    private final ZapatillasCache cache;
+    private final ZapatillasContador contador;
+    private final ZapatillasCatalogoVersion catalogoVersion;
+    private final ZapatillasStockLedger stockLedger;
+    private final ZapatillasNotificador notificador;
+    private final int tamanoLote;
+    private final int maxErrores;
+
+    public ZapatillasSincronizador(
+            ZapatillasRepository repository,
+            ZapatillaMapper mapper,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            ZapatillasLectorFilas lector,
+            ZapatillasIndices indices,
+            ZapatillasCache cache,
+            ZapatillasContador contador,
+            ZapatillasCatalogoVersion catalogoVersion,
+            ZapatillasStockLedger stockLedger,
+            ZapatillasNotificador notificador,
+            @Value("${zapatillas.importacion.lote:1000}") int tamanoLote,
+            @Value("${zapatillas.importacion.max-errores:1000}") int maxErrores) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lector = lector;
+        this.indices = indices;
+        this.cache = cache;
+        this.contador = contador;
+        this.catalogoVersion = catalogoVersion;
+        this.stockLedger = stockLedger;
+        this.notificador = notificador;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.maxErrores = Math.max(0, maxErrores);
+    }
+
+    /**
+     * Aplica el feed y devuelve el resumen.
+     *
+     * @param eliminarAusentes borrar las zapatillas cuyo código no aparece en el feed
+     */
+    public ZapatillaSincronizacionDto sincronizar(Formato formato, InputStream entrada, boolean eliminarAusentes)
+            throws IOException {
+        long inicio = System.currentTimeMillis();
+        Sincronizacion sync = new Sincronizacion();
+
+        // El stock del feed sustituye al guardado: antes, las ventas pendientes del ledger
+        stockLedger.volcar();
+        lector.leer(formato, entrada, fila -> procesar(fila, sync));
+        aplicarLote(sync);
+        if (eliminarAusentes) {
+            eliminarAusentes(sync);
+        }
+
+        ZapatillaSincronizacionDto resumen = sync.resumen(System.currentTimeMillis() - inicio);
+        log.info("Sincronización {}: {} leídas, {} insertadas, {} actualizadas, {} sin cambios, {} eliminadas, "
+                        + "{} rechazadas en {} ms", formato, resumen.getLeidas(), resumen.getInsertadas(),
+                resumen.getActualizadas(), resumen.getSinCambios(), resumen.getEliminadas(),
+                resumen.getRechazadas(), resumen.getMilisegundos());
+
+        // Una sola notificación para todo el feed (sin el detalle de errores)
+        ZapatillaSincronizacionDto sinErrores = sync.resumen(resumen.getMilisegundos());
+        sinErrores.setErrores(null);
+        notificador.enviar(ZapatillaNotificacion.crear(
+                ZapatillaNotificacion.TipoNotificacion.SYNCED,
+                null,
+                "Sincronización: " + resumen.getInsertadas() + " nuevas, " + resumen.getActualizadas()
+                        + " actualizadas, " + resumen.getEliminadas() + " eliminadas",
+                sinErrores));
+        return resumen;
+    }
+
+    private void procesar(Fila fila, Sincronizacion sync) {
+        sync.leidas++;
+        // Antes de validar: una fila mal formada (precio erróneo...) sigue diciendo que el
+        // producto está en el feed, y con eliminarAusentes no debe borrarse por eso
+        if (fila.codigoProducto() != null) {
+            sync.codigosFeed.add(fila.codigoProducto());
+        }
+        if (!fila.isValida()) {
+            sync.rechazar(fila.linea(), fila.codigoProducto(), fila.errores());
+            return;
+        }
+        sync.lote.add(fila);
+        if (sync.lote.size() >= tamanoLote) {
+            aplicarLote(sync);
+        }
+    }
+
+    /**
+     * Compara el lote con lo guardado y escribe solo las diferencias, en una transacción.
+     */
+    private void aplicarLote(Sincronizacion sync) {
+        if (sync.lote.isEmpty()) {
+            return;
+        }
+        List<Fila> lote = sync.lote;
+        sync.lote = new ArrayList<>(tamanoLote);
+
+        Cambios cambios;
+        try {
+            cambios = transactionTemplate.execute(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(Math.min(tamanoLote, lote.size()));
+                Map<String, EstadoContenido> estados = new HashMap<>();
+                repository.findEstadoContenidoByCodigoProductoIn(lote.stream().map(Fila::codigoProducto).toList())
+                        .forEach(estado -> estados.put(estado.getCodigoProducto(), estado));
+
+                Cambios resultado = new Cambios();
+                Map<Long, ZapatillaCreateDto> modificadas = new HashMap<>();
+                for (Fila fila : lote) {
+                    ZapatillaCreateDto dto = fila.dto();
+                    EstadoContenido estado = estados.get(fila.codigoProducto());
+                    if (estado == null) {
+                        Zapatilla nueva = mapper.toZapatilla(null, dto);
+                        entityManager.persist(nueva);
+                        resultado.insertadas.add(nueva);
+                    } else if (estado.getHashContenido() == null || estado.getHashContenido() != hash(dto)) {
+                        modificadas.put(estado.getId(), dto);
+                    } else {
+                        resultado.sinCambios++;
+                    }
+                }
+                if (!modificadas.isEmpty()) {
+                    for (Zapatilla zapatilla : repository.findAllById(modificadas.keySet())) {
+                        aplicar(modificadas.get(zapatilla.getId()), zapatilla);
+                        resultado.actualizadas.add(zapatilla);
+                    }
+                }
+                entityManager.flush();
+                entityManager.clear();
+                return resultado;
+            });
+        } catch (RuntimeException e) {
+            // Un error al escribir deshace el lote entero: se rechazan todas sus filas
+            log.warn("Sincronización: lote de {} filas descartado: {}", lote.size(), e.getMessage());
+            for (Fila fila : lote) {
+                sync.rechazar(fila.linea(), fila.codigoProducto(), List.of("Error al guardar el lote: " + e.getMessage()));
+            }
+            return;
+        }
+
+        cambios.insertadas.forEach(indices::indexar);
+        cambios.actualizadas.forEach(zapatilla -> {
+            indices.indexar(zapatilla);
+            cache.invalidar(zapatilla.getId(), zapatilla.getUuid());
+        });
+        stockLedger.olvidar(cambios.actualizadas.stream().map(Zapatilla::getId).toList());
+        contador.registrarAltas(cambios.insertadas.size());
+        if (!cambios.insertadas.isEmpty() || !cambios.actualizadas.isEmpty()) {
+            catalogoVersion.incrementar();
+        }
+        sync.insertadas += cambios.insertadas.size();
+        sync.actualizadas += cambios.actualizadas.size();
+        sync.sinCambios += cambios.sinCambios;
+    }
+
+    /**
+     * Borra, por lotes, las zapatillas cuyo código no venía en el feed.
+     */
+    private void eliminarAusentes(Sincronizacion sync) {
+        Map<Long, UUID> ausentes = transactionTemplate.execute(status -> {
+            Map<Long, UUID> resultado = new HashMap<>();
+            try (Stream<EstadoContenido> estados = repository.streamEstadoContenido()) {
+                estados.filter(estado -> !sync.codigosFeed.contains(estado.getCodigoProducto()))
+                        .forEach(estado -> resultado.put(estado.getId(), estado.getUuid()));
+            }
+            return resultado;
+        });
+        if (ausentes.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(ausentes.keySet());
+        for (int desde = 0; desde < ids.size(); desde += tamanoLote) {
+            List<Long> trozo = ids.subList(desde, Math.min(ids.size(), desde + tamanoLote));
+            transactionTemplate.executeWithoutResult(status -> repository.deleteAllByIdInBatch(trozo));
+            stockLedger.olvidar(trozo);
+            trozo.forEach(id -> {
+                indices.eliminar(id);
+                cache.invalidar(id, ausentes.get(id));
+            });
+        }
+        contador.registrarBajas(ids.size());
+        catalogoVersion.incrementar();
+        sync.eliminadas += ids.size();
+    }
+
+    /**
+     * Copia los campos de negocio del feed en la entidad gestionada; el UPDATE
+     * sale al hacer flush. La huella se fija aquí también para que las filas
+     * que aún no la tenían (cargadas por data.sql) la guarden aunque no cambie
+     * ningún otro campo.
+     */
+    private static void aplicar(ZapatillaCreateDto dto, Zapatilla zapatilla) {
+        zapatilla.setMarca(dto.getMarca());
+        zapatilla.setModelo(dto.getModelo());
+        zapatilla.setTalla(dto.getTalla());
+        zapatilla.setColor(dto.getColor());
+        zapatilla.setTipo(dto.getTipo());
+        zapatilla.setPrecio(dto.getPrecio());
+        zapatilla.setStock(dto.getStock());
+        zapatilla.actualizarHashContenido();
+    }
+
+    private static long hash(ZapatillaCreateDto dto) {
+        return Zapatilla.hashContenido(dto.getMarca(), dto.getModelo(), dto.getCodigoProducto(), dto.getTalla(),
+                dto.getColor(), dto.getTipo(), dto.getPrecio(), dto.getStock());
+    }
+
+    /**
+     * Lo que ha escrito un lote.
+     */
+    private static final class Cambios {
+        private final List<Zapatilla> insertadas = new ArrayList<>();
+        private final List<Zapatilla> actualizadas = new ArrayList<>();
+        private long sinCambios;
+    }
+
+    /**
+     * Estado de una sincronización en curso (un objeto por petición).
+     */
+    private final class Sincronizacion {
+        private final Set<String> codigosFeed = new HashSet<>();
+        private final List<ErrorFila> errores = new ArrayList<>();
+        private List<Fila> lote = new ArrayList<>(tamanoLote);
+        private long leidas;
+        private long insertadas;
+        private long actualizadas;
+        private long sinCambios;
+        private long eliminadas;
+        private long rechazadas;
+
+        void rechazar(long linea, String codigo, List<String> mensajes) {
+            rechazadas++;
+            if (errores.size() < maxErrores) {
+                errores.add(new ErrorFila(linea, codigo, mensajes));
+            }
+        }
+
+        ZapatillaSincronizacionDto resumen(long milisegundos) {
+            return ZapatillaSincronizacionDto.builder()
+                    .leidas(leidas)
+                    .insertadas(insertadas)
+                    .actualizadas(actualizadas)
+                    .sinCambios(sinCambios)
+                    .eliminadas(eliminadas)
+                    .rechazadas(rechazadas)
+                    .milisegundos(milisegundos)
+                    .errores(errores)
+                    .build();
+        }
+    }
+}
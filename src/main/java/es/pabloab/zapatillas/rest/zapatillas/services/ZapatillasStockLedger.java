@@ -0,0 +1,668 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.cache.ZapatillasCache;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaNotFoundException;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasIndices;
+import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
+import es.pabloab.zapatillas.rest.zapatillas.models.DiarioStock;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasNotificador;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Libro de stock en memoria con escritura diferida (write-behind).
+ *
+ * ¿POR QUÉ?
+ * =========
+ * En una venta flash miles de descuentos por segundo caen sobre unas pocas
+ * filas. Con un UPDATE por venta todas esperan al bloqueo de la misma fila y
+ * cada una dispara sus notificaciones WebSocket. Aquí:
+ * - Cada zapatilla que se vende tiene su stock disponible en memoria
+ *   (AtomicLong con compareAndSet, sin bloqueos: nunca baja de 0) y sus
+ *   cambios pendientes de guardar en un LongAdder, que reparte la contención
+ *   entre celdas.
+ * - Cada zapatillas.ledger.volcado-ms se suman los pendientes y se guardan
+ *   TODOS en una sola transacción, con un único batch JDBC
+ *   (stock = stock + delta). 10.000 ventas de la misma zapatilla en ese
+ *   intervalo son un UPDATE.
+ * - Las notificaciones de stock se envían una vez por zapatilla y volcado,
+ *   no una por venta, y la caché y los índices se refrescan a la vez.
+ * Mientras tanto, las lecturas (GET, listados) ven el stock del último volcado.
+ *
+ * DIARIO EN DISCO
+ * ===============
+ * Antes de confirmar una venta se añade una línea "id delta" al diario
+ * (fichero de solo añadir en zapatillas.ledger.directorio). Al volcar se
+ * pasa a un fichero nuevo (generación + 1) y, en la misma transacción que
+ * los UPDATE, se guarda en DiarioStock la generación aplicada. Al arrancar
+ * se reaplican solo los ficheros de generación posterior: si el proceso se
+ * cae, no se pierde ningún descuento ni se aplica dos veces. Un diario que no
+ * encaja con la BD (BD recién creada, zapatillas que ya no existen) no se
+ * aplica ni se borra: se aparta (ver recuperar()).
+ *
+ * El diario no hace fsync en cada venta: sobrevive a la caída del proceso,
+ * no a la de la máquina (el fichero se fuerza a disco en cada volcado).
+ *
+ * OTRAS ESCRITURAS
+ * ================
+ * Lo que cambia el stock sin pasar por aquí (PUT/PATCH, sincronización con
+ * el proveedor, borrados) llama a volcar() antes y a olvidar(ids) después,
+ * para que el libro vuelva a partir del valor guardado.
+ *
+ * Las reservas usan cambiarEnTransaccion(): su stock no va al diario sino a
+ * la misma transacción que la fila de la reserva.
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class ZapatillasStockLedger {
+
+    private static final String UPDATE_STOCK = "UPDATE zapatillas SET stock = stock + ?, version = version + 1, "
+            + "updated_at = ?, hash_contenido = NULL WHERE id = ?";
+    private static final String PREFIJO = "diario-";
+    private static final String EXTENSION = ".log";
+    private static final String DIRECTORIO_APARTADOS = "apartados";
+
+    private final ZapatillasRepository repository;
+    private final ZapatillaMapper mapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ZapatillasIndices indices;
+    private final ZapatillasCache cache;
+    private final ZapatillasCatalogoVersion catalogoVersion;
+    private final ZapatillasNotificador notificador;
+    private final Path directorio;
+
+    private final Map<Long, Entrada> entradas = new ConcurrentHashMap<>();
+    // Cambiadas con cambiarEnTransaccion(): ya están en la BD, falta refrescarlas
+    private final Set<Long> escritas = ConcurrentHashMap.newKeySet();
+    // Lectura: cada venta. Escritura: solo el cambio de fichero al volcar.
+    // Así ninguna venta puede quedar a medias entre dos generaciones del diario.
+    private final StampedLock candado = new StampedLock();
+    // Un volcado (o recarga tras otra escritura) a la vez
+    private final ReentrantLock volcando = new ReentrantLock();
+
+    // Se cambian con el candado de escritura y se leen con el de lectura
+    private FileChannel diario;
+    private long generacion;
+
+    public ZapatillasStockLedger(
+            ZapatillasRepository repository,
+            ZapatillaMapper mapper,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            ZapatillasIndices indices,
+            ZapatillasCache cache,
+            ZapatillasCatalogoVersion catalogoVersion,
+            ZapatillasNotificador notificador,
+            @Value("${zapatillas.ledger.directorio:./data/ledger}") Path directorio) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.entityManager = entityManager;
+        // Siempre en una transacción propia: si el que llama (update) está en
+        // otra y la deshace, el volcado (con el diario ya borrado) no se pierde
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.indices = indices;
+        this.cache = cache;
+        this.catalogoVersion = catalogoVersion;
+        this.notificador = notificador;
+        this.directorio = directorio;
+    }
+
+    /**
+     * Directorio del diario (zapatillas.ledger.directorio ya resuelto).
+     */
+    public Path getDirectorio() {
+        return directorio;
+    }
+
+    /**
+     * Stock de una zapatilla en el libro: lo disponible y lo pendiente de guardar.
+     */
+    private static final class Entrada {
+        private final AtomicLong disponible;
+        private final LongAdder pendiente = new LongAdder();
+        // Se ha vendido o devuelto algo desde el último volcado; si no, se descarta
+        private volatile boolean usada = true;
+
+        Entrada(long disponible) {
+            this.disponible = new AtomicLong(disponible);
+        }
+
+        boolean retirar(int cantidad) {
+            long actual;
+            do {
+                actual = disponible.get();
+                if (actual < cantidad) {
+                    return false;
+                }
+            } while (!disponible.compareAndSet(actual, actual - cantidad));
+            return true;
+        }
+    }
+
+    /**
+     * Descuenta "cantidad" unidades si las hay.
+     *
+     * @return el stock que queda, o -1 si no había suficientes (no se descuenta nada)
+     * @throws ZapatillaNotFoundException si la zapatilla no existe
+     */
+    public long descontar(Long id, int cantidad) {
+        long stamp = candado.readLock();
+        try {
+            Entrada entrada = entrada(id);
+            if (!entrada.retirar(cantidad)) {
+                return -1;
+            }
+            anotar(entrada, id, -cantidad);
+            return entrada.disponible.get();
+        } finally {
+            candado.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Cambia el stock JUNTO con otra escritura en la BD (la fila de una
+     * reserva), en una sola transacción: una caída deja las dos o ninguna.
+     *
+     * - No pasa por el diario: el UPDATE stock = stock + delta va en la misma
+     *   transacción que la escritura.
+     * - Un delta negativo se aparta en memoria antes (no se puede reservar lo
+     *   que ya se ha vendido) y se deshace si la transacción falla. Uno
+     *   positivo se suma después del commit (no se vende lo que aún no ha vuelto).
+     * - Todo con el candado de lectura: ni volcar() ni olvidar() pueden releer
+     *   la zapatilla de la BD a mitad, así que la memoria y la BD no se
+     *   descuadran.
+     *
+     * Queda una ventana: si la conexión se corta DURANTE el commit no se sabe
+     * si se aplicó. La memoria se deshace y puede quedar desfasada "delta"
+     * unidades hasta el siguiente olvidar() o arranque; la BD es correcta.
+     *
+     * @param escritura se ejecuta dentro de la transacción; false = no había nada que hacer
+     * @return false si no había unidades suficientes o la escritura devolvió false
+     * @throws ZapatillaNotFoundException si la zapatilla no existe
+     */
+    public boolean cambiarEnTransaccion(Long id, int delta, BooleanSupplier escritura) {
+        long stamp = candado.readLock();
+        try {
+            Entrada entrada = entrada(id);
+            if (delta < 0 && !entrada.retirar(-delta)) {
+                return false;
+            }
+            Boolean hecho;
+            try {
+                hecho = transactionTemplate.execute(status -> {
+                    if (!escritura.getAsBoolean()) {
+                        return false;
+                    }
+                    actualizarStock(id, delta);
+                    return true;
+                });
+            } catch (RuntimeException e) {
+                if (delta < 0) {
+                    entrada.disponible.addAndGet(-delta);
+                }
+                throw e;
+            }
+            if (!Boolean.TRUE.equals(hecho)) {
+                if (delta < 0) {
+                    entrada.disponible.addAndGet(-delta);
+                }
+                return false;
+            }
+            if (delta > 0) {
+                entrada.disponible.addAndGet(delta);
+            }
+            entrada.usada = true;
+            escritas.add(id);
+            return true;
+        } finally {
+            candado.unlockRead(stamp);
+        }
+    }
+
+    private void actualizarStock(Long id, long delta) {
+        entityManager.unwrap(Session.class).doWork(conexion -> {
+            try (PreparedStatement update = conexion.prepareStatement(UPDATE_STOCK)) {
+                update.setLong(1, delta);
+                update.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+                update.setLong(3, id);
+                update.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Stock disponible según el libro (incluye lo aún no volcado).
+     */
+    public long disponible(Long id) {
+        long stamp = candado.readLock();
+        try {
+            return entrada(id).disponible.get();
+        } finally {
+            candado.unlockRead(stamp);
+        }
+    }
+
+    private Entrada entrada(Long id) {
+        return entradas.computeIfAbsent(id, clave -> new Entrada(repository.findStockById(clave)
+                .orElseThrow(() -> new ZapatillaNotFoundException(clave))));
+    }
+
+    /**
+     * Escribe el cambio en el diario y lo suma a lo pendiente. Si el diario
+     * falla, deshace el cambio en memoria: una venta que no está en el diario
+     * no se confirma.
+     */
+    private void anotar(Entrada entrada, Long id, int delta) {
+        try {
+            diario.write(ByteBuffer.wrap((id + " " + delta + "\n").getBytes(StandardCharsets.US_ASCII)));
+        } catch (IOException e) {
+            entrada.disponible.addAndGet(-delta);
+            throw new UncheckedIOException("No se pudo escribir el diario de stock", e);
+        }
+        entrada.pendiente.add(delta);
+        entrada.usada = true;
+    }
+
+    /**
+     * Guarda en la BD todo lo pendiente con un solo batch y refresca caché,
+     * índices y notificaciones (una por zapatilla).
+     */
+    @Scheduled(fixedDelayString = "${zapatillas.ledger.volcado-ms:200}")
+    public void volcar() {
+        volcando.lock();
+        try {
+            Set<Long> refrescables = sacarEscritas();
+            if (entradas.values().stream().allMatch(entrada -> entrada.pendiente.sum() == 0)) {
+                descartarInactivas();
+                if (!refrescables.isEmpty()) {
+                    refrescar(refrescables);
+                }
+                return;
+            }
+
+            FileChannel siguiente;
+            try {
+                siguiente = abrir(generacion + 1);
+            } catch (IOException e) {
+                log.error("Ledger de stock: no se pudo abrir el diario {}; se reintentará", generacion + 1, e);
+                escritas.addAll(refrescables);
+                return;
+            }
+
+            Map<Long, Long> deltas = new HashMap<>();
+            FileChannel anterior;
+            long cerrada;
+            long stamp = candado.writeLock();
+            try {
+                for (Iterator<Map.Entry<Long, Entrada>> it = entradas.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<Long, Entrada> par = it.next();
+                    Entrada entrada = par.getValue();
+                    long delta = entrada.pendiente.sumThenReset();
+                    if (delta != 0) {
+                        deltas.put(par.getKey(), delta);
+                    } else if (!entrada.usada) {
+                        it.remove();
+                    }
+                    entrada.usada = false;
+                }
+                anterior = diario;
+                diario = siguiente;
+                cerrada = generacion++;
+            } finally {
+                candado.unlockWrite(stamp);
+            }
+            cerrar(anterior);
+
+            try {
+                aplicar(deltas, cerrada, false);
+            } catch (RuntimeException e) {
+                // Los deltas vuelven a lo pendiente; el fichero cerrado se conserva
+                // hasta que una generación posterior (que los incluye) quede guardada
+                log.error("Ledger de stock: no se pudo volcar la generación {}; se reintentará", cerrada, e);
+                deltas.forEach((id, delta) -> entradas.get(id).pendiente.add(delta));
+                escritas.addAll(refrescables);
+                return;
+            }
+            borrarHasta(cerrada);
+            log.debug("Ledger de stock: volcadas {} zapatillas (generación {})", deltas.size(), cerrada);
+            refrescables.addAll(deltas.keySet());
+            refrescar(refrescables);
+        } finally {
+            volcando.unlock();
+        }
+    }
+
+    /**
+     * Tras una escritura que fija el stock por otra vía: las zapatillas que
+     * estén en el libro vuelven a partir del valor guardado (más lo pendiente).
+     */
+    public void olvidar(Collection<Long> ids) {
+        volcando.lock();
+        try {
+            long stamp = candado.writeLock();
+            try {
+                for (Long id : ids) {
+                    Entrada entrada = entradas.get(id);
+                    if (entrada == null) {
+                        continue;
+                    }
+                    Optional<Integer> stock = repository.findStockById(id);
+                    if (stock.isEmpty()) {
+                        entradas.remove(id);
+                    } else {
+                        entrada.disponible.set(stock.get() + entrada.pendiente.sum());
+                    }
+                }
+            } finally {
+                candado.unlockWrite(stamp);
+            }
+        } finally {
+            volcando.unlock();
+        }
+    }
+
+    /**
+     * Al arrancar: reaplica los ficheros del diario que no llegaron a la BD,
+     * borra los ya aplicados y abre la generación siguiente.
+     *
+     * Con el libro ya en marcha, el fichero abierto no se relee (lo que tiene
+     * ya está en memoria, pendiente del próximo volcado).
+     *
+     * ¿CUÁNDO NO SE REAPLICA?
+     * =======================
+     * - Sin fila en DiarioStock la BD es nueva (H2 en memoria con create-drop,
+     *   o una BD recreada): el diario es de otra BD y sumarlo al stock recién
+     *   sembrado lo falsearía. Se aparta sin aplicar.
+     * - Si algún UPDATE no encuentra su fila, la transacción se deshace y el
+     *   diario también se aparta, en lugar de borrarlo con ventas perdidas.
+     * Los ficheros apartados quedan en <directorio>/apartados para revisarlos a mano.
+     *
+     * @DependsOnDatabaseInitialization: se ejecuta después de data.sql, no
+     * contra tablas todavía vacías.
+     */
+    @PostConstruct
+    public void recuperar() throws IOException {
+        Map<Long, Long> deltas = new HashMap<>();
+        volcando.lock();
+        try {
+            Files.createDirectories(directorio);
+            Long guardada = transactionTemplate.execute(status -> {
+                DiarioStock control = entityManager.find(DiarioStock.class, DiarioStock.ID);
+                return control != null ? control.getGeneracionAplicada() : null;
+            });
+            long aplicada = guardada != null ? guardada : 0L;
+
+            long stamp = candado.writeLock();
+            try {
+                long mayor = aplicada;
+                List<Path> sinAplicar = new ArrayList<>();
+                for (Path fichero : ficheros()) {
+                    long gen = generacion(fichero);
+                    if (diario != null && gen == generacion) {
+                        continue;
+                    }
+                    mayor = Math.max(mayor, gen);
+                    if (gen > aplicada) {
+                        leer(fichero, deltas);
+                        sinAplicar.add(fichero);
+                    }
+                }
+                deltas.values().removeIf(delta -> delta == 0);
+                long ultima = mayor;
+                if (diario == null || generacion <= ultima) {
+                    cambiarGeneracion(ultima + 1);
+                }
+
+                if (guardada == null && !deltas.isEmpty()) {
+                    log.warn("Ledger de stock: la BD no tiene punto de control (recién creada); "
+                            + "no se reaplican {} zapatillas de un diario anterior, se apartan en {}",
+                            deltas.size(), directorio.resolve(DIRECTORIO_APARTADOS));
+                    apartar(sinAplicar);
+                    deltas.clear();
+                } else if (!deltas.isEmpty()) {
+                    log.warn("Ledger de stock: reaplicando {} zapatillas del diario sin volcar", deltas.size());
+                    if (!aplicar(deltas, ultima, true)) {
+                        log.error("Ledger de stock: alguna zapatilla del diario no existe en la BD; no se reaplica "
+                                + "nada y el diario se aparta en {}", directorio.resolve(DIRECTORIO_APARTADOS));
+                        apartar(sinAplicar);
+                        deltas.clear();
+                    }
+                }
+                if (deltas.isEmpty() && (guardada == null || ultima > aplicada)) {
+                    transactionTemplate.executeWithoutResult(status -> guardarGeneracion(ultima));
+                }
+                borrarHasta(ultima);
+            } finally {
+                candado.unlockWrite(stamp);
+            }
+        } finally {
+            volcando.unlock();
+        }
+        if (!deltas.isEmpty()) {
+            olvidar(deltas.keySet());
+            refrescar(deltas.keySet());
+        }
+    }
+
+    /**
+     * Pasa el diario abierto (si lo hay, con su contenido) a la generación
+     * indicada. Solo con el candado de escritura.
+     */
+    private void cambiarGeneracion(long nueva) throws IOException {
+        if (diario != null) {
+            cerrar(diario);
+            Files.move(ruta(generacion), ruta(nueva));
+        }
+        diario = abrir(nueva);
+        generacion = nueva;
+    }
+
+    @PreDestroy
+    public void detener() {
+        volcar();
+        cerrar(diario);
+    }
+
+    /**
+     * Los UPDATE de stock y la generación aplicada, en una transacción.
+     *
+     * Un UPDATE que no toca ninguna fila es una zapatilla que ya no existe.
+     * Al volcar es un borrado normal (olvidar() la quita del libro); con
+     * exigirTodas (al recuperar) se deshace todo y devuelve false.
+     */
+    private boolean aplicar(Map<Long, Long> deltas, long generacionAplicada, boolean exigirTodas) {
+        Boolean aplicado = transactionTemplate.execute(status -> {
+            int[] filas = entityManager.unwrap(Session.class).doReturningWork(conexion -> {
+                try (PreparedStatement update = conexion.prepareStatement(UPDATE_STOCK)) {
+                    Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+                    for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+                        update.setLong(1, delta.getValue());
+                        update.setTimestamp(2, ahora);
+                        update.setLong(3, delta.getKey());
+                        update.addBatch();
+                    }
+                    return update.executeBatch();
+                }
+            });
+            if (exigirTodas && Arrays.stream(filas).anyMatch(n -> n == 0)) {
+                status.setRollbackOnly();
+                return false;
+            }
+            guardarGeneracion(generacionAplicada);
+            return true;
+        });
+        return Boolean.TRUE.equals(aplicado);
+    }
+
+    private void guardarGeneracion(long generacionAplicada) {
+        DiarioStock control = entityManager.find(DiarioStock.class, DiarioStock.ID);
+        if (control == null) {
+            entityManager.persist(new DiarioStock(DiarioStock.ID, generacionAplicada));
+        } else {
+            control.setGeneracionAplicada(generacionAplicada);
+        }
+    }
+
+    private Set<Long> sacarEscritas() {
+        Set<Long> resultado = new HashSet<>();
+        for (Iterator<Long> it = escritas.iterator(); it.hasNext(); ) {
+            resultado.add(it.next());
+            it.remove();
+        }
+        return resultado;
+    }
+
+    /**
+     * Tras guardar: caché, índices, versión del catálogo y una notificación
+     * de stock por zapatilla.
+     */
+    private void refrescar(Collection<Long> ids) {
+        List<Zapatilla> zapatillas = repository.findAllById(ids);
+        for (Zapatilla zapatilla : zapatillas) {
+            indices.indexar(zapatilla);
+            cache.guardar(mapper.toResponseDto(zapatilla));
+        }
+        catalogoVersion.incrementar();
+        for (Zapatilla zapatilla : zapatillas) {
+            notificador.actualizada(zapatilla, mapper.toParcheStockDto(zapatilla));
+        }
+    }
+
+    /**
+     * Sin nada pendiente: quita del libro las zapatillas que no se han movido
+     * desde el último volcado, para que no crezca con todo el catálogo.
+     */
+    private void descartarInactivas() {
+        long stamp = candado.writeLock();
+        try {
+            entradas.values().removeIf(entrada -> !entrada.usada && entrada.pendiente.sum() == 0);
+            entradas.values().forEach(entrada -> entrada.usada = false);
+        } finally {
+            candado.unlockWrite(stamp);
+        }
+    }
+
+    private Path ruta(long gen) {
+        return directorio.resolve(PREFIJO + gen + EXTENSION);
+    }
+
+    private FileChannel abrir(long gen) throws IOException {
+        return FileChannel.open(ruta(gen),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void cerrar(FileChannel canal) {
+        if (canal == null) {
+            return;
+        }
+        try {
+            canal.force(false);
+            canal.close();
+        } catch (IOException e) {
+            log.warn("Ledger de stock: error al cerrar el diario: {}", e.getMessage());
+        }
+    }
+
+    private List<Path> ficheros() throws IOException {
+        try (Stream<Path> ficheros = Files.list(directorio)) {
+            List<Path> resultado = new ArrayList<>(ficheros
+                    .filter(f -> f.getFileName().toString().matches(PREFIJO + "\\d+\\" + EXTENSION))
+                    .toList());
+            resultado.sort((a, b) -> Long.compare(generacion(a), generacion(b)));
+            return resultado;
+        }
+    }
+
+    private static long generacion(Path fichero) {
+        String nombre = fichero.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length()));
+    }
+
+    /**
+     * Suma los deltas de un fichero del diario. Una última línea sin salto de
+     * línea es una escritura cortada por la caída y se ignora.
+     */
+    private static void leer(Path fichero, Map<Long, Long> deltas) throws IOException {
+        String contenido = Files.readString(fichero, StandardCharsets.US_ASCII);
+        String[] lineas = contenido.split("\n", -1);
+        // La última posición es "" si el fichero acaba en salto de línea, o la línea cortada
+        for (int i = 0; i < lineas.length - 1; i++) {
+            String[] partes = lineas[i].split(" ");
+            if (partes.length != 2) {
+                continue;
+            }
+            try {
+                deltas.merge(Long.valueOf(partes[0]), Long.valueOf(partes[1]), Long::sum);
+            } catch (NumberFormatException e) {
+                log.warn("Ledger de stock: línea no válida en {}: {}", fichero.getFileName(), lineas[i]);
+            }
+        }
+    }
+
+    /**
+     * Mueve ficheros del diario que no se van a reaplicar fuera de la
+     * secuencia de generaciones, sin borrarlos.
+     */
+    private void apartar(List<Path> ficheros) throws IOException {
+        Path apartados = Files.createDirectories(directorio.resolve(DIRECTORIO_APARTADOS));
+        for (Path fichero : ficheros) {
+            Files.move(fichero, apartados.resolve(System.currentTimeMillis() + "-" + fichero.getFileName()));
+        }
+    }
+
+    private void borrarHasta(long gen) {
+        try {
+            for (Path fichero : ficheros()) {
+                if (generacion(fichero) <= gen) {
+                    Files.deleteIfExists(fichero);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Ledger de stock: no se pudieron borrar diarios ya aplicados: {}", e.getMessage());
+        }
+    }
+}
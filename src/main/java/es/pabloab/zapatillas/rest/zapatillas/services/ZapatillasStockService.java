@@ -0,0 +1,252 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.cache.ZapatillasCache;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ReservaStockDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ReservaStockAjenaException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ReservaStockLimiteException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ReservaStockNotFoundException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaBadRequestException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaNotFoundException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaStockInsuficienteException;
+import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
+import es.pabloab.zapatillas.rest.zapatillas.models.ReservaStock;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ReservasStockRepository;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ventas y reservas de stock sin condiciones de carrera.
+ *
+ * ¿POR QUÉ NO CON update()?
+ * ==========================
+ * update() lee la zapatilla, calcula el nuevo stock en Java y la guarda: dos
+ * ventas simultáneas leen el mismo stock y la segunda pisa a la primera.
+ * Bloquear la fila (SELECT ... FOR UPDATE) lo arregla pero serializa todas
+ * las ventas. Aquí el descuento lo hace ZapatillasStockLedger en memoria,
+ * con compareAndSet (nunca baja de 0 ni se pierde una venta), y lo guarda
+ * en la BD por lotes. Si no hay unidades fallamos al momento (409), sin
+ * esperar ni reintentar.
+ *
+ * RESERVAS
+ * ========
+ * Reservar descuenta el stock y guarda una ReservaStock con fecha de
+ * caducidad. Confirmarla la borra (las unidades ya estaban descontadas);
+ * liberarla, o que caduque, devuelve las unidades. Una tarea @Scheduled
+ * libera las caducadas cada zapatillas.reservas.barrido-ms milisegundos.
+ *
+ * Cada reserva guarda su usuario: solo él (o un ADMIN) puede confirmarla o
+ * liberarla (403 si no), y nadie puede tener abiertas más de
+ * zapatillas.reservas.max-unidades-por-usuario unidades a la vez (409), para
+ * que un solo usuario no pueda dejar sin stock una zapatilla a base de
+ * reservas que nunca confirma. El límite se comprueba con un candado por
+ * usuario (repartido en CANDADOS_USUARIO) para que dos reservas simultáneas
+ * del mismo usuario no lo salten.
+ *
+ * La fila de la reserva y sus unidades se escriben en la MISMA transacción
+ * (ZapatillasStockLedger.cambiarEnTransaccion), no por el diario del ledger:
+ * si el proceso cae a mitad, no quedan unidades apartadas sin reserva ni una
+ * reserva borrada sin devolver sus unidades.
+ */
+@Slf4j
+@Service
+public class ZapatillasStockService {
+
+    private static final int BARRIDO_MAX = 500;
+    private static final int CANDADOS_USUARIO = 64;
+
+    private final ZapatillasRepository repository;
+    private final ReservasStockRepository reservasRepository;
+    private final ZapatillaMapper mapper;
+    private final ZapatillasCache cache;
+    private final ZapatillasStockLedger ledger;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttlPorDefecto;
+    private final Duration ttlMaximo;
+    private final int maxUnidadesPorUsuario;
+    private final ReentrantLock[] candadosUsuario = new ReentrantLock[CANDADOS_USUARIO];
+
+    public ZapatillasStockService(
+            ZapatillasRepository repository,
+            ReservasStockRepository reservasRepository,
+            ZapatillaMapper mapper,
+            ZapatillasCache cache,
+            ZapatillasStockLedger ledger,
+            PlatformTransactionManager transactionManager,
+            @Value("${zapatillas.reservas.ttl:10m}") Duration ttlPorDefecto,
+            @Value("${zapatillas.reservas.ttl-max:1h}") Duration ttlMaximo,
+            @Value("${zapatillas.reservas.max-unidades-por-usuario:20}") int maxUnidadesPorUsuario) {
+        this.repository = repository;
+        this.reservasRepository = reservasRepository;
+        this.mapper = mapper;
+        this.cache = cache;
+        this.ledger = ledger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlPorDefecto = ttlPorDefecto;
+        this.ttlMaximo = ttlMaximo;
+        this.maxUnidadesPorUsuario = maxUnidadesPorUsuario;
+        for (int i = 0; i < CANDADOS_USUARIO; i++) {
+            candadosUsuario[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Vende "cantidad" unidades: descuento atómico o 409 si no hay suficientes.
+     * La respuesta lleva el stock que queda; la BD se actualiza en el
+     * siguiente volcado del ledger.
+     */
+    public ZapatillaResponseDto decrementar(Long id, int cantidad) {
+        validarCantidad(cantidad);
+        long restante = ledger.descontar(id, cantidad);
+        if (restante < 0) {
+            throw new ZapatillaStockInsuficienteException(id, cantidad);
+        }
+        ZapatillaResponseDto actual = cache.porId(id, () -> repository.findById(id)
+                .map(mapper::toResponseDto)
+                .orElseThrow(() -> new ZapatillaNotFoundException(id)));
+        return actual.toBuilder().stock((int) restante).build();
+    }
+
+    /**
+     * Aparta "cantidad" unidades durante ttl (o zapatillas.reservas.ttl si es null)
+     * a nombre del usuario.
+     */
+    public ReservaStockDto reservar(Long id, int cantidad, Duration ttl, String usuario) {
+        validarCantidad(cantidad);
+        Duration duracion = ttl != null ? ttl : ttlPorDefecto;
+        if (duracion.isNegative() || duracion.isZero() || duracion.compareTo(ttlMaximo) > 0) {
+            throw new ZapatillaBadRequestException("La duración de la reserva debe ser positiva y como mucho " + ttlMaximo);
+        }
+
+        LocalDateTime ahora = LocalDateTime.now();
+        ReservaStock reserva = ReservaStock.builder()
+                .id(UUID.randomUUID())
+                .zapatillaId(id)
+                .cantidad(cantidad)
+                .usuario(usuario)
+                .creadaEn(ahora)
+                .expiraEn(ahora.plus(duracion))
+                .build();
+        ReentrantLock candado = candadosUsuario[Math.floorMod(usuario.hashCode(), CANDADOS_USUARIO)];
+        candado.lock();
+        try {
+            long abiertas = reservasRepository.sumarCantidadPorUsuario(usuario);
+            if (abiertas + cantidad > maxUnidadesPorUsuario) {
+                throw new ReservaStockLimiteException(usuario, abiertas, maxUnidadesPorUsuario);
+            }
+            if (!ledger.cambiarEnTransaccion(id, -cantidad, () -> {
+                reservasRepository.save(reserva);
+                return true;
+            })) {
+                throw new ZapatillaStockInsuficienteException(id, cantidad);
+            }
+        } finally {
+            candado.unlock();
+        }
+        log.info("Reserva {}: {} unidades de la zapatilla id={} para {} hasta {}",
+                reserva.getId(), cantidad, id, usuario, reserva.getExpiraEn());
+        return ReservaStockDto.builder()
+                .id(reserva.getId())
+                .zapatillaId(reserva.getZapatillaId())
+                .cantidad(reserva.getCantidad())
+                .expiraEn(reserva.getExpiraEn())
+                .build();
+    }
+
+    /**
+     * Confirma la venta de una reserva: las unidades ya estaban descontadas.
+     * Solo su usuario o un ADMIN.
+     */
+    public void confirmar(UUID reservaId, String usuario, boolean admin) {
+        comprobarDueno(reservaId, usuario, admin);
+        Integer borradas = transactionTemplate.execute(status -> reservasRepository.borrar(reservaId));
+        if (borradas == null || borradas == 0) {
+            throw new ReservaStockNotFoundException(reservaId);
+        }
+        log.info("Reserva {} confirmada", reservaId);
+    }
+
+    /**
+     * Anula una reserva y devuelve sus unidades al stock. Solo su usuario o un ADMIN.
+     */
+    public void liberar(UUID reservaId, String usuario, boolean admin) {
+        comprobarDueno(reservaId, usuario, admin);
+        if (!liberarSiExiste(reservaId)) {
+            throw new ReservaStockNotFoundException(reservaId);
+        }
+    }
+
+    /**
+     * 404 si la reserva no existe, 403 si es de otro usuario y no es ADMIN.
+     * El usuario de una reserva no cambia, así que basta con mirarlo antes de borrarla.
+     */
+    private void comprobarDueno(UUID reservaId, String usuario, boolean admin) {
+        ReservaStock reserva = reservasRepository.findById(reservaId)
+                .orElseThrow(() -> new ReservaStockNotFoundException(reservaId));
+        if (!admin && !reserva.getUsuario().equals(usuario)) {
+            throw new ReservaStockAjenaException(reservaId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${zapatillas.reservas.barrido-ms:10000}")
+    public void liberarCaducadas() {
+        List<ReservaStock> caducadas;
+        int liberadas = 0;
+        do {
+            caducadas = reservasRepository.findByExpiraEnBeforeOrderByExpiraEn(LocalDateTime.now(), Limit.of(BARRIDO_MAX));
+            for (ReservaStock reserva : caducadas) {
+                if (liberarSiExiste(reserva.getId())) {
+                    liberadas++;
+                }
+            }
+        } while (caducadas.size() == BARRIDO_MAX);
+        if (liberadas > 0) {
+            log.info("Liberadas {} reservas de stock caducadas", liberadas);
+        }
+    }
+
+    /**
+     * Borra la reserva y devuelve sus unidades. Si otro hilo la ha borrado
+     * antes (confirmación o barrido), no hace nada.
+     */
+    private boolean liberarSiExiste(UUID reservaId) {
+        ReservaStock reserva = reservasRepository.findById(reservaId).orElse(null);
+        if (reserva == null) {
+            return false;
+        }
+        boolean liberada;
+        try {
+            // Solo quien la borra de verdad devuelve las unidades, en la misma transacción
+            liberada = ledger.cambiarEnTransaccion(reserva.getZapatillaId(), reserva.getCantidad(),
+                    () -> reservasRepository.borrar(reservaId) == 1);
+        } catch (ZapatillaNotFoundException e) {
+            // La zapatilla ya no existe: no hay stock que devolver
+            Integer borradas = transactionTemplate.execute(status -> reservasRepository.borrar(reservaId));
+            return borradas != null && borradas == 1;
+        }
+        if (!liberada) {
+            return false;
+        }
+        log.info("Reserva {} liberada: {} unidades vuelven a la zapatilla id={}",
+                reservaId, reserva.getCantidad(), reserva.getZapatillaId());
+        return true;
+    }
+
+    private static void validarCantidad(int cantidad) {
+        if (cantidad < 1) {
+            throw new ZapatillaBadRequestException("La cantidad debe ser al menos 1");
+        }
+    }
+}
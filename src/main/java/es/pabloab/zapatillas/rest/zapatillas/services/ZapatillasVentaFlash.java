@@ -0,0 +1,327 @@
+package es.pabloab.zapatillas.rest.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.CompraFlashDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.CompraFlashDto.Estado;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion.TipoNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaBadRequestException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaColaLlenaException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaNotFoundException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaStockInsuficienteException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaVentaDetenidaException;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasNotificador;
+import es.pabloab.zapatillas.utils.ColaMpsc;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cola de admisión para ventas flash (lanzamientos con mucha demanda).
+ *
+ * ¿POR QUÉ?
+ * =========
+ * Cuando sale una edición limitada, miles de compradores piden la misma
+ * zapatilla a la vez. Si cada petición descuenta el stock por su cuenta,
+ * todos los hilos compiten por el mismo contador y las respuestas tardan
+ * más cuanta más gente hay. Aquí cada zapatilla tiene su cola:
+ * - El POST solo encola la compra (ColaMpsc: un CAS, sin candados) y
+ *   responde 202 con la posición. El hilo HTTP queda libre al momento.
+ * - UN solo trabajador por zapatilla saca las compras en orden de llegada
+ *   y las aplica sobre el stock en memoria (ZapatillasStockLedger), sin
+ *   competir con nadie.
+ * - Con el stock agotado (contando lo que ya está en cola) la compra se
+ *   rechaza sin encolar (409); con la cola llena, 503. Las unidades se
+ *   apartan con un CAS que comprueba el límite, así que la cola nunca crece
+ *   más allá de las unidades que quedan.
+ * - La posición y el resultado se envían al comprador por STOMP, a su
+ *   /user/queue/notificaciones (ZapatillasNotificador.enviarPrivada).
+ *
+ * Los trabajadores salen de un pool fijo (zapatillas.flash.hilos): una
+ * zapatilla con cola ocupa un hilo mientras tenga compras, hasta RONDA
+ * seguidas, y luego cede el turno a las demás.
+ *
+ * MEMORIA Y PARADA
+ * ================
+ * Cada cola reserva su array entero al crearse (capacidad huecos), así que
+ * solo existen mientras tienen compras: el trabajador que la deja vacía la
+ * cierra y la quita del mapa. La siguiente compra crea otra.
+ *
+ * Al cerrar la aplicación se dejan de admitir compras (503) y se espera a
+ * que los trabajadores vacíen las colas (zapatillas.flash.espera-cierre):
+ * esas compras ya se respondieron con 202. Lo que quede al agotar la espera
+ * se rechaza y se avisa al comprador. Se hace con ContextClosedEvent, antes
+ * de que se pare el broker STOMP, para que los avisos aún salgan.
+ */
+@Slf4j
+@Component
+public class ZapatillasVentaFlash {
+
+    private static final int RONDA = 1024;
+    // enCola de una cola cerrada: no admite más compras
+    private static final long CERRADA = -1;
+
+    private final ZapatillasStockLedger ledger;
+    private final ZapatillasNotificador notificador;
+    private final ExecutorService trabajadores;
+    private final int capacidad;
+    private final Duration esperaCierre;
+
+    private final Map<Long, ColaProducto> colas = new ConcurrentHashMap<>();
+    private volatile boolean detenida;
+
+    public ZapatillasVentaFlash(
+            ZapatillasStockLedger ledger,
+            ZapatillasNotificador notificador,
+            @Value("${zapatillas.flash.capacidad:16384}") int capacidad,
+            @Value("${zapatillas.flash.hilos:4}") int hilos,
+            @Value("${zapatillas.flash.espera-cierre:10s}") Duration esperaCierre) {
+        this.ledger = ledger;
+        this.notificador = notificador;
+        this.capacidad = capacidad;
+        this.esperaCierre = esperaCierre;
+        AtomicInteger numero = new AtomicInteger();
+        this.trabajadores = Executors.newFixedThreadPool(Math.max(1, hilos), tarea -> {
+            Thread hilo = new Thread(tarea, "venta-flash-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    private record Compra(UUID id, Long zapatillaId, int cantidad, String usuario) {
+    }
+
+    /**
+     * La cola de una zapatilla y lo que está pidiendo.
+     */
+    private final class ColaProducto {
+        private final Long zapatillaId;
+        private final ColaMpsc<Compra> cola = new ColaMpsc<>(capacidad);
+        // Unidades pedidas por las compras que aún están en la cola (CERRADA si ya no se usa)
+        private final AtomicLong enCola = new AtomicLong();
+        // Hay un trabajador vaciando la cola (como mucho uno)
+        private final AtomicBoolean programada = new AtomicBoolean();
+
+        private ColaProducto(Long zapatillaId) {
+            this.zapatillaId = zapatillaId;
+        }
+
+        /**
+         * Aparta las unidades si caben en lo disponible: la comprobación y la
+         * suma van en el mismo CAS, así que dos compras no pueden llevarse la
+         * misma unidad.
+         *
+         * @return false si no caben; null si la cola está cerrada
+         */
+        private Boolean apartar(long disponible, int cantidad) {
+            while (true) {
+                long pedidas = enCola.get();
+                if (pedidas == CERRADA) {
+                    return null;
+                }
+                if (disponible - pedidas < cantidad) {
+                    return false;
+                }
+                if (enCola.compareAndSet(pedidas, pedidas + cantidad)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pone la compra en la cola de la zapatilla.
+     *
+     * @return la compra EN_COLA con su posición
+     * @throws ZapatillaStockInsuficienteException si ya no quedan unidades para ella
+     * @throws ZapatillaColaLlenaException         si la cola está llena
+     */
+    public CompraFlashDto comprar(Long zapatillaId, int cantidad, String usuario) {
+        if (cantidad < 1) {
+            throw new ZapatillaBadRequestException("La cantidad debe ser al menos 1");
+        }
+        if (detenida) {
+            throw new ZapatillaVentaDetenidaException(zapatillaId);
+        }
+        // disponible() lanza 404 si no existe, antes de crear ninguna cola
+        long disponible = ledger.disponible(zapatillaId);
+        ColaProducto producto;
+        Boolean apartadas;
+        do {
+            producto = colas.computeIfAbsent(zapatillaId, ColaProducto::new);
+            apartadas = producto.apartar(disponible, cantidad);
+            if (apartadas == null) {
+                // La acaba de cerrar su trabajador: se quita (si no lo ha hecho ya él) y se crea otra
+                colas.remove(zapatillaId, producto);
+            }
+        } while (apartadas == null);
+        if (!apartadas) {
+            // Si la ha creado esta compra y no lleva nada, que no se quede en el mapa
+            if (producto.enCola.compareAndSet(0, CERRADA)) {
+                colas.remove(zapatillaId, producto);
+            }
+            throw new ZapatillaStockInsuficienteException(zapatillaId, cantidad);
+        }
+
+        long posicion = producto.cola.reservar();
+        if (posicion < 0) {
+            producto.enCola.addAndGet(-cantidad);
+            throw new ZapatillaColaLlenaException(zapatillaId);
+        }
+        Compra compra = new Compra(UUID.randomUUID(), zapatillaId, cantidad, usuario);
+        CompraFlashDto enCola = CompraFlashDto.builder()
+                .id(compra.id())
+                .zapatillaId(zapatillaId)
+                .cantidad(cantidad)
+                .estado(Estado.EN_COLA)
+                // El trabajador no puede pasar de un hueco sin publicar: la posición es exacta
+                .posicion(posicion - producto.cola.consumidos() + 1)
+                .build();
+        try {
+            // Antes de publicar, para que llegue siempre antes que el resultado
+            notificar(compra, TipoNotificacion.PURCHASE_QUEUED,
+                    "Compra en cola, posición " + enCola.getPosicion(), enCola);
+        } finally {
+            producto.cola.publicar(posicion, compra);
+        }
+        programar(producto);
+        return enCola;
+    }
+
+    /**
+     * Compras en cola ahora mismo para una zapatilla.
+     */
+    public int enCola(Long zapatillaId) {
+        ColaProducto producto = colas.get(zapatillaId);
+        return producto != null ? producto.cola.tamano() : 0;
+    }
+
+    /**
+     * Zapatillas con cola ahora mismo (las vacías se quitan).
+     */
+    public int colasActivas() {
+        return colas.size();
+    }
+
+    private void programar(ColaProducto producto) {
+        if (producto.programada.compareAndSet(false, true)) {
+            try {
+                trabajadores.execute(() -> vaciar(producto));
+            } catch (RejectedExecutionException e) {
+                // Parando: la compra ya está en la cola y detener() la rechaza y avisa
+                producto.programada.set(false);
+            }
+        }
+    }
+
+    /**
+     * El trabajador de la zapatilla: aplica hasta RONDA compras en orden y,
+     * si quedan más, se vuelve a programar para no acaparar el hilo. Si la
+     * deja vacía, la cierra y la quita del mapa.
+     */
+    private void vaciar(ColaProducto producto) {
+        Compra compra;
+        int procesadas = 0;
+        // Interrumpido = detener() ha agotado la espera: lo que quede lo rechaza él
+        while (procesadas < RONDA && !Thread.currentThread().isInterrupted()
+                && (compra = producto.cola.sacar()) != null) {
+            // Se liberan antes de descontar: quien mire entre medias puede ver
+            // una unidad de más (la compra se rechazará aquí), nunca una de menos
+            producto.enCola.addAndGet(-compra.cantidad());
+            procesar(compra);
+            procesadas++;
+        }
+        producto.programada.set(false);
+        // Una compra publicada justo ahora puede haber visto programada = true.
+        // Las reservadas y aún sin publicar programan ellas mismas al publicar.
+        if (producto.cola.hayPublicado()) {
+            programar(producto);
+        } else if (producto.enCola.compareAndSet(0, CERRADA)) {
+            // Sin unidades apartadas no hay ninguna compra entre apartar() y publicar()
+            colas.remove(producto.zapatillaId, producto);
+        }
+    }
+
+    private void procesar(Compra compra) {
+        CompraFlashDto.CompraFlashDtoBuilder resultado = CompraFlashDto.builder()
+                .id(compra.id())
+                .zapatillaId(compra.zapatillaId())
+                .cantidad(compra.cantidad());
+        try {
+            long restante = ledger.descontar(compra.zapatillaId(), compra.cantidad());
+            if (restante >= 0) {
+                notificar(compra, TipoNotificacion.PURCHASE_CONFIRMED, "Compra confirmada",
+                        resultado.estado(Estado.CONFIRMADA).stockRestante(restante).build());
+                return;
+            }
+            notificar(compra, TipoNotificacion.PURCHASE_REJECTED, "Agotada",
+                    resultado.estado(Estado.RECHAZADA).motivo("Agotada").build());
+        } catch (ZapatillaNotFoundException e) {
+            notificar(compra, TipoNotificacion.PURCHASE_REJECTED, e.getMessage(),
+                    resultado.estado(Estado.RECHAZADA).motivo(e.getMessage()).build());
+        } catch (RuntimeException e) {
+            log.error("Venta flash: error al procesar la compra {}", compra.id(), e);
+            notificar(compra, TipoNotificacion.PURCHASE_REJECTED, "Error al procesar la compra",
+                    resultado.estado(Estado.RECHAZADA).motivo("Error al procesar la compra").build());
+        }
+    }
+
+    private void notificar(Compra compra, TipoNotificacion tipo, String mensaje, CompraFlashDto datos) {
+        if (compra.usuario() == null) {
+            return;
+        }
+        try {
+            notificador.enviarPrivada(compra.usuario(),
+                    ZapatillaNotificacion.crear(tipo, compra.zapatillaId(), mensaje, datos));
+        } catch (RuntimeException e) {
+            // Sin notificación la compra sigue siendo válida: no se deshace por esto
+            log.warn("Venta flash: no se pudo notificar {} a {}: {}", tipo, compra.usuario(), e.getMessage());
+        }
+    }
+
+    /**
+     * Deja de admitir compras y espera a que se procesen las ya aceptadas.
+     * Las que no dé tiempo a procesar se rechazan avisando al comprador.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void detener() throws InterruptedException {
+        detenida = true;
+        long limite = System.nanoTime() + esperaCierre.toNanos();
+        while (colas.values().stream().anyMatch(p -> p.cola.tamano() > 0) && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        trabajadores.shutdownNow();
+        if (!trabajadores.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Venta flash: los trabajadores no han terminado; no se rechazan las compras pendientes");
+            return;
+        }
+        // Ya no queda ningún trabajador: este hilo es el único consumidor
+        for (ColaProducto producto : colas.values()) {
+            Compra compra;
+            while ((compra = producto.cola.sacar()) != null) {
+                notificar(compra, TipoNotificacion.PURCHASE_REJECTED, "Venta detenida",
+                        CompraFlashDto.builder().id(compra.id()).zapatillaId(compra.zapatillaId())
+                                .cantidad(compra.cantidad()).estado(Estado.RECHAZADA).motivo("Venta detenida").build());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        trabajadores.shutdownNow();
+    }
+}
@@ -0,0 +1,63 @@
+package es.pabloab.zapatillas.rest.zapatillas.validators;
+
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaBadRequestException;
+import org.springframework.data.domain.Sort;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Órdenes permitidos en los listados de zapatillas (parámetro sortBy).
+ *
+ * ¿POR QUÉ UNA LISTA BLANCA?
+ * ===========================
+ * Antes cualquier sortBy llegaba tal cual a ORDER BY: ordenar por una
+ * columna sin índice obliga a leer la tabla entera y ordenarla en memoria
+ * (filesort) en cada petición. Aquí cada clave pública se traduce a un
+ * orden que coincide con un índice de Zapatilla (@Table indexes) y que
+ * siempre termina en id, así el orden es total (necesario para el cursor
+ * keyset) y la BD lo lee directamente del índice.
+ *
+ * Una clave que no está en la lista es un 400 Bad Request.
+ */
+public final class ZapatillaSortWhitelist {
+
+    private static final Map<String, List<String>> ORDENES = new LinkedHashMap<>();
+
+    static {
+        ORDENES.put("id", List.of("id"));                           // PRIMARY KEY
+        ORDENES.put("precio", List.of("precio", "id"));             // idx_zapatillas_precio_id
+        ORDENES.put("marca", List.of("marca", "id"));               // idx_zapatillas_marca_id
+        ORDENES.put("tipo", List.of("tipo", "precio", "id"));       // idx_zapatillas_tipo_precio_id
+        ORDENES.put("stock", List.of("stock", "id"));               // idx_zapatillas_stock_id
+        ORDENES.put("updatedAt", List.of("updatedAt", "id"));       // idx_zapatillas_updated_at_id
+    }
+
+    private ZapatillaSortWhitelist() {
+    }
+
+    /**
+     * Claves públicas admitidas en sortBy.
+     */
+    public static Set<String> claves() {
+        return ORDENES.keySet();
+    }
+
+    /**
+     * Traduce sortBy + direction al Sort indexado. Todas las columnas van en
+     * la misma dirección para que la BD pueda recorrer el índice al revés.
+     *
+     * @throws ZapatillaBadRequestException si sortBy no está en la lista blanca
+     */
+    public static Sort resolver(String sortBy, String direction) {
+        List<String> propiedades = ORDENES.get(sortBy);
+        if (propiedades == null) {
+            throw new ZapatillaBadRequestException(
+                    "No se puede ordenar por '" + sortBy + "'. Valores permitidos: " + claves());
+        }
+        Sort.Direction dir = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(dir, propiedades.toArray(String[]::new));
+    }
+}
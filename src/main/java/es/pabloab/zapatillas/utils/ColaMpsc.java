@@ -0,0 +1,119 @@
+package es.pabloab.zapatillas.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cola circular acotada de muchos productores y UN consumidor (MPSC).
+ *
+ * ¿POR QUÉ NO UNA ArrayBlockingQueue?
+ * ====================================
+ * ArrayBlockingQueue protege cabeza y cola con un único ReentrantLock: con
+ * miles de hilos encolando a la vez, todos se turnan en ese candado. Aquí
+ * (esquema de D. Vyukov) cada hueco del array lleva un número de secuencia:
+ * - Un productor se queda con un hueco con un compareAndSet sobre la cola
+ *   y lo publica escribiendo su secuencia; no espera a nadie.
+ * - El consumidor, que es uno solo, avanza la cabeza sin CAS.
+ * - Llena = el hueco siguiente aún no lo ha vaciado el consumidor: se
+ *   rechaza al momento en lugar de bloquear al productor.
+ *
+ * Reservar y publicar van por separado (como en el Disruptor): entre los dos
+ * pasos el productor ya conoce su posición y el consumidor no puede
+ * adelantarle, porque el hueco aún no está publicado.
+ */
+public final class ColaMpsc<E> {
+
+    private final Object[] elementos;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    private final AtomicLong cola = new AtomicLong();
+    // Solo la escribe el consumidor
+    private volatile long cabeza;
+
+    /**
+     * @param capacidad se redondea a la siguiente potencia de 2
+     */
+    public ColaMpsc(int capacidad) {
+        int tamano = Integer.highestOneBit(Math.max(2, capacidad) - 1) << 1;
+        this.elementos = new Object[tamano];
+        this.secuencias = new AtomicLongArray(tamano);
+        this.mascara = tamano - 1;
+        for (int i = 0; i < tamano; i++) {
+            secuencias.set(i, i);
+        }
+    }
+
+    /**
+     * Reserva el siguiente hueco. Hay que llamar a publicar() con la posición
+     * devuelta SIEMPRE (también si falla algo entre medias): el consumidor se
+     * detiene en un hueco reservado y no publicado.
+     *
+     * @return la posición reservada, o -1 si la cola está llena
+     */
+    public long reservar() {
+        while (true) {
+            long posicion = cola.get();
+            long diferencia = secuencias.get((int) posicion & mascara) - posicion;
+            if (diferencia == 0) {
+                if (cola.compareAndSet(posicion, posicion + 1)) {
+                    return posicion;
+                }
+            } else if (diferencia < 0) {
+                return -1;
+            }
+            // diferencia > 0: otro productor se ha llevado el hueco, se reintenta
+        }
+    }
+
+    public void publicar(long posicion, E elemento) {
+        int i = (int) posicion & mascara;
+        elementos[i] = elemento;
+        // Escritura volátil: el consumidor que lea la secuencia ve el elemento
+        secuencias.set(i, posicion + 1);
+    }
+
+    /**
+     * Solo desde el hilo consumidor.
+     *
+     * @return el siguiente elemento, o null si no hay ninguno publicado
+     */
+    @SuppressWarnings("unchecked")
+    public E sacar() {
+        long posicion = cabeza;
+        int i = (int) posicion & mascara;
+        if (secuencias.get(i) != posicion + 1) {
+            return null;
+        }
+        E elemento = (E) elementos[i];
+        elementos[i] = null;
+        secuencias.set(i, posicion + elementos.length);
+        cabeza = posicion + 1;
+        return elemento;
+    }
+
+    /**
+     * ¿Hay un elemento publicado esperando? (sin sacarlo)
+     */
+    public boolean hayPublicado() {
+        long posicion = cabeza;
+        return secuencias.get((int) posicion & mascara) == posicion + 1;
+    }
+
+    /**
+     * Elementos que ya ha sacado el consumidor desde el principio.
+     */
+    public long consumidos() {
+        return cabeza;
+    }
+
+    /**
+     * Reservados y aún no sacados (aproximado con productores en marcha).
+     */
+    public int tamano() {
+        return (int) Math.max(0, cola.get() - cabeza);
+    }
+
+    public int capacidad() {
+        return elementos.length;
+    }
+}
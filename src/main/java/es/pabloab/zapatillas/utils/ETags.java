@@ -0,0 +1,42 @@
+package es.pabloab.zapatillas.utils;
+
+/**
+ * Construcción de ETags.
+ *
+ * - Recurso individual: id + @Version, ETag fuerte. La versión sube en cada
+ *   escritura (también al volcar las ventas del ledger de stock), así que dos
+ *   respuestas con el mismo ETag son idénticas y If-Match puede compararla sin
+ *   ambigüedad.
+ * - Listados: la versión del catálogo (ZapatillasCatalogoVersion), ETag
+ *   DÉBIL (W/). El mismo listado se sirve en claro o en gzip
+ *   (ZapatillasPaginasCacheFilter) y un ETag fuerte prometería los mismos
+ *   bytes en las dos. Uno débil solo promete el mismo contenido, que es lo
+ *   que If-None-Match necesita (usa comparación débil).
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String deRecurso(Long id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    /**
+     * ¿Cumple el ETag actual la cabecera If-Match? ("*" o alguno de la lista).
+     * If-Match usa comparación fuerte, así que un ETag débil (W/) nunca coincide.
+     */
+    public static boolean coincide(String ifMatch, String etag) {
+        for (String candidato : ifMatch.split(",")) {
+            String limpio = candidato.trim();
+            if (limpio.equals("*") || limpio.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String deVersion(long version) {
+        return "W/\"v" + Long.toHexString(version) + "\"";
+    }
+}
@@ -0,0 +1,144 @@
+package es.pabloab.zapatillas.utils.pagination;
+
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaBadRequestException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Cursor opaco para la paginación por keyset (seek).
+ *
+ * ¿POR QUÉ UN CURSOR EN LUGAR DE page/size?
+ * ==========================================
+ * Con OFFSET la base de datos tiene que leer y descartar todas las filas
+ * anteriores: la página 10.000 cuesta mucho más que la página 0.
+ * Con keyset guardamos los valores de ordenación de la última fila vista
+ * (por ejemplo precio + id) y la siguiente consulta empieza justo ahí:
+ *   WHERE (precio, id) > (:precio, :id) ORDER BY precio, id LIMIT :size
+ * El coste es el mismo para cualquier página.
+ *
+ * FORMATO DEL TOKEN:
+ * Base64 URL-safe de un JSON con tripletas [propiedad, tipo, valor].
+ * Guardamos el tipo para poder reconstruir el valor exacto (Double, fecha...)
+ * que Spring Data necesita para comparar. El cliente no debe interpretarlo.
+ *
+ * @Component para usar el JsonMapper de la aplicación, como el resto del código.
+ */
+@Component
+@RequiredArgsConstructor
+public class KeysetCursor {
+
+    private static final TypeReference<List<List<String>>> ENTRADAS = new TypeReference<>() {};
+
+    private final JsonMapper jsonMapper;
+
+    /**
+     * Codifica las claves de una posición keyset en un token opaco.
+     */
+    public String encode(ScrollPosition position) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.getKeys().isEmpty()) {
+            return null;
+        }
+        List<List<String>> entradas = new ArrayList<>();
+        keyset.getKeys().forEach((propiedad, valor) ->
+                entradas.add(List.of(propiedad, tipoDe(valor), String.valueOf(valor))));
+        try {
+            byte[] json = jsonMapper.writeValueAsBytes(entradas);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (JacksonException e) {
+            throw new IllegalStateException("No se pudo codificar el cursor", e);
+        }
+    }
+
+    /**
+     * Decodifica un token en una posición keyset hacia delante o hacia atrás
+     * y comprueba que sus claves son las del orden actual (sus propiedades
+     * más id). Un cursor de otro orden (sortBy cambiado a mano, o el
+     * cursor de otro listado) haría fallar la consulta de Spring Data con un
+     * 500; así es un 400.
+     *
+     * @throws ZapatillaBadRequestException si el token está corrupto, manipulado
+     *                                      o no corresponde al orden pedido
+     */
+    public KeysetScrollPosition decode(String token, ScrollPosition.Direction direction, Sort sort) {
+        Map<String, Object> keys;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(token);
+            List<List<String>> entradas = jsonMapper.readValue(new String(json, StandardCharsets.UTF_8), ENTRADAS);
+            keys = new LinkedHashMap<>();
+            for (List<String> entrada : entradas) {
+                if (entrada.size() != 3) {
+                    throw new IllegalArgumentException("Entrada de cursor incompleta");
+                }
+                keys.put(entrada.get(0), valorDe(entrada.get(1), entrada.get(2)));
+            }
+        } catch (RuntimeException e) {
+            throw new ZapatillaBadRequestException("Cursor no válido: " + token);
+        }
+
+        Set<String> esperadas = new LinkedHashSet<>();
+        sort.forEach(orden -> esperadas.add(orden.getProperty()));
+        esperadas.add("id");
+        if (!keys.keySet().equals(esperadas)) {
+            throw new ZapatillaBadRequestException("El cursor no corresponde al orden pedido (" + esperadas
+                    + "); vuelve a empezar sin 'after'/'before'");
+        }
+        return ScrollPosition.of(keys, direction);
+    }
+
+    /**
+     * Cursor para pedir la página siguiente: la posición de la última fila.
+     */
+    public String next(Window<?> window) {
+        return window.isEmpty() ? null : encode(window.positionAt(window.size() - 1));
+    }
+
+    /**
+     * Cursor para pedir la página anterior: la posición de la primera fila.
+     */
+    public String prev(Window<?> window) {
+        return window.isEmpty() ? null : encode(window.positionAt(0));
+    }
+
+    private static String tipoDe(Object valor) {
+        return switch (valor) {
+            case Long l -> "L";
+            case Integer i -> "I";
+            case Double d -> "D";
+            case LocalDateTime t -> "T";
+            case UUID u -> "U";
+            case String s -> "S";
+            default -> throw new IllegalArgumentException(
+                    "Tipo de clave no soportado en cursor: " + valor.getClass().getSimpleName());
+        };
+    }
+
+    private static Object valorDe(String tipo, String valor) {
+        return switch (tipo) {
+            case "L" -> Long.valueOf(valor);
+            case "I" -> Integer.valueOf(valor);
+            case "D" -> Double.valueOf(valor);
+            case "T" -> LocalDateTime.parse(valor);
+            case "U" -> UUID.fromString(valor);
+            case "S" -> valor;
+            default -> throw new IllegalArgumentException("Tipo de clave desconocido: " + tipo);
+        };
+    }
+}
@@ -1,6 +1,10 @@
 package es.pabloab.zapatillas.utils.pagination;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
+
 import java.util.List;
 
 /**
@@ -9,12 +13,20 @@ import java.util.List;
  * ¿Por qué un record? Porque solo necesitamos transportar datos, sin lógica.
  * Java genera automáticamente constructor, getters, equals, hashCode y toString.
  *
+ * En modo cursor (keyset) no se conoce el total, así que totalPages,
+ * totalElements y pageNumber valen -1 y la navegación se hace con
+ * nextCursor / prevCursor (que no se serializan en modo offset).
+ *
+ * En los listados sin COUNT (Slice) totalElements y totalPages son una
+ * estimación del contador: totalExact indica si el total es exacto.
+ *
  * @param <T> El tipo de los elementos (ej: ZapatillaResponseDto)
  */
 public record PageResponse<T>(
         List<T> content,          // Los elementos de esta página
         int totalPages,           // Total de páginas disponibles
         long totalElements,       // Total de elementos en BBDD
+        boolean totalExact,       // ¿totalElements es exacto o aproximado?
         int pageSize,             // Tamaño de página solicitado
         int pageNumber,           // Número de página actual (0-indexed)
         int totalPageElements,    // Elementos en ESTA página
@@ -22,7 +34,11 @@ public record PageResponse<T>(
         boolean first,            // ¿Es la primera página?
         boolean last,             // ¿Es la última página?
         String sortBy,            // Campo por el que se ordena
-        String direction          // ASC o DESC
+        String direction,         // ASC o DESC
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String nextCursor,        // Cursor para la página siguiente (solo modo cursor)
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String prevCursor         // Cursor para la página anterior (solo modo cursor)
 ) {
     /**
      * Factory method: convierte un Page<T> de Spring en nuestro PageResponse<T>.
@@ -34,6 +50,7 @@ public record PageResponse<T>(
                 page.getContent(),
                 page.getTotalPages(),
                 page.getTotalElements(),
+                true,
                 page.getSize(),
                 page.getNumber(),
                 page.getNumberOfElements(),
@@ -41,7 +58,59 @@ public record PageResponse<T>(
                 page.isFirst(),
                 page.isLast(),
                 sortBy,
-                direction
+                direction,
+                null,
+                null
+        );
+    }
+
+    /**
+     * Factory method para listados sin COUNT: Slice + total aproximado.
+     */
+    public static <T> PageResponse<T> ofSlice(Slice<T> slice, long aproximado, String sortBy, String direction) {
+        long total = SliceUtils.approximateTotal(slice, aproximado);
+        int totalPages = slice.getSize() == 0 ? 1 : (int) Math.ceil((double) total / slice.getSize());
+        return new PageResponse<>(
+                slice.getContent(),
+                totalPages,
+                total,
+                false,
+                slice.getSize(),
+                slice.getNumber(),
+                slice.getNumberOfElements(),
+                slice.isEmpty(),
+                slice.isFirst(),
+                slice.isLast(),
+                sortBy,
+                direction,
+                null,
+                null
+        );
+    }
+
+    /**
+     * Factory method para el modo cursor: envuelve un Window<T> de Spring Data.
+     *
+     * Los cursores los calcula el controlador con KeysetCursor, porque dependen
+     * de la dirección en la que se estaba navegando.
+     */
+    public static <T> PageResponse<T> ofWindow(Window<T> window, int size, String nextCursor, String prevCursor,
+                                               String sortBy, String direction) {
+        return new PageResponse<>(
+                window.getContent(),
+                -1,
+                -1,
+                false,
+                size,
+                -1,
+                window.size(),
+                window.isEmpty(),
+                prevCursor == null,
+                nextCursor == null,
+                sortBy,
+                direction,
+                nextCursor,
+                prevCursor
         );
     }
 }
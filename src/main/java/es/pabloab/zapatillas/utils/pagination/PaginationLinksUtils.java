@@ -1,6 +1,7 @@
 package es.pabloab.zapatillas.utils.pagination;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Component;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -55,6 +56,80 @@ public class PaginationLinksUtils {
         return linkHeader.toString();
     }
 
+    /**
+     * Cabecera Link para un Slice (listado sin COUNT).
+     *
+     * Igual que la de Page pero sin "last": el total es aproximado y un
+     * enlace a una última página inexacta llevaría a páginas vacías.
+     */
+    public String createLinkHeader(Slice<?> slice, UriComponentsBuilder uriBuilder) {
+        final StringBuilder linkHeader = new StringBuilder();
+
+        if (slice.hasNext()) {
+            String uri = buildUri(uriBuilder, slice.getNumber() + 1, slice.getSize());
+            linkHeader.append(buildLinkEntry(uri, "next"));
+        }
+
+        if (slice.hasPrevious()) {
+            String uri = buildUri(uriBuilder, slice.getNumber() - 1, slice.getSize());
+            if (!linkHeader.isEmpty()) linkHeader.append(", ");
+            linkHeader.append(buildLinkEntry(uri, "prev"));
+        }
+
+        String firstUri = buildUri(uriBuilder, 0, slice.getSize());
+        if (!linkHeader.isEmpty()) linkHeader.append(", ");
+        linkHeader.append(buildLinkEntry(firstUri, "first"));
+
+        return linkHeader.toString();
+    }
+
+    /**
+     * Cabecera Link para el modo cursor (keyset).
+     *
+     * Aquí no hay "last": sin COUNT no sabemos dónde acaba el catálogo.
+     * "first" vuelve al principio en modo cursor, sin after ni before.
+     *
+     * @param nextCursor Cursor de la página siguiente (null si no hay más)
+     * @param prevCursor Cursor de la página anterior (null si es la primera)
+     */
+    public String createCursorLinkHeader(String nextCursor, String prevCursor, int size,
+                                         UriComponentsBuilder uriBuilder) {
+        final StringBuilder linkHeader = new StringBuilder();
+
+        if (nextCursor != null) {
+            linkHeader.append(buildLinkEntry(buildCursorUri(uriBuilder, "after", nextCursor, size), "next"));
+        }
+
+        if (prevCursor != null) {
+            if (!linkHeader.isEmpty()) linkHeader.append(", ");
+            linkHeader.append(buildLinkEntry(buildCursorUri(uriBuilder, "before", prevCursor, size), "prev"));
+        }
+
+        if (!linkHeader.isEmpty()) linkHeader.append(", ");
+        linkHeader.append(buildLinkEntry(buildCursorUri(uriBuilder, null, null, size), "first"));
+
+        return linkHeader.toString();
+    }
+
+    /**
+     * Construye la URI de una página en modo cursor.
+     *
+     * Quitamos "page" (no tiene sentido con cursores) y el cursor contrario,
+     * para que nunca viajen after y before a la vez.
+     */
+    private String buildCursorUri(UriComponentsBuilder uriBuilder, String param, String cursor, int size) {
+        UriComponentsBuilder builder = uriBuilder.cloneBuilder()
+                .replaceQueryParam("page")
+                .replaceQueryParam("after")
+                .replaceQueryParam("before")
+                .replaceQueryParam("cursor", true)
+                .replaceQueryParam("size", size);
+        if (param != null) {
+            builder.replaceQueryParam(param, cursor);
+        }
+        return builder.build().encode().toUriString();
+    }
+
     /**
      * Construye la URI reemplazando los parámetros page y size.
      *
@@ -0,0 +1,42 @@
+package es.pabloab.zapatillas.utils.pagination;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Utilidades para combinar un Slice (sin COUNT) con un total aproximado.
+ *
+ * El Slice sabe con exactitud si hay página siguiente (pidió size+1 filas);
+ * el contador solo da una estimación. Ajustamos el total para que nunca
+ * contradiga al Slice: la navegación siempre es exacta, el total no.
+ */
+public final class SliceUtils {
+
+    private SliceUtils() {
+    }
+
+    /**
+     * Total aproximado coherente con el Slice.
+     *
+     * - Si hay siguiente página, al menos hay una fila más después de esta.
+     * - Si no la hay, el total exacto es offset + elementos de esta página.
+     */
+    public static long approximateTotal(Slice<?> slice, long aproximado) {
+        long hastaAqui = (long) slice.getNumber() * slice.getSize() + slice.getNumberOfElements();
+        if (!slice.hasNext()) {
+            return hastaAqui;
+        }
+        return Math.max(aproximado, hastaAqui + 1);
+    }
+
+    /**
+     * Convierte el Slice en un Page con total aproximado.
+     *
+     * Las plantillas Pebble (fragments/pager) trabajan con Page: así no
+     * tienen que distinguir entre listados exactos y aproximados.
+     */
+    public static <T> Page<T> toPage(Slice<T> slice, long aproximado) {
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), approximateTotal(slice, aproximado));
+    }
+}
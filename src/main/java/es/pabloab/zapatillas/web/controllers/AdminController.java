@@ -4,12 +4,14 @@ import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
 import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.utils.pagination.SliceUtils;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -59,6 +61,11 @@ public class AdminController {
     // =========================================================================
     // Muestra una tabla con todas las zapatillas, paginada.
     // Los parámetros de query (?page=0&size=10&marca=Nike) son opcionales.
+    //
+    // ¿Por qué Slice y no Page?
+    // Un Page lanza además un SELECT COUNT(*) con los mismos LIKE '%x%' que,
+    // con muchos datos, cuesta más que la consulta de la página. El Slice solo
+    // pide size+1 filas y el total se saca del contador aproximado.
     @GetMapping
     public String lista(Model model,
                         @RequestParam(name = "page", defaultValue = "0") int page,
@@ -66,9 +73,12 @@ public class AdminController {
                         @RequestParam(name = "marca", required = false) String marca,
                         @RequestParam(name = "tipo", required = false) String tipo) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("id").ascending());
-        Page<ZapatillaResponseDto> zapatillasPage = zapatillasService.findAll(marca, tipo, pageable);
+        Slice<ZapatillaResponseDto> zapatillasSlice = zapatillasService.findAllSlice(marca, tipo, pageable);
+        Page<ZapatillaResponseDto> zapatillasPage = SliceUtils.toPage(
+                zapatillasSlice, zapatillasService.countAproximado(marca, tipo));
 
         model.addAttribute("page", zapatillasPage);
+        model.addAttribute("totalAproximado", true);
         model.addAttribute("marca", marca);
         model.addAttribute("tipo", tipo);
 
@@ -2,10 +2,12 @@ package es.pabloab.zapatillas.web.controllers;
 
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
 import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.utils.pagination.SliceUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -35,15 +37,19 @@ public class ZonaPublicaController {
     }
 
     // Catálogo público de zapatillas con paginación
+    // Sin COUNT: Slice + total aproximado (ver AdminController.lista)
     @GetMapping({"/public", "/public/", "/public/index"})
     public String index(Model model,
                         @RequestParam(name = "page", defaultValue = "0") int page,
                         @RequestParam(name = "size", defaultValue = "8") int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by("id").ascending());
-        Page<ZapatillaResponseDto> zapatillasPage = zapatillasService.findAll(
+        Slice<ZapatillaResponseDto> zapatillasSlice = zapatillasService.findAllSlice(
                 null, null, pageable);
+        Page<ZapatillaResponseDto> zapatillasPage = SliceUtils.toPage(
+                zapatillasSlice, zapatillasService.countAproximado(null, null));
 
         model.addAttribute("page", zapatillasPage);
+        model.addAttribute("totalAproximado", true);
         return "index";
     }
 }
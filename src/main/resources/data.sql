@@ -6,20 +6,23 @@
 -- ============================================
 
 -- Zapatillas de ejemplo
-INSERT INTO ZAPATILLAS(marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at, uuid)
-VALUES ('Nike', 'Air Max 90', 'NI1234KE', 42.0, 'Rojo', 'Running', 89.99, 28,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID());
+INSERT INTO ZAPATILLAS(id, marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at, uuid, version)
+VALUES (1, 'Nike', 'Air Max 90', 'NI1234KE', 42.0, 'Rojo', 'Running', 89.99, 28,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID(), 0);
 
-INSERT INTO ZAPATILLAS(marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at, uuid)
-VALUES ('Fila', 'High Top', 'FI1234LA', 40.0, 'Blanco', 'Running', 79.99, 52,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID());
+INSERT INTO ZAPATILLAS(id, marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at, uuid, version)
+VALUES (2, 'Fila', 'High Top', 'FI1234LA', 40.0, 'Blanco', 'Running', 79.99, 52,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID(), 0);
 
-INSERT INTO ZAPATILLAS(marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at ,uuid)
-VALUES ('Adidas', 'UltraBoost', 'AD5678AS', 43.0, 'Negro', 'Running', 149.99, 15,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID());
+INSERT INTO ZAPATILLAS(id, marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at ,uuid, version)
+VALUES (3, 'Adidas', 'UltraBoost', 'AD5678AS', 43.0, 'Negro', 'Running', 149.99, 15,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID(), 0);
 
-INSERT INTO ZAPATILLAS(marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at ,uuid)
-VALUES ('Puma', 'RS-X', 'PU9012MA', 41.5, 'Azul', 'Casual', 99.99, 3,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID());
+INSERT INTO ZAPATILLAS(id, marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at ,uuid, version)
+VALUES (4, 'Puma', 'RS-X', 'PU9012MA', 41.5, 'Azul', 'Casual', 99.99, 3,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID(), 0);
 
-INSERT INTO ZAPATILLAS(marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at ,uuid)
-VALUES ('New Balance', '574', 'NB3456CE', 42.5, 'Gris', 'Casual', 89.99, 20,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID());
+INSERT INTO ZAPATILLAS(id, marca, modelo, codigo_producto, talla, color, tipo, precio, stock,created_at,updated_at ,uuid, version)
+VALUES (5, 'New Balance', '574', 'NB3456CE', 42.5, 'Gris', 'Casual', 89.99, 20,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP, RANDOM_UUID(), 0);
+
+-- Los ids salen de la secuencia zapatillas_seq (ver Zapatilla): continuamos tras los de arriba
+ALTER SEQUENCE ZAPATILLAS_SEQ RESTART WITH 6;
 
 -- ============================================
 -- CREAR USUARIOS DE PRUEBA
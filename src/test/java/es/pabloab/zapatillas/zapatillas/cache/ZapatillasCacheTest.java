@@ -0,0 +1,86 @@
+package es.pabloab.zapatillas.zapatillas.cache;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaNotFoundException;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@DisplayName("Caché de zapatillas por id y por UUID")
+class ZapatillasCacheTest {
+
+    @Autowired
+    private ZapatillasService service;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ZapatillaResponseDto creada;
+
+    @BeforeEach
+    void crear() {
+        creada = service.save(ZapatillaCreateDto.builder()
+                .marca("Asics").modelo("Gel Cache").codigoProducto("CA0001CH").talla(41.0)
+                .color("Azul").tipo("Running").precio(90.0).stock(5).build());
+    }
+
+    @AfterEach
+    void borrar() {
+        if (creada != null) {
+            service.deleteById(creada.getId());
+        }
+    }
+
+    /**
+     * Cambia el modelo directamente en la BD, sin pasar por el servicio (ni por la caché).
+     */
+    private void cambiarPorDetras(String modelo) {
+        jdbcTemplate.update("UPDATE zapatillas SET modelo = ? WHERE id = ?", modelo, creada.getId());
+    }
+
+    @Test
+    @DisplayName("La segunda lectura por id o por UUID sale de la caché, no de la BD")
+    void aciertoPorIdYUuid() {
+        service.findById(creada.getId());
+        cambiarPorDetras("Cambiado por detrás");
+
+        assertThat(service.findById(creada.getId()).getModelo()).isEqualTo("Gel Cache");
+        // save() ya la guardó también por UUID
+        assertThat(service.findByUuid(creada.getUuid().toString()).getModelo()).isEqualTo("Gel Cache");
+    }
+
+    @Test
+    @DisplayName("Una escritura del servicio sustituye lo cacheado en las dos claves")
+    void escrituraActualiza() {
+        service.findById(creada.getId());
+
+        service.update(creada.getId(), ZapatillaUpdateDto.builder().precio(75.0).build());
+
+        assertThat(service.findById(creada.getId()).getPrecio()).isEqualTo(75.0);
+        assertThat(service.findByUuid(creada.getUuid().toString()).getPrecio()).isEqualTo(75.0);
+    }
+
+    @Test
+    @DisplayName("Un borrado invalida las dos claves")
+    void borradoInvalida() {
+        Long id = creada.getId();
+        String uuid = creada.getUuid().toString();
+        service.findById(id);
+
+        service.deleteById(id);
+        creada = null;
+
+        assertThatThrownBy(() -> service.findById(id)).isInstanceOf(ZapatillaNotFoundException.class);
+        assertThatThrownBy(() -> service.findByUuid(uuid)).isInstanceOf(ZapatillaNotFoundException.class);
+    }
+}
@@ -0,0 +1,104 @@
+package es.pabloab.zapatillas.zapatillas.cache;
+
+import es.pabloab.zapatillas.rest.zapatillas.cache.ZapatillasPaginasCacheFilter;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@DisplayName("Caché de páginas serializadas del listado de zapatillas")
+class ZapatillasPaginasCacheFilterTest {
+
+    @Autowired
+    private WebApplicationContext context;
+    @Autowired
+    private ZapatillasPaginasCacheFilter filter;
+    @Autowired
+    private ZapatillasService service;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).addFilters(filter).build();
+    }
+
+    @Test
+    @DisplayName("Sirve la misma página en claro o en gzip y sin depender del orden de los parámetros")
+    void sirveIdentidadYGzip() throws Exception {
+        MockHttpServletResponse enClaro = mockMvc
+                .perform(get("/api/v1/zapatillas?tipo=Running&size=3"))
+                .andReturn().getResponse();
+        MockHttpServletResponse comprimida = mockMvc
+                .perform(get("/api/v1/zapatillas?size=3&tipo=Running").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andReturn().getResponse();
+
+        assertThat(enClaro.getStatus()).isEqualTo(200);
+        assertThat(comprimida.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        // Mismo contenido, bytes distintos: el ETag compartido tiene que ser débil
+        assertThat(comprimida.getHeader(HttpHeaders.ETAG)).isEqualTo(enClaro.getHeader(HttpHeaders.ETAG))
+                .startsWith("W/");
+        assertThat(gunzip(comprimida.getContentAsByteArray())).isEqualTo(enClaro.getContentAsString());
+        assertThat(mockMvc.perform(get("/api/v1/zapatillas?size=3&tipo=Running")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, enClaro.getHeader(HttpHeaders.ETAG)))
+                .andReturn().getResponse().getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    @DisplayName("Respeta los valores q de Accept-Encoding")
+    void respetaValoresQ() throws Exception {
+        assertThat(codificacion("gzip;q=0")).isNull();
+        assertThat(codificacion("identity, *;q=0")).isNull();
+        assertThat(codificacion("gzip;q=0.2, identity;q=0.8")).isNull();
+        assertThat(codificacion("br, deflate")).isNull();
+        assertThat(codificacion("gzip, deflate, br")).isEqualTo("gzip");
+        assertThat(codificacion("*")).isEqualTo("gzip");
+        assertThat(codificacion("identity;q=0, GZIP;q=0.5")).isEqualTo("gzip");
+    }
+
+    private String codificacion(String aceptadas) throws Exception {
+        return mockMvc.perform(get("/api/v1/zapatillas?size=2").header(HttpHeaders.ACCEPT_ENCODING, aceptadas))
+                .andReturn().getResponse().getHeader(HttpHeaders.CONTENT_ENCODING);
+    }
+
+    @Test
+    @DisplayName("Una escritura en el catálogo invalida las páginas guardadas")
+    void escrituraInvalida() throws Exception {
+        String antes = mockMvc.perform(get("/api/v1/zapatillas?size=50")).andReturn().getResponse().getContentAsString();
+        // El contexto se comparte con otros tests: se deja el stock como estaba
+        Integer stockOriginal = service.findById(3L).getStock();
+
+        try {
+            service.update(3L, ZapatillaUpdateDto.builder().stock(987).build());
+
+            String despues = mockMvc.perform(get("/api/v1/zapatillas?size=50")).andReturn().getResponse().getContentAsString();
+            assertThat(antes).doesNotContain("\"stock\":987");
+            assertThat(despues).contains("\"stock\":987");
+        } finally {
+            service.update(3L, ZapatillaUpdateDto.builder().stock(stockOriginal).build());
+        }
+    }
+
+    private static String gunzip(byte[] datos) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(datos))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package es.pabloab.zapatillas.zapatillas.controllers;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@DisplayName("ETags y GET condicional de zapatillas")
+class ZapatillasEtagTest {
+
+    @Autowired
+    private WebApplicationContext context;
+    @Autowired
+    private ZapatillasService service;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @Test
+    @DisplayName("Una zapatilla sin cambios responde 304 y cambia de ETag al modificarse")
+    void zapatillaCondicional() throws Exception {
+        String etag = mockMvc.perform(get("/api/v1/zapatillas/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/v1/zapatillas/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        service.update(1L, ZapatillaUpdateDto.builder().stock(77).build());
+
+        String nuevo = mockMvc.perform(get("/api/v1/zapatillas/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(nuevo).isNotEqualTo(etag);
+    }
+
+    @Test
+    @DisplayName("Un listado responde 304 hasta que cualquier escritura cambia la versión del catálogo")
+    void listadoCondicional() throws Exception {
+        String etag = mockMvc.perform(get("/api/v1/zapatillas").param("marca", "Nike"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/v1/zapatillas").param("marca", "Nike").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        service.update(2L, ZapatillaUpdateDto.builder().stock(3).build());
+
+        mockMvc.perform(get("/api/v1/zapatillas").param("marca", "Nike").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    @DisplayName("PUT con If-Match: 412 si la versión ha cambiado, 200 y ETag nuevo si coincide")
+    void putConIfMatch() throws Exception {
+        String etag = mockMvc.perform(get("/api/v1/zapatillas/4"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        service.update(4L, ZapatillaUpdateDto.builder().stock(6).build());
+
+        mockMvc.perform(put("/api/v1/zapatillas/4").header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"stock\":1}"))
+                .andExpect(status().isPreconditionFailed());
+        assertThat(service.findById(4L).getStock()).isEqualTo(6);
+
+        String actual = mockMvc.perform(get("/api/v1/zapatillas/4"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String nuevo = mockMvc.perform(put("/api/v1/zapatillas/4").header(HttpHeaders.IF_MATCH, actual)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"stock\":7}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(nuevo).isNotEqualTo(actual);
+        assertThat(service.findById(4L).getStock()).isEqualTo(7);
+    }
+}
@@ -0,0 +1,96 @@
+package es.pabloab.zapatillas.zapatillas.indexes;
+
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasFacetIndex;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasFacetIndex.Faceta;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Tests de ZapatillasFacetIndex")
+class ZapatillasFacetIndexTest {
+
+    private ZapatillasFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ZapatillasFacetIndex(new double[]{50, 100});
+        index.reconstruir(List.of(
+                zapatilla(1L, "Nike", "Running", 42.0, 89.99),
+                zapatilla(2L, "Adidas", "Running", 42.0, 120.0),
+                zapatilla(3L, "Nike", "Casual", 43.5, 45.0),
+                zapatilla(4L, "Puma", "Casual", 42.0, 89.99)
+        ));
+    }
+
+    @Test
+    @DisplayName("Sin filtros devuelve todo y cuenta cada valor")
+    void sinFiltros() {
+        ZapatillasFacetIndex.Resultado resultado = index.buscar(Map.of(), 10);
+
+        assertThat(resultado.total()).isEqualTo(4);
+        assertThat(resultado.ids()).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(resultado.conteos().get(Faceta.MARCA))
+                .containsExactly(Map.entry("Adidas", 1L), Map.entry("Nike", 2L), Map.entry("Puma", 1L));
+        assertThat(resultado.conteos().get(Faceta.PRECIO))
+                .containsExactly(Map.entry("0-50", 1L), Map.entry("50-100", 2L), Map.entry("100+", 1L));
+        assertThat(resultado.conteos().get(Faceta.TALLA))
+                .containsExactly(Map.entry("42", 3L), Map.entry("43.5", 1L));
+    }
+
+    @Test
+    @DisplayName("OR dentro de una faceta, AND entre facetas y conteos disyuntivos")
+    void filtrosCombinados() {
+        ZapatillasFacetIndex.Resultado resultado = index.buscar(Map.of(
+                Faceta.MARCA, List.of("nike", "PUMA"),
+                Faceta.TIPO, List.of("Casual")), 10);
+
+        assertThat(resultado.ids()).containsExactly(3L, 4L);
+        // La faceta marca se cuenta solo con el filtro de tipo: Adidas no tiene Casual
+        assertThat(resultado.conteos().get(Faceta.MARCA))
+                .containsEntry("Nike", 1L).containsEntry("Puma", 1L).containsEntry("Adidas", 0L);
+        // La faceta tipo se cuenta solo con el filtro de marca
+        assertThat(resultado.conteos().get(Faceta.TIPO))
+                .containsEntry("Running", 1L).containsEntry("Casual", 2L);
+    }
+
+    @Test
+    @DisplayName("El límite recorta los ids pero no el total; la talla acepta 42 o 42.0")
+    void limiteYTalla() {
+        ZapatillasFacetIndex.Resultado resultado = index.buscar(Map.of(Faceta.TALLA, List.of("42")), 2);
+
+        assertThat(resultado.total()).isEqualTo(3);
+        assertThat(resultado.ids()).containsExactly(1L, 2L);
+        assertThat(index.buscar(Map.of(Faceta.TALLA, List.of("42.0")), 10).total()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Actualizar y eliminar mantienen los bitmaps al día")
+    void mantenimientoIncremental() {
+        index.indexar(zapatilla(1L, "Adidas", "Running", 42.0, 89.99));
+        index.eliminar(4L);
+
+        ZapatillasFacetIndex.Resultado resultado = index.buscar(Map.of(), 10);
+
+        assertThat(resultado.total()).isEqualTo(3);
+        assertThat(resultado.conteos().get(Faceta.MARCA))
+                .containsExactly(Map.entry("Adidas", 2L), Map.entry("Nike", 1L));
+    }
+
+    private static Zapatilla zapatilla(Long id, String marca, String tipo, double talla, double precio) {
+        return Zapatilla.builder()
+                .id(id)
+                .marca(marca)
+                .modelo("Modelo " + id)
+                .color("Negro")
+                .tipo(tipo)
+                .talla(talla)
+                .precio(precio)
+                .build();
+    }
+}
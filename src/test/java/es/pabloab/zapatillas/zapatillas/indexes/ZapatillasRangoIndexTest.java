@@ -0,0 +1,100 @@
+package es.pabloab.zapatillas.zapatillas.indexes;
+
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasRangoIndex;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Tests de ZapatillasRangoIndex")
+class ZapatillasRangoIndexTest {
+
+    private ZapatillasRangoIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ZapatillasRangoIndex();
+        index.reconstruir(List.of(
+                zapatilla(1L, 89.99, 10),
+                zapatilla(2L, 120.0, 2),
+                zapatilla(3L, 45.0, 0),
+                zapatilla(4L, 89.99, 4),
+                zapatilla(5L, 100.0, 25)
+        ));
+    }
+
+    @Test
+    @DisplayName("El rango de precio incluye los extremos y ordena por precio e id")
+    void rangoDePrecio() {
+        ZapatillasRangoIndex.Rango rango = index.porPrecio(45.0, 100.0, 0, 10);
+
+        assertThat(rango.total()).isEqualTo(4);
+        assertThat(rango.ids()).containsExactly(3L, 1L, 4L, 5L);
+        assertThat(index.porPrecio(200, 300, 0, 10).total()).isZero();
+    }
+
+    @Test
+    @DisplayName("Las páginas de un rango son trozos consecutivos sin repetir")
+    void paginasDeUnRango() {
+        assertThat(index.porPrecio(0, 1000, 0, 2).ids()).containsExactly(3L, 1L);
+        assertThat(index.porPrecio(0, 1000, 2, 2).ids()).containsExactly(4L, 5L);
+        assertThat(index.porPrecio(0, 1000, 4, 2).ids()).containsExactly(2L);
+        assertThat(index.porPrecio(0, 1000, 6, 2).ids()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Stock bajo es estrictamente menor que el umbral y va de menos a más")
+    void stockBajo() {
+        assertThat(index.stockBajo(5, 0, 10).ids()).containsExactly(3L, 2L, 4L);
+        assertThat(index.stockBajo(4, 0, 10).ids()).containsExactly(3L, 2L);
+    }
+
+    @Test
+    @DisplayName("Actualizar mueve la zapatilla dentro del índice y eliminar la quita")
+    void mantenimientoIncremental() {
+        index.indexar(zapatilla(5L, 30.0, 1));
+        index.eliminar(3L);
+
+        assertThat(index.porPrecio(0, 50, 0, 10).ids()).containsExactly(5L);
+        assertThat(index.stockBajo(5, 0, 10).ids()).containsExactly(5L, 2L, 4L);
+    }
+
+    @Test
+    @DisplayName("Reconstruir de golpe da el mismo orden que indexar una a una")
+    void reconstruirEnBloque() {
+        List<Zapatilla> desordenadas = new ArrayList<>();
+        ZapatillasRangoIndex incremental = new ZapatillasRangoIndex();
+        Random random = new Random(42);
+        for (long id = 500; id > 0; id--) {
+            Zapatilla zapatilla = zapatilla(id, (random.nextInt(20) + 1) * 5.0, random.nextInt(8));
+            desordenadas.add(zapatilla);
+            incremental.indexar(zapatilla);
+        }
+        index.reconstruir(desordenadas);
+
+        assertThat(index.porPrecio(0, 1000, 0, 500).ids())
+                .containsExactly(incremental.porPrecio(0, 1000, 0, 500).ids());
+        assertThat(index.stockBajo(4, 0, 500).ids())
+                .containsExactly(incremental.stockBajo(4, 0, 500).ids());
+
+        index.indexar(zapatilla(7L, 1.0, 100));
+        assertThat(index.porPrecio(0, 1000, 0, 500).total()).isEqualTo(500);
+        assertThat(index.porPrecio(0, 1000, 0, 1).ids()).containsExactly(7L);
+    }
+
+    private static Zapatilla zapatilla(Long id, double precio, int stock) {
+        return Zapatilla.builder()
+                .id(id)
+                .marca("Nike")
+                .modelo("Modelo " + id)
+                .precio(precio)
+                .stock(stock)
+                .build();
+    }
+}
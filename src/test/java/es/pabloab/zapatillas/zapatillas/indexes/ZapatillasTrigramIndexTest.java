@@ -0,0 +1,96 @@
+package es.pabloab.zapatillas.zapatillas.indexes;
+
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasTrigramIndex;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Tests de ZapatillasTrigramIndex")
+class ZapatillasTrigramIndexTest {
+
+    private ZapatillasTrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ZapatillasTrigramIndex(1.0);
+        index.reconstruir(List.of(
+                zapatilla(1L, "Nike", "Running"),
+                zapatilla(2L, "Adidas", "Running"),
+                zapatilla(3L, "Nike", "Casual"),
+                zapatilla(4L, "New Balance", "Casual")
+        ));
+    }
+
+    @Test
+    @DisplayName("Antes de reconstruir no está listo y no responde")
+    void noListoAntesDeReconstruir() {
+        ZapatillasTrigramIndex vacio = new ZapatillasTrigramIndex(1.0);
+
+        assertThat(vacio.isListo()).isFalse();
+        assertThat(vacio.buscar("nike", null)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Busca por subcadena sin distinguir mayúsculas, como ContainingIgnoreCase")
+    void buscaPorSubcadena() {
+        assertThat(index.buscar("IKE", null)).get().isEqualTo(new long[]{1L, 3L});
+        assertThat(index.buscar("alan", null)).get().isEqualTo(new long[]{4L});
+        assertThat(index.buscar("reebok", null)).get().isEqualTo(new long[]{});
+    }
+
+    @Test
+    @DisplayName("Las búsquedas de menos de 3 letras también funcionan")
+    void buscaTextosCortos() {
+        assertThat(index.buscar("ik", null)).get().isEqualTo(new long[]{1L, 3L});
+        assertThat(index.buscar("a", null)).get().isEqualTo(new long[]{2L, 4L});
+    }
+
+    @Test
+    @DisplayName("Un filtro que casa con más de la fracción máxima no se resuelve en memoria")
+    void filtroPocoSelectivoVaALaBd() {
+        ZapatillasTrigramIndex selectivo = new ZapatillasTrigramIndex(0.5);
+        selectivo.reconstruir(List.of(
+                zapatilla(1L, "Nike", "Running"),
+                zapatilla(2L, "Adidas", "Running"),
+                zapatilla(3L, "Nike", "Casual"),
+                zapatilla(4L, "New Balance", "Running")
+        ));
+
+        assertThat(selectivo.buscar("n", null)).isEmpty();
+        assertThat(selectivo.buscar((String) null, "running")).isEmpty();
+        assertThat(selectivo.buscar("nike", null)).get().isEqualTo(new long[]{1L, 3L});
+        assertThat(selectivo.buscar("n", "casual")).get().isEqualTo(new long[]{3L});
+    }
+
+    @Test
+    @DisplayName("Marca y tipo a la vez se cruzan (AND)")
+    void cruzaMarcaYTipo() {
+        assertThat(index.buscar("nike", "casual")).get().isEqualTo(new long[]{3L});
+    }
+
+    @Test
+    @DisplayName("Al actualizar se quitan los valores antiguos y al borrar desaparece")
+    void mantieneIncrementalmente() {
+        index.indexar(zapatilla(1L, "Puma", "Running"));
+        index.eliminar(3L);
+        index.indexar(zapatilla(5L, "Nike", "Trail"));
+
+        assertThat(index.buscar("nike", null)).get().isEqualTo(new long[]{5L});
+        assertThat(index.buscar("puma", "run")).get().isEqualTo(new long[]{1L});
+    }
+
+    private static Zapatilla zapatilla(Long id, String marca, String tipo) {
+        return Zapatilla.builder()
+                .id(id)
+                .marca(marca)
+                .modelo("Modelo " + id)
+                .color("Negro")
+                .tipo(tipo)
+                .build();
+    }
+}
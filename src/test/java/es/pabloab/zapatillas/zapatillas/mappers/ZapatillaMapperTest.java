@@ -3,6 +3,7 @@ package es.pabloab.zapatillas.zapatillas.mappers;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaParcheDto;
 import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
 import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
 import org.junit.jupiter.api.DisplayName;
@@ -321,5 +322,28 @@ class ZapatillaMapperTest {
                     .build();
         }
     }
-}
 
+    @Nested
+    @DisplayName("toParcheDto(ResponseDto,ResponseDto)")
+    class ParcheTests {
+        @Test
+        @DisplayName("Solo lleva los campos que cambian, con las dos versiones")
+        void toParcheDtoSoloCambios() {
+            ZapatillaResponseDto antes = ZapatillaResponseDto.builder()
+                    .id(1L).marca("Nike").modelo("Air").codigoProducto("NI1234KE").talla(42.5)
+                    .color("Negro").tipo("Running").precio(120.0).stock(5)
+                    .createdAt(LocalDateTime.now()).updatedAt(LocalDateTime.now())
+                    .uuid(UUID.randomUUID()).version(3L).build();
+            ZapatillaResponseDto despues = antes.toBuilder().precio(99.95).stock(4).version(4L).build();
+
+            ZapatillaParcheDto parche = mapper.toParcheDto(antes, despues);
+
+            assertThat(parche.getDesdeVersion()).isEqualTo(3L);
+            assertThat(parche.getVersion()).isEqualTo(4L);
+            assertThat(parche.getOperaciones()).containsExactly(
+                    ZapatillaParcheDto.Operacion.replace("precio", 99.95),
+                    ZapatillaParcheDto.Operacion.replace("stock", 4));
+            assertThat(parche.getOperaciones().getFirst().path()).isEqualTo("/precio");
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package es.pabloab.zapatillas.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion.TipoNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.CanalNotificaciones.Publicada;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasEventos;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.BufferOverflowStrategy;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.TOPIC;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Eventos para GraphQL: buffer por suscriptor y política de desborde")
+class ZapatillasEventosTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ZapatillasEventos eventos;
+
+    @AfterEach
+    void detener() {
+        eventos.detener();
+    }
+
+    /**
+     * No pide nada hasta que se le dice: un cliente que no lee.
+     */
+    private static class Lento extends BaseSubscriber<Publicada> {
+        private final List<Long> recibidas = new CopyOnWriteArrayList<>();
+        private volatile Throwable error;
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(Publicada publicada) {
+            recibidas.add(publicada.notificacion().getSecuencia());
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+
+    private void publicar(long desde, long hasta) {
+        eventos.publicar(LongStream.rangeClosed(desde, hasta)
+                .mapToObj(i -> new Publicada(ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, i, "", null)
+                        .toBuilder().secuencia(i).build(), List.of(TOPIC)))
+                .toList());
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("tiempo de espera").isLessThan(limite);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    @DisplayName("DROP_OLDEST: el lento pierde lo más antiguo y el rápido lo recibe todo")
+    void descartaLoMasAntiguoDelLento() throws Exception {
+        eventos = new ZapatillasEventos(registry, 4, BufferOverflowStrategy.DROP_OLDEST);
+        List<Long> rapido = new CopyOnWriteArrayList<>();
+        eventos.suscribir(publicada -> true).subscribe(p -> rapido.add(p.notificacion().getSecuencia()));
+        Lento lento = new Lento();
+        eventos.suscribir(publicada -> true).subscribe(lento);
+
+        // Una a una: el rápido las va leyendo, el lento no
+        for (long i = 1; i <= 20; i++) {
+            publicar(i, i);
+            long recibidas = i;
+            esperar(() -> rapido.size() == recibidas);
+        }
+        lento.requestUnbounded();
+        esperar(() -> lento.recibidas.size() == 8);
+
+        // 1-4 ya estaban en el publishOn (prefetch); del buffer de 4 solo quedan las últimas
+        assertThat(lento.recibidas).containsExactly(1L, 2L, 3L, 4L, 17L, 18L, 19L, 20L);
+        assertThat(registry.get("zapatillas.graphql.descartadas").counter().count()).isEqualTo(12);
+        assertThat(eventos.suscripciones()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("ERROR: la suscripción lenta termina con error y las demás siguen")
+    void terminaConErrorAlDesbordar() throws Exception {
+        eventos = new ZapatillasEventos(registry, 4, BufferOverflowStrategy.ERROR);
+        List<Long> rapido = new CopyOnWriteArrayList<>();
+        eventos.suscribir(publicada -> true).subscribe(p -> rapido.add(p.notificacion().getSecuencia()));
+        Lento lento = new Lento();
+        eventos.suscribir(publicada -> true).subscribe(lento);
+
+        for (long i = 1; i <= 20; i++) {
+            publicar(i, i);
+            long recibidas = i;
+            esperar(() -> rapido.size() == recibidas);
+        }
+
+        // El error llega detrás de lo que ya tenía (1-4 en el publishOn, 5-8 en el buffer)
+        lento.requestUnbounded();
+        esperar(() -> lento.error != null);
+        assertThat(lento.recibidas).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L);
+        esperar(() -> eventos.suscripciones() == 1);
+        publicar(21, 21);
+        esperar(() -> rapido.size() == 21);
+    }
+
+    @Test
+    @DisplayName("El filtro se aplica antes del buffer: lo que no se pidió no lo llena")
+    void filtraAntesDelBuffer() throws Exception {
+        eventos = new ZapatillasEventos(registry, 4, BufferOverflowStrategy.ERROR);
+        Lento lento = new Lento();
+        eventos.suscribir(publicada -> publicada.notificacion().getSecuencia() % 10 == 0).subscribe(lento);
+
+        publicar(1, 50);
+        lento.requestUnbounded();
+
+        esperar(() -> lento.recibidas.size() == 5);
+        assertThat(lento.recibidas).containsExactly(10L, 20L, 30L, 40L, 50L);
+        assertThat(lento.error).isNull();
+    }
+}
@@ -0,0 +1,253 @@
+package es.pabloab.zapatillas.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion.TipoNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaParcheDto;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.FormatoTrama;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.NotificacionEvento;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasHistorial;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasNotificacionesDispatcher;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasSuscripciones;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasTramas;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.TOPIC;
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.destinoMarca;
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.destinoTipo;
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.destinoZapatilla;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("Dispatcher de notificaciones: cola acotada y envío en otro hilo")
+class ZapatillasNotificacionesDispatcherTest {
+
+    private final ZapatillasWebSocketController webSocketController = mock(ZapatillasWebSocketController.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ZapatillasSuscripciones suscripciones = new ZapatillasSuscripciones(registry);
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private ZapatillasNotificacionesDispatcher dispatcher;
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        dispatcher.detener();
+    }
+
+    private ZapatillasNotificacionesDispatcher arrancar(int capacidad) {
+        dispatcher = new ZapatillasNotificacionesDispatcher(webSocketController, suscripciones,
+                new ZapatillasTramas(jsonMapper), new ZapatillasHistorial(100), List.of(), registry, capacidad, 16, 50);
+        dispatcher.arrancar();
+        return dispatcher;
+    }
+
+    private void suscribir(String sesion, String destino) {
+        StompHeaderAccessor cabeceras = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        cabeceras.setSessionId(sesion);
+        cabeceras.setSubscriptionId(destino);
+        cabeceras.setDestination(destino);
+        suscripciones.suscrita(MessageBuilder.createMessage(new byte[0], cabeceras.getMessageHeaders()));
+    }
+
+    /**
+     * "zapatillaId:data" de cada notificación de una trama JSON.
+     */
+    private List<String> resumen(byte[] trama) {
+        List<String> resumen = new ArrayList<>();
+        jsonMapper.readTree(trama).forEach(n -> resumen.add(n.get("zapatillaId") + ":" + n.get("data")));
+        return resumen;
+    }
+
+    private void tramaA(String destino, String... esperado) {
+        verify(webSocketController, timeout(2_000)).enviarTrama(eq(destino),
+                argThat(trama -> resumen(trama).equals(List.of(esperado))), eq(FormatoTrama.JSON));
+    }
+
+    private static ZapatillaNotificacion notificacion(long id) {
+        return notificacion(id, 0);
+    }
+
+    private static ZapatillaNotificacion notificacion(long id, int stock) {
+        return ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, id, "Stock actualizado", stock);
+    }
+
+    @Test
+    @DisplayName("Las privadas salen al momento y las públicas al cerrar la ventana; mide el retraso")
+    void privadasAlMomentoPublicasEnTrama() {
+        suscribir("s1", TOPIC);
+        arrancar(100);
+        ZapatillaNotificacion publica = notificacion(1);
+        ZapatillaNotificacion privada = notificacion(2);
+        dispatcher.encolar(NotificacionEvento.publica(publica));
+        dispatcher.encolar(NotificacionEvento.privada("ana", privada));
+
+        InOrder orden = inOrder(webSocketController);
+        orden.verify(webSocketController, timeout(2_000)).enviarNotificacionPrivada(eq("ana"), eq(privada));
+        orden.verify(webSocketController, timeout(2_000)).enviarTrama(eq(TOPIC), any(), eq(FormatoTrama.JSON));
+        tramaA(TOPIC, "1:0");
+        assertThat(registry.get("zapatillas.notificaciones.enviadas").counter().count()).isEqualTo(2);
+        assertThat(registry.get("zapatillas.notificaciones.retraso").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Una ráfaga de cambios sale en una sola trama con el último estado de cada zapatilla")
+    void agrupaPorZapatilla() {
+        suscribir("s1", TOPIC);
+        arrancar(1_000);
+        for (int stock = 100; stock > 0; stock--) {
+            dispatcher.encolar(NotificacionEvento.publica(notificacion(1, stock)));
+        }
+        dispatcher.encolar(NotificacionEvento.publica(notificacion(2, 7)));
+        ZapatillaNotificacion importacion = ZapatillaNotificacion.crear(TipoNotificacion.IMPORTED, null, "Importadas", null);
+        dispatcher.encolar(NotificacionEvento.publica(importacion));
+
+        tramaA(TOPIC, "1:1", "2:7", "null:null");
+        assertThat(registry.get("zapatillas.notificaciones.agrupadas").counter().count()).isEqualTo(99);
+        assertThat(registry.get("zapatillas.notificaciones.tramas").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Solo se agrupan las del mismo tipo: un alta seguida de cambios de la misma zapatilla no se pierde")
+    void agrupaPorZapatillaYTipo() {
+        suscribir("s1", TOPIC);
+        arrancar(100);
+        dispatcher.encolar(NotificacionEvento.publica(ZapatillaNotificacion.crear(TipoNotificacion.CREATED, 1L, "", 10)));
+        dispatcher.encolar(NotificacionEvento.publica(ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, 1L, "", 5)));
+        dispatcher.encolar(NotificacionEvento.publica(ZapatillaNotificacion.crear(TipoNotificacion.STOCK_LOW, 1L, "", 2)));
+        dispatcher.encolar(NotificacionEvento.publica(ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, 1L, "", 2)));
+
+        verify(webSocketController, timeout(2_000)).enviarTrama(eq(TOPIC), argThat(trama -> {
+            List<String> tipos = new ArrayList<>();
+            jsonMapper.readTree(trama).forEach(n -> tipos.add(n.get("tipo").asString() + ":" + n.get("data")));
+            return tipos.equals(List.of("CREATED:10", "UPDATED:2", "STOCK_LOW:2"));
+        }), eq(FormatoTrama.JSON));
+        assertThat(registry.get("zapatillas.notificaciones.agrupadas").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Dos parches seguidos de la misma zapatilla salen como uno solo")
+    void uneParchesSeguidos() {
+        suscribir("s1", TOPIC);
+        arrancar(100);
+        dispatcher.encolar(NotificacionEvento.publica(ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, 1L, "", parche(3, 4,
+                ZapatillaParcheDto.Operacion.replace("precio", 99.0), ZapatillaParcheDto.Operacion.replace("stock", 9)))));
+        dispatcher.encolar(NotificacionEvento.publica(ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, 1L, "", parche(4, 5,
+                ZapatillaParcheDto.Operacion.replace("stock", 8)))));
+
+        tramaA(TOPIC, "1:{\"desdeVersion\":3,\"version\":5,\"operaciones\":["
+                + "{\"op\":\"replace\",\"path\":\"/precio\",\"value\":99.0},"
+                + "{\"op\":\"replace\",\"path\":\"/stock\",\"value\":8}]}");
+    }
+
+    private static ZapatillaParcheDto parche(long desde, long version, ZapatillaParcheDto.Operacion... operaciones) {
+        return ZapatillaParcheDto.builder().desdeVersion(desde).version(version).operaciones(List.of(operaciones)).build();
+    }
+
+    @Test
+    @DisplayName("Con el broker atascado encolar no espera: llena la cola y descarta lo que sobra")
+    void noBloqueaAlEscritor() throws InterruptedException {
+        CountDownLatch atascado = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        doAnswer(invocacion -> {
+            atascado.countDown();
+            soltar.await();
+            return null;
+        }).when(webSocketController).enviarNotificacionPrivada(any(), any());
+        suscribir("s1", TOPIC);
+        arrancar(10);
+
+        // La primera se queda enviándose; las 10 siguientes llenan la cola
+        dispatcher.encolar(NotificacionEvento.privada("ana", notificacion(0)));
+        assertThat(atascado.await(2, TimeUnit.SECONDS)).isTrue();
+        long inicio = System.nanoTime();
+        for (int i = 1; i <= 15; i++) {
+            dispatcher.encolar(NotificacionEvento.publica(notificacion(i)));
+        }
+        assertThat(System.nanoTime() - inicio).isLessThan(TimeUnit.SECONDS.toNanos(1));
+        assertThat(registry.get("zapatillas.notificaciones.cola").gauge().value()).isEqualTo(10);
+        assertThat(registry.get("zapatillas.notificaciones.descartadas").counter().count()).isEqualTo(5);
+
+        soltar.countDown();
+        // Las 10 que cupieron salen juntas en la misma ventana
+        verify(webSocketController, timeout(2_000)).enviarTrama(eq(TOPIC), argThat(trama -> resumen(trama).size() == 10), any());
+    }
+
+    @Test
+    @DisplayName("Cada destino recibe solo lo suyo y los destinos sin suscriptores no se envían")
+    void enrutaPorMarcaTipoYZapatilla() {
+        suscribir("s1", destinoMarca("New Balance"));
+        suscribir("s2", destinoTipo("Running"));
+        suscribir("s3", destinoZapatilla(3L));
+        assertThat(destinoMarca("New Balance")).isEqualTo(TOPIC + "/marca/new-balance");
+        // La etiqueta es la familia, no el destino que eligió el cliente
+        assertThat(registry.get("zapatillas.ws.suscriptores").tags("destino", TOPIC + "/marca/{marca}", "formato", "json")
+                .gauge().value()).isEqualTo(1);
+        assertThat(registry.get("zapatillas.ws.suscriptores").tag("destino", TOPIC + "/{id}").gauge().value()).isEqualTo(1);
+        arrancar(100);
+
+        ZapatillaNotificacion nb = notificacion(1);
+        ZapatillaNotificacion nike = notificacion(2);
+        ZapatillaNotificacion tercera = notificacion(3);
+        dispatcher.encolar(NotificacionEvento.publica(nb, "New Balance", "Running"));
+        dispatcher.encolar(NotificacionEvento.publica(nike, "Nike", "Casual"));
+        dispatcher.encolar(NotificacionEvento.publica(tercera, "Nike", "Running"));
+
+        tramaA(destinoMarca("New Balance"), "1:0");
+        tramaA(destinoTipo("Running"), "1:0", "3:0");
+        tramaA(destinoZapatilla(3L), "3:0");
+        // Nadie escucha /topic/zapatillas, ni Nike, ni Casual
+        assertThat(registry.get("zapatillas.notificaciones.tramas").counter().count()).isEqualTo(3);
+        verify(webSocketController, never()).enviarTrama(eq(TOPIC), any(), any());
+
+        suscripciones.desconectada("s1");
+        assertThat(suscripciones.tieneSuscriptores(destinoMarca("New Balance"))).isFalse();
+        assertThat(registry.get("zapatillas.ws.suscriptores").tag("destino", TOPIC + "/marca/{marca}")
+                .gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Un UPDATED que cambia la marca y el tipo llega también a los destinos de antes; el stock bajo solo a los nuevos")
+    void cambioDeMarcaAvisaALaAnterior() {
+        suscribir("s1", destinoMarca("Nike"));
+        suscribir("s2", destinoMarca("Adidas"));
+        suscribir("s3", destinoTipo("Casual"));
+        arrancar(100);
+
+        ZapatillaNotificacion cambio = ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, 1L, "", parche(1, 2,
+                ZapatillaParcheDto.Operacion.replace("marca", "Adidas")));
+        dispatcher.encolar(NotificacionEvento.publica(cambio, "Adidas", "Running", "Nike", "Casual"));
+        // En la misma ventana, un cambio de stock (sin marca anterior) se une al anterior
+        dispatcher.encolar(NotificacionEvento.publica(ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, 1L, "", parche(2, 3,
+                ZapatillaParcheDto.Operacion.replace("stock", 2))), "Adidas", "Running"));
+        dispatcher.encolar(NotificacionEvento.publica(ZapatillaNotificacion.crear(TipoNotificacion.STOCK_LOW, 1L, "", 2),
+                "Adidas", "Running"));
+
+        String unido = "1:{\"desdeVersion\":1,\"version\":3,\"operaciones\":["
+                + "{\"op\":\"replace\",\"path\":\"/marca\",\"value\":\"Adidas\"},"
+                + "{\"op\":\"replace\",\"path\":\"/stock\",\"value\":2}]}";
+        tramaA(destinoMarca("Nike"), unido);
+        tramaA(destinoTipo("Casual"), unido);
+        tramaA(destinoMarca("Adidas"), unido, "1:2");
+    }
+}
@@ -0,0 +1,162 @@
+package es.pabloab.zapatillas.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion.TipoNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.FormatoTrama;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasHistorial;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasReanudacion;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasSuscripciones;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasSuscripcionesInterceptor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasTramas;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.List;
+
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.TOPIC;
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.destinoMarca;
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.destinoZapatilla;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("Reanudación con lastSeq: reenvío desde el historial o RESYNC")
+class ZapatillasReanudacionTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final ZapatillasHistorial historial = new ZapatillasHistorial(4);
+    private final ZapatillasWebSocketController webSocketController = mock(ZapatillasWebSocketController.class);
+    private final ZapatillasReanudacion reanudacion =
+            new ZapatillasReanudacion(historial, new ZapatillasTramas(jsonMapper), webSocketController);
+
+    private long registrar(long zapatillaId, String marca) {
+        ZapatillaNotificacion notificacion = historial.registrar(
+                ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, zapatillaId, "Stock actualizado", null),
+                List.of(TOPIC, destinoZapatilla(zapatillaId), destinoMarca(marca)));
+        return notificacion.getSecuencia();
+    }
+
+    private void suscribir(String destino, Object lastSeq, String contentType) {
+        reanudacion.reanudar(subscribe(destino, lastSeq, contentType));
+    }
+
+    private static Message<byte[]> subscribe(String destino, Object lastSeq, String contentType) {
+        StompHeaderAccessor cabeceras = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        cabeceras.setSessionId("s1");
+        cabeceras.setSubscriptionId("sub-0");
+        cabeceras.setDestination(destino);
+        cabeceras.setNativeHeader(ZapatillasReanudacion.CABECERA, String.valueOf(lastSeq));
+        if (contentType != null) {
+            cabeceras.setNativeHeader("content-type", contentType);
+        }
+        return MessageBuilder.createMessage(new byte[0], cabeceras.getMessageHeaders());
+    }
+
+    private JsonNode enviada(String destino) {
+        ArgumentCaptor<byte[]> trama = ArgumentCaptor.forClass(byte[].class);
+        verify(webSocketController).enviarTramaASuscripcion(eq("s1"), eq("sub-0"), eq(destino),
+                trama.capture(), eq(FormatoTrama.JSON));
+        return jsonMapper.readTree(trama.getValue());
+    }
+
+    @Test
+    @DisplayName("Reenvía solo lo perdido de ese destino, en orden y con su secuencia")
+    void reenviaLoPerdido() {
+        long primera = registrar(1, "Nike");
+        long segunda = registrar(2, "Adidas");
+        long tercera = registrar(3, "Nike");
+        assertThat(segunda).isEqualTo(primera + 1);
+
+        suscribir(destinoMarca("Nike"), primera, null);
+
+        JsonNode trama = enviada(destinoMarca("Nike"));
+        assertThat(trama).hasSize(1);
+        assertThat(trama.get(0).get("zapatillaId").asLong()).isEqualTo(3);
+        assertThat(trama.get(0).get("secuencia").asLong()).isEqualTo(tercera);
+    }
+
+    @Test
+    @DisplayName("Sin nada perdido no se envía nada; con un comodín se reenvía todo")
+    void nadaPerdidoYComodin() {
+        long primera = registrar(1, "Nike");
+        registrar(2, "Adidas");
+
+        suscribir(TOPIC, historial.ultima(), null);
+        verify(webSocketController, never()).enviarTramaASuscripcion(any(), any(), any(), any(), any());
+
+        suscribir(TOPIC + "/**", primera - 1, null);
+        assertThat(enviada(TOPIC + "/**")).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Si el hueco ya no está en el historial (o lastSeq no vale) se pide RESYNC")
+    void resyncFueraDelHistorial() {
+        long primera = registrar(1, "Nike");
+        for (int i = 2; i <= 6; i++) {
+            registrar(i, "Nike");
+        }
+
+        suscribir(TOPIC, primera, null);
+
+        JsonNode trama = enviada(TOPIC);
+        assertThat(trama).hasSize(1);
+        assertThat(trama.get(0).get("tipo").asString()).isEqualTo("RESYNC");
+        assertThat(trama.get(0).get("secuencia").asLong()).isEqualTo(historial.ultima());
+    }
+
+    @Test
+    @DisplayName("Quien pidió CBOR recibe el reenvío en CBOR en su destino interno")
+    void reenvioEnCbor() {
+        long primera = registrar(1, "Nike");
+        registrar(2, "Nike");
+
+        suscribir(TOPIC, primera, "application/cbor");
+
+        verify(webSocketController).enviarTramaASuscripcion(eq("s1"), eq("sub-0"), eq("/topic/cbor/zapatillas"),
+                any(), eq(FormatoTrama.CBOR));
+    }
+
+    @Test
+    @DisplayName("El alta y el reenvío esperan a que el broker haya procesado el SUBSCRIBE")
+    void despuesDelBroker() {
+        ZapatillasSuscripciones suscripciones = new ZapatillasSuscripciones(new SimpleMeterRegistry());
+        ZapatillasSuscripcionesInterceptor interceptor = new ZapatillasSuscripcionesInterceptor(suscripciones, reanudacion);
+        long primera = registrar(1, "Nike");
+        registrar(2, "Nike");
+        Message<byte[]> subscribe = subscribe(TOPIC, primera, null);
+
+        // Lo procesa antes otro handler del canal de entrada (los @MessageMapping): aún nada
+        MessageHandler otro = mock(SimpAnnotationMethodMessageHandler.class);
+        interceptor.afterMessageHandled(subscribe, null, otro, null);
+        assertThat(suscripciones.suscriptores(TOPIC)).isZero();
+        verify(webSocketController, never()).enviarTramaASuscripcion(any(), any(), any(), any(), any());
+
+        // El broker ya la ha registrado: se da de alta y se reenvía lo perdido
+        MessageHandler broker = mock(SimpleBrokerMessageHandler.class);
+        interceptor.afterMessageHandled(subscribe, null, broker, null);
+        assertThat(suscripciones.suscriptores(TOPIC)).isEqualTo(1);
+        assertThat(enviada(TOPIC)).hasSize(1);
+
+        // La desconexión que llega al broker la da de baja
+        StompHeaderAccessor disconnect = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        disconnect.setSessionId("s1");
+        interceptor.afterMessageHandled(MessageBuilder.createMessage(new byte[0], disconnect.getMessageHeaders()),
+                null, broker, null);
+        assertThat(suscripciones.suscriptores(TOPIC)).isZero();
+    }
+}
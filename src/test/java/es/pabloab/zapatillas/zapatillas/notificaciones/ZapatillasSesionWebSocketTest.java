@@ -0,0 +1,175 @@
+package es.pabloab.zapatillas.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasSesionWebSocket;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasSesionWebSocket.PoliticaDesborde;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("Sesión WebSocket: cola propia y política de desborde")
+class ZapatillasSesionWebSocketTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService escritor = Executors.newVirtualThreadPerTaskExecutor();
+    private final WebSocketSession real = mock(WebSocketSession.class);
+    private final List<String> enviadas = new CopyOnWriteArrayList<>();
+    private final CountDownLatch soltar = new CountDownLatch(1);
+
+    @AfterEach
+    void cerrar() {
+        soltar.countDown();
+        escritor.shutdownNow();
+    }
+
+    /**
+     * Sesión cuyo primer envío se queda bloqueado hasta soltar(): el cliente lento.
+     */
+    private ZapatillasSesionWebSocket sesion(PoliticaDesborde politica, int limiteBytes) throws Exception {
+        return sesion(politica, limiteBytes, 10_000);
+    }
+
+    private ZapatillasSesionWebSocket sesion(PoliticaDesborde politica, int limiteBytes, int tiempoEnvioMs) throws Exception {
+        when(real.getId()).thenReturn("s1");
+        doAnswer(inv -> {
+            WebSocketMessage<?> mensaje = inv.getArgument(0);
+            soltar.await(5, TimeUnit.SECONDS);
+            enviadas.add(((TextMessage) mensaje).getPayload());
+            return null;
+        }).when(real).sendMessage(any());
+        return new ZapatillasSesionWebSocket(real, escritor, tiempoEnvioMs, limiteBytes, politica, registry);
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("tiempo de espera").isLessThan(limite);
+            Thread.sleep(5);
+        }
+    }
+
+    private static TextMessage trama(String destino, String cuerpo) {
+        return new TextMessage("MESSAGE\ndestination:" + destino + "\nsubscription:sub-0\n\n" + cuerpo + "\0");
+    }
+
+    private static String cuerpo(String frame) {
+        return frame.substring(frame.indexOf("\n\n") + 2, frame.length() - 1);
+    }
+
+    @Test
+    @DisplayName("AGRUPAR deja la última trama de cada topic y no toca las que no son MESSAGE")
+    void agrupaPorDestino() throws Exception {
+        ZapatillasSesionWebSocket sesion = sesion(PoliticaDesborde.AGRUPAR, 300);
+
+        sesion.sendMessage(trama("/topic/zapatillas", "v0"));  // se queda enviándose
+        esperar(() -> sesion.pendientes() == 0);
+        sesion.sendMessage(new TextMessage("RECEIPT\nreceipt-id:r1\n\n\0"));
+        for (int i = 1; i <= 5; i++) {
+            sesion.sendMessage(trama("/topic/zapatillas", "v" + i));
+            sesion.sendMessage(trama("/topic/zapatillas/7", "z" + i));
+        }
+        assertThat(sesion.pendientes()).isLessThan(11);
+
+        soltar.countDown();
+        esperar(() -> sesion.pendientes() == 0 && enviadas.contains(trama("/topic/zapatillas/7", "z5").getPayload()));
+        assertThat(enviadas.getFirst()).endsWith("v0\0");
+        assertThat(enviadas.get(1)).startsWith("RECEIPT");
+        assertThat(enviadas.subList(2, enviadas.size()).stream().map(ZapatillasSesionWebSocketTest::cuerpo))
+                .endsWith("v5", "z5")
+                .doesNotHaveDuplicates();
+        assertThat(registry.get("zapatillas.ws.sesion.descartadas").tag("sesion", "s1").counter().count())
+                .isEqualTo(12 - enviadas.size());
+    }
+
+    @Test
+    @DisplayName("DESCARTAR_ANTIGUAS tira las primeras de la cola")
+    void descartaLasAntiguas() throws Exception {
+        ZapatillasSesionWebSocket sesion = sesion(PoliticaDesborde.DESCARTAR_ANTIGUAS, 200);
+
+        sesion.sendMessage(trama("/topic/zapatillas", "v0"));
+        esperar(() -> sesion.pendientes() == 0);
+        for (int i = 1; i <= 6; i++) {
+            sesion.sendMessage(trama("/topic/zapatillas/" + i, "v" + i));
+        }
+
+        soltar.countDown();
+        esperar(() -> enviadas.stream().anyMatch(e -> e.endsWith("v6\0")));
+        assertThat(enviadas.stream().map(ZapatillasSesionWebSocketTest::cuerpo))
+                .startsWith("v0").endsWith("v5", "v6").doesNotContain("v1");
+    }
+
+    @Test
+    @DisplayName("DESCARTAR_ANTIGUAS nunca tira las privadas de /user/queue")
+    void noDescartaLasPrivadas() throws Exception {
+        ZapatillasSesionWebSocket sesion = sesion(PoliticaDesborde.DESCARTAR_ANTIGUAS, 300);
+
+        sesion.sendMessage(trama("/topic/zapatillas", "v0"));
+        esperar(() -> sesion.pendientes() == 0);
+        sesion.sendMessage(trama("/user/queue/notificaciones", "confirmada"));
+        for (int i = 1; i <= 4; i++) {
+            sesion.sendMessage(trama("/topic/zapatillas/" + i, "v" + i));
+        }
+
+        soltar.countDown();
+        esperar(() -> enviadas.stream().anyMatch(e -> e.endsWith("v4\0")));
+        assertThat(enviadas.stream().map(ZapatillasSesionWebSocketTest::cuerpo))
+                .startsWith("v0", "confirmada").endsWith("v4").doesNotContain("v1");
+    }
+
+    @Test
+    @DisplayName("Un envío atascado se corta aunque no se encole nada más")
+    void vigilaElEnvioAtascado() throws Exception {
+        ZapatillasSesionWebSocket sesion = sesion(PoliticaDesborde.AGRUPAR, 10_000, 50);
+
+        sesion.sendMessage(trama("/topic/zapatillas", "v0"));  // se queda enviándose
+        esperar(() -> sesion.pendientes() == 0);
+        sesion.vigilarEnvio();
+        verify(real, never()).close(any());
+
+        Thread.sleep(100);
+        sesion.vigilarEnvio();
+        verify(real, timeout(2_000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertThat(registry.get("zapatillas.ws.sesiones.cortadas").tag("motivo", "tiempo").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("DESCONECTAR corta la sesión al pasarse del límite")
+    void desconecta() throws Exception {
+        ZapatillasSesionWebSocket sesion = sesion(PoliticaDesborde.DESCONECTAR, 200);
+
+        sesion.sendMessage(trama("/topic/zapatillas", "v0"));
+        esperar(() -> sesion.pendientes() == 0);
+        sesion.sendMessage(trama("/topic/zapatillas", "v1"));
+        sesion.sendMessage(trama("/topic/zapatillas", "v2"));
+        sesion.sendMessage(trama("/topic/zapatillas", "v3"));
+
+        assertThatThrownBy(() -> sesion.sendMessage(trama("/topic/zapatillas", "v4")))
+                .isInstanceOf(SessionLimitExceededException.class);
+        assertThat(registry.get("zapatillas.ws.sesiones.cortadas").tag("motivo", "buffer").counter().count())
+                .isEqualTo(1);
+    }
+}
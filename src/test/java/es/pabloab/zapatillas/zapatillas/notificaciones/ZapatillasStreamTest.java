@@ -0,0 +1,176 @@
+package es.pabloab.zapatillas.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion.TipoNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.CanalNotificaciones.Publicada;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasHistorial;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasStream;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasStream.Filtro;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.TOPIC;
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.destinoMarca;
+import static es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController.destinoTipo;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Stream SSE: filtros, Last-Event-ID y clientes lentos")
+class ZapatillasStreamTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ZapatillasHistorial historial = new ZapatillasHistorial(100);
+    private ZapatillasStream stream = new ZapatillasStream(historial, JsonMapper.builder().build(), registry, 0, 100);
+
+    @AfterEach
+    void detener() {
+        stream.detener();
+    }
+
+    /**
+     * SseEmitter que apunta lo que se le envía en vez de escribirlo en una respuesta.
+     */
+    private static class Emisor extends SseEmitter {
+        private final List<String> eventos = new CopyOnWriteArrayList<>();
+        private final CountDownLatch soltar;
+        private volatile boolean completado;
+
+        Emisor(CountDownLatch soltar) {
+            this.soltar = soltar;
+        }
+
+        Emisor() {
+            this(new CountDownLatch(0));
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> datos) throws IOException {
+            try {
+                soltar.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            eventos.add(datos.stream().map(d -> d.getData().toString()).collect(Collectors.joining()));
+        }
+
+        @Override
+        public void complete() {
+            completado = true;
+        }
+
+        /**
+         * "id" de cada evento con datos (sin latidos).
+         */
+        List<String> ids() {
+            return eventos.stream()
+                    .filter(e -> e.startsWith("id:"))
+                    .map(e -> e.substring(3, e.indexOf('\n')))
+                    .toList();
+        }
+    }
+
+    private Publicada publicada(TipoNotificacion tipo, long zapatillaId, String marca, String tipoZapatilla) {
+        List<String> destinos = List.of(TOPIC, destinoMarca(marca), destinoTipo(tipoZapatilla));
+        ZapatillaNotificacion numerada = historial.registrar(
+                ZapatillaNotificacion.crear(tipo, zapatillaId, "", null), destinos);
+        return new Publicada(numerada, destinos);
+    }
+
+    private static String id(Publicada publicada) {
+        return String.valueOf(publicada.notificacion().getSecuencia());
+    }
+
+    private static void esperar(BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condicion.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("tiempo de espera").isLessThan(limite);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    @DisplayName("Cada conexión recibe solo lo de su marca y tipo, con la secuencia como id")
+    void filtraPorMarcaYTipo() throws Exception {
+        Emisor todas = new Emisor();
+        Emisor nike = new Emisor();
+        Emisor nikeCasual = new Emisor();
+        stream.abrir(todas, Filtro.de(null, null), null);
+        stream.abrir(nike, Filtro.de("NIKE", null), null);
+        stream.abrir(nikeCasual, Filtro.de("Nike", "Casual"), null);
+
+        Publicada a = publicada(TipoNotificacion.CREATED, 1, "Nike", "Running");
+        Publicada b = publicada(TipoNotificacion.UPDATED, 2, "Adidas", "Casual");
+        Publicada c = publicada(TipoNotificacion.DELETED, 3, "Nike", "Casual");
+        stream.publicar(List.of(a, b, c));
+
+        esperar(() -> todas.ids().size() == 3 && nike.ids().size() == 2 && nikeCasual.ids().size() == 1);
+        assertThat(todas.ids()).containsExactly(id(a), id(b), id(c));
+        assertThat(nike.ids()).containsExactly(id(a), id(c));
+        assertThat(nikeCasual.ids()).containsExactly(id(c));
+        assertThat(nikeCasual.eventos.getFirst()).contains("\"tipo\":\"DELETED\"").contains("\"zapatillaId\":3");
+    }
+
+    @Test
+    @DisplayName("Con Last-Event-ID reenvía lo perdido de su filtro y no lo repite al llegar en vivo")
+    void reanudaConLastEventId() throws Exception {
+        Publicada vista = publicada(TipoNotificacion.CREATED, 1, "Nike", "Running");
+        Publicada perdida = publicada(TipoNotificacion.UPDATED, 1, "Nike", "Running");
+        Publicada otraMarca = publicada(TipoNotificacion.UPDATED, 2, "Adidas", "Running");
+
+        Emisor emisor = new Emisor();
+        stream.abrir(emisor, Filtro.de("Nike", null), id(vista));
+        // La ventana que contenía la perdida aún no había llegado al stream
+        Publicada nueva = publicada(TipoNotificacion.DELETED, 1, "Nike", "Running");
+        stream.publicar(List.of(perdida, otraMarca, nueva));
+
+        esperar(() -> emisor.ids().size() == 2);
+        assertThat(emisor.ids()).containsExactly(id(perdida), id(nueva));
+    }
+
+    @Test
+    @DisplayName("Un Last-Event-ID que ya no está en el historial recibe RESYNC")
+    void resyncSiNoEstaEnElHistorial() {
+        publicada(TipoNotificacion.CREATED, 1, "Nike", "Running");
+
+        Emisor emisor = new Emisor();
+        stream.abrir(emisor, Filtro.de(null, null), "12");
+
+        assertThat(emisor.ids()).containsExactly(String.valueOf(historial.ultima()));
+        assertThat(emisor.eventos.getFirst()).contains("\"tipo\":\"RESYNC\"");
+    }
+
+    @Test
+    @DisplayName("Un cliente que no lee se desconecta sin frenar a los demás")
+    void cortaAlClienteLento() throws Exception {
+        stream.detener();
+        stream = new ZapatillasStream(historial, JsonMapper.builder().build(), registry, 0, 3);
+        CountDownLatch soltar = new CountDownLatch(1);
+        Emisor lento = new Emisor(soltar);
+        Emisor rapido = new Emisor();
+        stream.abrir(lento, Filtro.de(null, null), null);
+        stream.abrir(rapido, Filtro.de(null, null), null);
+
+        for (int i = 0; i < 10; i++) {
+            stream.publicar(List.of(publicada(TipoNotificacion.UPDATED, i, "Nike", "Running")));
+            int recibidas = i + 1;
+            esperar(() -> rapido.ids().size() == recibidas);
+        }
+
+        assertThat(lento.completado).isTrue();
+        assertThat(stream.abiertas()).isEqualTo(1);
+        assertThat(registry.get("zapatillas.stream.cortadas").counter().count()).isEqualTo(1);
+        soltar.countDown();
+    }
+}
@@ -0,0 +1,155 @@
+package es.pabloab.zapatillas.zapatillas.notificaciones;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion.TipoNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.FormatoTrama;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasTramas;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.node.ObjectNode;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@DisplayName("Tramas de notificaciones: serializar una vez, JSON y CBOR")
+class ZapatillasTramasTest {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final ZapatillasTramas tramas = new ZapatillasTramas(jsonMapper);
+
+    private static List<ZapatillaNotificacion> notificaciones(int cuantas) {
+        return IntStream.range(0, cuantas)
+                .mapToObj(i -> ZapatillaNotificacion.crear(TipoNotificacion.UPDATED, (long) i, "Stock actualizado a: " + i,
+                        ZapatillaResponseDto.builder()
+                                .id((long) i).marca("New Balance").modelo("990v6").codigoProducto("NB%06dXX".formatted(i))
+                                .talla(42.5).color("Gris").tipo("Running").precio(199.95).stock(i)
+                                .createdAt(LocalDateTime.now()).updatedAt(LocalDateTime.now())
+                                .uuid(UUID.randomUUID()).version(3L).build()))
+                .toList();
+    }
+
+    @Test
+    @DisplayName("La trama JSON es el array de siempre y la CBOR lleva lo mismo")
+    void mismasNotificacionesEnLosDosFormatos() {
+        List<ZapatillaNotificacion> lista = notificaciones(3);
+        ZapatillasTramas.Ventana ventana = tramas.ventana();
+
+        byte[] json = ventana.trama(lista, FormatoTrama.JSON);
+        byte[] cbor = ventana.trama(lista, FormatoTrama.CBOR);
+
+        assertThat(json).isEqualTo(jsonMapper.writeValueAsBytes(lista));
+        JsonNode desdeCbor = CBORMapper.builder().build().readTree(cbor);
+        JsonNode desdeJson = jsonMapper.readTree(json);
+        // En CBOR el uuid viaja como 16 bytes en lugar de 36 caracteres; el resto es igual
+        for (int i = 0; i < lista.size(); i++) {
+            assertThat(((ObjectNode) desdeCbor.get(i).get("data")).remove("uuid").isBinary()).isTrue();
+            ((ObjectNode) desdeJson.get(i).get("data")).remove("uuid");
+        }
+        assertThat(desdeCbor).isEqualTo(desdeJson);
+        assertThat(cbor.length).isLessThan(json.length);
+        // Una sola notificación de la ventana, en otra trama: mismos bytes reutilizados
+        assertThat(ventana.trama(lista.subList(1, 2), FormatoTrama.JSON))
+                .isEqualTo(jsonMapper.writeValueAsBytes(lista.subList(1, 2)));
+    }
+
+    @Test
+    @DisplayName("El content-type del SUBSCRIBE elige el destino interno del formato")
+    void formatoPorContentType() {
+        String destino = "/topic/zapatillas/marca/nike";
+        assertThat(FormatoTrama.destinoSuscripcion(destino, null)).isEqualTo(destino);
+        assertThat(FormatoTrama.destinoSuscripcion(destino, "application/json")).isEqualTo(destino);
+        String cbor = "/topic/cbor/zapatillas/marca/nike";
+        assertThat(FormatoTrama.destinoSuscripcion(destino, "application/cbor")).isEqualTo(cbor);
+        assertThat(FormatoTrama.destinoSuscripcion(cbor, "application/cbor")).isEqualTo(cbor);
+        assertThat(FormatoTrama.destinoSuscripcion(destino, "no/es un tipo;;")).isEqualTo(destino);
+        assertThat(FormatoTrama.deDestino(cbor)).isEqualTo(FormatoTrama.CBOR);
+        assertThat(FormatoTrama.destinoPublico(cbor)).isEqualTo(destino);
+    }
+
+    @Test
+    @DisplayName("Un suscriptor JSON con comodín no recibe las tramas CBOR, y al revés")
+    void comodinSoloDeSuFormato() {
+        DefaultSubscriptionRegistry registro = new DefaultSubscriptionRegistry();
+        registro.registerSubscription(subscribe("json", "/topic/zapatillas/**"));
+        registro.registerSubscription(subscribe("cbor", FormatoTrama.destinoSuscripcion("/topic/zapatillas/**", "application/cbor")));
+
+        String destino = "/topic/zapatillas/marca/nike";
+        assertThat(registro.findSubscriptions(mensaje(FormatoTrama.JSON.destino(destino))).keySet()).containsExactly("json");
+        assertThat(registro.findSubscriptions(mensaje(FormatoTrama.CBOR.destino(destino))).keySet()).containsExactly("cbor");
+    }
+
+    private static Message<byte[]> subscribe(String sesion, String destino) {
+        SimpMessageHeaderAccessor cabeceras = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        cabeceras.setSessionId(sesion);
+        cabeceras.setSubscriptionId("sub-" + sesion);
+        cabeceras.setDestination(destino);
+        return MessageBuilder.createMessage(new byte[0], cabeceras.getMessageHeaders());
+    }
+
+    private static Message<byte[]> mensaje(String destino) {
+        SimpMessageHeaderAccessor cabeceras = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        cabeceras.setDestination(destino);
+        return MessageBuilder.createMessage(new byte[0], cabeceras.getMessageHeaders());
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Bytes y CPU por difusión: convertir en cada envío frente a serializar una vez (JSON y CBOR)")
+    void rendimientoPorDifusion() {
+        // Una ventana de 50 cambios que va a 4 destinos (todo, marca, tipo, id)
+        List<ZapatillaNotificacion> lista = notificaciones(50);
+        int destinos = 4;
+        int rondas = 2_000;
+        ThreadMXBean cpu = ManagementFactory.getThreadMXBean();
+
+        List<String> resultados = new ArrayList<>();
+        for (int pasada = 0; pasada < 2; pasada++) {  // la primera calienta el JIT
+            resultados.clear();
+            long bytes = 0;
+            long inicio = cpu.getCurrentThreadCpuTime();
+            for (int r = 0; r < rondas; r++) {
+                for (int d = 0; d < destinos; d++) {
+                    bytes += jsonMapper.writeValueAsBytes(lista).length;
+                }
+            }
+            resultados.add(resumen("convertAndSend por destino (JSON)", bytes, cpu.getCurrentThreadCpuTime() - inicio, rondas, destinos));
+
+            for (FormatoTrama formato : FormatoTrama.values()) {
+                bytes = 0;
+                inicio = cpu.getCurrentThreadCpuTime();
+                for (int r = 0; r < rondas; r++) {
+                    ZapatillasTramas.Ventana ventana = tramas.ventana();
+                    for (int d = 0; d < destinos; d++) {
+                        bytes += ventana.trama(lista, formato).length;
+                    }
+                }
+                resultados.add(resumen("serializar una vez (" + formato + ")", bytes, cpu.getCurrentThreadCpuTime() - inicio, rondas, destinos));
+            }
+        }
+        resultados.forEach(log::info);
+    }
+
+    private static String resumen(String caso, long bytes, long cpuNanos, int rondas, int destinos) {
+        return "%-36s %7d bytes/trama %8.1f µs CPU/difusión".formatted(
+                caso, bytes / ((long) rondas * destinos), cpuNanos / 1_000.0 / rondas);
+    }
+}
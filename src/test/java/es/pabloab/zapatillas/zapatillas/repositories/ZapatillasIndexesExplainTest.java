@@ -0,0 +1,84 @@
+package es.pabloab.zapatillas.zapatillas.repositories;
+
+import es.pabloab.zapatillas.rest.zapatillas.validators.ZapatillaSortWhitelist;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Comprueba con EXPLAIN (H2) que las consultas del catálogo usan un índice
+ * y no recorren la tabla entera.
+ */
+@SpringBootTest
+@DisplayName("Índices de la tabla zapatillas (EXPLAIN)")
+class ZapatillasIndexesExplainTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    static Set<String> clavesDeOrden() {
+        return ZapatillaSortWhitelist.claves();
+    }
+
+    @ParameterizedTest(name = "sortBy={0}")
+    @MethodSource("clavesDeOrden")
+    @DisplayName("Cada orden de la lista blanca se lee ya ordenado de un índice")
+    void ordenesPermitidosUsanIndice(String sortBy) {
+        for (String direction : new String[]{"asc", "desc"}) {
+            String orderBy = ZapatillaSortWhitelist.resolver(sortBy, direction).stream()
+                    .map(orden -> columna(orden.getProperty()) + " " + orden.getDirection())
+                    .collect(Collectors.joining(", "));
+
+            String plan = explain("SELECT * FROM zapatillas ORDER BY " + orderBy + " LIMIT 10");
+
+            assertThat(plan).doesNotContainIgnoringCase("tableScan");
+            // "index sorted" a secas: todas las columnas del ORDER BY salen del índice
+            assertThat(plan).containsIgnoringCase("/* index sorted */");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT * FROM zapatillas WHERE tipo = 'Running' ORDER BY precio, id LIMIT 10",
+            "SELECT * FROM zapatillas WHERE marca = 'Nike' ORDER BY id LIMIT 10",
+            "SELECT * FROM zapatillas WHERE precio BETWEEN 50 AND 100",
+            "SELECT * FROM zapatillas WHERE stock < 5 ORDER BY stock",
+            "SELECT * FROM zapatillas WHERE updated_at > TIMESTAMP '2020-01-01 00:00:00' ORDER BY updated_at, id"
+    })
+    @DisplayName("Los filtros del catálogo usan un índice")
+    void filtrosUsanIndice(String sql) {
+        String plan = explain(sql);
+
+        assertThat(plan).doesNotContainIgnoringCase("tableScan");
+        assertThat(plan).containsIgnoringCase("IDX_ZAPATILLAS_");
+    }
+
+    @Test
+    @DisplayName("Un sortBy fuera de la lista blanca se rechaza")
+    void sortByDesconocido() {
+        assertThatThrownBy(() -> ZapatillaSortWhitelist.resolver("color", "asc"))
+                .hasMessageContaining("color");
+        assertThat(ZapatillaSortWhitelist.resolver("precio", "desc"))
+                .isEqualTo(Sort.by(Sort.Direction.DESC, "precio", "id"));
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+    }
+
+    private static String columna(String propiedad) {
+        return propiedad.replaceAll("([a-z])([A-Z])", "$1_$2").toLowerCase();
+    }
+}
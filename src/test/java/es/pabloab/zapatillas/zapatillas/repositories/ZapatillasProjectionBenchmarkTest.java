@@ -0,0 +1,124 @@
+package es.pabloab.zapatillas.zapatillas.repositories;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark: listado paginado con entidades + mapper frente a proyección a DTO
+ * en transacción de solo lectura.
+ *
+ * No forma parte del build normal. Se ejecuta con:
+ *   mvn test -Pbenchmark
+ *
+ * Mide bytes asignados por el hilo (ThreadMXBean de HotSpot) y tiempo medio
+ * por página tras un calentamiento, y los escribe en el log.
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest
+@DisplayName("Benchmark de proyecciones en listados")
+class ZapatillasProjectionBenchmarkTest {
+
+    private static final int FILAS = 2_000;
+    private static final int CALENTAMIENTO = 200;
+    private static final int ITERACIONES = 500;
+    private static final Pageable PAGINA = PageRequest.of(3, 50, Sort.by("id"));
+
+    @Autowired
+    private ZapatillasRepository repository;
+    @Autowired
+    private ZapatillaMapper mapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Long> creadas = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        List<Zapatilla> nuevas = new ArrayList<>(FILAS);
+        for (int i = 0; i < FILAS; i++) {
+            nuevas.add(Zapatilla.builder()
+                    .marca(i % 2 == 0 ? "Nike" : "Adidas")
+                    .modelo("Bench " + i)
+                    .codigoProducto("BN" + String.format("%08d", i))
+                    .talla(40.0 + i % 6)
+                    .color("Negro")
+                    .tipo("Running")
+                    .precio(50.0 + i % 100)
+                    .stock(i % 30)
+                    .build());
+        }
+        repository.saveAll(nuevas).forEach(z -> creadas.add(z.getId()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAllByIdInBatch(creadas);
+    }
+
+    @Test
+    @DisplayName("La proyección asigna menos memoria por página que entidades + mapper")
+    void proyeccionFrenteAEntidades() {
+        TransactionTemplate lecturaEscritura = new TransactionTemplate(transactionManager);
+        TransactionTemplate soloLectura = new TransactionTemplate(transactionManager);
+        soloLectura.setReadOnly(true);
+
+        Supplier<List<ZapatillaResponseDto>> entidades = () -> lecturaEscritura.execute(status ->
+                repository.findAll(PAGINA).map(mapper::toResponseDto).getContent());
+        Supplier<List<ZapatillaResponseDto>> proyeccion = () -> soloLectura.execute(status ->
+                repository.findAllBy(PAGINA, ZapatillaResponseDto.class).getContent());
+
+        assertThat(proyeccion.get()).isEqualTo(entidades.get());
+
+        Medida conEntidades = medir(entidades);
+        Medida conProyeccion = medir(proyeccion);
+
+        log.info("Entidades + mapper: {} bytes/página, {} ns/página", conEntidades.bytes(), conEntidades.nanos());
+        log.info("Proyección DTO:     {} bytes/página, {} ns/página", conProyeccion.bytes(), conProyeccion.nanos());
+
+        assertThat(conProyeccion.bytes()).isLessThan(conEntidades.bytes());
+    }
+
+    private static Medida medir(Supplier<List<ZapatillaResponseDto>> listado) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().threadId();
+
+        for (int i = 0; i < CALENTAMIENTO; i++) {
+            listado.get();
+        }
+        long bytesAntes = threads.getThreadAllocatedBytes(hilo);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < ITERACIONES; i++) {
+            listado.get();
+        }
+        long nanos = System.nanoTime() - inicio;
+        long bytes = threads.getThreadAllocatedBytes(hilo) - bytesAntes;
+        return new Medida(bytes / ITERACIONES, nanos / ITERACIONES);
+    }
+
+    private record Medida(long bytes, long nanos) {
+    }
+}
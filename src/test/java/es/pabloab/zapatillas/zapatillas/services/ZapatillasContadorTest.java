@@ -0,0 +1,90 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasContador;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("Contador aproximado de los listados sin COUNT")
+class ZapatillasContadorTest {
+
+    @Mock
+    private ZapatillasRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    @DisplayName("Cuenta una vez por filtro (sin distinguir mayúsculas) y ajusta el total con altas y bajas")
+    void cuentaUnaVezYAjusta() {
+        ZapatillasContador contador = new ZapatillasContador(repository, 10, Duration.ofMinutes(10));
+        given(repository.count()).willReturn(20L);
+        given(repository.countByMarcaContainingIgnoreCase(anyString())).willReturn(7L);
+
+        assertThat(contador.aproximado(null, null)).isEqualTo(20);
+        assertThat(contador.aproximado("Nike", null)).isEqualTo(7);
+        assertThat(contador.aproximado("NIKE", null)).isEqualTo(7);
+        contador.registrarAltas(3);
+        contador.registrarBaja();
+
+        assertThat(contador.aproximado(null, null)).isEqualTo(22);
+        verify(repository, times(1)).count();
+        verify(repository, times(1)).countByMarcaContainingIgnoreCase(anyString());
+    }
+
+    @Test
+    @DisplayName("refrescar() recalcula los filtros guardados")
+    void refrescaLosGuardados() {
+        ZapatillasContador contador = new ZapatillasContador(repository, 10, Duration.ofMinutes(10));
+        given(repository.count()).willReturn(20L, 25L);
+        contador.aproximado(null, null);
+
+        contador.refrescar();
+
+        assertThat(contador.aproximado(null, null)).isEqualTo(25);
+        verify(repository, times(2)).count();
+    }
+
+    @Test
+    @DisplayName("Con el límite lleno los filtros nuevos siguen entrando: el que se repite se sirve de memoria")
+    void losFiltrosNuevosEntranConElLimiteLleno() {
+        ZapatillasContador contador = new ZapatillasContador(repository, 4, Duration.ofMinutes(10));
+        given(repository.countByMarcaContainingIgnoreCase(anyString())).willReturn(1L);
+        for (int i = 0; i < 100; i++) {
+            contador.aproximado("marca-" + i, null);
+        }
+
+        contador.aproximado("nueva", null);
+        contador.aproximado("nueva", null);
+        contador.aproximado("nueva", null);
+
+        // 100 filtros distintos + 1 sola vez "nueva"
+        verify(repository, times(101)).countByMarcaContainingIgnoreCase(anyString());
+    }
+
+    @Test
+    @DisplayName("Un filtro que no se pide durante 'expira' se olvida y se vuelve a contar")
+    void olvidaLosFiltrosSinUso() throws InterruptedException {
+        ZapatillasContador contador = new ZapatillasContador(repository, 10, Duration.ofMillis(50));
+        given(repository.count()).willReturn(20L, 30L);
+        contador.aproximado(null, null);
+
+        Thread.sleep(100);
+
+        assertThat(contador.aproximado(null, null)).isEqualTo(30);
+        verify(repository, times(2)).count();
+    }
+}
@@ -0,0 +1,69 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador.Formato;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DisplayName("Exportación en streaming del catálogo de zapatillas")
+class ZapatillasExportadorTest {
+
+    @Autowired
+    private ZapatillasExportador exportador;
+    @Autowired
+    private ZapatillasRepository repository;
+
+    @Test
+    @DisplayName("NDJSON escribe una zapatilla por línea, ordenadas por id")
+    void exportaNdjson() throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        long filas = exportador.exportar(Formato.NDJSON, salida);
+
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(filas).isEqualTo(repository.count());
+        assertThat(lineas).hasSize((int) filas);
+        assertThat(lineas[0]).startsWith("{").endsWith("}").contains("\"id\":1");
+    }
+
+    @Test
+    @DisplayName("NDJSON no hace flush por cada fila")
+    void ndjsonSinFlushPorFila() throws Exception {
+        AtomicInteger flushes = new AtomicInteger();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+
+        long filas = exportador.exportar(Formato.NDJSON, salida);
+
+        // Menos de 500 filas: solo el flush al cerrar el generador
+        assertThat(filas).isGreaterThan(1);
+        assertThat(flushes.get()).isLessThan((int) filas);
+    }
+
+    @Test
+    @DisplayName("CSV escribe la cabecera y una fila por zapatilla")
+    void exportaCsv() throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        long filas = exportador.exportar(Formato.CSV, salida);
+
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lineas).hasSize((int) filas + 1);
+        assertThat(lineas[0]).startsWith("id,uuid,marca,modelo");
+        assertThat(lineas[1]).startsWith("1,");
+    }
+}
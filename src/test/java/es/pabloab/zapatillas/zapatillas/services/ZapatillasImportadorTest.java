@@ -0,0 +1,108 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaImportacionDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaImportacionDto.ErrorFila;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador.Formato;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasImportador;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DisplayName("Importación masiva de zapatillas")
+class ZapatillasImportadorTest {
+
+    private static final List<String> CODIGOS = List.of("IM0001PO", "IM0002PO", "IM0003PO");
+
+    @Autowired
+    private ZapatillasImportador importador;
+    @Autowired
+    private ZapatillasRepository repository;
+    @Autowired
+    private ZapatillasService service;
+
+    @AfterEach
+    void limpiar() {
+        CODIGOS.forEach(codigo -> repository.findByCodigoProducto(codigo)
+                .ifPresent(z -> service.deleteById(z.getId())));
+    }
+
+    @Test
+    @DisplayName("NDJSON guarda las filas válidas y rechaza el resto con su número de línea")
+    void importaNdjsonConErroresPorFila() throws Exception {
+        String ndjson = """
+                {"marca":"Asics","modelo":"Gel","codigoProducto":"IM0001PO","talla":42,"color":"Azul","tipo":"Running","precio":120.5,"stock":3}
+                {"marca":"Asics","modelo":"Gel","codigoProducto":"mal","talla":42,"color":"Azul","tipo":"Running","precio":120.5,"stock":3}
+
+                {"marca":"Asics","modelo":"Gel","codigoProducto":"IM0001PO","talla":42,"color":"Azul","tipo":"Running","precio":120.5,"stock":3}
+                {"marca":"Nike","modelo":"Air","codigoProducto":"NI1234KE","talla":42,"color":"Rojo","tipo":"Running","precio":89.99,"stock":1}
+                esto no es json
+                {"marca":"Vans","modelo":"Old Skool","codigoProducto":"IM0002PO","talla":41,"color":"Negro","tipo":"Casual","precio":70,"stock":9}
+                """;
+
+        ZapatillaImportacionDto resumen = importador.importar(Formato.NDJSON, stream(ndjson));
+
+        assertThat(resumen.getLeidas()).isEqualTo(6);
+        assertThat(resumen.getImportadas()).isEqualTo(2);
+        assertThat(resumen.getRechazadas()).isEqualTo(4);
+        assertThat(resumen.getErrores()).extracting(ErrorFila::getLinea).containsExactlyInAnyOrder(2L, 4L, 5L, 6L);
+
+        Zapatilla importada = repository.findByCodigoProducto("IM0001PO").orElseThrow();
+        assertThat(importada.getId()).isGreaterThan(5L);
+        assertThat(service.findStockBajo(5, PageRequest.of(0, 100)).getContent())
+                .extracting(ZapatillaResponseDto::getCodigoProducto).contains("IM0001PO");
+    }
+
+    @Test
+    @DisplayName("CSV admite columnas en cualquier orden y campos entre comillas")
+    void importaCsv() throws Exception {
+        String csv = """
+                stock,codigoProducto,marca,modelo,talla,color,tipo,precio,extra
+                10,IM0003PO,Salomon,"Speedcross, 6",44,Verde,Trail,139.99,x
+                abc,IM0002PO,Salomon,XA,44,Verde,Trail,139.99,x
+                """;
+
+        ZapatillaImportacionDto resumen = importador.importar(Formato.CSV, stream(csv));
+
+        assertThat(resumen.getImportadas()).isEqualTo(1);
+        assertThat(resumen.getErrores()).singleElement()
+                .satisfies(error -> assertThat(error.getLinea()).isEqualTo(3));
+        assertThat(repository.findByCodigoProducto("IM0003PO").orElseThrow().getModelo()).isEqualTo("Speedcross, 6");
+    }
+
+    @Test
+    @DisplayName("Si el lote falla al guardar, cada fila se rechaza una sola vez")
+    void loteFallidoRechazaCadaFilaUnaVez() throws Exception {
+        // marca de 60 caracteres: pasa la validación del DTO pero no cabe en la columna (50)
+        String ndjson = """
+                {"marca":"Nike","modelo":"Air","codigoProducto":"NI1234KE","talla":42,"color":"Rojo","tipo":"Running","precio":89.99,"stock":1}
+                {"marca":"Asics","modelo":"Gel","codigoProducto":"IM0001PO","talla":42,"color":"Azul","tipo":"Running","precio":120.5,"stock":3}
+                {"marca":"%s","modelo":"Gel","codigoProducto":"IM0002PO","talla":42,"color":"Azul","tipo":"Running","precio":120.5,"stock":3}
+                """.formatted("A".repeat(60));
+
+        ZapatillaImportacionDto resumen = importador.importar(Formato.NDJSON, stream(ndjson));
+
+        assertThat(resumen.getLeidas()).isEqualTo(3);
+        assertThat(resumen.getImportadas()).isZero();
+        assertThat(resumen.getRechazadas()).isEqualTo(3);
+        assertThat(resumen.getErrores()).extracting(ErrorFila::getLinea).containsExactly(1L, 2L, 3L);
+        assertThat(repository.findByCodigoProducto("IM0001PO")).isEmpty();
+    }
+
+    private static ByteArrayInputStream stream(String texto) {
+        return new ByteArrayInputStream(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}
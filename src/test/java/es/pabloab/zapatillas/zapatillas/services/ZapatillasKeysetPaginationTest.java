@@ -0,0 +1,88 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaBadRequestException;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.utils.pagination.KeysetCursor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@DisplayName("Paginación por cursor (keyset) de zapatillas")
+class ZapatillasKeysetPaginationTest {
+
+    // precio tiene empates en data.sql (89.99), así que id hace de desempate
+    private static final Sort SORT = Sort.by("precio").ascending().and(Sort.by("id").ascending());
+
+    @Autowired
+    private ZapatillasService service;
+
+    @Autowired
+    private KeysetCursor keysetCursor;
+
+    @Test
+    @DisplayName("Recorrer hacia delante con cursores devuelve lo mismo que offset, sin repetir filas")
+    void recorridoHaciaDelanteCoincideConOffset() {
+        List<Long> esperados = idsConOffset();
+
+        List<Long> recorridos = new ArrayList<>();
+        ScrollPosition position = ScrollPosition.keyset();
+        Window<ZapatillaResponseDto> window;
+        do {
+            window = service.findAll(null, null, position, SORT, 2);
+            window.forEach(z -> recorridos.add(z.getId()));
+            position = keysetCursor.decode(keysetCursor.next(window), ScrollPosition.Direction.FORWARD, SORT);
+        } while (window.hasNext());
+
+        assertThat(recorridos).containsExactlyElementsOf(esperados);
+    }
+
+    @Test
+    @DisplayName("El cursor 'before' devuelve la página anterior en orden")
+    void cursorBeforeDevuelvePaginaAnterior() {
+        List<Long> esperados = idsConOffset();
+
+        Window<ZapatillaResponseDto> primera = service.findAll(null, null, ScrollPosition.keyset(), SORT, 2);
+        ScrollPosition after = keysetCursor.decode(keysetCursor.next(primera), ScrollPosition.Direction.FORWARD, SORT);
+        Window<ZapatillaResponseDto> segunda = service.findAll(null, null, after, SORT, 2);
+
+        ScrollPosition before = keysetCursor.decode(keysetCursor.prev(segunda), ScrollPosition.Direction.BACKWARD, SORT);
+        Window<ZapatillaResponseDto> anterior = service.findAll(null, null, before, SORT, 2);
+
+        assertThat(segunda.getContent()).extracting(ZapatillaResponseDto::getId)
+                .containsExactlyElementsOf(esperados.subList(2, 4));
+        assertThat(anterior.getContent()).extracting(ZapatillaResponseDto::getId)
+                .containsExactlyElementsOf(esperados.subList(0, 2));
+    }
+
+    @Test
+    @DisplayName("Un cursor de otro orden o manipulado es un 400, no un error en la consulta")
+    void cursorDeOtroOrdenEsBadRequest() {
+        Window<ZapatillaResponseDto> primera = service.findAll(null, null, ScrollPosition.keyset(), SORT, 2);
+        String cursor = keysetCursor.next(primera);
+        Sort porMarca = Sort.by("marca").ascending().and(Sort.by("id").ascending());
+
+        assertThatThrownBy(() -> keysetCursor.decode(cursor, ScrollPosition.Direction.FORWARD, porMarca))
+                .isInstanceOf(ZapatillaBadRequestException.class);
+        assertThatThrownBy(() -> keysetCursor.decode("no-es-un-cursor", ScrollPosition.Direction.FORWARD, SORT))
+                .isInstanceOf(ZapatillaBadRequestException.class);
+    }
+
+    private List<Long> idsConOffset() {
+        return service.findAll(null, null, PageRequest.of(0, 100, SORT))
+                .map(ZapatillaResponseDto::getId)
+                .getContent();
+    }
+}
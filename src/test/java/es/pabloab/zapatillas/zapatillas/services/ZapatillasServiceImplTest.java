@@ -1,18 +1,26 @@
 package es.pabloab.zapatillas.zapatillas.services;
 
+import es.pabloab.zapatillas.rest.zapatillas.cache.ZapatillasCache;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
 import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasFacetIndex;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasIndices;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasRangoIndex;
+import es.pabloab.zapatillas.rest.zapatillas.indexes.ZapatillasTrigramIndex;
 import es.pabloab.zapatillas.rest.zapatillas.mappers.ZapatillaMapper;
 import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
 import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasCatalogoVersion;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasContador;
 import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasServiceImpl;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasStockLedger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import es.pabloab.zapatillas.rest.zapatillas.controllers.websocket.ZapatillasWebSocketController;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasNotificador;
 import static org.mockito.ArgumentMatchers.any;
 
 import java.time.LocalDateTime;
@@ -30,14 +38,32 @@ class ZapatillasServiceImplTest {
     @Mock
     private ZapatillaMapper mapper;
     @Mock
-    private ZapatillasWebSocketController webSocketController;
+    private ZapatillasNotificador notificador;
+    @Mock
+    private ZapatillasContador contador;
+    @Mock
+    private ZapatillasTrigramIndex trigramIndex;
+    @Mock
+    private ZapatillasIndices indices;
+    @Mock
+    private ZapatillasCache cache;
+    @Mock
+    private ZapatillasFacetIndex facetIndex;
+    @Mock
+    private ZapatillasRangoIndex rangoIndex;
+    @Mock
+    private ZapatillasCatalogoVersion catalogoVersion;
+    @Mock
+    private ZapatillasStockLedger stockLedger;
 
     private ZapatillasServiceImpl service;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        service = new ZapatillasServiceImpl(repository, mapper, webSocketController);
+        service = new ZapatillasServiceImpl(repository, mapper, notificador, contador,
+                trigramIndex, indices, cache, facetIndex, rangoIndex,
+                catalogoVersion, stockLedger);
     }
 
     @Test
@@ -69,7 +95,7 @@ class ZapatillasServiceImplTest {
                 .build();
 
         given(mapper.toZapatilla(null, dto)).willReturn(zapatilla);
-        given(repository.save(zapatilla)).willReturn(zapatilla);
+        given(repository.saveAndFlush(zapatilla)).willReturn(zapatilla);
         given(mapper.toResponseDto(zapatilla)).willReturn(ZapatillaResponseDto.builder().id(1L).marca("Nike").build());
 
         ZapatillaResponseDto result = service.save(dto);
@@ -78,11 +104,11 @@ class ZapatillasServiceImplTest {
         assertThat(result.getId()).isEqualTo(1L);
 
         ArgumentCaptor<Zapatilla> captor = ArgumentCaptor.forClass(Zapatilla.class);
-        verify(repository).save(captor.capture());
+        verify(repository).saveAndFlush(captor.capture());
         Zapatilla saved = captor.getValue();
         assertThat(saved.getMarca()).isEqualTo("Nike");
 
-        verify(webSocketController).enviarNotificacion(any());
+        verify(notificador).enviar(any(), any());
     }
 
 }
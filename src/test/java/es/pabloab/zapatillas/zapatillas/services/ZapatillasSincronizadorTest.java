@@ -0,0 +1,104 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaSincronizacionDto;
+import es.pabloab.zapatillas.rest.zapatillas.models.Zapatilla;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasExportador.Formato;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasSincronizador;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DisplayName("Sincronización con el feed del proveedor")
+class ZapatillasSincronizadorTest {
+
+    private static final String CABECERA = "marca,modelo,codigoProducto,talla,color,tipo,precio,stock\n";
+    private static final String FEED = CABECERA
+            + "Asics,Gel,SY0001NC,42,Azul,Running,120.5,7\n"
+            + "Vans,Old Skool,SY0002NC,41,Negro,Casual,70,9\n";
+
+    @Autowired
+    private ZapatillasSincronizador sincronizador;
+    @Autowired
+    private ZapatillasRepository repository;
+    @Autowired
+    private ZapatillasService service;
+    @Autowired
+    private ZapatillasExportador exportador;
+
+    @AfterEach
+    void limpiar() {
+        List.of("SY0001NC", "SY0002NC").forEach(codigo -> repository.findByCodigoProducto(codigo)
+                .ifPresent(z -> service.deleteById(z.getId())));
+    }
+
+    @Test
+    @DisplayName("Solo se escriben las filas nuevas o cambiadas; las iguales no tocan la BD")
+    void soloEscribeLosCambios() throws Exception {
+        ZapatillaSincronizacionDto primera = sincronizar(FEED);
+        assertThat(primera.getInsertadas()).isEqualTo(2);
+
+        LocalDateTime actualizadaEn = repository.findByCodigoProducto("SY0002NC").orElseThrow().getUpdatedAt();
+
+        ZapatillaSincronizacionDto igual = sincronizar(FEED);
+        assertThat(igual.getSinCambios()).isEqualTo(2);
+        assertThat(igual.getInsertadas() + igual.getActualizadas()).isZero();
+        assertThat(repository.findByCodigoProducto("SY0002NC").orElseThrow().getUpdatedAt()).isEqualTo(actualizadaEn);
+
+        ZapatillaSincronizacionDto cambio = sincronizar(FEED.replace("120.5,7", "99.9,7"));
+        assertThat(cambio.getActualizadas()).isEqualTo(1);
+        assertThat(cambio.getSinCambios()).isEqualTo(1);
+        Zapatilla actualizada = repository.findByCodigoProducto("SY0001NC").orElseThrow();
+        assertThat(actualizada.getPrecio()).isEqualTo(99.9);
+        assertThat(service.findById(actualizada.getId()).getPrecio()).isEqualTo(99.9);
+    }
+
+    @Test
+    @DisplayName("Las filas inválidas se rechazan sin detener la sincronización")
+    void rechazaFilasInvalidas() throws Exception {
+        ZapatillaSincronizacionDto resumen = sincronizar(FEED + "Vans,Old Skool,malo,41,Negro,Casual,70,9\n");
+
+        assertThat(resumen.getLeidas()).isEqualTo(3);
+        assertThat(resumen.getInsertadas()).isEqualTo(2);
+        assertThat(resumen.getRechazadas()).isEqualTo(1);
+        assertThat(resumen.getErrores()).singleElement()
+                .satisfies(error -> assertThat(error.getLinea()).isEqualTo(4));
+    }
+
+    @Test
+    @DisplayName("Con eliminarAusentes, una fila inválida no borra el producto que ya existía")
+    void filaInvalidaNoBorra() throws Exception {
+        sincronizar(FEED);
+        // El catálogo completo como feed (el contexto es compartido: no se debe borrar nada más)
+        ByteArrayOutputStream catalogo = new ByteArrayOutputStream();
+        exportador.exportar(Formato.CSV, catalogo);
+        String feed = catalogo.toString(StandardCharsets.UTF_8);
+        String filaSy0001 = feed.lines().filter(linea -> linea.contains(",SY0001NC,")).findFirst().orElseThrow();
+        String invalida = filaSy0001.replace(",120.5,", ",-3,");
+
+        ZapatillaSincronizacionDto resumen = sincronizador.sincronizar(Formato.CSV,
+                new ByteArrayInputStream(feed.replace(filaSy0001, invalida).getBytes(StandardCharsets.UTF_8)), true);
+
+        assertThat(resumen.getRechazadas()).isEqualTo(1);
+        assertThat(resumen.getEliminadas()).isZero();
+        assertThat(repository.findByCodigoProducto("SY0001NC")).isPresent();
+    }
+
+    private ZapatillaSincronizacionDto sincronizar(String csv) throws Exception {
+        return sincronizador.sincronizar(Formato.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), false);
+    }
+}
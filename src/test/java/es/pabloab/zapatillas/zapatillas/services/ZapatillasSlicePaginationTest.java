@@ -0,0 +1,59 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.utils.pagination.SliceUtils;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@DisplayName("Listados sin COUNT (Slice) y total aproximado")
+class ZapatillasSlicePaginationTest {
+
+    private static final Sort SORT = Sort.by("id").ascending();
+
+    @Autowired
+    private ZapatillasService service;
+
+    @Test
+    @DisplayName("Recorrer los Slice devuelve las mismas filas que las páginas con COUNT")
+    void recorridoCoincideConPage() {
+        Page<ZapatillaResponseDto> todas = service.findAll(null, null, PageRequest.of(0, 100, SORT));
+
+        List<Long> recorridos = new ArrayList<>();
+        Slice<ZapatillaResponseDto> slice;
+        int pagina = 0;
+        do {
+            slice = service.findAllSlice(null, null, PageRequest.of(pagina++, 5, SORT));
+            slice.forEach(z -> recorridos.add(z.getId()));
+        } while (slice.hasNext());
+
+        assertThat(recorridos).containsExactlyElementsOf(todas.map(ZapatillaResponseDto::getId).getContent());
+        // En la última página el total ya es exacto
+        assertThat(SliceUtils.approximateTotal(slice, 0)).isEqualTo(todas.getTotalElements());
+    }
+
+    @Test
+    @DisplayName("El total aproximado coincide con el COUNT y con el filtro por marca")
+    void totalAproximado() {
+        long total = service.findAll(null, null, PageRequest.of(0, 1)).getTotalElements();
+        long nike = service.findAll("nike", null, PageRequest.of(0, 1)).getTotalElements();
+
+        assertThat(service.countAproximado(null, null)).isEqualTo(total);
+        assertThat(service.countAproximado("NIKE", null)).isEqualTo(nike);
+        assertThat(service.findAllSlice("nike", null, PageRequest.of(0, 100, SORT)).getContent())
+                .hasSize((int) nike)
+                .allMatch(z -> z.getMarca().equalsIgnoreCase("nike"));
+    }
+}
@@ -0,0 +1,150 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.models.ReservaStock;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ReservasStockRepository;
+import es.pabloab.zapatillas.rest.zapatillas.repositories.ZapatillasRepository;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasStockLedger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@DisplayName("Ledger de stock: volcado por lotes y diario en disco")
+class ZapatillasStockLedgerTest {
+
+    @Autowired
+    private ZapatillasStockLedger ledger;
+    @Autowired
+    private ZapatillasService service;
+    @Autowired
+    private ZapatillasRepository repository;
+    @Autowired
+    private ReservasStockRepository reservasRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long id;
+
+    @BeforeEach
+    void crear() {
+        id = service.save(ZapatillaCreateDto.builder()
+                .marca("Asics").modelo("Gel").codigoProducto("LE0001DG").talla(42.0)
+                .color("Azul").tipo("Running").precio(100.0).stock(50).build()).getId();
+    }
+
+    @AfterEach
+    void borrar() {
+        service.deleteById(id);
+    }
+
+    @Test
+    @DisplayName("Muchas ventas entre dos volcados se guardan con un solo UPDATE")
+    void ventasAgrupadasEnUnVolcado() {
+        ledger.volcar();
+        long versionInicial = service.findById(id).getVersion();
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(ledger.descontar(id, 1)).isEqualTo(49 - i);
+        }
+        assertThat(ledger.descontar(id, 31)).isEqualTo(-1);
+        ledger.volcar();
+
+        ZapatillaResponseDto guardada = service.findById(id);
+        assertThat(guardada.getStock()).isEqualTo(30);
+        // +1 por el volcado (+2 si la tarea programada ha volcado a mitad del bucle)
+        assertThat(guardada.getVersion()).isBetween(versionInicial + 1, versionInicial + 2);
+    }
+
+    @Test
+    @DisplayName("cambiarEnTransaccion: el stock y la otra escritura se guardan juntos o no se guarda ninguno")
+    void cambioEnLaMismaTransaccion() {
+        ledger.volcar();
+
+        // Sin volcar: al volver ya está en la BD
+        assertThat(ledger.cambiarEnTransaccion(id, -5, () -> true)).isTrue();
+        assertThat(repository.findStockById(id)).contains(45);
+        assertThat(ledger.disponible(id)).isEqualTo(45);
+
+        // La escritura falla después de guardar su fila: se deshacen la fila y el stock
+        UUID reservaId = UUID.randomUUID();
+        assertThatThrownBy(() -> ledger.cambiarEnTransaccion(id, -5, () -> {
+            reservasRepository.saveAndFlush(ReservaStock.builder().id(reservaId).zapatillaId(id).cantidad(5).usuario("ana")
+                    .creadaEn(LocalDateTime.now()).expiraEn(LocalDateTime.now().plusMinutes(5)).build());
+            throw new IllegalStateException("fallo a mitad");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(reservasRepository.findById(reservaId)).isEmpty();
+
+        // Nada que hacer, o sin unidades suficientes: no cambia nada
+        assertThat(ledger.cambiarEnTransaccion(id, 5, () -> false)).isFalse();
+        assertThat(ledger.cambiarEnTransaccion(id, -46, () -> true)).isFalse();
+
+        assertThat(repository.findStockById(id)).contains(45);
+        assertThat(ledger.disponible(id)).isEqualTo(45);
+    }
+
+    @Test
+    @DisplayName("Al recuperar se reaplica el diario no volcado una sola vez e ignora la línea cortada")
+    void recuperaElDiario() throws Exception {
+        ledger.volcar();
+        Path pendiente = ledger.getDirectorio().resolve("diario-1000000.log");
+        Files.writeString(pendiente, id + " -3\n" + id + " -4\n" + id + " -");
+
+        ledger.recuperar();
+        assertThat(service.findById(id).getStock()).isEqualTo(43);
+        assertThat(ledger.disponible(id)).isEqualTo(43);
+        assertThat(pendiente).doesNotExist();
+
+        // El punto de control ya cubre esa generación: no se aplica otra vez
+        ledger.recuperar();
+        assertThat(service.findById(id).getStock()).isEqualTo(43);
+
+        // Y el diario sigue funcionando en la generación siguiente
+        assertThat(ledger.descontar(id, 3)).isEqualTo(40);
+        try (Stream<Path> ficheros = Files.list(ledger.getDirectorio())) {
+            assertThat(ficheros.map(f -> f.getFileName().toString()))
+                    .singleElement().asString().matches("diario-100000[1-9]\\.log");
+        }
+        ledger.volcar();
+        assertThat(service.findById(id).getStock()).isEqualTo(40);
+    }
+
+    @Test
+    @DisplayName("Un diario que no encaja con la BD se aparta sin aplicarlo ni borrarlo")
+    void apartaElDiarioQueNoEncaja() throws Exception {
+        ledger.volcar();
+        Path apartados = ledger.getDirectorio().resolve("apartados");
+
+        // Una zapatilla del diario ya no existe: no se aplica ninguna línea
+        Path huerfano = ledger.getDirectorio().resolve("diario-2000000.log");
+        Files.writeString(huerfano, id + " -3\n" + Long.MAX_VALUE + " -1\n");
+        ledger.recuperar();
+        assertThat(service.findById(id).getStock()).isEqualTo(50);
+        assertThat(huerfano).doesNotExist();
+        assertThat(apartados).isDirectoryContaining("glob:**diario-2000000.log");
+
+        // BD sin punto de control (recién creada): el diario es de otra BD
+        jdbcTemplate.update("DELETE FROM diario_stock");
+        Path otraBd = ledger.getDirectorio().resolve("diario-3000000.log");
+        Files.writeString(otraBd, id + " -5\n");
+        ledger.recuperar();
+        assertThat(service.findById(id).getStock()).isEqualTo(50);
+        assertThat(apartados).isDirectoryContaining("glob:**diario-3000000.log");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM diario_stock", Long.class)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,185 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.ReservaStockDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaResponseDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaUpdateDto;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ReservaStockAjenaException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ReservaStockLimiteException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ReservaStockNotFoundException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaStockInsuficienteException;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasStockLedger;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasStockService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+@SpringBootTest
+@DisplayName("Descuento atómico y reservas de stock")
+class ZapatillasStockServiceTest {
+
+    private static final int HILOS = 8;
+
+    @Autowired
+    private ZapatillasStockService stockService;
+    @Autowired
+    private ZapatillasService service;
+    @Autowired
+    private ZapatillasStockLedger ledger;
+
+    private Long id;
+
+    @BeforeEach
+    void crear() {
+        id = service.save(ZapatillaCreateDto.builder()
+                .marca("Asics").modelo("Gel").codigoProducto("ST0001CK").talla(42.0)
+                .color("Azul").tipo("Running").precio(100.0).stock(0).build()).getId();
+    }
+
+    @AfterEach
+    void borrar() {
+        service.deleteById(id);
+    }
+
+    @Test
+    @DisplayName("Ventas concurrentes: se venden exactamente las unidades que hay, sin actualizaciones perdidas")
+    void ventasConcurrentesSinPerdidas() throws Exception {
+        int stock = 400;
+        long versionInicial = service.update(id, ZapatillaUpdateDto.builder().stock(stock).build()).getVersion();
+
+        int vendidas = venderHastaAgotar(HILOS);
+        ledger.volcar();
+
+        ZapatillaResponseDto fin = service.findById(id);
+        assertThat(vendidas).isEqualTo(stock);
+        assertThat(fin.getStock()).isZero();
+        // Las ventas se guardan por lotes: una versión por volcado, no por venta
+        assertThat(fin.getVersion()).isGreaterThan(versionInicial).isLessThan(versionInicial + stock);
+        assertThatThrownBy(() -> stockService.decrementar(id, 1))
+                .isInstanceOf(ZapatillaStockInsuficienteException.class);
+    }
+
+    @Test
+    @DisplayName("Reservar descuenta; liberar o caducar devuelve las unidades; confirmar las mantiene")
+    void reservas() throws Exception {
+        service.update(id, ZapatillaUpdateDto.builder().stock(10).build());
+
+        ReservaStockDto liberada = stockService.reservar(id, 3, Duration.ofMinutes(5), "ana");
+        assertThat(stock()).isEqualTo(7);
+        stockService.liberar(liberada.getId(), "ana", false);
+        assertThat(stock()).isEqualTo(10);
+
+        ReservaStockDto confirmada = stockService.reservar(id, 4, null, "ana");
+        stockService.confirmar(confirmada.getId(), "ana", false);
+        assertThat(stock()).isEqualTo(6);
+        assertThatThrownBy(() -> stockService.liberar(confirmada.getId(), "ana", false))
+                .isInstanceOf(ReservaStockNotFoundException.class);
+
+        stockService.reservar(id, 2, Duration.ofMillis(50), "ana");
+        assertThat(stock()).isEqualTo(4);
+        Thread.sleep(100);
+        stockService.liberarCaducadas();
+        assertThat(stock()).isEqualTo(6);
+
+        assertThatThrownBy(() -> stockService.reservar(id, 7, null, "ana"))
+                .isInstanceOf(ZapatillaStockInsuficienteException.class);
+        assertThat(stock()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("Solo el dueño o un ADMIN cierran una reserva, y cada usuario tiene un límite de unidades")
+    void reservasPorUsuario() {
+        service.update(id, ZapatillaUpdateDto.builder().stock(100).build());
+
+        ReservaStockDto deAna = stockService.reservar(id, 5, null, "ana");
+        assertThatThrownBy(() -> stockService.confirmar(deAna.getId(), "luis", false))
+                .isInstanceOf(ReservaStockAjenaException.class);
+        assertThatThrownBy(() -> stockService.liberar(deAna.getId(), "luis", false))
+                .isInstanceOf(ReservaStockAjenaException.class);
+        stockService.liberar(deAna.getId(), "admin", true);
+        assertThat(stock()).isEqualTo(100);
+
+        // Límite por defecto: 20 unidades abiertas por usuario
+        ReservaStockDto grande = stockService.reservar(id, 15, null, "ana");
+        assertThatThrownBy(() -> stockService.reservar(id, 6, null, "ana"))
+                .isInstanceOf(ReservaStockLimiteException.class);
+        ReservaStockDto deLuis = stockService.reservar(id, 6, null, "luis");
+        stockService.confirmar(grande.getId(), "ana", false);
+        ReservaStockDto otra = stockService.reservar(id, 6, null, "ana");
+        assertThat(stock()).isEqualTo(73);
+
+        stockService.liberar(otra.getId(), "ana", false);
+        stockService.liberar(deLuis.getId(), "luis", false);
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Rendimiento del descuento en el ledger con 1, 2, 4 y 8 hilos")
+    void rendimientoPorHilos() throws Exception {
+        int stock = 4000;
+        for (int hilos : new int[]{1, 2, 4, 8}) {
+            service.update(id, ZapatillaUpdateDto.builder().stock(stock).build());
+            long inicio = System.nanoTime();
+            int vendidas = venderHastaAgotar(hilos);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            assertThat(vendidas).isEqualTo(stock);
+            log.info("hilos={} ventas={} {} ventas/s", hilos, vendidas, Math.round(vendidas / segundos));
+        }
+    }
+
+    /**
+     * Stock guardado, tras volcar lo pendiente del ledger.
+     */
+    private int stock() {
+        ledger.volcar();
+        return service.findById(id).getStock();
+    }
+
+    /**
+     * Cada hilo vende de una en una hasta que no queda stock; devuelve el total vendido.
+     */
+    private int venderHastaAgotar(int hilos) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        try {
+            List<Callable<Integer>> tareas = new ArrayList<>();
+            for (int i = 0; i < hilos; i++) {
+                tareas.add(() -> {
+                    int vendidas = 0;
+                    while (true) {
+                        try {
+                            stockService.decrementar(id, 1);
+                            vendidas++;
+                        } catch (ZapatillaStockInsuficienteException e) {
+                            return vendidas;
+                        }
+                    }
+                });
+            }
+            int total = 0;
+            for (Future<Integer> resultado : executor.invokeAll(tareas)) {
+                total += resultado.get();
+            }
+            return total;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.dto.websocket.ZapatillaNotificacion.TipoNotificacion;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaVentaDetenidaException;
+import es.pabloab.zapatillas.rest.zapatillas.notificaciones.ZapatillasNotificador;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasStockLedger;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasVentaFlash;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.verify;
+
+@DisplayName("Venta flash: parada de la aplicación")
+class ZapatillasVentaFlashParadaTest {
+
+    @Mock
+    private ZapatillasStockLedger ledger;
+    @Mock
+    private ZapatillasNotificador notificador;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    @DisplayName("Las compras aceptadas que no se llegan a procesar se rechazan avisando al comprador")
+    void rechazaYAvisaLasPendientes() throws Exception {
+        CountDownLatch enProceso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        given(ledger.disponible(anyLong())).willReturn(10L);
+        given(ledger.descontar(anyLong(), anyInt())).willAnswer(invocacion -> {
+            enProceso.countDown();
+            // Sin atender a la interrupción, como una escritura que no se puede cortar
+            while (liberar.getCount() > 0) {
+                Thread.onSpinWait();
+            }
+            return 9L;
+        });
+        ZapatillasVentaFlash ventaFlash = new ZapatillasVentaFlash(ledger, notificador, 16, 1, Duration.ofMillis(100));
+        for (int i = 1; i <= 3; i++) {
+            ventaFlash.comprar(1L, 1, "comprador-" + i);
+        }
+        enProceso.await();
+
+        Thread parada = Thread.ofVirtual().start(() -> {
+            try {
+                ventaFlash.detener();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(200);
+        assertThatThrownBy(() -> ventaFlash.comprar(1L, 1, "tarde"))
+                .isInstanceOf(ZapatillaVentaDetenidaException.class);
+        liberar.countDown();
+        parada.join();
+
+        ArgumentCaptor<String> usuarios = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<ZapatillaNotificacion> avisos = ArgumentCaptor.forClass(ZapatillaNotificacion.class);
+        verify(notificador, atLeast(1)).enviarPrivada(usuarios.capture(), avisos.capture());
+        List<String> resultados = new ArrayList<>();
+        for (int i = 0; i < avisos.getAllValues().size(); i++) {
+            TipoNotificacion tipo = avisos.getAllValues().get(i).getTipo();
+            if (tipo != TipoNotificacion.PURCHASE_QUEUED) {
+                resultados.add(usuarios.getAllValues().get(i) + ":" + tipo);
+            }
+        }
+        assertThat(resultados).containsExactlyInAnyOrder(
+                "comprador-1:PURCHASE_CONFIRMED",
+                "comprador-2:PURCHASE_REJECTED",
+                "comprador-3:PURCHASE_REJECTED");
+    }
+}
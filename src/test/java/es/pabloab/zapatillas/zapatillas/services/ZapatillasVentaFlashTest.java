@@ -0,0 +1,166 @@
+package es.pabloab.zapatillas.zapatillas.services;
+
+import es.pabloab.zapatillas.rest.zapatillas.dto.CompraFlashDto;
+import es.pabloab.zapatillas.rest.zapatillas.dto.ZapatillaCreateDto;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaColaLlenaException;
+import es.pabloab.zapatillas.rest.zapatillas.exceptions.ZapatillaStockInsuficienteException;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasService;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasStockLedger;
+import es.pabloab.zapatillas.rest.zapatillas.services.ZapatillasVentaFlash;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@SpringBootTest
+@DisplayName("Venta flash: cola de admisión por zapatilla")
+class ZapatillasVentaFlashTest {
+
+    private static final String PREFIJO = "/user/comprador-";
+
+    @Autowired
+    private ZapatillasVentaFlash ventaFlash;
+    @Autowired
+    private ZapatillasStockLedger ledger;
+    @Autowired
+    private ZapatillasService service;
+    @Autowired
+    private JsonMapper jsonMapper;
+    @Autowired
+    @Qualifier("brokerChannel")
+    private AbstractSubscribableChannel brokerChannel;
+
+    // Tipos de notificación recibidos por cada comprador, en orden
+    private final Map<String, List<String>> notificaciones = new ConcurrentHashMap<>();
+    private final MessageHandler escucha = mensaje -> {
+        String destino = SimpMessageHeaderAccessor.getDestination(mensaje.getHeaders());
+        if (destino != null && destino.startsWith(PREFIJO)) {
+            String usuario = destino.substring("/user/".length(), destino.indexOf("/queue/"));
+            String tipo = jsonMapper.readTree((byte[]) mensaje.getPayload()).get("tipo").asString();
+            notificaciones.computeIfAbsent(usuario, u -> Collections.synchronizedList(new ArrayList<>())).add(tipo);
+        }
+    };
+
+    private Long id;
+
+    @BeforeEach
+    void crear() {
+        brokerChannel.subscribe(escucha);
+        id = service.save(ZapatillaCreateDto.builder()
+                .marca("Nike").modelo("Dunk").codigoProducto("FL0001SH").talla(42.0)
+                .color("Verde").tipo("Casual").precio(120.0).stock(100).build()).getId();
+    }
+
+    @AfterEach
+    void borrar() {
+        brokerChannel.unsubscribe(escucha);
+        service.deleteById(id);
+    }
+
+    @Test
+    @DisplayName("1000 compradores a la vez: se venden exactamente las 100 unidades y cada uno recibe su resultado")
+    void compradoresConcurrentes() throws Exception {
+        Resultado resultado = comprarALaVez(1000);
+
+        esperarResultados(resultado.aceptadas.get());
+        long confirmadas = contar("PURCHASE_CONFIRMED");
+        long rechazadas = contar("PURCHASE_REJECTED");
+
+        assertThat(confirmadas).isEqualTo(100);
+        assertThat(resultado.aceptadas.get()).isEqualTo(confirmadas + rechazadas);
+        assertThat(resultado.aceptadas.get() + resultado.sinStock.get() + resultado.colaLlena.get()).isEqualTo(1000);
+        assertThat(ledger.disponible(id)).isZero();
+        assertThat(ventaFlash.enCola(id)).isZero();
+        // Vacía, su trabajador la quita (justo después del último resultado)
+        long limite = System.currentTimeMillis() + 1_000;
+        while (ventaFlash.colasActivas() > 0 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertThat(ventaFlash.colasActivas()).isZero();
+        // La posición siempre llega antes que el resultado
+        notificaciones.values().forEach(tipos -> assertThat(tipos.getFirst()).isEqualTo("PURCHASE_QUEUED"));
+
+        ledger.volcar();
+        assertThat(service.findById(id).getStock()).isZero();
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("Rendimiento con 10.000 compradores sobre la misma zapatilla")
+    void rendimiento10000Compradores() throws Exception {
+        long inicio = System.nanoTime();
+        Resultado resultado = comprarALaVez(10_000);
+        esperarResultados(resultado.aceptadas.get());
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        assertThat(contar("PURCHASE_CONFIRMED")).isEqualTo(100);
+        log.info("compradores=10000 aceptadas={} sinStock={} colaLlena={} {} peticiones/s",
+                resultado.aceptadas.get(), resultado.sinStock.get(), resultado.colaLlena.get(), Math.round(10_000 / segundos));
+    }
+
+    private record Resultado(AtomicInteger aceptadas, AtomicInteger sinStock, AtomicInteger colaLlena) {
+    }
+
+    /**
+     * Un hilo virtual por comprador, cada uno con su usuario; compra 1 unidad.
+     */
+    private Resultado comprarALaVez(int compradores) throws InterruptedException {
+        Resultado resultado = new Resultado(new AtomicInteger(), new AtomicInteger(), new AtomicInteger());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < compradores; i++) {
+                String usuario = "comprador-" + i;
+                executor.execute(() -> {
+                    try {
+                        CompraFlashDto compra = ventaFlash.comprar(id, 1, usuario);
+                        assertThat(compra.getPosicion()).isPositive();
+                        resultado.aceptadas.incrementAndGet();
+                    } catch (ZapatillaStockInsuficienteException e) {
+                        resultado.sinStock.incrementAndGet();
+                    } catch (ZapatillaColaLlenaException e) {
+                        resultado.colaLlena.incrementAndGet();
+                    }
+                });
+            }
+        }
+        return resultado;
+    }
+
+    private void esperarResultados(long aceptadas) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while (contar("PURCHASE_CONFIRMED") + contar("PURCHASE_REJECTED") < aceptadas
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+    }
+
+    private long contar(String tipo) {
+        return notificaciones.values().stream()
+                .mapToLong(tipos -> {
+                    synchronized (tipos) {
+                        return tipos.stream().filter(tipo::equals).count();
+                    }
+                })
+                .sum();
+    }
+}